@@ -0,0 +1,111 @@
+package com.dvcs.neuralnetwork;
+
+import java.util.concurrent.TimeUnit;
+
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.mathutil.randomize.ConsistentRandomizer;
+import org.encog.ml.data.basic.BasicMLData;
+import org.encog.neural.networks.BasicNetwork;
+import org.encog.neural.networks.layers.BasicLayer;
+import org.jblas.DoubleMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dvcs.neuralnetwork.NeuralNetwork.ForwardPropagationResult;
+
+/**
+ * Latency of predicting a single frame, as the driver does, with Encog, with
+ * {@link NeuralNetwork#feedForward(DoubleMatrix)} and with an
+ * {@link InferenceEngine}, plus the per-batch latency of the engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InferenceEngineBenchmark {
+
+	/**
+	 * Layer sizes, separated by dashes
+	 */
+	@Param({ "400-100-10", "1024-100-10" })
+	public String topology;
+
+	@Param({ "32" })
+	public int batchSize;
+
+	BasicNetwork encog;
+	NeuralNetwork nn;
+	InferenceEngine encogEngine;
+	InferenceEngine engine;
+
+	double[] x;
+	DoubleMatrix xRow;
+	double[] batch;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		String[] sizes = topology.split("-");
+		int[] layerSizes = new int[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			layerSizes[i] = Integer.parseInt(sizes[i]);
+		}
+
+		encog = new BasicNetwork();
+		encog.addLayer(new BasicLayer(null, true, layerSizes[0]));
+		for (int l = 1; l < layerSizes.length; l++) {
+			encog.addLayer(new BasicLayer(new ActivationSigmoid(),
+					l < layerSizes.length - 1, layerSizes[l]));
+		}
+		encog.getStructure().finalizeStructure();
+		encog.reset();
+		new ConsistentRandomizer(-1, 1, 500).randomize(encog);
+
+		org.jblas.util.Random.seed(42);
+		nn = new NeuralNetwork(layerSizes);
+
+		encogEngine = InferenceEngine.compile(encog, 1);
+		engine = InferenceEngine.compile(nn, batchSize);
+
+		xRow = DoubleMatrix.rand(1, layerSizes[0]);
+		x = xRow.toArray();
+		batch = DoubleMatrix.rand(batchSize, layerSizes[0]).toArray();
+	}
+
+	@Benchmark
+	public double[] encogCompute() {
+		return encog.compute(new BasicMLData(x)).getData();
+	}
+
+	@Benchmark
+	public double[] encogEngineCompute() {
+		return encogEngine.compute(x);
+	}
+
+	@Benchmark
+	public ForwardPropagationResult networkFeedForward() {
+		return nn.feedForward(xRow);
+	}
+
+	@Benchmark
+	public double[] engineCompute() {
+		return engine.compute(x);
+	}
+
+	@Benchmark
+	public double[] engineComputeBatch() {
+		return engine.compute(batch, batchSize);
+	}
+
+}
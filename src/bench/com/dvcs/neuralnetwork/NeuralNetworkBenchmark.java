@@ -0,0 +1,164 @@
+package com.dvcs.neuralnetwork;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dvcs.neuralnetwork.NeuralNetwork.ForwardPropagationResult;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.minimize.Fmincg;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Training and inference hot paths of {@link NeuralNetwork} on randomly
+ * initialized networks and examples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuralNetworkBenchmark {
+
+	/**
+	 * Layer sizes, separated by dashes
+	 */
+	@Param({ "400-100-10", "1024-256-10" })
+	public String topology;
+
+	/**
+	 * The number of examples
+	 */
+	@Param({ "500" })
+	public int m;
+
+	@Param({ "DOUBLE", "FLOAT" })
+	public Precision precision;
+
+	NeuralNetwork nn;
+	DoubleMatrix x;
+	DoubleMatrix y;
+
+	ForwardPropagationWorkspace workspace;
+	ForwardPropagationResult fResult;
+	Weights Deltas;
+
+	FloatForwardPropagationWorkspace floatWorkspace;
+	FloatMatrix floatY;
+	float[] floatThetas;
+	float[] floatDeltas;
+
+	NeuralNetworkCostFunction costFunction;
+	DoubleVector point;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		String[] sizes = topology.split("-");
+		int[] layerSizes = new int[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			layerSizes[i] = Integer.parseInt(sizes[i]);
+		}
+
+		org.jblas.util.Random.seed(42);
+		nn = new NeuralNetwork(layerSizes, precision);
+
+		int k = layerSizes[layerSizes.length - 1];
+		x = DoubleMatrix.rand(m, layerSizes[0]);
+
+		DoubleMatrix yVector = new DoubleMatrix(m, 1);
+		for (int i = 0; i < m; i++) {
+			yVector.put(i, 0, i % k + 1);
+		}
+		y = NeuralNetwork.buildYMatrix(yVector, k);
+
+		workspace = nn.createWorkspace(m);
+		workspace.loadInputLayer(x);
+		fResult = nn.feedForward(nn.getWeights(), workspace);
+		Deltas = new Weights(nn.rowDimensions, nn.columnDimensions);
+
+		if (precision == Precision.FLOAT) {
+			floatWorkspace = nn.createFloatWorkspace(m);
+			floatWorkspace.loadInputLayer(x);
+			floatThetas = nn.getFloatWeights();
+			nn.feedForward(nn.getWeights(), floatThetas, floatWorkspace);
+			floatY = y.toFloat();
+			floatDeltas = new float[nn.getWeights().size()];
+		}
+
+		costFunction = new NeuralNetworkCostFunction(nn, x, y, 0.1);
+		point = nn.getWeights().asPoint();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		costFunction.shutdown();
+	}
+
+	/**
+	 * Feed-forward into a reused workspace, as done during training.
+	 */
+	@Benchmark
+	public Object feedForward() {
+		if (floatWorkspace != null) {
+			floatWorkspace.loadInputLayer(x);
+			nn.feedForward(nn.getWeights(), floatThetas, floatWorkspace);
+			return floatWorkspace;
+		}
+
+		workspace.loadInputLayer(x);
+		return nn.feedForward(nn.getWeights(), workspace);
+	}
+
+	/**
+	 * Feed-forward through the public API, which allocates a workspace.
+	 */
+	@Benchmark
+	public ForwardPropagationResult feedForwardAllocating() {
+		return nn.feedForward(x);
+	}
+
+	/**
+	 * Backpropagation of one feed-forward result into a reused accumulator.
+	 */
+	@Benchmark
+	public Object backpropagate() {
+		if (floatWorkspace != null) {
+			nn.backpropagate(floatWorkspace, floatY, nn.getWeights(),
+					floatThetas, floatDeltas);
+			return floatDeltas;
+		}
+
+		nn.backpropagate(fResult, y, nn.getWeights(), Deltas);
+		return Deltas;
+	}
+
+	@Benchmark
+	public Tuple<Double, DoubleVector> evaluateCost() {
+		return costFunction.evaluateCost(point);
+	}
+
+	/**
+	 * A few line searches of the conjugate gradient minimizer.
+	 */
+	@Benchmark
+	public DoubleVector fmincg() {
+		return Fmincg.minimizeFunction(costFunction, point, 3, null);
+	}
+
+}
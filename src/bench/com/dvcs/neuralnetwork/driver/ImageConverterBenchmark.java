@@ -0,0 +1,88 @@
+package com.dvcs.neuralnetwork.driver;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jblas.DoubleMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of camera frames into matrices.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageConverterBenchmark {
+
+	/**
+	 * Frame width and height
+	 */
+	@Param({ "32", "256" })
+	public int size;
+
+	@Param({ "true", "false" })
+	public boolean makeGrayscale;
+
+	BufferedImage image;
+	BufferedImage grayImage;
+	double[] target;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+
+		Random random = new Random(42);
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				image.setRGB(i, j, random.nextInt(0x1000000));
+			}
+		}
+
+		// Decoded camera frames are gray byte images
+		grayImage = new BufferedImage(size, size, BufferedImage.TYPE_BYTE_GRAY);
+		grayImage.getGraphics().drawImage(image, 0, 0, null);
+		target = new double[size * size];
+	}
+
+	@Benchmark
+	public DoubleMatrix convertImageToMatrix() {
+		return ImageConverter.convertImageToMatrix(image, makeGrayscale);
+	}
+
+	/**
+	 * What the driver did per frame before converting rasters directly
+	 */
+	@Benchmark
+	public DoubleMatrix convertAndNormalizeGrayImage() {
+		return ImageConverter.normalize(ImageConverter.convertImageToMatrix(
+				grayImage, true));
+	}
+
+	@Benchmark
+	public double[] convertGrayImage() {
+		ImageConverter.convertImage(grayImage, target, 0);
+		return target;
+	}
+
+	@Benchmark
+	public double[] convertColorImage() {
+		ImageConverter.convertImage(image, target, 0);
+		return target;
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.dvcs.tools;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the JMH benchmarks in `src/bench`, reporting throughput (ops/s) along
+ * with the allocation rate and GC activity of each benchmark.
+ *
+ * The benchmarks are kept out of the Eclipse build path since they need JMH
+ * (`jmh-core` and, for compilation, `jmh-generator-annprocess`, along with
+ * their dependencies `jopt-simple` and `commons-math3`). To build and run
+ * them, compile `src/main` and `src/bench` together with those jars on the
+ * classpath, so that the annotation processor generates the benchmark
+ * harness, and then run this class:
+ *
+ * <pre>
+ * java -cp bin:lib/*:jmh/* com.dvcs.tools.BenchmarkRunner [regex...]
+ * </pre>
+ *
+ * Arguments are regular expressions selecting benchmarks (e.g.
+ * `NeuralNetworkBenchmark.evaluateCost`); without arguments every benchmark
+ * runs. For other JMH options, run `org.openjdk.jmh.Main` directly with
+ * `-prof gc`.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.addProfiler(GCProfiler.class);
+
+		for (String pattern : args) {
+			options.include(pattern);
+		}
+
+		new Runner(options.build()).run();
+	}
+
+}
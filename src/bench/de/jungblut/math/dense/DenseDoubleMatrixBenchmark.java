@@ -0,0 +1,75 @@
+package de.jungblut.math.dense;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.jungblut.math.DoubleMatrix;
+
+/**
+ * Multiplication and transposition of square dense matrices, stored as rows
+ * of separate arrays and as a single flat array.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DenseDoubleMatrixBenchmark {
+
+  @Param({ "64", "256", "512" })
+  public int n;
+
+  DenseDoubleMatrix a;
+  DenseDoubleMatrix b;
+  FlatDoubleMatrix flatA;
+  FlatDoubleMatrix flatB;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    a = new DenseDoubleMatrix(n, n, random);
+    b = new DenseDoubleMatrix(n, n, random);
+    flatA = FlatDoubleMatrix.copyOf(a);
+    flatB = FlatDoubleMatrix.copyOf(b);
+  }
+
+  @Benchmark
+  public DoubleMatrix multiply() {
+    return a.multiply(b);
+  }
+
+  @Benchmark
+  public DoubleMatrix transpose() {
+    return a.transpose();
+  }
+
+  @Benchmark
+  public DoubleMatrix multiplyFlat() {
+    return flatA.multiply(flatB);
+  }
+
+  @Benchmark
+  public DoubleMatrix transposeFlat() {
+    return flatA.transpose();
+  }
+
+  @Benchmark
+  public DoubleMatrix sliceFlat() {
+    return flatA.slice(1, n - 1, 1, n - 1);
+  }
+
+}
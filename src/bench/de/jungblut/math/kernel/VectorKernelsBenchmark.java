@@ -0,0 +1,92 @@
+package de.jungblut.math.kernel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The scalar kernels against the active ones. Unless `src/simd` is compiled
+ * and the fork runs with `--add-modules jdk.incubator.vector` (which the
+ * annotation below passes), both are the scalar kernels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorKernelsBenchmark {
+
+  @Param({ "scalar", "active" })
+  public String kernels;
+
+  @Param({ "1024", "65536" })
+  public int n;
+
+  VectorKernels k;
+  double[] x;
+  double[] y;
+  float[] f;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    k = "scalar".equals(kernels) ? VectorKernels.scalar() : VectorKernels
+        .get();
+    Random random = new Random(42);
+    x = new double[n];
+    y = new double[n];
+    f = new float[n];
+    for (int i = 0; i < n; i++) {
+      x[i] = random.nextGaussian();
+      y[i] = random.nextGaussian();
+      f[i] = (float) x[i];
+    }
+  }
+
+  @Benchmark
+  public double dot() {
+    return k.dot(x, 0, y, 0, n);
+  }
+
+  @Benchmark
+  public double sum() {
+    return k.sum(x, 0, n);
+  }
+
+  @Benchmark
+  public double[] axpy() {
+    k.axpy(1e-9, x, 0, y, 0, n);
+    return y;
+  }
+
+  @Benchmark
+  public double[] sigmoid() {
+    k.sigmoid(x, 0, y, 0, n, false);
+    return y;
+  }
+
+  @Benchmark
+  public double[] sigmoidApproximate() {
+    k.sigmoid(x, 0, y, 0, n, true);
+    return y;
+  }
+
+  @Benchmark
+  public float[] sigmoidFloatApproximate() {
+    k.sigmoid(f, 0, f, 0, n, true);
+    return f;
+  }
+
+}
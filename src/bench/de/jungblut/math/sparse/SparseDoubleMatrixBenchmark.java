@@ -0,0 +1,81 @@
+package de.jungblut.math.sparse;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.sparse.SparseDoubleMatrix.Storage;
+
+/**
+ * Products of a dense 256x256 matrix with a 256x256 matrix of the given
+ * density, stored dense and in both compressed forms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SparseDoubleMatrixBenchmark {
+
+  private static final int N = 256;
+
+  @Param({ "0.01", "0.05", "0.2" })
+  public double density;
+
+  DenseDoubleMatrix a;
+  DenseDoubleMatrix b;
+  SparseDoubleMatrix csr;
+  SparseDoubleMatrix csc;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    a = new DenseDoubleMatrix(N, N, random);
+    b = new DenseDoubleMatrix(N, N);
+    for (int i = 0; i < N; i++) {
+      for (int j = 0; j < N; j++) {
+        if (random.nextDouble() < density) {
+          b.set(i, j, random.nextDouble());
+        }
+      }
+    }
+    csr = SparseDoubleMatrix.copyOf(b, Storage.CSR);
+    csc = SparseDoubleMatrix.copyOf(b, Storage.CSC);
+  }
+
+  @Benchmark
+  public DoubleMatrix multiplyDense() {
+    return a.multiply(b);
+  }
+
+  @Benchmark
+  public DoubleMatrix multiplyCsr() {
+    return a.multiply(csr);
+  }
+
+  @Benchmark
+  public DoubleMatrix multiplyCsc() {
+    return a.multiply(csc);
+  }
+
+  @Benchmark
+  public DoubleMatrix multiplyCsrDense() {
+    return csr.multiply(a);
+  }
+
+}
@@ -2,13 +2,24 @@ package com.dvcs.neuralnetwork;
 
 import java.util.logging.Logger;
 
+import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.engine.network.activation.ActivationRamp;
 import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.engine.network.activation.ActivationSoftMax;
+import org.encog.engine.network.activation.ActivationTANH;
 import org.encog.mathutil.randomize.ConsistentRandomizer;
 import org.encog.ml.data.MLDataSet;
 import org.encog.ml.data.basic.BasicMLDataSet;
 import org.encog.neural.networks.BasicNetwork;
 import org.encog.neural.networks.layers.BasicLayer;
 import org.encog.neural.networks.training.propagation.back.Backpropagation;
+import org.jblas.DoubleMatrix;
+
+import com.dvcs.neuralnetwork.activation.Activation;
+import com.dvcs.neuralnetwork.activation.ReLU;
+import com.dvcs.neuralnetwork.activation.Sigmoid;
+import com.dvcs.neuralnetwork.activation.Softmax;
+import com.dvcs.neuralnetwork.activation.Tanh;
 
 public class EncogNetworkBuilder extends NeuralNetworkBuilder {
 
@@ -56,11 +67,11 @@ public class EncogNetworkBuilder extends NeuralNetworkBuilder {
 		network.addLayer(new BasicLayer(null, true, inputLayerSize));
 
 		for (int i = 0; i < hiddenLayerSizes.length; i++) {
-			network.addLayer(new BasicLayer(new ActivationSigmoid(), true,
+			network.addLayer(new BasicLayer(toEncog(hiddenActivation), true,
 					hiddenLayerSizes[i]));
 		}
 
-		network.addLayer(new BasicLayer(new ActivationSigmoid(), false,
+		network.addLayer(new BasicLayer(toEncog(outputActivation), false,
 				outputLayerSize));
 		network.getStructure().finalizeStructure();
 		network.reset();
@@ -68,4 +79,90 @@ public class EncogNetworkBuilder extends NeuralNetworkBuilder {
 		return network;
 	}
 
+	/**
+	 * Convert an Encog network, whose activations must be ones which
+	 * {@link #toEncog} produces, into one of ours which computes the same
+	 * outputs.
+	 *
+	 * The bias unit of our hidden layers is the layer's activation of 1
+	 * rather than Encog's bias activation, so bias weights are scaled
+	 * accordingly.
+	 */
+	public static NeuralNetwork toNeuralNetwork(BasicNetwork network) {
+		int L = network.getLayerCount() - 1;
+		DoubleMatrix[] Thetas = new DoubleMatrix[L];
+		Activation[] activations = new Activation[L];
+
+		for (int l = 0; l < L; l++) {
+			int rows = network.getLayerNeuronCount(l + 1);
+			int inputs = network.getLayerNeuronCount(l);
+
+			activations[l] = fromEncog(network.getActivation(l + 1));
+			double biasUnit = l == 0 ? 1 : activations[l - 1].apply(1);
+
+			Thetas[l] = new DoubleMatrix(rows, inputs + 1);
+			for (int i = 0; i < rows; i++) {
+				// Encog's bias neuron follows the layer's regular neurons
+				if (network.isLayerBiased(l)) {
+					Thetas[l].put(i, 0, network.getLayerBiasActivation(l)
+							* network.getWeight(l, inputs, i) / biasUnit);
+				}
+				for (int j = 0; j < inputs; j++) {
+					Thetas[l].put(i, j + 1, network.getWeight(l, j, i));
+				}
+			}
+		}
+
+		NeuralNetwork ret = new NeuralNetwork(Thetas);
+		for (int l = 0; l < L; l++) {
+			ret.setActivation(l + 1, activations[l]);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Find the Encog equivalent of one of our activation functions.
+	 */
+	static ActivationFunction toEncog(Activation activation) {
+		if (activation instanceof Sigmoid) {
+			return new ActivationSigmoid();
+		} else if (activation instanceof Tanh) {
+			return new ActivationTANH();
+		} else if (activation instanceof Softmax) {
+			return new ActivationSoftMax();
+		} else if (activation instanceof ReLU
+				&& ((ReLU) activation).getLeak() == 0) {
+			// A ramp from (0, 0) to (max, max) is a rectifier
+			return new ActivationRamp(Double.MAX_VALUE, 0, Double.MAX_VALUE, 0);
+		}
+
+		throw new RuntimeException("Encog has no equivalent of "
+				+ activation.getClass().getSimpleName() + " activations");
+	}
+
+	/**
+	 * Find our equivalent of one of the Encog activation functions which
+	 * {@link #toEncog} produces.
+	 */
+	static Activation fromEncog(ActivationFunction activation) {
+		if (activation instanceof ActivationSigmoid) {
+			return new Sigmoid();
+		} else if (activation instanceof ActivationTANH) {
+			return new Tanh();
+		} else if (activation instanceof ActivationSoftMax) {
+			return new Softmax();
+		} else if (activation instanceof ActivationRamp) {
+			ActivationRamp ramp = (ActivationRamp) activation;
+			if (ramp.getThresholdLow() == 0 && ramp.getLow() == 0
+					&& ramp.getThresholdHigh() == ramp.getHigh()
+					&& ramp.getHigh() == Double.MAX_VALUE) {
+				return new ReLU();
+			}
+		}
+
+		throw new RuntimeException("There is no equivalent of Encog's "
+				+ activation.getClass().getSimpleName() + " activations");
+	}
+
 }
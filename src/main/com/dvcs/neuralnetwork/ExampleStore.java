@@ -0,0 +1,63 @@
+package com.dvcs.neuralnetwork;
+
+/**
+ * An append-only, indexed collection of examples with fixed input and output
+ * layer sizes.
+ *
+ * Training code reads examples straight into its own (preallocated) layer
+ * buffers through {@link #readExample}, so a store never has to hand out all
+ * of its examples as a single matrix.
+ */
+public interface ExampleStore {
+
+	/**
+	 * Append an example to the store.
+	 */
+	public void add(Example example);
+
+	/**
+	 * @return The number of examples in the store
+	 */
+	public int size();
+
+	/**
+	 * @return The number of input units of each example, or -1 if the store is
+	 *         empty and this hasn't been fixed yet
+	 */
+	public int getInputSize();
+
+	/**
+	 * @return The number of output units of each example, or -1 if the store
+	 *         is empty and this hasn't been fixed yet
+	 */
+	public int getOutputSize();
+
+	/**
+	 * @return The example at the given index. Depending on the store, this may
+	 *         be a fresh copy.
+	 */
+	public Example get(int index);
+
+	/**
+	 * Copy the input and output values of a single example into the given
+	 * arrays. Safe to call from several threads at once.
+	 *
+	 * @param x
+	 *            Array which receives the `getInputSize()` input values,
+	 *            starting at `xOffset`
+	 * @param y
+	 *            Array which receives the `getOutputSize()` output values,
+	 *            starting at `yOffset`
+	 */
+	public void readExample(int index, double[] x, int xOffset, double[] y,
+			int yOffset);
+
+	/**
+	 * Copy the input and output values of a single example into the given
+	 * single-precision arrays, rounding them if the store keeps doubles. Safe
+	 * to call from several threads at once.
+	 */
+	public void readExample(int index, float[] x, int xOffset, float[] y,
+			int yOffset);
+
+}
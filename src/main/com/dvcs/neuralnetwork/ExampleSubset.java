@@ -0,0 +1,98 @@
+package com.dvcs.neuralnetwork;
+
+import java.util.Random;
+
+/**
+ * Read-only example store view of some of the examples of another store,
+ * such as a held-out part of a training set. The examples are not copied.
+ */
+class ExampleSubset implements ExampleStore {
+
+	private ExampleStore examples;
+	private int[] indices;
+
+	/**
+	 * @param indices
+	 *            The indices in `examples` of the examples in this view, in
+	 *            their order in the view
+	 */
+	ExampleSubset(ExampleStore examples, int[] indices) {
+		this.examples = examples;
+		this.indices = indices;
+	}
+
+	/**
+	 * Split the present examples of a store into two random subsets.
+	 *
+	 * @param fraction
+	 *            The part of the examples which goes into the first subset,
+	 *            between 0 and 1
+	 */
+	static ExampleSubset[] split(ExampleStore examples, float fraction,
+			Random random) {
+		if (fraction < 0 || fraction > 1) {
+			throw new IllegalArgumentException(
+					"Fraction must be between 0 and 1, but was " + fraction);
+		}
+
+		int m = examples.size();
+		int[] order = new int[m];
+		for (int i = 0; i < m; i++) {
+			order[i] = i;
+		}
+		for (int i = m - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+
+		int firstSize = Math.round(fraction * m);
+		int[] first = new int[firstSize];
+		int[] second = new int[m - firstSize];
+		System.arraycopy(order, 0, first, 0, firstSize);
+		System.arraycopy(order, firstSize, second, 0, second.length);
+
+		return new ExampleSubset[] { new ExampleSubset(examples, first),
+				new ExampleSubset(examples, second) };
+	}
+
+	@Override
+	public void add(Example example) {
+		throw new UnsupportedOperationException(
+				"Examples cannot be added to a subset view");
+	}
+
+	@Override
+	public int size() {
+		return indices.length;
+	}
+
+	@Override
+	public int getInputSize() {
+		return examples.getInputSize();
+	}
+
+	@Override
+	public int getOutputSize() {
+		return examples.getOutputSize();
+	}
+
+	@Override
+	public Example get(int index) {
+		return examples.get(indices[index]);
+	}
+
+	@Override
+	public void readExample(int index, double[] x, int xOffset, double[] y,
+			int yOffset) {
+		examples.readExample(indices[index], x, xOffset, y, yOffset);
+	}
+
+	@Override
+	public void readExample(int index, float[] x, int xOffset, float[] y,
+			int yOffset) {
+		examples.readExample(indices[index], x, xOffset, y, yOffset);
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.dvcs.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+
+import com.dvcs.neuralnetwork.NeuralNetwork.ForwardPropagationResult;
+import com.dvcs.neuralnetwork.activation.Activation;
+
+/**
+ * Single-precision counterpart of {@link ForwardPropagationWorkspace}, used
+ * by networks of {@link Precision#FLOAT} precision. The layout is the same:
+ * one example per column, with the bias unit in the first row of every
+ * non-output layer.
+ *
+ * A workspace is overwritten by every forward propagation which uses it, and
+ * must not be shared between threads.
+ */
+class FloatForwardPropagationWorkspace {
+
+	private int batchSize;
+
+	private FloatMatrix[] preLayerValues;
+	private FloatMatrix[] layerValues;
+
+	/**
+	 * @param rowDimensions
+	 *            For an element $i$, the number of rows in the matrix
+	 *            $\Theta^{(i)}$
+	 * @param columnDimensions
+	 *            For an element $i$, the number of columns in the matrix
+	 *            $\Theta^{(i)}$
+	 * @param activations
+	 *            For an element $i$, the activation of the layer computed
+	 *            by $\Theta^{(i)}$
+	 * @param batchSize
+	 *            The number of examples which will be fed forward at once
+	 */
+	FloatForwardPropagationWorkspace(int[] rowDimensions,
+			int[] columnDimensions, Activation[] activations, int batchSize) {
+		int L = rowDimensions.length;
+
+		this.batchSize = batchSize;
+		preLayerValues = new FloatMatrix[L];
+		layerValues = new FloatMatrix[L + 1];
+
+		for (int l = 0; l < L; l++) {
+			layerValues[l] = new FloatMatrix(columnDimensions[l], batchSize);
+			preLayerValues[l] = new FloatMatrix(rowDimensions[l], batchSize);
+		}
+		layerValues[L] = new FloatMatrix(rowDimensions[L - 1], batchSize);
+
+		fillBiasRow(layerValues[0], 1);
+		for (int l = 1; l < L; l++) {
+			fillBiasRow(layerValues[l], (float) activations[l - 1].apply(1));
+		}
+	}
+
+	private static void fillBiasRow(FloatMatrix layer, float value) {
+		int rows = layer.getRows();
+
+		for (int j = 0; j < layer.getColumns(); j++) {
+			layer.data[j * rows] = value;
+		}
+	}
+
+	/**
+	 * Round a matrix of examples (where each row represents an example and
+	 * each column represents a unit) into the input layer, below its bias
+	 * row.
+	 */
+	void loadInputLayer(DoubleMatrix x) {
+		if (x.getRows() != batchSize) {
+			throw new RuntimeException("Workspace was sized for " + batchSize
+					+ " examples but was given " + x.getRows());
+		}
+
+		FloatMatrix a0 = layerValues[0];
+		if (x.getColumns() != a0.getRows() - 1) {
+			throw new RuntimeException(
+					"Example matrix dimensions do not correspond with those of the input layer");
+		}
+
+		int m = batchSize;
+		int n = x.getColumns();
+		int stride = a0.getRows();
+
+		for (int j = 0; j < m; j++) {
+			int offset = j * stride + 1;
+
+			for (int i = 0; i < n; i++) {
+				a0.data[offset + i] = (float) x.data[i * m + j];
+			}
+		}
+	}
+
+	/**
+	 * @return The input layer matrix. Its first row holds the bias unit; the
+	 *         examples' input values go below it, one example per column.
+	 */
+	FloatMatrix getInputLayer() {
+		return layerValues[0];
+	}
+
+	int getBatchSize() {
+		return batchSize;
+	}
+
+	FloatMatrix[] getPreLayerValues() {
+		return preLayerValues;
+	}
+
+	FloatMatrix[] getLayerValues() {
+		return layerValues;
+	}
+
+	FloatMatrix getOutputLayer() {
+		return layerValues[layerValues.length - 1];
+	}
+
+	/**
+	 * @return A double-precision copy of the layer values, independent of
+	 *         this workspace
+	 */
+	ForwardPropagationResult toResult() {
+		DoubleMatrix[] pre = new DoubleMatrix[preLayerValues.length];
+		DoubleMatrix[] layers = new DoubleMatrix[layerValues.length];
+
+		for (int l = 0; l < pre.length; l++) {
+			pre[l] = toDouble(preLayerValues[l]);
+		}
+		for (int l = 0; l < layers.length; l++) {
+			layers[l] = toDouble(layerValues[l]);
+		}
+
+		return new ForwardPropagationResult(pre, layers);
+	}
+
+	private static DoubleMatrix toDouble(FloatMatrix m) {
+		DoubleMatrix ret = new DoubleMatrix(m.getRows(), m.getColumns());
+		for (int i = 0; i < m.length; i++) {
+			ret.data[i] = m.data[i];
+		}
+
+		return ret;
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.dvcs.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+
+import com.dvcs.neuralnetwork.NeuralNetwork.ForwardPropagationResult;
+import com.dvcs.neuralnetwork.activation.Activation;
+import com.dvcs.neuralnetwork.activation.Sigmoid;
+
+/**
+ * Preallocated layer matrices for feeding a fixed number of examples forward
+ * through a network of a fixed topology.
+ *
+ * Each non-output layer matrix carries its bias unit as the first row, so the
+ * activations of one layer can be multiplied by the next weight matrix
+ * without first being copied into a bias-augmented matrix. Since the bias
+ * rows never change they are filled once, when the workspace is created.
+ *
+ * A workspace (and the {@link ForwardPropagationResult} it hands out) is
+ * overwritten by every forward propagation which uses it, and must not be
+ * shared between threads.
+ */
+public class ForwardPropagationWorkspace {
+
+	private int batchSize;
+
+	private DoubleMatrix[] preLayerValues;
+	private DoubleMatrix[] layerValues;
+
+	private ForwardPropagationResult result;
+
+	/**
+	 * @param rowDimensions
+	 *            For an element $i$, the number of rows in the matrix
+	 *            $\Theta^{(i)}$
+	 * @param columnDimensions
+	 *            For an element $i$, the number of columns in the matrix
+	 *            $\Theta^{(i)}$
+	 * @param batchSize
+	 *            The number of examples which will be fed forward at once
+	 */
+	public ForwardPropagationWorkspace(int[] rowDimensions,
+			int[] columnDimensions, int batchSize) {
+		this(rowDimensions, columnDimensions, sigmoids(rowDimensions.length),
+				batchSize);
+	}
+
+	/**
+	 * @param activations
+	 *            For an element $i$, the activation of the layer computed
+	 *            by $\Theta^{(i)}$. Determines the value of that layer's bias
+	 *            unit.
+	 */
+	public ForwardPropagationWorkspace(int[] rowDimensions,
+			int[] columnDimensions, Activation[] activations, int batchSize) {
+		if (rowDimensions.length != columnDimensions.length) {
+			throw new RuntimeException(
+					"Row and column dimensions describe a different number of weight matrices");
+		}
+
+		int L = rowDimensions.length;
+
+		this.batchSize = batchSize;
+		preLayerValues = new DoubleMatrix[L];
+		layerValues = new DoubleMatrix[L + 1];
+
+		for (int l = 0; l < L; l++) {
+			layerValues[l] = new DoubleMatrix(columnDimensions[l], batchSize);
+			preLayerValues[l] = new DoubleMatrix(rowDimensions[l], batchSize);
+		}
+		layerValues[L] = new DoubleMatrix(rowDimensions[L - 1], batchSize);
+
+		// The input layer's bias unit is exactly 1. Hidden layer bias units
+		// are passed through the activation function along with the rest of
+		// the layer.
+		fillBiasRow(layerValues[0], 1);
+		for (int l = 1; l < L; l++) {
+			fillBiasRow(layerValues[l], activations[l - 1].apply(1));
+		}
+
+		result = new ForwardPropagationResult(preLayerValues, layerValues);
+	}
+
+	private static Activation[] sigmoids(int count) {
+		Activation[] ret = new Activation[count];
+		for (int i = 0; i < count; i++) {
+			ret[i] = new Sigmoid();
+		}
+
+		return ret;
+	}
+
+	private static void fillBiasRow(DoubleMatrix layer, double value) {
+		int rows = layer.getRows();
+
+		for (int j = 0; j < layer.getColumns(); j++) {
+			layer.data[j * rows] = value;
+		}
+	}
+
+	/**
+	 * Copy a matrix of examples (where each row represents an example and
+	 * each column represents a unit) into the input layer, below its bias
+	 * row.
+	 */
+	void loadInputLayer(DoubleMatrix x) {
+		if (x.getRows() != batchSize) {
+			throw new RuntimeException("Workspace was sized for " + batchSize
+					+ " examples but was given " + x.getRows());
+		}
+
+		DoubleMatrix a0 = layerValues[0];
+		if (x.getColumns() != a0.getRows() - 1) {
+			throw new RuntimeException(
+					"Example matrix dimensions do not correspond with those of the input layer");
+		}
+
+		int m = batchSize;
+		int n = x.getColumns();
+		int stride = a0.getRows();
+
+		for (int j = 0; j < m; j++) {
+			int offset = j * stride + 1;
+
+			for (int i = 0; i < n; i++) {
+				a0.data[offset + i] = x.data[i * m + j];
+			}
+		}
+	}
+
+	/**
+	 * @return The input layer matrix. Its first row holds the bias unit; the
+	 *         examples' input values go below it, one example per column.
+	 */
+	DoubleMatrix getInputLayer() {
+		return layerValues[0];
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	DoubleMatrix[] getPreLayerValues() {
+		return preLayerValues;
+	}
+
+	DoubleMatrix[] getLayerValues() {
+		return layerValues;
+	}
+
+	/**
+	 * @return The result object which views this workspace's layer matrices
+	 */
+	public ForwardPropagationResult getResult() {
+		return result;
+	}
+
+}
@@ -0,0 +1,372 @@
+package com.dvcs.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.jblas.DoubleMatrix;
+
+import com.dvcs.neuralnetwork.activation.Activation;
+import com.dvcs.neuralnetwork.activation.OutputActivation;
+import com.dvcs.neuralnetwork.activation.Sigmoid;
+
+import de.jungblut.math.minimize.Fmincg;
+
+/**
+ * Searches for the hidden layer sizes and regularization parameter which
+ * give the network that predicts held-out examples best, by successive
+ * halving.
+ *
+ * Every configuration starts training for a few iterations, and is then
+ * scored by its cost on the held-out examples. The better half of the
+ * configurations goes on to the next rung, where each of them continues
+ * training for twice as many iterations as in the previous rung, and so on
+ * until a single configuration is left. Configurations which are bad from
+ * the start are thus dropped after little training, and most of the
+ * training time goes to promising ones.
+ *
+ * The configurations of a rung are trained in parallel, all reading the same
+ * training examples, which are never modified.
+ */
+public class HyperparameterSearch {
+
+	private static final Logger LOGGER = Logger
+			.getLogger("HyperparameterSearch");
+
+	public static final int DEFAULT_INITIAL_ITERATIONS = 10;
+
+	/**
+	 * The network topology and regularization parameter of a candidate, as
+	 * passed to {@link NeuralNetworkBuilder#buildNetwork(int[], double)}.
+	 */
+	public static class Configuration {
+		private int[] hiddenLayerSizes;
+		private double lambda;
+
+		public Configuration(int[] hiddenLayerSizes, double lambda) {
+			this.hiddenLayerSizes = hiddenLayerSizes.clone();
+			this.lambda = lambda;
+		}
+
+		/**
+		 * @return Every combination of the given hidden layer sizes and
+		 *         regularization parameters
+		 */
+		public static List<Configuration> grid(int[][] hiddenLayerSizes,
+				double[] lambdas) {
+			List<Configuration> ret = new ArrayList<Configuration>();
+			for (int[] sizes : hiddenLayerSizes) {
+				for (double lambda : lambdas) {
+					ret.add(new Configuration(sizes, lambda));
+				}
+			}
+
+			return ret;
+		}
+
+		public int[] getHiddenLayerSizes() {
+			return hiddenLayerSizes.clone();
+		}
+
+		public double getLambda() {
+			return lambda;
+		}
+
+		@Override
+		public String toString() {
+			return "hidden layers " + Arrays.toString(hiddenLayerSizes)
+					+ ", lambda " + lambda;
+		}
+	}
+
+	/**
+	 * A configuration's network and how far it got in the search.
+	 */
+	public static class Trial {
+		private Configuration configuration;
+		private NeuralNetwork network;
+		private int rungs;
+		private int iterations;
+		private double score = Double.NaN;
+
+		Trial(Configuration configuration, NeuralNetwork network) {
+			this.configuration = configuration;
+			this.network = network;
+		}
+
+		public Configuration getConfiguration() {
+			return configuration;
+		}
+
+		/**
+		 * @return The network as trained in the last rung the configuration
+		 *         made it to
+		 */
+		public NeuralNetwork getNetwork() {
+			return network;
+		}
+
+		/**
+		 * @return The number of rungs the configuration was trained in
+		 */
+		public int getRungs() {
+			return rungs;
+		}
+
+		/**
+		 * @return The number of iterations the network was trained for
+		 */
+		public int getIterations() {
+			return iterations;
+		}
+
+		/**
+		 * @return The unregularized cost of the network on the held-out
+		 *         examples (lower is better)
+		 */
+		public double getScore() {
+			return score;
+		}
+
+		@Override
+		public String toString() {
+			return configuration + ": score " + score + " after "
+					+ iterations + " iterations";
+		}
+	}
+
+	/**
+	 * Orders trials from the best to the worst, putting those which made it
+	 * to later rungs first, and those without a (finite) score last.
+	 */
+	private static final Comparator<Trial> RANKING = new Comparator<Trial>() {
+		@Override
+		public int compare(Trial a, Trial b) {
+			if (a.rungs != b.rungs) {
+				return b.rungs - a.rungs;
+			}
+
+			return Double.compare(rankingScore(a), rankingScore(b));
+		}
+
+		private double rankingScore(Trial trial) {
+			double score = trial.score;
+			return Double.isNaN(score) ? Double.POSITIVE_INFINITY : score;
+		}
+	};
+
+	private ExampleStore training;
+	private ExampleStore validation;
+
+	private Activation hiddenActivation = new Sigmoid();
+	private OutputActivation outputActivation = new Sigmoid();
+	private Precision precision = Precision.DOUBLE;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private int initialIterations = DEFAULT_INITIAL_ITERATIONS;
+
+	/**
+	 * @param training
+	 *            The examples to train on
+	 * @param validation
+	 *            The held-out examples to score the trained networks on
+	 */
+	public HyperparameterSearch(ExampleStore training, ExampleStore validation) {
+		if (training.size() == 0 || validation.size() == 0) {
+			throw new IllegalArgumentException(
+					"The search needs both training and held-out examples");
+		}
+		if (training.getInputSize() != validation.getInputSize()
+				|| training.getOutputSize() != validation.getOutputSize()) {
+			throw new IllegalArgumentException(
+					"Training and held-out examples have different layer sizes");
+		}
+
+		this.training = training;
+		this.validation = validation;
+	}
+
+	/**
+	 * @param x
+	 *            Matrix of training examples (where each row represents an
+	 *            example and each column represents a unit)
+	 * @param y
+	 *            Optimal output unit values (where each row is a unit and each
+	 *            column is an example)
+	 * @param validationX
+	 *            Matrix of held-out examples
+	 * @param validationY
+	 *            Optimal output unit values of the held-out examples
+	 */
+	public HyperparameterSearch(DoubleMatrix x, DoubleMatrix y,
+			DoubleMatrix validationX, DoubleMatrix validationY) {
+		this(new MatrixExampleStore(x, y), new MatrixExampleStore(
+				validationX, validationY));
+	}
+
+	/**
+	 * Choose the activation functions of the networks to be trained. Both
+	 * default to the sigmoid function.
+	 */
+	public void setActivations(Activation hidden, OutputActivation output) {
+		hiddenActivation = hidden;
+		outputActivation = output;
+	}
+
+	/**
+	 * Choose the precision in which the networks to be trained compute their
+	 * layers. Defaults to double precision.
+	 */
+	public void setPrecision(Precision precision) {
+		this.precision = precision;
+	}
+
+	/**
+	 * @param parallelism
+	 *            The number of configurations trained at the same time.
+	 *            Defaults to the number of processors.
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new RuntimeException("Parallelism must be at least 1");
+		}
+
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param iterations
+	 *            The number of {@link Fmincg} iterations each configuration
+	 *            trains for in the first rung. Each later rung trains twice as
+	 *            many iterations as the one before.
+	 */
+	public void setInitialIterations(int iterations) {
+		if (iterations < 1) {
+			throw new RuntimeException("Iterations must be at least 1");
+		}
+
+		initialIterations = iterations;
+	}
+
+	/**
+	 * Run the search.
+	 *
+	 * @return A trial for each configuration, from the best to the worst.
+	 *         The first is the configuration left after the last rung.
+	 */
+	public List<Trial> run(List<Configuration> configurations)
+			throws InterruptedException {
+		if (configurations.isEmpty()) {
+			throw new IllegalArgumentException("No configurations to search");
+		}
+
+		List<Trial> trials = new ArrayList<Trial>();
+		for (Configuration configuration : configurations) {
+			trials.add(new Trial(configuration, createNetwork(configuration)));
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(
+				parallelism, trials.size()));
+		try {
+			List<Trial> survivors = new ArrayList<Trial>(trials);
+			int iterations = initialIterations;
+
+			for (int rung = 0;; rung++) {
+				trainRung(pool, survivors, iterations);
+
+				Collections.sort(survivors, RANKING);
+				LOGGER.info("Rung " + rung + ": " + survivors.size()
+						+ " configurations trained for " + iterations
+						+ " iterations, best " + survivors.get(0));
+
+				if (survivors.size() == 1) {
+					break;
+				}
+
+				survivors = new ArrayList<Trial>(survivors.subList(0,
+						(survivors.size() + 1) / 2));
+				iterations *= 2;
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		Collections.sort(trials, RANKING);
+		return trials;
+	}
+
+	private NeuralNetwork createNetwork(Configuration configuration) {
+		int[] hiddenLayerSizes = configuration.hiddenLayerSizes;
+		int[] layerSizes = new int[hiddenLayerSizes.length + 2];
+		layerSizes[0] = training.getInputSize();
+		layerSizes[layerSizes.length - 1] = training.getOutputSize();
+		System.arraycopy(hiddenLayerSizes, 0, layerSizes, 1,
+				hiddenLayerSizes.length);
+
+		NeuralNetwork ret = new NeuralNetwork(layerSizes, precision);
+		ret.setActivations(hiddenActivation, outputActivation);
+
+		return ret;
+	}
+
+	/**
+	 * Continue training each of the given trials for the given number of
+	 * iterations, and score them.
+	 */
+	private void trainRung(ExecutorService pool, List<Trial> trials,
+			final int iterations) throws InterruptedException {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final Trial trial : trials) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					train(trial, iterations);
+					return null;
+				}
+			});
+		}
+
+		for (Future<Void> future : pool.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	private void train(Trial trial, int iterations) {
+		NeuralNetwork network = trial.network;
+
+		// Training continues from the network's current weights
+		network.train(training, trial.configuration.lambda, new Fmincg(),
+				iterations, null, false);
+
+		NeuralNetworkCostFunction cost = new NeuralNetworkCostFunction(
+				network, validation, 0, 1,
+				NeuralNetworkCostFunction.DEFAULT_BLOCK_SIZE);
+		try {
+			trial.score = cost.evaluateCost(network.getWeights().asPoint())
+					.getFirst();
+		} finally {
+			cost.shutdown();
+		}
+
+		trial.rungs++;
+		trial.iterations += iterations;
+	}
+
+}
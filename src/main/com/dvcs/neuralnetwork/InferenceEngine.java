@@ -0,0 +1,327 @@
+package com.dvcs.neuralnetwork;
+
+import org.encog.neural.networks.BasicNetwork;
+import org.jblas.DoubleMatrix;
+
+import com.dvcs.neuralnetwork.activation.Activation;
+import com.dvcs.tools.MatrixTools;
+
+import de.jungblut.math.kernel.VectorKernels;
+
+/**
+ * A trained network frozen for prediction.
+ *
+ * Each layer's weights are packed row-major without the bias column, so the
+ * weights of one unit are contiguous and a single example is fed forward
+ * with one dot product per unit. The bias column is folded, together with
+ * the value of the layer's bias unit, into a separate bias vector. Batches
+ * of examples are multiplied with BLAS instead.
+ *
+ * All layer buffers are allocated up front for a fixed maximum batch size,
+ * and only the output layer is kept, so feeding forward does not allocate.
+ * Results are returned in those buffers and are overwritten by the next
+ * call; an engine must therefore not be shared between threads. Use
+ * {@link #copy()} to get another engine over the same weights.
+ */
+public class InferenceEngine {
+
+	private final int[] layerSizes;
+
+	/**
+	 * For an element $l$, the weights of layer $l + 1$: the row for each of
+	 * its units holds the weights of the units in layer $l$.
+	 */
+	private final double[][] weights;
+
+	/**
+	 * For an element $l$, the contribution of layer $l$'s bias unit to each
+	 * unit of layer $l + 1$.
+	 */
+	private final double[][] biases;
+
+	private final Activation[] activations;
+	private final boolean approximate;
+	private final int maxBatchSize;
+
+	/**
+	 * For an element $l$, the values of layer $l + 1$ for up to
+	 * `maxBatchSize` examples. Each is fed through the activation in place.
+	 */
+	private final DoubleMatrix[] layers;
+
+	/**
+	 * The output layer of a single example, sized exactly.
+	 */
+	private final DoubleMatrix output;
+
+	private InferenceEngine(int[] layerSizes, double[][] weights,
+			double[][] biases, Activation[] activations, boolean approximate,
+			int maxBatchSize) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException(
+					"The maximum batch size must be positive");
+		}
+
+		this.layerSizes = layerSizes;
+		this.weights = weights;
+		this.biases = biases;
+		this.activations = activations;
+		this.approximate = approximate;
+		this.maxBatchSize = maxBatchSize;
+
+		layers = new DoubleMatrix[weights.length];
+		for (int l = 0; l < layers.length; l++) {
+			layers[l] = new DoubleMatrix(layerSizes[l + 1], maxBatchSize);
+		}
+		output = new DoubleMatrix(getOutputSize(), 1);
+	}
+
+	/**
+	 * Freeze the current weights and activations of a network. Later changes
+	 * to the network do not affect the engine.
+	 *
+	 * @param maxBatchSize
+	 *            The largest number of examples which will be fed forward at
+	 *            once
+	 */
+	public static InferenceEngine compile(NeuralNetwork network,
+			int maxBatchSize) {
+		Weights Thetas = network.getWeights();
+		int L = Thetas.getCount();
+
+		int[] layerSizes = new int[L + 1];
+		double[][] weights = new double[L][];
+		double[][] biases = new double[L][];
+		Activation[] activations = new Activation[L];
+
+		layerSizes[0] = Thetas.getColumns(0) - 1;
+		for (int l = 0; l < L; l++) {
+			int rows = Thetas.getRows(l);
+			int inputs = Thetas.getColumns(l) - 1;
+			int offset = Thetas.getOffset(l);
+			double[] data = Thetas.getData();
+
+			// The input layer's bias unit is 1, hidden layers' are g(1)
+			double biasUnit = l == 0 ? 1 : network.activations[l - 1]
+					.apply(1);
+
+			layerSizes[l + 1] = rows;
+			weights[l] = new double[rows * inputs];
+			biases[l] = new double[rows];
+			activations[l] = network.activations[l];
+
+			for (int i = 0; i < rows; i++) {
+				biases[l][i] = biasUnit * data[offset + i];
+				for (int j = 0; j < inputs; j++) {
+					weights[l][i * inputs + j] = data[offset + (j + 1) * rows
+							+ i];
+				}
+			}
+		}
+
+		return new InferenceEngine(layerSizes, weights, biases, activations,
+				network.fastActivation, maxBatchSize);
+	}
+
+	/**
+	 * Freeze the current weights of an Encog network, whose activations must
+	 * be ones which {@link EncogNetworkBuilder} uses.
+	 *
+	 * @param maxBatchSize
+	 *            The largest number of examples which will be fed forward at
+	 *            once
+	 */
+	public static InferenceEngine compile(BasicNetwork network,
+			int maxBatchSize) {
+		int L = network.getLayerCount() - 1;
+
+		int[] layerSizes = new int[L + 1];
+		double[][] weights = new double[L][];
+		double[][] biases = new double[L][];
+		Activation[] activations = new Activation[L];
+
+		for (int l = 0; l <= L; l++) {
+			layerSizes[l] = network.getLayerNeuronCount(l);
+		}
+
+		for (int l = 0; l < L; l++) {
+			int rows = layerSizes[l + 1];
+			int inputs = layerSizes[l];
+
+			weights[l] = new double[rows * inputs];
+			biases[l] = new double[rows];
+			activations[l] = EncogNetworkBuilder.fromEncog(network
+					.getActivation(l + 1));
+
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < inputs; j++) {
+					weights[l][i * inputs + j] = network.getWeight(l, j, i);
+				}
+
+				// Encog's bias neuron follows the layer's regular neurons
+				if (network.isLayerBiased(l)) {
+					biases[l][i] = network.getLayerBiasActivation(l)
+							* network.getWeight(l, inputs, i);
+				}
+			}
+		}
+
+		return new InferenceEngine(layerSizes, weights, biases, activations,
+				false, maxBatchSize);
+	}
+
+	/**
+	 * @return An engine over the same weights with its own buffers, e.g. for
+	 *         use by another thread.
+	 */
+	public InferenceEngine copy() {
+		return new InferenceEngine(layerSizes, weights, biases, activations,
+				approximate, maxBatchSize);
+	}
+
+	/**
+	 * Feed a single example forward.
+	 *
+	 * @param x
+	 *            The example's input units
+	 * @return The output units. The array is reused by the next call.
+	 */
+	public double[] compute(double[] x) {
+		checkInput(x, 1);
+
+		VectorKernels kernels = VectorKernels.get();
+		double[] input = x;
+		int L = weights.length;
+
+		for (int l = 0; l < L; l++) {
+			int rows = layerSizes[l + 1];
+			int inputs = layerSizes[l];
+			double[] w = weights[l];
+			double[] b = biases[l];
+
+			DoubleMatrix layer = l == L - 1 ? output : layers[l];
+			resize(layer, rows, 1);
+
+			for (int i = 0; i < rows; i++) {
+				layer.data[i] = b[i]
+						+ kernels.dot(w, i * inputs, input, 0, inputs);
+			}
+			activations[l].apply(layer, layer, 0, approximate);
+
+			input = layer.data;
+		}
+
+		return output.data;
+	}
+
+	/**
+	 * @return The index of the output unit with the highest value for a
+	 *         single example.
+	 */
+	public int predict(double[] x) {
+		return argMax(compute(x), 0, getOutputSize());
+	}
+
+	/**
+	 * Feed a batch of examples forward.
+	 *
+	 * @param x
+	 *            The input units of `count` examples, one example after the
+	 *            other
+	 * @return The output units of the examples, one example after the other.
+	 *         Only the first `count * getOutputSize()` elements belong to
+	 *         this batch, and the array is reused by the next call.
+	 */
+	public double[] compute(double[] x, int count) {
+		if (count < 1 || count > maxBatchSize) {
+			throw new IllegalArgumentException("Batch of " + count
+					+ " examples, but the engine was built for 1 to "
+					+ maxBatchSize);
+		}
+		checkInput(x, count);
+
+		double[] input = x;
+
+		for (int l = 0; l < weights.length; l++) {
+			int rows = layerSizes[l + 1];
+			int inputs = layerSizes[l];
+			DoubleMatrix layer = layers[l];
+			resize(layer, rows, count);
+
+			for (int j = 0; j < count; j++) {
+				System.arraycopy(biases[l], 0, layer.data, j * rows, rows);
+			}
+
+			// The packed weights are the transpose of a column-major matrix
+			MatrixTools.gemm(true, false, rows, count, inputs, 1.0,
+					weights[l], 0, inputs, input, 0, inputs, 1.0, layer.data,
+					0, rows);
+			activations[l].apply(layer, layer, 0, approximate);
+
+			input = layer.data;
+		}
+
+		return input;
+	}
+
+	/**
+	 * Write the index of the output unit with the highest value for each of
+	 * `count` examples into `classes`.
+	 *
+	 * @see #compute(double[], int)
+	 */
+	public void predict(double[] x, int count, int[] classes) {
+		double[] outputs = compute(x, count);
+		int k = getOutputSize();
+
+		for (int j = 0; j < count; j++) {
+			classes[j] = argMax(outputs, j * k, k);
+		}
+	}
+
+	public int getInputSize() {
+		return layerSizes[0];
+	}
+
+	public int getOutputSize() {
+		return layerSizes[layerSizes.length - 1];
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Return the index, relative to `offset`, of the largest of `length`
+	 * consecutive elements.
+	 */
+	static int argMax(double[] xs, int offset, int length) {
+		int maxIndex = 0;
+
+		for (int i = 1; i < length; i++) {
+			if (xs[offset + i] > xs[offset + maxIndex]) {
+				maxIndex = i;
+			}
+		}
+
+		return maxIndex;
+	}
+
+	private void checkInput(double[] x, int count) {
+		if (x.length < count * getInputSize()) {
+			throw new IllegalArgumentException("Expected " + count
+					+ " examples of " + getInputSize() + " input units but got "
+					+ x.length + " values");
+		}
+	}
+
+	/**
+	 * Let a buffer act as a matrix of a smaller size, without allocating.
+	 */
+	private static void resize(DoubleMatrix m, int rows, int columns) {
+		m.rows = rows;
+		m.columns = columns;
+		m.length = rows * columns;
+	}
+
+}
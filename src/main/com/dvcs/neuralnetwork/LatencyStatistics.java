@@ -0,0 +1,56 @@
+package com.dvcs.neuralnetwork;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the most recent events, e.g. predictions, for
+ * computing percentiles over them. Safe for use by several threads.
+ */
+public class LatencyStatistics {
+
+	private final long[] latencies;
+	private long count;
+
+	/**
+	 * @param window
+	 *            The number of recent latencies from which percentiles are
+	 *            computed
+	 */
+	public LatencyStatistics(int window) {
+		if (window < 1) {
+			throw new IllegalArgumentException("The window must be positive");
+		}
+
+		latencies = new long[window];
+	}
+
+	public synchronized void record(long latency) {
+		latencies[(int) (count % latencies.length)] = latency;
+		count++;
+	}
+
+	/**
+	 * @return The given percentile (between 0 and 100) of the most recent
+	 *         latencies, or 0 if none were recorded yet.
+	 */
+	public synchronized long getPercentile(double percentile) {
+		int n = (int) Math.min(count, latencies.length);
+		if (n == 0) {
+			return 0;
+		}
+
+		long[] sorted = Arrays.copyOf(latencies, n);
+		Arrays.sort(sorted);
+
+		int index = (int) Math.ceil(percentile / 100 * n) - 1;
+		return sorted[Math.min(Math.max(index, 0), n - 1)];
+	}
+
+	/**
+	 * @return The number of latencies recorded in total.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+}
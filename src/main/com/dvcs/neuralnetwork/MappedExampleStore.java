@@ -0,0 +1,324 @@
+package com.dvcs.neuralnetwork;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Example store backed by an append-only, memory-mapped file of fixed-width
+ * records. Examples live in the page cache rather than on the heap, so a
+ * builder can collect far more examples than would fit in memory.
+ *
+ * The file starts with a 32-byte little-endian header:
+ *
+ * <pre>
+ * int  magic ("DVEX")
+ * int  format version
+ * int  bytes per value (4 for float, 8 for double)
+ * int  input size
+ * int  output size
+ * int  reserved
+ * long number of examples
+ * </pre>
+ *
+ * Each record then holds the input values of an example followed by its
+ * output values. The file is mapped in segments of whole records, which are
+ * allocated ahead of the data; the header's example count is authoritative.
+ */
+public class MappedExampleStore implements ExampleStore, Closeable {
+
+	static final int MAGIC = 0x58455644; // "DVEX", little-endian
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+
+	private static final int COUNT_OFFSET = 24;
+
+	/**
+	 * Approximate size of a mapped segment. Mappings are limited to 2 GB, and
+	 * smaller segments keep the file from growing far beyond its data.
+	 */
+	private static final long SEGMENT_SIZE = 1L << 28;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private MappedByteBuffer header;
+
+	private Precision precision;
+	private int inputSize;
+	private int outputSize;
+
+	private int recordSize;
+	private int recordsPerSegment;
+
+	/**
+	 * Mapped segments. Replaced (never modified) when a segment is added, so
+	 * readers can use it without locking.
+	 */
+	private volatile ByteBuffer[] segments = new ByteBuffer[0];
+
+	private volatile int count;
+
+	private MappedExampleStore(RandomAccessFile file, Precision precision,
+			int inputSize, int outputSize, int count) throws IOException {
+		this.file = file;
+		this.channel = file.getChannel();
+		this.precision = precision;
+		this.inputSize = inputSize;
+		this.outputSize = outputSize;
+		this.count = count;
+
+		recordSize = (inputSize + outputSize) * precision.bytes;
+		recordsPerSegment = (int) Math.max(1, SEGMENT_SIZE / recordSize);
+
+		header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+
+		int segmentCount = (count + recordsPerSegment - 1) / recordsPerSegment;
+		for (int s = 0; s < segmentCount; s++) {
+			addSegment();
+		}
+	}
+
+	/**
+	 * Create a new, empty store, replacing any existing file.
+	 */
+	public static MappedExampleStore create(File path, int inputSize,
+			int outputSize, Precision precision) throws IOException {
+		if (inputSize < 1 || outputSize < 1) {
+			throw new IllegalArgumentException(
+					"Input and output sizes must be positive");
+		}
+
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		file.setLength(0);
+
+		MappedExampleStore store = new MappedExampleStore(file, precision,
+				inputSize, outputSize, 0);
+
+		store.header.putInt(0, MAGIC);
+		store.header.putInt(4, VERSION);
+		store.header.putInt(8, precision.bytes);
+		store.header.putInt(12, inputSize);
+		store.header.putInt(16, outputSize);
+		store.header.putLong(COUNT_OFFSET, 0);
+
+		return store;
+	}
+
+	/**
+	 * Open an existing store. New examples are appended after its existing
+	 * ones.
+	 *
+	 * @throws IOException
+	 *             If the file can't be read or is not a complete store
+	 */
+	public static MappedExampleStore open(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(
+					ByteOrder.LITTLE_ENDIAN);
+			channel.read(header, 0);
+
+			if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC
+					|| header.getInt(4) != VERSION) {
+				throw new IOException(path + " is not an example store");
+			}
+
+			Precision precision = Precision.forBytes(header.getInt(8));
+			int inputSize = header.getInt(12);
+			int outputSize = header.getInt(16);
+			long count = header.getLong(COUNT_OFFSET);
+
+			if (precision == null || inputSize < 1 || outputSize < 1
+					|| count < 0 || count > Integer.MAX_VALUE) {
+				throw new IOException(path + " has an invalid store header");
+			}
+
+			// Mapping segments would fill in missing examples with zeros
+			long recordSize = ((long) inputSize + outputSize)
+					* precision.bytes;
+			if (channel.size() < HEADER_SIZE + count * recordSize) {
+				throw new IOException(path + " is not a complete store");
+			}
+
+			return new MappedExampleStore(file, precision, inputSize,
+					outputSize, (int) count);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		} catch (RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	private void addSegment() throws IOException {
+		ByteBuffer[] current = segments;
+		long segmentBytes = (long) recordsPerSegment * recordSize;
+		long position = HEADER_SIZE + current.length * segmentBytes;
+
+		ByteBuffer segment = channel.map(MapMode.READ_WRITE, position,
+				segmentBytes);
+		segment.order(ByteOrder.LITTLE_ENDIAN);
+
+		ByteBuffer[] grown = new ByteBuffer[current.length + 1];
+		System.arraycopy(current, 0, grown, 0, current.length);
+		grown[current.length] = segment;
+
+		segments = grown;
+	}
+
+	@Override
+	public synchronized void add(Example example) {
+		double[] x = example.getX();
+		double[] y = example.getY();
+
+		if (x.length != inputSize || y.length != outputSize) {
+			throw new RuntimeException(
+					"This example's layer sizes don't match those of the store");
+		}
+
+		int index = count;
+		if (index / recordsPerSegment >= segments.length) {
+			try {
+				addSegment();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		ByteBuffer segment = segments[index / recordsPerSegment];
+		int position = (index % recordsPerSegment) * recordSize;
+
+		if (precision == Precision.DOUBLE) {
+			for (int i = 0; i < x.length; i++, position += 8) {
+				segment.putDouble(position, x[i]);
+			}
+			for (int i = 0; i < y.length; i++, position += 8) {
+				segment.putDouble(position, y[i]);
+			}
+		} else {
+			for (int i = 0; i < x.length; i++, position += 4) {
+				segment.putFloat(position, (float) x[i]);
+			}
+			for (int i = 0; i < y.length; i++, position += 4) {
+				segment.putFloat(position, (float) y[i]);
+			}
+		}
+
+		header.putLong(COUNT_OFFSET, index + 1);
+		count = index + 1;
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public int getInputSize() {
+		return inputSize;
+	}
+
+	@Override
+	public int getOutputSize() {
+		return outputSize;
+	}
+
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	@Override
+	public Example get(int index) {
+		double[] x = new double[inputSize];
+		double[] y = new double[outputSize];
+		readExample(index, x, 0, y, 0);
+
+		return new Example(x, y);
+	}
+
+	@Override
+	public void readExample(int index, double[] x, int xOffset, double[] y,
+			int yOffset) {
+		ByteBuffer segment = getSegment(index);
+		int position = (index % recordsPerSegment) * recordSize;
+
+		if (precision == Precision.DOUBLE) {
+			for (int i = 0; i < inputSize; i++, position += 8) {
+				x[xOffset + i] = segment.getDouble(position);
+			}
+			for (int i = 0; i < outputSize; i++, position += 8) {
+				y[yOffset + i] = segment.getDouble(position);
+			}
+		} else {
+			for (int i = 0; i < inputSize; i++, position += 4) {
+				x[xOffset + i] = segment.getFloat(position);
+			}
+			for (int i = 0; i < outputSize; i++, position += 4) {
+				y[yOffset + i] = segment.getFloat(position);
+			}
+		}
+	}
+
+	/**
+	 * Copy an example into single-precision arrays. Reading a store of
+	 * floats this way involves no conversion at all.
+	 */
+	@Override
+	public void readExample(int index, float[] x, int xOffset, float[] y,
+			int yOffset) {
+		ByteBuffer segment = getSegment(index);
+		int position = (index % recordsPerSegment) * recordSize;
+
+		if (precision == Precision.FLOAT) {
+			for (int i = 0; i < inputSize; i++, position += 4) {
+				x[xOffset + i] = segment.getFloat(position);
+			}
+			for (int i = 0; i < outputSize; i++, position += 4) {
+				y[yOffset + i] = segment.getFloat(position);
+			}
+		} else {
+			for (int i = 0; i < inputSize; i++, position += 8) {
+				x[xOffset + i] = (float) segment.getDouble(position);
+			}
+			for (int i = 0; i < outputSize; i++, position += 8) {
+				y[yOffset + i] = (float) segment.getDouble(position);
+			}
+		}
+	}
+
+	/**
+	 * @return The segment holding the given example
+	 */
+	private ByteBuffer getSegment(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Example " + index
+					+ " is not in a store of " + count + " examples");
+		}
+
+		return segments[index / recordsPerSegment];
+	}
+
+	/**
+	 * Flush all examples to disk and close the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		header.force();
+		for (ByteBuffer segment : segments) {
+			((MappedByteBuffer) segment).force();
+		}
+
+		channel.close();
+		file.close();
+	}
+
+}
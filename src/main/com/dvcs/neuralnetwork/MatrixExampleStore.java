@@ -0,0 +1,89 @@
+package com.dvcs.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * Read-only example store view of an example matrix and an output matrix, as
+ * accepted by {@link NeuralNetwork#train}.
+ */
+class MatrixExampleStore implements ExampleStore {
+
+	private DoubleMatrix x;
+	private DoubleMatrix y;
+
+	/**
+	 * @param x
+	 *            Matrix of examples (where each row represents an example and
+	 *            each column represents a unit)
+	 * @param y
+	 *            Optimal output unit values (where each row is a unit and each
+	 *            column is an example)
+	 */
+	MatrixExampleStore(DoubleMatrix x, DoubleMatrix y) {
+		if (x.getRows() != y.getColumns()) {
+			throw new RuntimeException(
+					"Output matrix dimensions do not correspond with those of the example matrix");
+		}
+
+		this.x = x;
+		this.y = y;
+	}
+
+	@Override
+	public void add(Example example) {
+		throw new UnsupportedOperationException(
+				"Examples cannot be added to a matrix view");
+	}
+
+	@Override
+	public int size() {
+		return x.getRows();
+	}
+
+	@Override
+	public int getInputSize() {
+		return x.getColumns();
+	}
+
+	@Override
+	public int getOutputSize() {
+		return y.getRows();
+	}
+
+	@Override
+	public Example get(int index) {
+		return new Example(x.getRow(index).toArray(), y.getColumn(index)
+				.toArray());
+	}
+
+	@Override
+	public void readExample(int index, double[] xDest, int xOffset,
+			double[] yDest, int yOffset) {
+		int m = x.getRows();
+		int n = x.getColumns();
+		int k = y.getRows();
+
+		for (int c = 0; c < n; c++) {
+			xDest[xOffset + c] = x.data[c * m + index];
+		}
+
+		System.arraycopy(y.data, index * k, yDest, yOffset, k);
+	}
+
+	@Override
+	public void readExample(int index, float[] xDest, int xOffset,
+			float[] yDest, int yOffset) {
+		int m = x.getRows();
+		int n = x.getColumns();
+		int k = y.getRows();
+
+		for (int c = 0; c < n; c++) {
+			xDest[xOffset + c] = (float) x.data[c * m + index];
+		}
+
+		for (int r = 0; r < k; r++) {
+			yDest[yOffset + r] = (float) y.data[index * k + r];
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.dvcs.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Example store which keeps every example on the heap.
+ *
+ * A store of {@link Precision#FLOAT} precision rounds each example to single
+ * precision as it is added, which halves its memory and is all a network
+ * training in single precision reads anyway.
+ */
+public class MemoryExampleStore implements ExampleStore {
+
+	private Precision precision;
+
+	/**
+	 * The examples, if they are kept in double precision.
+	 */
+	private List<Example> examples = new ArrayList<Example>();
+
+	/**
+	 * The examples, if they are kept in single precision: for each, its input
+	 * values followed by its output values.
+	 */
+	private List<float[]> floatExamples = new ArrayList<float[]>();
+
+	private int inputSize = -1;
+	private int outputSize = -1;
+
+	public MemoryExampleStore() {
+		this(Precision.DOUBLE);
+	}
+
+	public MemoryExampleStore(Precision precision) {
+		this.precision = precision;
+	}
+
+	@Override
+	public void add(Example example) {
+		double[] x = example.getX();
+		double[] y = example.getY();
+
+		if (inputSize == -1) {
+			inputSize = x.length;
+			outputSize = y.length;
+		}
+
+		if (precision == Precision.DOUBLE) {
+			examples.add(example);
+			return;
+		}
+
+		if (x.length != inputSize || y.length != outputSize) {
+			throw new RuntimeException(
+					"This example's layer sizes don't match those of the store");
+		}
+
+		float[] values = new float[x.length + y.length];
+		for (int i = 0; i < x.length; i++) {
+			values[i] = (float) x[i];
+		}
+		for (int i = 0; i < y.length; i++) {
+			values[x.length + i] = (float) y[i];
+		}
+
+		floatExamples.add(values);
+	}
+
+	@Override
+	public int size() {
+		return precision == Precision.DOUBLE ? examples.size() : floatExamples
+				.size();
+	}
+
+	@Override
+	public int getInputSize() {
+		return inputSize;
+	}
+
+	@Override
+	public int getOutputSize() {
+		return outputSize;
+	}
+
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * @return The example at the given index: the added example itself in a
+	 *         double-precision store, or a fresh copy in a single-precision one
+	 */
+	@Override
+	public Example get(int index) {
+		if (precision == Precision.DOUBLE) {
+			return examples.get(index);
+		}
+
+		double[] x = new double[inputSize];
+		double[] y = new double[outputSize];
+		readExample(index, x, 0, y, 0);
+
+		return new Example(x, y);
+	}
+
+	@Override
+	public void readExample(int index, double[] x, int xOffset, double[] y,
+			int yOffset) {
+		if (precision == Precision.DOUBLE) {
+			Example example = examples.get(index);
+
+			System.arraycopy(example.getX(), 0, x, xOffset,
+					example.getX().length);
+			System.arraycopy(example.getY(), 0, y, yOffset,
+					example.getY().length);
+			return;
+		}
+
+		float[] values = floatExamples.get(index);
+		for (int i = 0; i < inputSize; i++) {
+			x[xOffset + i] = values[i];
+		}
+		for (int i = 0; i < outputSize; i++) {
+			y[yOffset + i] = values[inputSize + i];
+		}
+	}
+
+	@Override
+	public void readExample(int index, float[] x, int xOffset, float[] y,
+			int yOffset) {
+		if (precision == Precision.FLOAT) {
+			float[] values = floatExamples.get(index);
+
+			System.arraycopy(values, 0, x, xOffset, inputSize);
+			System.arraycopy(values, inputSize, y, yOffset, outputSize);
+			return;
+		}
+
+		Example example = examples.get(index);
+		double[] xs = example.getX();
+		double[] ys = example.getY();
+
+		for (int i = 0; i < xs.length; i++) {
+			x[xOffset + i] = (float) xs[i];
+		}
+		for (int i = 0; i < ys.length; i++) {
+			y[yOffset + i] = (float) ys[i];
+		}
+	}
+
+}
@@ -0,0 +1,217 @@
+package com.dvcs.neuralnetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches a directory for model files (see {@link ModelFile}) and loads each
+ * one that is added or replaced, so that a running process can switch to a
+ * newly trained network without restarting.
+ *
+ * Models saved through the watcher itself are not reported back to it.
+ */
+public class ModelDirectoryWatcher {
+
+	private static final Logger LOGGER = Logger
+			.getLogger("ModelDirectoryWatcher");
+
+	public interface Listener {
+		/**
+		 * Called on the watcher's thread for every model file which was
+		 * added to or replaced in the directory.
+		 */
+		public void modelLoaded(NeuralNetwork network, File file);
+	}
+
+	private final File directory;
+	private final Listener listener;
+
+	/**
+	 * For files saved through the watcher, the modification time they were
+	 * saved with.
+	 */
+	private final Map<File, Long> saved = new HashMap<File, Long>();
+
+	private WatchService watchService;
+	private Thread thread;
+
+	/**
+	 * @param directory
+	 *            The directory to watch. It is created if necessary.
+	 */
+	public ModelDirectoryWatcher(File directory, Listener listener) {
+		this.directory = directory;
+		this.listener = listener;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return The most recently modified model file in the directory, or null
+	 *         if there is none.
+	 */
+	public File findNewest() {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return null;
+		}
+
+		File newest = null;
+		for (File file : files) {
+			if (isModelFile(file)
+					&& (newest == null || file.lastModified() > newest
+							.lastModified())) {
+				newest = file;
+			}
+		}
+
+		return newest;
+	}
+
+	/**
+	 * Save a network into the directory without notifying the listener.
+	 *
+	 * @param name
+	 *            The file name, without extension
+	 * @return The model file
+	 */
+	public File save(NeuralNetwork network, String name) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can't create " + directory);
+		}
+
+		File file = new File(directory, name + ModelFile.EXTENSION);
+		synchronized (saved) {
+			ModelFile.save(network, file);
+			saved.put(file, file.lastModified());
+		}
+
+		return file;
+	}
+
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			throw new IllegalStateException("The watcher is already running");
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can't create " + directory);
+		}
+
+		final WatchService service = FileSystems.getDefault()
+				.newWatchService();
+		directory.toPath().register(service,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+
+		watchService = service;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				watch(service);
+			}
+		}, "ModelDirectoryWatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop watching and wait for the watcher's thread to finish (unless
+	 * called from the listener).
+	 */
+	public void shutdown() throws InterruptedException {
+		Thread running;
+		synchronized (this) {
+			running = thread;
+			thread = null;
+			if (running == null) {
+				return;
+			}
+
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to close the watch service",
+						e);
+			}
+			watchService = null;
+		}
+
+		if (running != Thread.currentThread()) {
+			running.join();
+		}
+	}
+
+	private void watch(WatchService service) {
+		try {
+			while (true) {
+				WatchKey key = service.take();
+
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						continue;
+					}
+
+					Path name = (Path) event.context();
+					File file = new File(directory, name.toString());
+					if (isModelFile(file)) {
+						reload(file);
+					}
+				}
+
+				if (!key.reset()) {
+					LOGGER.severe(directory + " can no longer be watched");
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			// shut down
+		} catch (ClosedWatchServiceException e) {
+			// shut down
+		}
+	}
+
+	private void reload(File file) {
+		synchronized (saved) {
+			Long modified = saved.get(file);
+			if (modified != null && modified == file.lastModified()) {
+				return;
+			}
+			saved.remove(file);
+		}
+
+		NeuralNetwork network;
+		try {
+			network = ModelFile.load(file);
+		} catch (IOException e) {
+			// e.g. a file which is still being written in place; it is
+			// loaded on its next modification
+			LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+			return;
+		}
+
+		LOGGER.info("Loaded model " + file);
+		try {
+			listener.modelLoaded(network, file);
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Model listener failed", e);
+		}
+	}
+
+	private static boolean isModelFile(File file) {
+		return file.getName().endsWith(ModelFile.EXTENSION) && file.isFile();
+	}
+
+}
@@ -0,0 +1,269 @@
+package com.dvcs.neuralnetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import com.dvcs.neuralnetwork.activation.Activation;
+import com.dvcs.neuralnetwork.activation.ReLU;
+import com.dvcs.neuralnetwork.activation.Sigmoid;
+import com.dvcs.neuralnetwork.activation.Softmax;
+import com.dvcs.neuralnetwork.activation.Tanh;
+
+/**
+ * Saves trained networks in a compact binary format and loads them again,
+ * so that a network need not be retrained whenever a process starts.
+ *
+ * A model file starts with a 24-byte little-endian header:
+ *
+ * <pre>
+ * int  magic ("DVNN")
+ * int  format version
+ * int  number of weight matrices
+ * int  bytes per value the network computes layers in (4 or 8)
+ * int  flags (1: fast activation)
+ * int  reserved
+ * </pre>
+ *
+ * followed by 24 bytes for each weight matrix $\Theta^{(i)}$:
+ *
+ * <pre>
+ * int    rows
+ * int    columns
+ * int    activation of the layer it computes (1: sigmoid, 2: tanh,
+ *        3: ReLU, 4: softmax)
+ * int    reserved
+ * double activation parameter (the leak of a ReLU)
+ * </pre>
+ *
+ * and then the weights as little-endian doubles, laid out like
+ * {@link Weights#getData()}. Loading maps that block and copies it into the
+ * network's parameter array in bulk.
+ */
+public class ModelFile {
+
+	public static final String EXTENSION = ".model";
+
+	static final int MAGIC = 0x4E4E5644; // "DVNN", little-endian
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 24;
+	static final int MATRIX_HEADER_SIZE = 24;
+
+	static final int FLAG_FAST_ACTIVATION = 1;
+
+	/**
+	 * The number of weights written at once
+	 */
+	private static final int WRITE_CHUNK = 1 << 16;
+
+	static final int SIGMOID = 1;
+	static final int TANH = 2;
+	static final int RELU = 3;
+	static final int SOFTMAX = 4;
+
+	private ModelFile() {
+	}
+
+	/**
+	 * Save a network, replacing any existing file. The file is written under
+	 * a temporary name and then renamed, so that readers (e.g. a
+	 * {@link ModelDirectoryWatcher}) never see a partial model.
+	 */
+	public static void save(NeuralNetwork network, File path)
+			throws IOException {
+		Weights weights = network.getWeights();
+		int L = weights.getCount();
+		int headerSize = HEADER_SIZE + L * MATRIX_HEADER_SIZE;
+
+		ByteBuffer header = ByteBuffer.allocate(headerSize).order(
+				ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(L);
+		header.putInt(network.getPrecision().bytes);
+		header.putInt(network.fastActivation ? FLAG_FAST_ACTIVATION : 0);
+		header.putInt(0);
+
+		for (int l = 0; l < L; l++) {
+			Activation activation = network.activations[l];
+
+			header.putInt(weights.getRows(l));
+			header.putInt(weights.getColumns(l));
+			header.putInt(getActivationCode(activation));
+			header.putInt(0);
+			header.putDouble(activation instanceof ReLU ? ((ReLU) activation)
+					.getLeak() : 0);
+		}
+		header.flip();
+
+		File temporary = new File(path.getPath() + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(temporary, "rw");
+		try {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+
+			double[] data = weights.getData();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(
+					Math.min(data.length, WRITE_CHUNK) * 8).order(
+					ByteOrder.LITTLE_ENDIAN);
+
+			for (int i = 0; i < data.length; i += WRITE_CHUNK) {
+				int n = Math.min(WRITE_CHUNK, data.length - i);
+				buffer.clear();
+				buffer.asDoubleBuffer().put(data, i, n);
+				buffer.limit(n * 8);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			channel.force(true);
+		} finally {
+			file.close();
+		}
+
+		Files.move(temporary.toPath(), path.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load a network saved with {@link #save}.
+	 *
+	 * @throws IOException
+	 *             If the file can't be read or is not a complete model
+	 */
+	public static NeuralNetwork load(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+
+			ByteBuffer header = readFully(channel, 0, HEADER_SIZE, path);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException(path + " is not a model file");
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException(path + " has model format version "
+						+ header.getInt(4) + ", but only version " + VERSION
+						+ " is supported");
+			}
+
+			int L = header.getInt(8);
+			Precision precision = Precision.forBytes(header.getInt(12));
+			int flags = header.getInt(16);
+			if (L < 1 || precision == null
+					|| HEADER_SIZE + (long) L * MATRIX_HEADER_SIZE > channel
+							.size()) {
+				throw new IOException(path + " has an invalid header");
+			}
+
+			ByteBuffer matrices = readFully(channel, HEADER_SIZE, L
+					* MATRIX_HEADER_SIZE, path);
+			int[] rowDimensions = new int[L];
+			int[] columnDimensions = new int[L];
+			Activation[] activations = new Activation[L];
+			long size = 0;
+
+			for (int l = 0; l < L; l++) {
+				int position = l * MATRIX_HEADER_SIZE;
+				rowDimensions[l] = matrices.getInt(position);
+				columnDimensions[l] = matrices.getInt(position + 4);
+				activations[l] = createActivation(
+						matrices.getInt(position + 8),
+						matrices.getDouble(position + 16), path);
+
+				if (rowDimensions[l] < 1
+						|| columnDimensions[l] < 2
+						|| (l > 0 && columnDimensions[l] != rowDimensions[l - 1] + 1)) {
+					throw new IOException(path
+							+ " has inconsistent layer dimensions");
+				}
+				size += (long) rowDimensions[l] * columnDimensions[l];
+			}
+
+			long offset = HEADER_SIZE + L * MATRIX_HEADER_SIZE;
+			if (size > Integer.MAX_VALUE
+					|| channel.size() != offset + size * 8) {
+				throw new IOException(path + " should hold " + size
+						+ " weights but has " + (channel.size() - offset)
+						+ " bytes of them");
+			}
+
+			double[] data = new double[(int) size];
+			MappedByteBuffer mapped = channel.map(MapMode.READ_ONLY, offset,
+					size * 8);
+			mapped.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(data);
+
+			NeuralNetwork network = new NeuralNetwork(new Weights(
+					rowDimensions, columnDimensions, data), precision);
+			for (int l = 0; l < L; l++) {
+				network.setActivation(l + 1, activations[l]);
+			}
+			network.setFastActivation((flags & FLAG_FAST_ACTIVATION) != 0);
+
+			return network;
+		} catch (RuntimeException e) {
+			// e.g. an output activation in the wrong place
+			throw new IOException(path + " is not a valid model: "
+					+ e.getMessage(), e);
+		} finally {
+			file.close();
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position,
+			int size, File path) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(
+				ByteOrder.LITTLE_ENDIAN);
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException(path + " ends within its header");
+			}
+		}
+
+		return buffer;
+	}
+
+	static int getActivationCode(Activation activation) {
+		if (activation instanceof Sigmoid) {
+			return SIGMOID;
+		} else if (activation instanceof Tanh) {
+			return TANH;
+		} else if (activation instanceof ReLU) {
+			return RELU;
+		} else if (activation instanceof Softmax) {
+			return SOFTMAX;
+		}
+
+		throw new IllegalArgumentException("Can't save "
+				+ activation.getClass().getSimpleName() + " activations");
+	}
+
+	private static Activation createActivation(int code, double parameter,
+			File path) throws IOException {
+		switch (code) {
+		case SIGMOID:
+			return new Sigmoid();
+		case TANH:
+			return new Tanh();
+		case RELU:
+			return new ReLU(parameter);
+		case SOFTMAX:
+			return new Softmax();
+		default:
+			throw new IOException(path + " uses an unknown activation ("
+					+ code + ")");
+		}
+	}
+
+}
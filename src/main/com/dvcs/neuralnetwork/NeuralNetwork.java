@@ -1,22 +1,41 @@
 package com.dvcs.neuralnetwork;
 
-import java.util.Arrays;
-
 import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
 
+import com.dvcs.neuralnetwork.activation.Activation;
+import com.dvcs.neuralnetwork.activation.OutputActivation;
+import com.dvcs.neuralnetwork.activation.Sigmoid;
+import com.dvcs.neuralnetwork.activation.Softmax;
 import com.dvcs.tools.MatrixTools;
 
 import de.jungblut.math.DoubleVector;
-import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.minimize.Fmincg;
+import de.jungblut.math.minimize.Minimizer;
 import de.jungblut.math.minimize.MinimizerListener;
+import de.jungblut.math.minimize.SearchStateListener;
 
 public class NeuralNetwork {
 
 	final double RANDOM_WEIGHT_MATRIX_MINIMUM = 0;
 	final double RANDOM_WEIGHT_MATRIX_MAXIMUM = 0.12;
 
-	DoubleMatrix[] Thetas;
+	/**
+	 * The number of line searches made when training with {@link Fmincg}.
+	 */
+	static final int DEFAULT_TRAINING_ITERATIONS = 100;
+
+	/**
+	 * Input layers with at most this fraction of non-zero values are
+	 * multiplied with {@link MatrixTools#gemmSparseB}, which skips the zeros,
+	 * instead of BLAS.
+	 */
+	static final double SPARSE_INPUT_DENSITY = 0.1;
+
+	/**
+	 * The weight matrices $\Theta^{(i)}$, stored in a single flat array.
+	 */
+	Weights weights;
 
 	/**
 	 * For an element $i$, the number of rows in the matrix $\Theta^{(i)}$.
@@ -28,6 +47,38 @@ public class NeuralNetwork {
 	 */
 	int[] columnDimensions;
 
+	/**
+	 * For an element $i$, the activation of the layer computed by
+	 * $\Theta^{(i)}$. The last element belongs to the output layer and is
+	 * always an {@link OutputActivation}.
+	 */
+	Activation[] activations;
+
+	/**
+	 * The number of threads used to evaluate the cost function during
+	 * training.
+	 */
+	int trainingParallelism = 1;
+
+	/**
+	 * Whether feed-forward uses {@link MatrixTools#fastExp} instead of
+	 * `Math.exp` in activation functions.
+	 */
+	boolean fastActivation = false;
+
+	/**
+	 * The precision in which layers are computed. Weights are always stored
+	 * in double precision, so that optimizers can work on them directly.
+	 */
+	Precision precision;
+
+	/**
+	 * Single-precision copy of the weights for feeding forward, and the
+	 * weight array it was rounded from.
+	 */
+	private float[] floatWeights;
+	private double[] floatWeightsSource;
+
 	/**
 	 * @param layerSizes
 	 *            An array representing the sequence of layers in the network.
@@ -35,7 +86,22 @@ public class NeuralNetwork {
 	 *            the corresponding layer.
 	 */
 	public NeuralNetwork(int[] layerSizes) {
-		Thetas = new DoubleMatrix[layerSizes.length - 1];
+		this(layerSizes, Precision.DOUBLE);
+	}
+
+	/**
+	 * @param layerSizes
+	 *            An array representing the sequence of layers in the network.
+	 *            The value of each element represents the number of units in
+	 *            the corresponding layer.
+	 * @param precision
+	 *            The precision in which the network computes its layers, both
+	 *            for training and for feeding forward
+	 */
+	public NeuralNetwork(int[] layerSizes, Precision precision) {
+		this.precision = precision;
+
+		DoubleMatrix[] Thetas = new DoubleMatrix[layerSizes.length - 1];
 		rowDimensions = new int[layerSizes.length - 1];
 		columnDimensions = new int[layerSizes.length - 1];
 
@@ -52,17 +118,57 @@ public class NeuralNetwork {
 			rowDimensions[i] = rows;
 			columnDimensions[i] = columns;
 		}
+
+		weights = new Weights(rowDimensions, columnDimensions);
+		for (int i = 0; i < Thetas.length; i++) {
+			System.arraycopy(Thetas[i].data, 0, weights.getData(),
+					weights.getOffset(i), Thetas[i].length);
+		}
+
+		initializeActivations();
 	}
 
+	/**
+	 * Create a network with the given weight matrices. The matrices are
+	 * copied.
+	 */
 	public NeuralNetwork(DoubleMatrix[] Thetas) {
-		this.Thetas = Thetas;
+		this(Weights.copyOf(Thetas));
+	}
 
-		rowDimensions = new int[Thetas.length];
-		columnDimensions = new int[Thetas.length];
+	/**
+	 * Create a network which uses the given weights directly.
+	 */
+	public NeuralNetwork(Weights weights) {
+		this(weights, Precision.DOUBLE);
+	}
 
-		for (int i = 0; i < Thetas.length; i++) {
-			rowDimensions[i] = Thetas[i].getRows();
-			columnDimensions[i] = Thetas[i].getColumns();
+	/**
+	 * Create a network which uses the given weights directly, computing its
+	 * layers in the given precision.
+	 */
+	public NeuralNetwork(Weights weights, Precision precision) {
+		this.weights = weights;
+		this.precision = precision;
+
+		rowDimensions = new int[weights.getCount()];
+		columnDimensions = new int[weights.getCount()];
+
+		for (int i = 0; i < rowDimensions.length; i++) {
+			rowDimensions[i] = weights.getRows(i);
+			columnDimensions[i] = weights.getColumns(i);
+		}
+
+		initializeActivations();
+	}
+
+	/**
+	 * Use the sigmoid function for every layer.
+	 */
+	private void initializeActivations() {
+		activations = new Activation[rowDimensions.length];
+		for (int i = 0; i < activations.length; i++) {
+			activations[i] = new Sigmoid();
 		}
 	}
 
@@ -110,6 +216,40 @@ public class NeuralNetwork {
 	 *            won't be updated until optimization has finished.
 	 */
 	public void train(DoubleMatrix x, DoubleMatrix y, double lambda,
+			MinimizerListener listener, boolean updateThetasDuringOptimization) {
+		train(x, y, lambda, new Fmincg(), DEFAULT_TRAINING_ITERATIONS,
+				listener, updateThetasDuringOptimization);
+	}
+
+	/**
+	 * Rebuild the weights of this network to minimize the error on the given
+	 * data set, using the given minimizer.
+	 * 
+	 * @param x
+	 *            Matrix of examples (where each row represents an example and
+	 *            each column represents a unit)
+	 * @param y
+	 *            Optimal output unit values (where each row is a unit and each
+	 *            column is an example)
+	 * @param lambda
+	 *            Regularization parameter
+	 * @param minimizer
+	 *            The optimization method. The cost function it receives can be
+	 *            evaluated on mini-batches of examples (see
+	 *            {@link de.jungblut.math.minimize.BatchCostFunction}).
+	 * @param maxIterations
+	 *            The number of iterations the minimizer should make (e.g.,
+	 *            line searches for {@link Fmincg}, or epochs for a stochastic
+	 *            minimizer)
+	 * @param listener
+	 *            A listener which will receive information about each
+	 *            minimization iteration
+	 * @param updateThetasDuringOptimization
+	 *            If true, this network's parameters will update in sync with
+	 *            the optimization steps.
+	 */
+	public void train(DoubleMatrix x, DoubleMatrix y, double lambda,
+			Minimizer minimizer, int maxIterations,
 			final MinimizerListener listener,
 			boolean updateThetasDuringOptimization) {
 		if (x.getRows() != y.getColumns()) {
@@ -117,21 +257,81 @@ public class NeuralNetwork {
 					"Output matrix ss do not correspond with those of the example matrix");
 		}
 
-		ForwardPropagationResult fResult = feedForward(x);
-		DoubleMatrix outputLayer = fResult.getOutputLayer();
+		if (columnDimensions[0] - 1 != x.getColumns()) {
+			throw new RuntimeException(
+					"Example matrix dimensions do not correspond with those of the input layer");
+		}
 
-		if (outputLayer.getRows() != y.getRows()
-				|| outputLayer.getColumns() != y.getColumns()) {
+		if (rowDimensions[rowDimensions.length - 1] != y.getRows()) {
 			throw new RuntimeException(
 					"Given output matrix ss do not correspond with those of the actual output matrix produced by the network");
 		}
 
+		train(new MatrixExampleStore(x, y), lambda, minimizer, maxIterations,
+				listener, updateThetasDuringOptimization);
+	}
+
+	/**
+	 * Rebuild the weights of this network to minimize the error on the
+	 * examples of the given store, using the given minimizer.
+	 * 
+	 * Examples are read from the store in blocks as the cost function is
+	 * evaluated, so they never have to be copied into a single example
+	 * matrix. Examples added to the store while training are ignored.
+	 * 
+	 * @param examples
+	 *            The examples to train on
+	 * @param lambda
+	 *            Regularization parameter
+	 * @param minimizer
+	 *            The optimization method
+	 * @param maxIterations
+	 *            The number of iterations the minimizer should make
+	 * @param listener
+	 *            A listener which will receive information about each
+	 *            minimization iteration
+	 * @param updateThetasDuringOptimization
+	 *            If true, this network's parameters will update in sync with
+	 *            the optimization steps.
+	 */
+	public void train(ExampleStore examples, double lambda,
+			Minimizer minimizer, int maxIterations,
+			final MinimizerListener listener,
+			boolean updateThetasDuringOptimization) {
+		if (columnDimensions[0] - 1 != examples.getInputSize()
+				|| rowDimensions[rowDimensions.length - 1] != examples
+						.getOutputSize()) {
+			throw new RuntimeException(
+					"Example store layer sizes do not correspond with those of the network");
+		}
+
 		MinimizerListener ourListener = null;
-		if (updateThetasDuringOptimization) {
+		if (updateThetasDuringOptimization
+				&& listener instanceof SearchStateListener) {
+			// Keep passing the search state on, e.g. to a checkpointing
+			// listener
+			final SearchStateListener stateListener = (SearchStateListener)
+					listener;
+			ourListener = new SearchStateListener() {
+				public void minimizationIterationFinished(int n, double cost,
+						DoubleVector parameters) {
+					useParameters(parameters);
+					stateListener.minimizationIterationFinished(n, cost,
+							parameters);
+				}
+
+				public void searchStateUpdated(int n, double cost,
+						DoubleVector parameters, DoubleVector searchDirection,
+						double stepSize) {
+					stateListener.searchStateUpdated(n, cost, parameters,
+							searchDirection, stepSize);
+				}
+			};
+		} else if (updateThetasDuringOptimization) {
 			ourListener = new MinimizerListener() {
 				public void minimizationIterationFinished(int n, double cost,
 						DoubleVector parameters) {
-					Thetas = convertPointToWeightMatrices(parameters);
+					useParameters(parameters);
 
 					if (listener != null) {
 						listener.minimizationIterationFinished(n, cost,
@@ -143,83 +343,184 @@ public class NeuralNetwork {
 			ourListener = listener;
 		}
 
-		// Unroll Theta1 and Theta2, then concatenate. This forms our initial
-		// parameter vector.
-		DoubleVector initParams = convertWeightMatricesToPoint(Thetas);
+		// The flat weight array already is a parameter vector. Hand the
+		// minimizer a copy so that the network's weights stay untouched
+		// until the end of training.
+		DoubleVector initParams = weights.copy().asPoint();
+
+		NeuralNetworkCostFunction cost = new NeuralNetworkCostFunction(this,
+				examples, lambda, trainingParallelism,
+				NeuralNetworkCostFunction.DEFAULT_BLOCK_SIZE);
+		DoubleVector parameters;
+		try {
+			parameters = minimizer.minimize(cost, initParams, maxIterations,
+					ourListener);
+		} finally {
+			cost.shutdown();
+		}
 
-		NeuralNetworkCostFunction cost = new NeuralNetworkCostFunction(this, x,
-				y, lambda);
-		DoubleVector parameters = Fmincg.minimizeFunction(cost, initParams,
-				100, ourListener);
+		weights = weights.wrap(parameters);
+	}
 
-		Thetas = convertPointToWeightMatrices(parameters);
+	/**
+	 * Predict with a minimizer's current parameters while it is still
+	 * training.
+	 */
+	private void useParameters(DoubleVector parameters) {
+		// Copy, as a minimizer may keep updating its point in place while
+		// the network predicts with these weights.
+		weights = weights.wrap(parameters.toArray().clone());
 	}
 
 	public DoubleMatrix[] backpropagate(ForwardPropagationResult fResult,
 			DoubleMatrix y) {
-		return backpropagate(fResult, y, Thetas);
+		Weights Deltas = new Weights(rowDimensions, columnDimensions);
+		backpropagate(fResult, y, weights, Deltas);
+
+		return Deltas.toMatrices();
 	}
 
 	/**
 	 * Determine what changes should be made to the weight matrices to lower
 	 * cost on the given data set.
+	 * 
+	 * The matrices are copied into flat weights on every call, so training
+	 * code should backpropagate over {@link Weights} instead.
 	 */
 	public DoubleMatrix[] backpropagate(ForwardPropagationResult fResult,
 			DoubleMatrix y, DoubleMatrix[] Thetas) {
-		int m = y.getColumns();
+		Weights Deltas = new Weights(rowDimensions, columnDimensions);
+		backpropagate(fResult, y, Weights.copyOf(Thetas), Deltas);
+
+		return Deltas.toMatrices();
+	}
+
+	/**
+	 * Determine what changes should be made to the weight matrices to lower
+	 * cost on the given data set, and add them to the given `Deltas`.
+	 * 
+	 * All examples are processed at once: the error values of each layer are
+	 * computed for every column of the layer matrices with a single matrix
+	 * product, and the per-example outer products are summed by a second
+	 * product.
+	 * 
+	 * The matrices are copied into flat weights and the changes are
+	 * collected in new accumulators before being added to `Deltas`, so this
+	 * allocates on every call; training code should backpropagate over
+	 * {@link Weights} instead.
+	 * 
+	 * @param Deltas
+	 *            Accumulators with the same dimensions as `Thetas`. The
+	 *            changes for this data set are added to their current values.
+	 */
+	public void backpropagate(ForwardPropagationResult fResult,
+			DoubleMatrix y, DoubleMatrix[] Thetas, DoubleMatrix[] Deltas) {
+		Weights changes = new Weights(rowDimensions, columnDimensions);
+		backpropagate(fResult, y, Weights.copyOf(Thetas), changes);
+
+		for (int l = 0; l < Deltas.length; l++) {
+			Deltas[l].addi(changes.getMatrix(l));
+		}
+	}
 
-		// If we have $l$ layers in the network, this array should have $l -
-		// 1$ elements. The first element corresponds to `Delta1`, the total
-		// change necessary in `Theta1`.
-		DoubleMatrix[] Deltas = new DoubleMatrix[Thetas.length];
+	/**
+	 * Backpropagate over flat weights, adding the changes to the flat
+	 * accumulator `Deltas` (which has the same layout as `Thetas`).
+	 */
+	void backpropagate(ForwardPropagationResult fResult, DoubleMatrix y,
+			Weights Thetas, Weights Deltas) {
+		int m = y.getColumns();
+		double[] params = Thetas.getData();
 
-		DoubleMatrix[] preLayerValues = fResult.getPreLayerValues();
 		DoubleMatrix[] layerValues = fResult.getLayerValues();
 
-		for (int i = 0; i < m; i++) {
-			DoubleMatrix[] deltaVectors = new DoubleMatrix[Thetas.length];
+		// The error values for each non-input layer, where each column
+		// corresponds to an example. The first element corresponds to the
+		// second layer.
+		DoubleMatrix[] deltaMatrices = new DoubleMatrix[Thetas.getCount()];
+
+		// The first "error" values are actual residuals.
+		deltaMatrices[deltaMatrices.length - 1] = fResult.getOutputLayer()
+				.sub(y);
+
+		// Propagate through the hidden layers, using error values and
+		// parameters (Theta) to build a weighted sum. We begin with $l$
+		// equivalent to the index of the last hidden layer in the network,
+		// and $l$ moves backward to the first hidden layer $l = 1$.
+		for (int l = layerValues.length - 2; l > 0; l--) {
+			int rows = Thetas.getRows(l);
+			int units = Thetas.getColumns(l) - 1;
+			DoubleMatrix deltaL = new DoubleMatrix(units, m);
+
+			// Skip the first column of Theta so that no error is computed for
+			// the bias unit.
+			MatrixTools.gemm(true, false, units, m, rows, 1.0, params,
+					Thetas.getOffset(l) + rows, rows, deltaMatrices[l].data, 0,
+					rows, 0.0, deltaL.data, 0, units);
+
+			// The activation gradient is computed from the layer's stored
+			// activation values (below its bias row).
+			activations[l - 1].multiplyGradient(deltaL, layerValues[l], 1);
+
+			deltaMatrices[l - 1] = deltaL;
+		}
+
+		// We've collected all of our delta matrices; now build the final
+		// weight shifting matrices.
+		for (int l = 0; l < Thetas.getCount(); l++) {
+			int rows = Thetas.getRows(l);
+			int columns = Thetas.getColumns(l);
 
-			// The first "error" values are actual residuals.
-			deltaVectors[deltaVectors.length - 1] = fResult.getOutputLayer()
-					.getColumn(i).sub(y.getColumn(i));
+			MatrixTools.gemm(false, true, rows, columns, m, 1.0,
+					deltaMatrices[l].data, 0, rows, layerValues[l].data, 0,
+					columns, 1.0, Deltas.getData(), Deltas.getOffset(l), rows);
+		}
+	}
 
-			// Propagate through the hidden layers, using error values and
-			// parameters (Theta) to build a weighted sum. We begin with $l$
-			// equivalent to the index of the last hidden layer in the network,
-			// and $l$ moves backward to the first hidden layer $l = 1$.
-			for (int l = layerValues.length - 2; l > 0; l--) {
-				DoubleMatrix deltaL = Thetas[l].transpose().mmul(
-						deltaVectors[l]);
+	/**
+	 * Single-precision version of
+	 * {@link #backpropagate(ForwardPropagationResult, DoubleMatrix, Weights, Weights)},
+	 * which overwrites `Deltas` instead of adding to it. Callers sum the
+	 * changes of consecutive blocks of examples in double precision.
+	 * 
+	 * @param layout
+	 *            The layout of `Thetas` and `Deltas`
+	 */
+	void backpropagate(FloatForwardPropagationWorkspace workspace,
+			FloatMatrix y, Weights layout, float[] Thetas, float[] Deltas) {
+		int m = y.getColumns();
 
-				// Remove the error corresponding to the bias unit.
-				deltaL = deltaL.getRange(1, deltaL.getRows(), 0,
-						deltaL.getColumns());
+		FloatMatrix[] layerValues = workspace.getLayerValues();
+		FloatMatrix[] deltaMatrices = new FloatMatrix[layout.getCount()];
 
-				deltaL = deltaL.mul(MatrixTools
-						.matrixSigmoidGradient(preLayerValues[l - 1]
-								.getColumn(i)));
+		deltaMatrices[deltaMatrices.length - 1] = workspace.getOutputLayer()
+				.sub(y);
 
-				deltaVectors[l - 1] = deltaL;
-			}
+		for (int l = layerValues.length - 2; l > 0; l--) {
+			int rows = layout.getRows(l);
+			int units = layout.getColumns(l) - 1;
+			FloatMatrix deltaL = new FloatMatrix(units, m);
 
-			// We've collected all of our delta vectors; now build the final
-			// weight shifting matrices.
-			for (int l = 0; l < Thetas.length; l++) {
-				DoubleMatrix Delta = deltaVectors[l].mmul(layerValues[l]
-						.getColumn(i).transpose());
-				
-				if ( Deltas[l] == null ) {
-					Deltas[l] = Delta;
-				} else {
-					Deltas[l] = Deltas[l].add(Delta);
-				}
-			}
+			MatrixTools.gemm(true, false, units, m, rows, 1f, Thetas,
+					layout.getOffset(l) + rows, rows, deltaMatrices[l].data, 0,
+					rows, 0f, deltaL.data, 0, units);
+
+			activations[l - 1].multiplyGradient(deltaL, layerValues[l], 1);
+
+			deltaMatrices[l - 1] = deltaL;
 		}
 
-		return Deltas;
+		for (int l = 0; l < layout.getCount(); l++) {
+			int rows = layout.getRows(l);
+			int columns = layout.getColumns(l);
+
+			MatrixTools.gemm(false, true, rows, columns, m, 1f,
+					deltaMatrices[l].data, 0, rows, layerValues[l].data, 0,
+					columns, 0f, Deltas, layout.getOffset(l), rows);
+		}
 	}
 
-	public class ForwardPropagationResult {
+	public static class ForwardPropagationResult {
 		/**
 		 * The preliminary value of each layer before a bias layer has been
 		 * added and before the activation function has been applied. The first
@@ -287,8 +588,28 @@ public class NeuralNetwork {
 		}
 	}
 
+	/**
+	 * Feed a collection of examples forward through the network, in the
+	 * network's precision.
+	 * 
+	 * @param x
+	 *            Example matrix, where each row represents an example and each
+	 *            column represents a unit
+	 */
 	public ForwardPropagationResult feedForward(DoubleMatrix x) {
-		return feedForward(x, Thetas);
+		if (precision == Precision.FLOAT) {
+			FloatForwardPropagationWorkspace workspace = createFloatWorkspace(x
+					.getRows());
+			workspace.loadInputLayer(x);
+
+			feedForward(weights, getFloatWeights(), workspace);
+			return workspace.toResult();
+		}
+
+		ForwardPropagationWorkspace workspace = createWorkspace(x.getRows());
+		workspace.loadInputLayer(x);
+
+		return feedForward(weights, workspace);
 	}
 
 	/**
@@ -297,32 +618,141 @@ public class NeuralNetwork {
 	 * @param x
 	 *            Example matrix, where each row represents an example and each
 	 *            column represents a unit
-	 * @param Theta1
-	 *            A weight matrix describing the transformation of the input
-	 *            data to hidden layer data
-	 * @param Theta2
-	 *            A weight matrix describing the transformation of the hidden
-	 *            layer data to the output layer data
-	 * @return A matrix of output layer units, where each row represents a unit
-	 *         and each column represents an example
+	 * @param Thetas
+	 *            The weight matrices describing the transformation of each
+	 *            layer's data into the next layer's data
+	 * @return The layer values produced by the network, where each row
+	 *         represents a unit and each column represents an example
 	 */
 	public ForwardPropagationResult feedForward(DoubleMatrix x,
 			DoubleMatrix[] Thetas) {
-		DoubleMatrix[] preLayerValues = new DoubleMatrix[Thetas.length];
-		DoubleMatrix[] layerValues = new DoubleMatrix[Thetas.length + 1];
+		return feedForward(x, Thetas, createWorkspace(x.getRows()));
+	}
 
-		layerValues[0] = addBiasUnit(x.transpose());
+	/**
+	 * Feed a collection of examples forward through the network, writing all
+	 * layer values into the given workspace rather than allocating new
+	 * matrices for them.
+	 * 
+	 * The weight matrices are still copied into flat weights on every call,
+	 * so this is not free of allocations; training code feeds forward over
+	 * {@link Weights} instead.
+	 * 
+	 * @param workspace
+	 *            A workspace sized for this network and for the number of
+	 *            examples in `x`. The returned result is a view of the
+	 *            workspace and is overwritten by its next use.
+	 */
+	public ForwardPropagationResult feedForward(DoubleMatrix x,
+			DoubleMatrix[] Thetas, ForwardPropagationWorkspace workspace) {
+		workspace.loadInputLayer(x);
+
+		return feedForward(Weights.copyOf(Thetas), workspace);
+	}
+
+	/**
+	 * Feed the examples which have already been loaded into the workspace's
+	 * input layer forward through the network.
+	 */
+	ForwardPropagationResult feedForward(Weights Thetas,
+			ForwardPropagationWorkspace workspace) {
+		DoubleMatrix[] preLayerValues = workspace.getPreLayerValues();
+		DoubleMatrix[] layerValues = workspace.getLayerValues();
+		int m = workspace.getBatchSize();
+
+		for (int l = 0; l < Thetas.getCount(); l++) {
+			int rows = Thetas.getRows(l);
+			int columns = Thetas.getColumns(l);
+
+			// Only the input layer can be sparse; hidden layer values are
+			// activations, which are rarely zero.
+			if (l == 0
+					&& MatrixTools.density(layerValues[0].data, 0, columns
+							* m) <= SPARSE_INPUT_DENSITY) {
+				MatrixTools.gemmSparseB(rows, m, columns, Thetas.getData(),
+						Thetas.getOffset(l), rows, layerValues[l].data, 0,
+						columns, preLayerValues[l].data, 0, rows);
+			} else {
+				MatrixTools.gemm(false, false, rows, m, columns, 1.0,
+						Thetas.getData(), Thetas.getOffset(l), rows,
+						layerValues[l].data, 0, columns, 0.0,
+						preLayerValues[l].data, 0, rows);
+			}
 
-		for (int l = 0; l < Thetas.length; l++) {
-			preLayerValues[l] = Thetas[l].mmul(layerValues[l]);
+			// Every layer but the output layer keeps its bias unit in the
+			// first row.
+			int rowOffset = l == Thetas.getCount() - 1 ? 0 : 1;
+			activations[l].apply(preLayerValues[l], layerValues[l + 1],
+					rowOffset, fastActivation);
+		}
+
+		return workspace.getResult();
+	}
+
+	/**
+	 * Single-precision version of
+	 * {@link #feedForward(Weights, ForwardPropagationWorkspace)}.
+	 * 
+	 * @param layout
+	 *            The layout of the weight matrices in `Thetas`
+	 * @param Thetas
+	 *            The weights, rounded to single precision
+	 */
+	void feedForward(Weights layout, float[] Thetas,
+			FloatForwardPropagationWorkspace workspace) {
+		FloatMatrix[] preLayerValues = workspace.getPreLayerValues();
+		FloatMatrix[] layerValues = workspace.getLayerValues();
+		int m = workspace.getBatchSize();
+
+		for (int l = 0; l < layout.getCount(); l++) {
+			int rows = layout.getRows(l);
+			int columns = layout.getColumns(l);
+
+			if (l == 0
+					&& MatrixTools.density(layerValues[0].data, 0, columns
+							* m) <= SPARSE_INPUT_DENSITY) {
+				MatrixTools.gemmSparseB(rows, m, columns, Thetas,
+						layout.getOffset(l), rows, layerValues[l].data, 0,
+						columns, preLayerValues[l].data, 0, rows);
+			} else {
+				MatrixTools.gemm(false, false, rows, m, columns, 1f, Thetas,
+						layout.getOffset(l), rows, layerValues[l].data, 0,
+						columns, 0f, preLayerValues[l].data, 0, rows);
+			}
 
-			DoubleMatrix withBias = l == Thetas.length - 1 ? preLayerValues[l]
-					: addBiasUnit(preLayerValues[l]);
+			int rowOffset = l == layout.getCount() - 1 ? 0 : 1;
+			activations[l].apply(preLayerValues[l], layerValues[l + 1],
+					rowOffset, fastActivation);
+		}
+	}
 
-			layerValues[l + 1] = MatrixTools.matrixSigmoid(withBias);
+	/**
+	 * @return The network's weights rounded to single precision. The copy is
+	 *         made again whenever the network's weights are replaced (as
+	 *         training does), but not when the array returned by
+	 *         {@link #getWeights()} is changed in place.
+	 */
+	synchronized float[] getFloatWeights() {
+		if (floatWeightsSource != weights.getData()) {
+			floatWeights = weights.toFloatArray(null);
+			floatWeightsSource = weights.getData();
 		}
 
-		return new ForwardPropagationResult(preLayerValues, layerValues);
+		return floatWeights;
+	}
+
+	/**
+	 * Create a workspace which can be used to feed `batchSize` examples at a
+	 * time forward through this network without allocating.
+	 */
+	public ForwardPropagationWorkspace createWorkspace(int batchSize) {
+		return new ForwardPropagationWorkspace(rowDimensions, columnDimensions,
+				activations, batchSize);
+	}
+
+	FloatForwardPropagationWorkspace createFloatWorkspace(int batchSize) {
+		return new FloatForwardPropagationWorkspace(rowDimensions,
+				columnDimensions, activations, batchSize);
 	}
 
 	/**
@@ -365,16 +795,15 @@ public class NeuralNetwork {
 	 * column represents an individual example.
 	 */
 	static DoubleMatrix addBiasUnit(DoubleMatrix a) {
-		DoubleMatrix ret = new DoubleMatrix(a.getRows() + 1, a.getColumns());
+		int rows = a.getRows();
+		DoubleMatrix ret = new DoubleMatrix(rows + 1, a.getColumns());
 
-		// Initialize the bias unit (first row)
 		for (int j = 0; j < ret.getColumns(); j++) {
-			ret.put(0, j, 1);
-		}
-
-		// Place the original layer data below this first row
-		for (int i = 0; i < a.getRows(); i++) {
-			ret.putRow(i + 1, a.getRow(i));
+			// Initialize the bias unit (first row), then place the original
+			// column data below it
+			ret.data[j * (rows + 1)] = 1;
+			System.arraycopy(a.data, j * rows, ret.data, j * (rows + 1) + 1,
+					rows);
 		}
 
 		return ret;
@@ -427,57 +856,124 @@ public class NeuralNetwork {
 	 * Reshape the flat parameter list required by the optimization method into
 	 * the multiple separate matrices that it represents (i.e., Theta1, Theta2,
 	 * and so on unrolled and then concatenated).
+	 * 
+	 * Training code works on {@link Weights} views of the point instead, which
+	 * don't copy it.
 	 */
 	static DoubleMatrix[] convertPointToWeightMatrices(DoubleVector point,
 			int[] rowDimensions, int[] columnDimensions) {
-		assert rowDimensions.length == columnDimensions.length;
+		return new Weights(rowDimensions, columnDimensions, point.toArray())
+				.toMatrices();
+	}
 
-		double[] params = point.toArray();
+	/**
+	 * Convert weight matrices into a single "point" for use with the
+	 * optimization algorithm.
+	 * 
+	 * Unroll and concatenate any number of weight matrices into one long
+	 * vector.
+	 */
+	static DoubleVector convertWeightMatricesToPoint(DoubleMatrix[] weights) {
+		return Weights.copyOf(weights).asPoint();
+	}
 
-		DoubleMatrix[] ret = new DoubleMatrix[rowDimensions.length];
-		int cursor = 0;
+	/**
+	 * @param parallelism
+	 *            The number of threads (and example shards) used to evaluate
+	 *            the cost function during training. Results are reproducible
+	 *            for a fixed value.
+	 */
+	public void setTrainingParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new RuntimeException("Parallelism must be at least 1");
+		}
 
-		for (int l = 0; l < ret.length; l++) {
-			int ThetaLength = rowDimensions[l] * columnDimensions[l];
-			double[] ThetaUnrolled = Arrays.copyOfRange(params, cursor, cursor
-					+ ThetaLength);
-			ret[l] = MatrixTools.reshape(ThetaUnrolled, rowDimensions[l],
-					columnDimensions[l]);
+		trainingParallelism = parallelism;
+	}
 
-			cursor += ThetaLength;
+	/**
+	 * Choose the activation function of a layer. Every layer uses the sigmoid
+	 * function unless told otherwise.
+	 * 
+	 * Workspaces already created for this network keep the bias values of
+	 * the previous activations, so activations should be chosen before
+	 * training.
+	 * 
+	 * @param layer
+	 *            Zero-based layer index. The input layer has no activation.
+	 * @param activation
+	 *            The activation. The output layer requires an
+	 *            {@link OutputActivation}, and {@link Softmax} can only be used
+	 *            for the output layer.
+	 */
+	public void setActivation(int layer, Activation activation) {
+		if (layer < 1 || layer > activations.length) {
+			throw new RuntimeException("Layer " + layer
+					+ " does not have an activation function");
 		}
 
-		return ret;
+		if (layer == activations.length) {
+			if (!(activation instanceof OutputActivation)) {
+				throw new RuntimeException(
+						"The output layer requires an output activation");
+			}
+		} else if (activation instanceof Softmax) {
+			throw new RuntimeException(
+					"Softmax can only be used for the output layer");
+		}
+
+		activations[layer - 1] = activation;
 	}
 
 	/**
-	 * Convert weight matrices into a single "point" for use with the
-	 * optimization algorithm.
-	 * 
-	 * Unroll and concatenate the two weight matrices into one long vector.
+	 * Use the given activation for every hidden layer and the given output
+	 * activation for the output layer.
 	 */
-	static DoubleVector convertWeightMatricesToPoint(DoubleMatrix[] weights) {
-		DoubleMatrix Theta1 = weights[0];
-		DoubleMatrix Theta2 = weights[1];
+	public void setActivations(Activation hidden, OutputActivation output) {
+		for (int l = 1; l < activations.length; l++) {
+			setActivation(l, hidden);
+		}
+		setActivation(activations.length, output);
+	}
 
-		// Unroll the matrices.
-		double[] Theta1Unrolled = Theta1.toArray();
-		double[] Theta2Unrolled = Theta2.toArray();
-		double[] weightVector = concatenateArrays(Theta1Unrolled,
-				Theta2Unrolled);
+	/**
+	 * @param layer
+	 *            Zero-based layer index, excluding the input layer
+	 */
+	public Activation getActivation(int layer) {
+		return activations[layer - 1];
+	}
 
-		return new DenseDoubleVector(weightVector);
+	public OutputActivation getOutputActivation() {
+		return (OutputActivation) activations[activations.length - 1];
 	}
 
-	private static double[] concatenateArrays(double[] a1, double[] a2) {
-		double[] result = new double[a1.length + a2.length];
-		System.arraycopy(a1, 0, result, 0, a1.length);
-		System.arraycopy(a2, 0, result, a1.length, a2.length);
+	public Precision getPrecision() {
+		return precision;
+	}
 
-		return result;
+	/**
+	 * @param fastActivation
+	 *            Whether to evaluate the sigmoid activation with a fast
+	 *            approximation of the exponential (relative error below
+	 *            $10^{-8}$) rather than `Math.exp`
+	 */
+	public void setFastActivation(boolean fastActivation) {
+		this.fastActivation = fastActivation;
 	}
 
+	/**
+	 * @return Copies of the weight matrices. Changing them doesn't change the
+	 *         network.
+	 */
 	public DoubleMatrix[] getThetas() {
-		return Thetas;
+		return weights.toMatrices();
+	}
+
+	/**
+	 * @return The network's weights, backed by the array it predicts with
+	 */
+	public Weights getWeights() {
+		return weights;
 	}
 }
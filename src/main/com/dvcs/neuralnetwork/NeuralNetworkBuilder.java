@@ -1,9 +1,12 @@
 package com.dvcs.neuralnetwork;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Random;
 
-import org.jblas.DoubleMatrix;
+import com.dvcs.neuralnetwork.activation.Activation;
+import com.dvcs.neuralnetwork.activation.OutputActivation;
+import com.dvcs.neuralnetwork.activation.Sigmoid;
+
+import de.jungblut.math.minimize.Fmincg;
 
 /**
  * Training data for a neural network may not arrive all at once. This class
@@ -14,14 +17,23 @@ import org.jblas.DoubleMatrix;
  * from the first example provided if not explicitly specified in the
  * constructor. Hidden layer unit dimensions are specified only once a neural
  * network is about to be built.
+ * 
+ * Examples are kept in an {@link ExampleStore}. By default this is a
+ * {@link MemoryExampleStore}; a {@link MappedExampleStore} lets the builder
+ * collect more examples than fit on the heap.
  */
 public class NeuralNetworkBuilder {
 
-	protected List<Example> examples;
+	protected ExampleStore examples;
 
 	int inputLayerSize;
 	int outputLayerSize;
 
+	Activation hiddenActivation = new Sigmoid();
+	OutputActivation outputActivation = new Sigmoid();
+
+	Precision precision = Precision.DOUBLE;
+
 	public NeuralNetworkBuilder() {
 		// No network dimensions were specified. They will be inferred when the
 		// first example is added.
@@ -29,7 +41,20 @@ public class NeuralNetworkBuilder {
 	}
 
 	public NeuralNetworkBuilder(int inputLayerSize, int outputLayerSize) {
-		this.examples = new ArrayList<Example>();
+		this(new MemoryExampleStore(), inputLayerSize, outputLayerSize);
+	}
+
+	/**
+	 * Collect examples in the given store. Network dimensions are taken from
+	 * the store if it already knows them.
+	 */
+	public NeuralNetworkBuilder(ExampleStore examples) {
+		this(examples, examples.getInputSize(), examples.getOutputSize());
+	}
+
+	private NeuralNetworkBuilder(ExampleStore examples, int inputLayerSize,
+			int outputLayerSize) {
+		this.examples = examples;
 		this.inputLayerSize = inputLayerSize;
 		this.outputLayerSize = outputLayerSize;
 	}
@@ -54,6 +79,26 @@ public class NeuralNetworkBuilder {
 		examples.add(example);
 	}
 
+	/**
+	 * Choose the activation functions of the networks to be built. Both
+	 * default to the sigmoid function.
+	 */
+	public void setActivations(Activation hidden, OutputActivation output) {
+		hiddenActivation = hidden;
+		outputActivation = output;
+	}
+
+	/**
+	 * Choose the precision in which the networks to be built compute their
+	 * layers. Defaults to double precision. Single-precision networks train
+	 * best on a store which keeps its examples as floats, such as a
+	 * {@link MemoryExampleStore} or {@link MappedExampleStore} of
+	 * {@link Precision#FLOAT} precision.
+	 */
+	public void setPrecision(Precision precision) {
+		this.precision = precision;
+	}
+
 	/**
 	 * Build a neural network using the present data.
 	 * 
@@ -76,18 +121,36 @@ public class NeuralNetworkBuilder {
 		System.arraycopy(hiddenLayerSizes, 0, layerSizes, 1,
 				hiddenLayerSizes.length);
 
-		NeuralNetwork ret = new NeuralNetwork(layerSizes);
+		NeuralNetwork ret = new NeuralNetwork(layerSizes, precision);
+		ret.setActivations(hiddenActivation, outputActivation);
 
-		DoubleMatrix x = new DoubleMatrix(examples.size(), inputLayerSize);
-		DoubleMatrix y = new DoubleMatrix(outputLayerSize, examples.size());
+		ret.train(examples, lambda, new Fmincg(),
+				NeuralNetwork.DEFAULT_TRAINING_ITERATIONS, null, false);
+		return ret;
+	}
 
-		for ( int i = 0; i < examples.size(); i++ ) {
-			Example ex = examples.get(i);
-			x.putRow(i, new DoubleMatrix(ex.getX()));
-			y.putColumn(i, new DoubleMatrix(ex.getY()));
-		}
+	/**
+	 * Prepare a search for the hidden layer sizes and regularization
+	 * parameter to build networks with, holding out a random part of the
+	 * present examples to score the candidates on. The search trains with this
+	 * builder's activations and precision. Examples added later are not part
+	 * of the search.
+	 * 
+	 * @param holdOutFraction
+	 *            The part of the examples held out, between 0 and 1
+	 */
+	public HyperparameterSearch createSearch(float holdOutFraction,
+			Random random) throws InsufficientDataException {
+		if ( !hasSufficientData() )
+			throw new InsufficientDataException();
+
+		ExampleSubset[] split = ExampleSubset.split(examples, holdOutFraction,
+				random);
+
+		HyperparameterSearch ret = new HyperparameterSearch(split[1], split[0]);
+		ret.setActivations(hiddenActivation, outputActivation);
+		ret.setPrecision(precision);
 
-		ret.train(x, y, lambda, null, false);
 		return ret;
 	}
 
@@ -1,29 +1,95 @@
 package com.dvcs.neuralnetwork;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import org.jblas.DoubleMatrix;
-import org.jblas.MatrixFunctions;
+import org.jblas.FloatMatrix;
 
 import com.dvcs.neuralnetwork.NeuralNetwork.ForwardPropagationResult;
-import com.dvcs.tools.MatrixTools;
 
 import de.jungblut.math.DoubleVector;
-import de.jungblut.math.minimize.CostFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.BatchCostFunction;
 import de.jungblut.math.tuple.Tuple;
 
-public class NeuralNetworkCostFunction implements CostFunction {
+/**
+ * Cost function of a neural network over a fixed set of examples.
+ *
+ * Both the fitting cost and the error gradient are sums over examples. The
+ * examples can therefore be split into a fixed number of shards of
+ * consecutive examples, evaluated in parallel, and then reduced. Shards are
+ * always reduced in the same order, so for a given number of shards every
+ * evaluation of the same point produces bit-identical results.
+ *
+ * Each shard streams its examples from an {@link ExampleStore} in blocks of
+ * a fixed number of examples, reading them straight into the input layer of
+ * a preallocated workspace. The examples never have to be held as a single
+ * matrix.
+ *
+ * The cost function can also be evaluated on mini-batches of examples, in
+ * which case the batch is evaluated on the calling thread.
+ *
+ * Networks of {@link Precision#FLOAT} precision are evaluated in single
+ * precision: each point is rounded once per evaluation, examples are read
+ * as floats and layers are computed with single-precision BLAS. The error
+ * gradient of each block of examples is summed into a double-precision
+ * accumulator, and the cost, regularization and returned gradient are
+ * computed in double precision, so minimizers see the same kind of results
+ * as for double-precision networks.
+ */
+public class NeuralNetworkCostFunction implements BatchCostFunction {
+
+	/**
+	 * The default maximum number of examples fed forward at once.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1024;
 
 	private NeuralNetwork nn;
-	private DoubleMatrix x;
-	private DoubleMatrix y;
+	private ExampleStore examples;
 	private double lambda;
 
 	/**
-	 * These weight matrices will begin with the same value as assigned in the
-	 * provided neural network. They will be optimized and repeatedly fed back
-	 * to the network (while the network's actual weights remain unmodified
-	 * during the optimization process).
+	 * The number of examples, fixed when the cost function is created.
+	 */
+	private int m;
+
+	private int blockSize;
+
+	/**
+	 * The network's weights, used only for their layout: each point is
+	 * wrapped in this layout without being copied.
 	 */
-	private DoubleMatrix[] Thetas;
+	private Weights layout;
+
+	/**
+	 * Disjoint ranges of examples, evaluated independently of each other.
+	 */
+	private Shard[] shards;
+
+	/**
+	 * Pool which evaluates the shards. Null if there is only one shard, in
+	 * which case it is evaluated on the calling thread.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * Buffers for mini-batch evaluation, by batch size. Typically there are
+	 * at most two: the regular batch size and the size of the last batch of
+	 * an epoch.
+	 */
+	private Map<Integer, Block> batchBlocks = new HashMap<Integer, Block>();
+
+	private Weights batchDeltas;
+
+	/**
+	 * The point being evaluated, rounded to single precision. Only used for
+	 * networks of {@link Precision#FLOAT} precision.
+	 */
+	private float[] floatThetas;
 
 	/**
 	 * @param x
@@ -39,14 +105,83 @@ public class NeuralNetworkCostFunction implements CostFunction {
 	 */
 	public NeuralNetworkCostFunction(NeuralNetwork nn, DoubleMatrix x,
 			DoubleMatrix y, double lambda) {
+		this(nn, x, y, lambda, 1);
+	}
+
+	/**
+	 * @param x
+	 *            Matrix of examples (where each row represents an example and
+	 *            each column represents a unit)
+	 * @param y
+	 *            Optimal output unit values (where each row is a unit and each
+	 *            column is an example)
+	 * @param lambda
+	 *            Regularization parameter
+	 * @param parallelism
+	 *            The number of shards the examples are split into, and the
+	 *            number of threads which evaluate them. The result of an
+	 *            evaluation depends only on this number, not on thread
+	 *            scheduling.
+	 */
+	public NeuralNetworkCostFunction(NeuralNetwork nn, DoubleMatrix x,
+			DoubleMatrix y, double lambda, int parallelism) {
+		this(nn, new MatrixExampleStore(x, y), lambda, parallelism,
+				DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param examples
+	 *            The examples to evaluate the network on. Examples added to
+	 *            the store after this cost function is created are ignored.
+	 * @param lambda
+	 *            Regularization parameter
+	 * @param parallelism
+	 *            The number of shards the examples are split into, and the
+	 *            number of threads which evaluate them
+	 * @param blockSize
+	 *            The maximum number of examples fed forward at once by each
+	 *            shard. This bounds the memory used for layer values.
+	 */
+	public NeuralNetworkCostFunction(NeuralNetwork nn, ExampleStore examples,
+			double lambda, int parallelism, int blockSize) {
+		if (parallelism < 1) {
+			throw new RuntimeException("Parallelism must be at least 1");
+		}
+		if (blockSize < 1) {
+			throw new RuntimeException("Block size must be at least 1");
+		}
+
 		this.nn = nn;
-		this.x = x;
-		this.y = y;
+		this.examples = examples;
 		this.lambda = lambda;
+		this.blockSize = blockSize;
+
+		m = examples.size();
+		if (m == 0) {
+			throw new IllegalArgumentException(
+					"The cost function needs at least one example");
+		}
+
+		layout = nn.getWeights();
+
+		int shardCount = Math.max(1, Math.min(parallelism, m));
 
-		Thetas = new DoubleMatrix[nn.Thetas.length];
-		for (int i = 0; i < Thetas.length; i++) {
-			Thetas[i] = MatrixTools.copy(nn.Thetas[i]);
+		shards = new Shard[shardCount];
+		for (int s = 0; s < shardCount; s++) {
+			int from = (int) ((long) m * s / shardCount);
+			int to = (int) ((long) m * (s + 1) / shardCount);
+
+			shards[s] = new Shard(from, to);
+		}
+
+		if (shardCount > 1) {
+			pool = new ForkJoinPool(shardCount);
+		}
+
+		batchDeltas = new Weights(nn.rowDimensions, nn.columnDimensions);
+
+		if (nn.getPrecision() == Precision.FLOAT) {
+			floatThetas = new float[layout.size()];
 		}
 	}
 
@@ -55,49 +190,156 @@ public class NeuralNetworkCostFunction implements CostFunction {
 	 */
 	@Override
 	public Tuple<Double, DoubleVector> evaluateCost(DoubleVector point) {
-		DoubleMatrix[] Thetas = nn.convertPointToWeightMatrices(point);
+		final Weights Thetas = layout.wrap(point);
+		if (floatThetas != null) {
+			Thetas.toFloatArray(floatThetas);
+		}
 
-		ForwardPropagationResult fResult = nn.feedForward(x, Thetas);
-		DoubleMatrix[] errorDeltas = nn.backpropagate(fResult, y, Thetas);
-		DoubleMatrix[] regularizationDeltas = buildRegularizationDeltas(Thetas);
+		if (pool == null) {
+			shards[0].evaluate(Thetas);
+		} else {
+			pool.invoke(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					RecursiveAction[] tasks = new RecursiveAction[shards.length];
+
+					for (int s = 0; s < shards.length; s++) {
+						final Shard shard = shards[s];
+						tasks[s] = new RecursiveAction() {
+							@Override
+							protected void compute() {
+								shard.evaluate(Thetas);
+							}
+						};
+					}
+
+					invokeAll(tasks);
+				}
+			});
+		}
 
-		int m = x.getRows();
+		// Reduce in shard order so that the result doesn't depend on which
+		// shard finished first.
+		Weights[] errorDeltas = new Weights[shards.length];
+		double fittingCost = 0;
 
-		DoubleMatrix[] gradMatrices = new DoubleMatrix[Thetas.length];
-		for (int i = 0; i < Thetas.length; i++) {
-			gradMatrices[i] = errorDeltas[i].add(
-					regularizationDeltas[i].mul(lambda)).mul(1.0 / m);
+		for (int s = 0; s < shards.length; s++) {
+			errorDeltas[s] = shards[s].Deltas;
+			fittingCost += shards[s].fittingCost;
 		}
 
-		DoubleVector gradVector = nn.convertWeightMatricesToPoint(gradMatrices);
+		return buildResult(Thetas, errorDeltas, fittingCost, m, m);
+	}
 
-		// Evaluate cost
-		double cost = this.getCost(x, Thetas, fResult.getOutputLayer(), y, lambda);
+	@Override
+	public int getNumExamples() {
+		return m;
+	}
+
+	/**
+	 * Compute the cost and gradient for predicting with the given weights,
+	 * averaged over the selected examples only.
+	 *
+	 * The fitting cost is averaged over the batch, but the regularization is
+	 * scaled by the size of the whole training set, as in
+	 * {@link #evaluateCost}. Averaged over the batches of a partition of the
+	 * examples, batch costs and gradients thus equal the full ones, and
+	 * lambda means the same for stochastic minimizers as for Fmincg.
+	 */
+	@Override
+	public Tuple<Double, DoubleVector> evaluateBatchCost(DoubleVector point,
+			int[] examples, int offset, int length) {
+		Weights Thetas = layout.wrap(point);
+		if (floatThetas != null) {
+			Thetas.toFloatArray(floatThetas);
+		}
+
+		Block batch = batchBlocks.get(length);
+		if (batch == null) {
+			batch = new Block(length);
+			batchBlocks.put(length, batch);
+		}
+
+		batch.gather(examples, offset);
+
+		Arrays.fill(batchDeltas.getData(), 0);
+		double fittingCost = batch.evaluate(Thetas, batchDeltas);
 
-		return new Tuple<Double, DoubleVector>(cost, gradVector);
+		return buildResult(Thetas, new Weights[] { batchDeltas },
+				fittingCost, length, m);
 	}
 
-	private DoubleMatrix[] buildRegularizationDeltas(DoubleMatrix[] Thetas) {
-		DoubleMatrix[] Deltas = new DoubleMatrix[Thetas.length];
+	/**
+	 * Sum partial error gradients, average them and the fitting cost over the
+	 * examples they were computed on, and add regularization.
+	 *
+	 * The gradient is built in a fresh array in a single pass over the
+	 * parameters, since minimizers may hold on to the gradients they receive.
+	 *
+	 * @param errorDeltas
+	 *            Partial error gradients, summed in the given order
+	 * @param fittingExamples
+	 *            The number of examples the fitting cost and error gradients
+	 *            were summed over
+	 * @param regularizationExamples
+	 *            The number of examples the regularization is divided by,
+	 *            i.e. the size of the training set
+	 */
+	private Tuple<Double, DoubleVector> buildResult(Weights Thetas,
+			Weights[] errorDeltas, double fittingCost, int fittingExamples,
+			int regularizationExamples) {
+		double[] theta = Thetas.getData();
+		double[] gradient = errorDeltas[0].getData().clone();
+
+		for (int s = 1; s < errorDeltas.length; s++) {
+			double[] partial = errorDeltas[s].getData();
+			for (int i = 0; i < gradient.length; i++) {
+				gradient[i] += partial[i];
+			}
+		}
+
+		double scale = 1.0 / fittingExamples;
+		double regularization = lambda / regularizationExamples;
+		double regularizationCost = 0;
+
+		for (int l = 0; l < Thetas.getCount(); l++) {
+			int from = Thetas.getOffset(l);
+			int bias = from + Thetas.getRows(l);
+			int to = from + Thetas.getRows(l) * Thetas.getColumns(l);
 
-		for (int t = 0; t < Thetas.length; t++) {
 			// Ignore bias weights
-			DoubleMatrix Delta = MatrixTools.copy(Thetas[t]);
-			
-			for (int i = 0; i < Delta.getRows(); i++) {
-				Delta.put(i, 0, 0);
+			for (int i = from; i < bias; i++) {
+				gradient[i] *= scale;
+			}
+
+			for (int i = bias; i < to; i++) {
+				gradient[i] = gradient[i] * scale + regularization * theta[i];
+				regularizationCost += theta[i] * theta[i];
 			}
-			
-			Deltas[t] = Delta;
 		}
 
-		return Deltas;
+		// Evaluate cost
+		double cost = fittingCost * scale + regularization / 2
+				* regularizationCost;
+
+		return new Tuple<Double, DoubleVector>(cost, new DenseDoubleVector(
+				gradient));
+	}
+
+	/**
+	 * Stop the threads used to evaluate shards in parallel. The cost function
+	 * must not be evaluated afterwards.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
 	}
 
 	/**
 	 * Determine the cost of a prediction given the actual (i.e., expected)
 	 * output values.
-	 * 
+	 *
 	 * @param x
 	 *            Matrix of examples (where each row represents an example and
 	 *            each column represents a unit)
@@ -113,86 +355,193 @@ public class NeuralNetworkCostFunction implements CostFunction {
 	 */
 	public double getCost(DoubleMatrix x, DoubleMatrix[] Thetas,
 			DoubleMatrix outputLayer, DoubleMatrix y, double lambda) {
+		int m = x.getRows();
+
+		double fittingCost = nn.getOutputActivation().getFittingCost(
+				outputLayer, y);
+		double regularizationCost = getRegularizationCost(Thetas);
+
+		double totalCost = (fittingCost + lambda / 2 * regularizationCost) / m;
+		return totalCost;
+	}
+
+	/**
+	 * Determine the sum of the squares of all weights, ignoring the first
+	 * column of each weight matrix (which corresponds to the weights for the
+	 * bias unit).
+	 */
+	static double getRegularizationCost(DoubleMatrix[] Thetas) {
+		double regularizationCost = 0;
+
+		for (int t = 0; t < Thetas.length; t++) {
+			double[] data = Thetas[t].data;
+
+			for (int i = Thetas[t].getRows(); i < data.length; i++) {
+				regularizationCost += data[i] * data[i];
+			}
+		}
+
+		return regularizationCost;
+	}
+
+	/**
+	 * Workspace and output buffer for feeding a fixed number of examples
+	 * forward and back through the network, in the network's precision.
+	 */
+	private class Block {
+		private int size;
+
+		private ForwardPropagationWorkspace workspace;
+		private DoubleMatrix y;
+
+		private FloatForwardPropagationWorkspace floatWorkspace;
+		private FloatMatrix floatY;
+
 		/**
-		 * Cost function: fitting
+		 * The error gradient of the block's examples alone, before it is
+		 * added to a double-precision accumulator.
 		 */
+		private float[] floatDeltas;
+
+		Block(int size) {
+			this.size = size;
+
+			if (floatThetas == null) {
+				workspace = nn.createWorkspace(size);
+				y = new DoubleMatrix(examples.getOutputSize(), size);
+			} else {
+				floatWorkspace = nn.createFloatWorkspace(size);
+				floatY = new FloatMatrix(examples.getOutputSize(), size);
+				floatDeltas = new float[layout.size()];
+			}
+		}
 
-		int m = x.getRows();
-		double fittingCost = 0;
-
-		for (int i = 0; i < m; i++) {
-			// Fetch a $y^{(i)}$ column vector for this example
-			DoubleMatrix yi = y.getColumn(i);
+		/**
+		 * Read consecutive examples, starting at the given one, directly into
+		 * the input layer (below its bias row) and the output matrix.
+		 */
+		void load(int from) {
+			for (int b = 0; b < size; b++) {
+				read(from + b, b);
+			}
+		}
 
-			// Fetch the column vector $h^{(i)}$ from the output layer. Each row
-			// of this vector represents a given class's output.
-			DoubleMatrix hi = outputLayer.getColumn(i);
+		/**
+		 * Read the selected examples into the input layer and the output
+		 * matrix.
+		 */
+		void gather(int[] indices, int offset) {
+			for (int b = 0; b < size; b++) {
+				read(indices[offset + b], b);
+			}
+		}
 
-			double exampleCost = getClassificationCost(hi, yi);
-			fittingCost += exampleCost;
+		/**
+		 * Read an example into column `b` of the input layer and the output
+		 * matrix.
+		 */
+		private void read(int index, int b) {
+			int k = examples.getOutputSize();
+
+			if (workspace != null) {
+				DoubleMatrix inputs = workspace.getInputLayer();
+				examples.readExample(index, inputs.data, b * inputs.getRows()
+						+ 1, y.data, b * k);
+			} else {
+				FloatMatrix inputs = floatWorkspace.getInputLayer();
+				examples.readExample(index, inputs.data, b * inputs.getRows()
+						+ 1, floatY.data, b * k);
+			}
 		}
 
 		/**
-		 * Cost function: regularization
-		 * 
-		 * Ignore the first column of the weight matrices, which corresponds to
-		 * the weights for the bias unit.
+		 * Feed the loaded examples forward, add their error gradient to
+		 * `Deltas` and return their summed fitting cost.
 		 */
+		double evaluate(Weights Thetas, Weights Deltas) {
+			if (workspace == null) {
+				return evaluateFloat(Deltas);
+			}
 
-		double regularizationCost = 0;
-		for (int i = 0; i < Thetas.length; i++) {
-			// Ignore the first column of the weight matrix, which corresponds
-			// to the weights for the bias unit.
-			DoubleMatrix ThetaShaved = Thetas[i].getRange(0, Thetas[i].getRows(), 1, Thetas[i].getColumns());
-			
-			regularizationCost += MatrixTools.matrixSum(ThetaShaved.mul(ThetaShaved));
+			ForwardPropagationResult fResult = nn.feedForward(Thetas,
+					workspace);
+			nn.backpropagate(fResult, y, Thetas, Deltas);
+
+			return nn.getOutputActivation().getFittingCost(
+					fResult.getOutputLayer(), y);
 		}
 
-		double totalCost = (fittingCost + lambda / 2 * regularizationCost) / m;
-		return totalCost;
+		/**
+		 * Evaluate the loaded examples in single precision, with the weights
+		 * last rounded into `floatThetas`.
+		 */
+		private double evaluateFloat(Weights Deltas) {
+			nn.feedForward(layout, floatThetas, floatWorkspace);
+			nn.backpropagate(floatWorkspace, floatY, layout, floatThetas,
+					floatDeltas);
+
+			double[] sum = Deltas.getData();
+			for (int i = 0; i < sum.length; i++) {
+				sum[i] += floatDeltas[i];
+			}
+
+			return nn.getOutputActivation().getFittingCost(
+					floatWorkspace.getOutputLayer(), floatY);
+		}
 	}
 
 	/**
-	 * Determine the cost of classification for a single example using this
-	 * network.
-	 * 
-	 * @param h
-	 *            A column vector of prediction values where each row represents
-	 *            an output unit
-	 * @param y
-	 *            A column vector of actual output values (with the same number
-	 *            of components as `h`)
-	 * @return A column vector where each row represents the classification cost
-	 *         given the error for the corresponding unit
+	 * A fixed range of examples along with everything needed to evaluate it
+	 * independently of the other shards.
 	 */
-	private static double getClassificationCost(DoubleMatrix h, DoubleMatrix y) {
+	private class Shard {
+		private int from;
+		private int to;
+
 		/**
-		 * The classification cost formula assumes that `y` is a column of the
-		 * identity matrix: that is, one of its rows has a 1 and the rest have
-		 * 0.
-		 * 
-		 * The formula has two parts: the first which accounts for positive
-		 * examples (i.e., where a `y` cell value is 1) and negative examples
-		 * (i.e., where a `y` cell value is 0).
+		 * Block for all but the last examples of the shard, and for the
+		 * remaining examples if there are fewer than a full block of them.
 		 */
+		private Block full;
+		private Block remainder;
 
 		/**
-		 * The positive part accounts for positive examples (where the `y` cell
-		 * is 1). Any units where `y` is 0 have a zero value in the positive
-		 * part.
+		 * Error gradient summed over this shard's examples.
 		 */
-		DoubleMatrix positivePart = y.mul(MatrixFunctions.log(h));
+		private Weights Deltas;
 
 		/**
-		 * In the negative part, any units where `y` is 1 (i.e., where the unit
-		 * is positive) are nulled out.
+		 * Fitting cost summed over this shard's examples.
 		 */
-		DoubleMatrix negativePart = y.mul(-1).add(1)
-				.mul(MatrixFunctions.log(h.mul(-1).add(1)));
+		private double fittingCost;
 
-		DoubleMatrix costPerClass = positivePart.add(negativePart).mul(-1);
+		Shard(int from, int to) {
+			this.from = from;
+			this.to = to;
 
-		return costPerClass.sum();
+			int size = Math.min(blockSize, to - from);
+			full = new Block(size);
+
+			int rest = (to - from) % size;
+			if (rest != 0) {
+				remainder = new Block(rest);
+			}
+
+			Deltas = new Weights(nn.rowDimensions, nn.columnDimensions);
+		}
+
+		void evaluate(Weights Thetas) {
+			Arrays.fill(Deltas.getData(), 0);
+			fittingCost = 0;
+
+			int size = full.size;
+			for (int start = from; start < to; start += size) {
+				Block block = to - start >= size ? full : remainder;
+
+				block.load(start);
+				fittingCost += block.evaluate(Thetas, Deltas);
+			}
+		}
 	}
 
 }
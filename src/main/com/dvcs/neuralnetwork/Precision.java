@@ -0,0 +1,37 @@
+package com.dvcs.neuralnetwork;
+
+/**
+ * The floating-point type in which a network computes its layers, or in
+ * which an example store keeps its values.
+ *
+ * Single precision halves the memory traffic of the layer matrices and lets
+ * BLAS and the activation loops process twice as many values per
+ * instruction, at the cost of about seven significant digits. Optimizers
+ * always work on double-precision parameters and gradients.
+ */
+public enum Precision {
+	FLOAT(4), DOUBLE(8);
+
+	/**
+	 * The size of a single value, in bytes.
+	 */
+	final int bytes;
+
+	Precision(int bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * @return The precision whose values have the given size, or null if
+	 *         there is none
+	 */
+	static Precision forBytes(int bytes) {
+		for (Precision precision : values()) {
+			if (precision.bytes == bytes) {
+				return precision;
+			}
+		}
+
+		return null;
+	}
+}
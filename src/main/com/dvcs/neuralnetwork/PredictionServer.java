@@ -0,0 +1,289 @@
+package com.dvcs.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Feeds frames forward in micro-batches on a thread of its own.
+ *
+ * Producers {@link #submit} frames, which queue up until the server's thread
+ * takes them. It collects frames into a batch until either the batch is full
+ * or the oldest frame in it has waited for half the latency limit, encodes
+ * them into one input matrix, makes a single batched forward pass and then
+ * hands each frame's output to the frame's callback.
+ *
+ * Larger batches raise throughput, but also the time each frame waits for
+ * the rest of its batch and for the pass. The server therefore adapts the
+ * batch size it collects: whenever collecting and predicting a batch takes
+ * longer than the latency limit the size is halved, and while it takes less
+ * than half the limit it grows again, up to the engine's maximum batch size.
+ * Time frames spend queued before their batch starts is not held against
+ * the batch size, since under load larger batches are what drains the
+ * queue.
+ *
+ * @param <T>
+ *            The type of frames
+ */
+public class PredictionServer<T> {
+
+	private static final Logger LOGGER = Logger.getLogger("PredictionServer");
+
+	/**
+	 * The number of recent latencies from which percentiles are computed.
+	 */
+	static final int LATENCY_WINDOW = 4096;
+
+	/**
+	 * Writes a frame's input units into a batch.
+	 */
+	public interface Encoder<T> {
+		public void encode(T frame, double[] target, int offset);
+	}
+
+	/**
+	 * Receives the prediction for a single frame, on the server's thread.
+	 */
+	public interface Callback<T> {
+		/**
+		 * @param output
+		 *            The output units, in an array of the frame's own
+		 * @param latency
+		 *            Nanoseconds from the frame's submission to this call
+		 */
+		public void predicted(T frame, double[] output, int predictedClass,
+				long latency);
+	}
+
+	private static class Request<T> {
+		final T frame;
+		final Callback<T> callback;
+		final long submitted;
+
+		Request(T frame, Callback<T> callback) {
+			this.frame = frame;
+			this.callback = callback;
+			this.submitted = System.nanoTime();
+		}
+	}
+
+	private final InferenceEngine engine;
+	private final Encoder<T> encoder;
+	private final long latencyLimit;
+	private final BlockingQueue<Request<T>> queue;
+
+	private final double[] inputs;
+	private final List<Request<T>> batch;
+	private long batchStarted;
+	private volatile int batchSize;
+
+	private final LatencyStatistics latencies = new LatencyStatistics(
+			LATENCY_WINDOW);
+	private long batchCount;
+
+	private volatile Thread thread;
+
+	/**
+	 * @param engine
+	 *            The engine to feed frames through. Its maximum batch size
+	 *            bounds the batches, and the server must be its only user.
+	 * @param queueCapacity
+	 *            The number of frames which may wait to be batched before
+	 *            further submissions are rejected
+	 * @param latencyLimit
+	 *            The time within which the server tries to deliver each
+	 *            frame's prediction
+	 */
+	public PredictionServer(InferenceEngine engine, Encoder<T> encoder,
+			int queueCapacity, long latencyLimit, TimeUnit unit) {
+		if (latencyLimit <= 0) {
+			throw new IllegalArgumentException(
+					"The latency limit must be positive");
+		}
+
+		this.engine = engine;
+		this.encoder = encoder;
+		this.latencyLimit = unit.toNanos(latencyLimit);
+		this.queue = new ArrayBlockingQueue<Request<T>>(queueCapacity);
+
+		inputs = new double[engine.getMaxBatchSize() * engine.getInputSize()];
+		batch = new ArrayList<Request<T>>(engine.getMaxBatchSize());
+		batchSize = engine.getMaxBatchSize();
+	}
+
+	public synchronized void start() {
+		if (thread != null) {
+			throw new IllegalStateException("The server is already running");
+		}
+
+		thread = new Thread(new Runnable() {
+			public void run() {
+				serve();
+			}
+		}, "PredictionServer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop the server's thread after its current batch and wait for it to
+	 * finish (unless called from a callback). Frames which are still queued
+	 * are dropped.
+	 */
+	public void shutdown() throws InterruptedException {
+		Thread running;
+		synchronized (this) {
+			running = thread;
+			thread = null;
+		}
+		if (running == null) {
+			return;
+		}
+
+		running.interrupt();
+		if (running != Thread.currentThread()) {
+			running.join();
+		}
+		queue.clear();
+	}
+
+	public boolean isRunning() {
+		return thread != null;
+	}
+
+	/**
+	 * Queue a frame for prediction.
+	 *
+	 * @return Whether the frame was accepted. It is not if the queue is full,
+	 *         i.e. if frames arrive faster than they can be predicted.
+	 */
+	public boolean submit(T frame, Callback<T> callback) {
+		return queue.offer(new Request<T>(frame, callback));
+	}
+
+	private void serve() {
+		Thread self = Thread.currentThread();
+
+		try {
+			while (!self.isInterrupted()) {
+				collectBatch();
+
+				try {
+					predictBatch();
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.SEVERE, "Dropped a batch of " + batch.size()
+							+ " frames", e);
+				}
+			}
+		} catch (InterruptedException e) {
+			// shut down
+		}
+	}
+
+	/**
+	 * Wait for a frame, then collect more until the batch is full or the
+	 * first frame has waited for half the latency limit.
+	 */
+	private void collectBatch() throws InterruptedException {
+		batch.clear();
+
+		Request<T> first = queue.take();
+		batch.add(first);
+		batchStarted = System.nanoTime();
+
+		long deadline = first.submitted + latencyLimit / 2;
+		int size = batchSize;
+
+		while (batch.size() < size) {
+			queue.drainTo(batch, size - batch.size());
+			if (batch.size() == size) {
+				break;
+			}
+
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				break;
+			}
+
+			Request<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null) {
+				break;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void predictBatch() {
+		int n = batch.size();
+		int inputSize = engine.getInputSize();
+		int k = engine.getOutputSize();
+
+		for (int j = 0; j < n; j++) {
+			encoder.encode(batch.get(j).frame, inputs, j * inputSize);
+		}
+
+		// A single frame takes the engine's faster single-example path
+		double[] outputs = n == 1 ? engine.compute(inputs) : engine.compute(
+				inputs, n);
+
+		for (int j = 0; j < n; j++) {
+			Request<T> request = batch.get(j);
+			double[] output = Arrays.copyOfRange(outputs, j * k, (j + 1) * k);
+			int predictedClass = InferenceEngine.argMax(output, 0, k);
+
+			long latency = System.nanoTime() - request.submitted;
+			latencies.record(latency);
+
+			try {
+				request.callback.predicted(request.frame, output,
+						predictedClass, latency);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Prediction callback failed", e);
+			}
+		}
+
+		synchronized (this) {
+			batchCount++;
+		}
+		adaptBatchSize(System.nanoTime() - batchStarted);
+	}
+
+	private void adaptBatchSize(long batchTime) {
+		if (batchTime > latencyLimit) {
+			batchSize = Math.max(1, batchSize / 2);
+		} else if (batchTime < latencyLimit / 2
+				&& batchSize < engine.getMaxBatchSize()) {
+			batchSize++;
+		}
+	}
+
+	/**
+	 * @return The given percentile (between 0 and 100) of the latencies of
+	 *         the most recent predictions, in nanoseconds, or 0 if nothing
+	 *         was predicted yet.
+	 */
+	public long getLatencyPercentile(double percentile) {
+		return latencies.getPercentile(percentile);
+	}
+
+	public long getPredictionCount() {
+		return latencies.getCount();
+	}
+
+	public synchronized long getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * @return The number of frames the server currently collects per batch.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+}
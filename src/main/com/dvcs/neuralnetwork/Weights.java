@@ -0,0 +1,208 @@
+package com.dvcs.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * The weight matrices $\Theta^{(i)}$ of a network, stored back to back in a
+ * single flat array. Each matrix is unrolled column-major (the layout jblas
+ * uses), so the array is exactly the "point" which the optimization methods
+ * work on, and converting between the two doesn't copy anything.
+ *
+ * Matrix $l$ starts at `getOffset(l)`, and its element $(i, j)$ lives at
+ * `getOffset(l) + j * getRows(l) + i`. Network code reads the matrices in
+ * place (see {@link com.dvcs.tools.MatrixTools#gemm}) rather than through
+ * {@link DoubleMatrix} objects.
+ *
+ * The same layout is used for error gradients, which can therefore be
+ * returned to the optimizer without being rolled into a vector.
+ */
+public class Weights {
+
+	private int[] rowDimensions;
+	private int[] columnDimensions;
+	private int[] offsets;
+
+	private double[] data;
+
+	/**
+	 * Create zeroed weights with the given layout.
+	 *
+	 * @param rowDimensions
+	 *            For an element $i$, the number of rows in the matrix
+	 *            $\Theta^{(i)}$
+	 * @param columnDimensions
+	 *            For an element $i$, the number of columns in the matrix
+	 *            $\Theta^{(i)}$
+	 */
+	public Weights(int[] rowDimensions, int[] columnDimensions) {
+		this(rowDimensions, columnDimensions, null);
+	}
+
+	/**
+	 * Wrap an existing flat parameter array. The array is used directly, not
+	 * copied.
+	 */
+	public Weights(int[] rowDimensions, int[] columnDimensions, double[] data) {
+		if (rowDimensions.length != columnDimensions.length) {
+			throw new RuntimeException(
+					"Row and column dimensions describe a different number of weight matrices");
+		}
+
+		this.rowDimensions = rowDimensions;
+		this.columnDimensions = columnDimensions;
+
+		offsets = new int[rowDimensions.length];
+		int size = 0;
+		for (int l = 0; l < offsets.length; l++) {
+			offsets[l] = size;
+			size += rowDimensions[l] * columnDimensions[l];
+		}
+
+		if (data == null) {
+			data = new double[size];
+		} else if (data.length != size) {
+			throw new RuntimeException("Parameter array has " + data.length
+					+ " elements but the weight matrices need " + size);
+		}
+
+		this.data = data;
+	}
+
+	/**
+	 * Wrap the array of another set of weights (for instance a gradient) in
+	 * the layout of this one.
+	 */
+	public Weights wrap(double[] data) {
+		return new Weights(rowDimensions, columnDimensions, data);
+	}
+
+	/**
+	 * Wrap an optimizer point in the layout of these weights. Dense points are
+	 * not copied.
+	 */
+	public Weights wrap(DoubleVector point) {
+		return wrap(point.toArray());
+	}
+
+	/**
+	 * Copy separate weight matrices into a single flat array.
+	 */
+	public static Weights copyOf(DoubleMatrix[] Thetas) {
+		int[] rowDimensions = new int[Thetas.length];
+		int[] columnDimensions = new int[Thetas.length];
+
+		for (int l = 0; l < Thetas.length; l++) {
+			rowDimensions[l] = Thetas[l].getRows();
+			columnDimensions[l] = Thetas[l].getColumns();
+		}
+
+		Weights ret = new Weights(rowDimensions, columnDimensions);
+		for (int l = 0; l < Thetas.length; l++) {
+			System.arraycopy(Thetas[l].data, 0, ret.data, ret.offsets[l],
+					Thetas[l].length);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return An independent copy of these weights
+	 */
+	public Weights copy() {
+		return wrap(data.clone());
+	}
+
+	/**
+	 * @return The number of weight matrices
+	 */
+	public int getCount() {
+		return offsets.length;
+	}
+
+	public int getRows(int l) {
+		return rowDimensions[l];
+	}
+
+	public int getColumns(int l) {
+		return columnDimensions[l];
+	}
+
+	/**
+	 * @return The index in {@link #getData()} of the first element of matrix
+	 *         $l$
+	 */
+	public int getOffset(int l) {
+		return offsets[l];
+	}
+
+	/**
+	 * @return The total number of parameters
+	 */
+	public int size() {
+		return data.length;
+	}
+
+	/**
+	 * @return The backing array. Changes to it are changes to the weights.
+	 */
+	public double[] getData() {
+		return data;
+	}
+
+	/**
+	 * Round the weights to single precision, keeping their layout.
+	 *
+	 * @param target
+	 *            Array of {@link #size()} elements which receives the
+	 *            weights, or null to allocate one
+	 * @return `target`, or the new array
+	 */
+	public float[] toFloatArray(float[] target) {
+		if (target == null) {
+			target = new float[data.length];
+		} else if (target.length != data.length) {
+			throw new RuntimeException("Target array has " + target.length
+					+ " elements but the weight matrices have " + data.length);
+		}
+
+		for (int i = 0; i < data.length; i++) {
+			target[i] = (float) data[i];
+		}
+
+		return target;
+	}
+
+	/**
+	 * @return The weights as an optimizer point, backed by the same array
+	 */
+	public DoubleVector asPoint() {
+		return new DenseDoubleVector(data);
+	}
+
+	/**
+	 * @return A copy of matrix $l$
+	 */
+	public DoubleMatrix getMatrix(int l) {
+		DoubleMatrix ret = new DoubleMatrix(rowDimensions[l],
+				columnDimensions[l]);
+		System.arraycopy(data, offsets[l], ret.data, 0, ret.length);
+
+		return ret;
+	}
+
+	/**
+	 * @return Copies of all weight matrices
+	 */
+	public DoubleMatrix[] toMatrices() {
+		DoubleMatrix[] ret = new DoubleMatrix[offsets.length];
+		for (int l = 0; l < ret.length; l++) {
+			ret[l] = getMatrix(l);
+		}
+
+		return ret;
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.dvcs.neuralnetwork.activation;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+
+/**
+ * The function $g$ which a layer applies to its weighted inputs $z$.
+ *
+ * Backpropagation needs $g'(z)$ for every hidden unit. Implementations
+ * compute it from the stored activation $a = g(z)$ rather than from $z$,
+ * which for the usual activation functions is cheaper (e.g., $a (1 - a)$ for
+ * the sigmoid) and means pre-activation values never have to be revisited.
+ *
+ * Layer matrices are column-major with one example per column. The
+ * activation of a non-output layer is written below its bias row, so
+ * methods take the row of the activation matrix at which the layer's units
+ * start.
+ */
+public interface Activation {
+
+	/**
+	 * @return $g(z)$ for a single value. Hidden layers' bias units take the
+	 *         value $g(1)$.
+	 */
+	public double apply(double z);
+
+	/**
+	 * Write $g(z)$ for the units in `z` into `target`, starting at row
+	 * `rowOffset` of `target`. With a `rowOffset` of 0, `target` may be `z`
+	 * itself.
+	 *
+	 * @param approximate
+	 *            Whether a fast approximation of the exponential may be used.
+	 *            Activations which don't evaluate exponentials ignore it.
+	 */
+	public void apply(DoubleMatrix z, DoubleMatrix target, int rowOffset,
+			boolean approximate);
+
+	/**
+	 * Multiply each element of `delta` in place by $g'(z)$ at the same unit,
+	 * given the activation values $a = g(z)$ stored in `activation` starting
+	 * at row `rowOffset`.
+	 */
+	public void multiplyGradient(DoubleMatrix delta, DoubleMatrix activation,
+			int rowOffset);
+
+	/**
+	 * Single-precision version of
+	 * {@link #apply(DoubleMatrix, DoubleMatrix, int, boolean)}.
+	 */
+	public void apply(FloatMatrix z, FloatMatrix target, int rowOffset,
+			boolean approximate);
+
+	/**
+	 * Single-precision version of
+	 * {@link #multiplyGradient(DoubleMatrix, DoubleMatrix, int)}.
+	 */
+	public void multiplyGradient(FloatMatrix delta, FloatMatrix activation,
+			int rowOffset);
+
+}
@@ -0,0 +1,58 @@
+package com.dvcs.neuralnetwork.activation;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+
+/**
+ * Dimension checks shared by the activation implementations.
+ */
+final class Activations {
+
+	private Activations() {
+	}
+
+	static void checkTarget(DoubleMatrix z, DoubleMatrix target, int rowOffset) {
+		if (z.getColumns() != target.getColumns()
+				|| z.getRows() + rowOffset > target.getRows()) {
+			throw new RuntimeException(
+					"Target matrix is too small to hold the activation of the given matrix");
+		}
+	}
+
+	static void checkActivation(DoubleMatrix delta, DoubleMatrix activation,
+			int rowOffset) {
+		if (delta.getColumns() != activation.getColumns()
+				|| delta.getRows() + rowOffset > activation.getRows()) {
+			throw new RuntimeException(
+					"Activation matrix dimensions do not correspond with those of the delta matrix");
+		}
+	}
+
+	static void checkTarget(FloatMatrix z, FloatMatrix target, int rowOffset) {
+		if (z.getColumns() != target.getColumns()
+				|| z.getRows() + rowOffset > target.getRows()) {
+			throw new RuntimeException(
+					"Target matrix is too small to hold the activation of the given matrix");
+		}
+	}
+
+	static void checkActivation(FloatMatrix delta, FloatMatrix activation,
+			int rowOffset) {
+		if (delta.getColumns() != activation.getColumns()
+				|| delta.getRows() + rowOffset > activation.getRows()) {
+			throw new RuntimeException(
+					"Activation matrix dimensions do not correspond with those of the delta matrix");
+		}
+	}
+
+	/**
+	 * Clamp a single-precision output unit value to the open interval
+	 * (0, 1), so that a unit which has saturated to exactly 0 or 1 still
+	 * has a finite cross-entropy cost. In single precision, sigmoid units
+	 * saturate for inputs beyond about 17.
+	 */
+	static double clampProbability(float h) {
+		return Math.min(Math.max(h, Float.MIN_NORMAL), 1 - 0x1p-24);
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.dvcs.neuralnetwork.activation;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+
+/**
+ * An activation which can be used for the output layer, paired with the
+ * cost function it is trained against.
+ *
+ * Each pair is chosen so that the derivative of the cost with respect to
+ * the output layer's weighted inputs is simply $h - y$, which is what
+ * backpropagation starts from.
+ */
+public interface OutputActivation extends Activation {
+
+	/**
+	 * Determine the fitting cost summed over every example, without
+	 * regularization and without averaging.
+	 *
+	 * @param outputLayer
+	 *            A matrix representing the output layer of the network, where
+	 *            each column represents an example and each row represents a
+	 *            unit in the output layer
+	 * @param y
+	 *            A matrix of the optimal output unit value, with the same
+	 *            dimensions as `outputLayer`
+	 */
+	public double getFittingCost(DoubleMatrix outputLayer, DoubleMatrix y);
+
+	/**
+	 * Single-precision version of
+	 * {@link #getFittingCost(DoubleMatrix, DoubleMatrix)}. The cost is still
+	 * summed in double precision.
+	 */
+	public double getFittingCost(FloatMatrix outputLayer, FloatMatrix y);
+
+}
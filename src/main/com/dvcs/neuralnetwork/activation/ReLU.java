@@ -0,0 +1,125 @@
+package com.dvcs.neuralnetwork.activation;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+
+/**
+ * The (leaky) rectified linear unit: $g(z) = z$ for positive $z$ and
+ * $\alpha z$ otherwise. Its derivative is 1 or $\alpha$ depending on the
+ * sign of the activation. Hidden layers only.
+ *
+ * Evaluating it involves no exponentials at all.
+ */
+public class ReLU implements Activation {
+
+	private double leak;
+
+	/**
+	 * A plain rectifier, which outputs 0 for negative inputs.
+	 */
+	public ReLU() {
+		this(0);
+	}
+
+	/**
+	 * @param leak
+	 *            The slope $\alpha$ for negative inputs. Must be in [0, 1).
+	 */
+	public ReLU(double leak) {
+		if (leak < 0 || leak >= 1) {
+			throw new RuntimeException("Leak must be in [0, 1)");
+		}
+
+		this.leak = leak;
+	}
+
+	public double getLeak() {
+		return leak;
+	}
+
+	@Override
+	public double apply(double z) {
+		return z > 0 ? z : leak * z;
+	}
+
+	@Override
+	public void apply(DoubleMatrix z, DoubleMatrix target, int rowOffset,
+			boolean approximate) {
+		Activations.checkTarget(z, target, rowOffset);
+
+		int rows = z.getRows();
+		int targetRows = target.getRows();
+
+		for (int j = 0; j < z.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * targetRows + rowOffset;
+
+			for (int i = 0; i < rows; i++) {
+				double x = z.data[from + i];
+				target.data[to + i] = x > 0 ? x : leak * x;
+			}
+		}
+	}
+
+	@Override
+	public void multiplyGradient(DoubleMatrix delta, DoubleMatrix activation,
+			int rowOffset) {
+		Activations.checkActivation(delta, activation, rowOffset);
+
+		int rows = delta.getRows();
+		int activationRows = activation.getRows();
+
+		for (int j = 0; j < delta.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * activationRows + rowOffset;
+
+			for (int i = 0; i < rows; i++) {
+				if (activation.data[to + i] <= 0) {
+					delta.data[from + i] *= leak;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void apply(FloatMatrix z, FloatMatrix target, int rowOffset,
+			boolean approximate) {
+		Activations.checkTarget(z, target, rowOffset);
+
+		int rows = z.getRows();
+		int targetRows = target.getRows();
+		float leak = (float) this.leak;
+
+		for (int j = 0; j < z.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * targetRows + rowOffset;
+
+			for (int i = 0; i < rows; i++) {
+				float x = z.data[from + i];
+				target.data[to + i] = x > 0 ? x : leak * x;
+			}
+		}
+	}
+
+	@Override
+	public void multiplyGradient(FloatMatrix delta, FloatMatrix activation,
+			int rowOffset) {
+		Activations.checkActivation(delta, activation, rowOffset);
+
+		int rows = delta.getRows();
+		int activationRows = activation.getRows();
+		float leak = (float) this.leak;
+
+		for (int j = 0; j < delta.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * activationRows + rowOffset;
+
+			for (int i = 0; i < rows; i++) {
+				if (activation.data[to + i] <= 0) {
+					delta.data[from + i] *= leak;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.dvcs.neuralnetwork.activation;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+
+import com.dvcs.tools.MatrixTools;
+
+/**
+ * The logistic function $g(z) = 1 / (1 + e^{-z})$, with $g'(z) = a (1 - a)$.
+ *
+ * On the output layer it is trained against the cross-entropy cost of
+ * independent binary outputs.
+ */
+public class Sigmoid implements OutputActivation {
+
+	@Override
+	public double apply(double z) {
+		return MatrixTools.sigmoid(z);
+	}
+
+	@Override
+	public void apply(DoubleMatrix z, DoubleMatrix target, int rowOffset,
+			boolean approximate) {
+		MatrixTools.matrixSigmoid(z, target, rowOffset, null, approximate);
+	}
+
+	@Override
+	public void multiplyGradient(DoubleMatrix delta, DoubleMatrix activation,
+			int rowOffset) {
+		MatrixTools.multiplySigmoidGradient(delta, activation, rowOffset);
+	}
+
+	@Override
+	public void apply(FloatMatrix z, FloatMatrix target, int rowOffset,
+			boolean approximate) {
+		MatrixTools.matrixSigmoid(z, target, rowOffset, approximate);
+	}
+
+	@Override
+	public void multiplyGradient(FloatMatrix delta, FloatMatrix activation,
+			int rowOffset) {
+		MatrixTools.multiplySigmoidGradient(delta, activation, rowOffset);
+	}
+
+	/**
+	 * Each unit has two parts: the first accounts for positive examples
+	 * (i.e., where a `y` cell value is 1) and the second for negative examples
+	 * (i.e., where a `y` cell value is 0).
+	 */
+	@Override
+	public double getFittingCost(DoubleMatrix outputLayer, DoubleMatrix y) {
+		double[] h = outputLayer.data;
+		double[] ys = y.data;
+		double cost = 0;
+
+		for (int i = 0; i < ys.length; i++) {
+			cost -= ys[i] * Math.log(h[i]) + (1 - ys[i]) * Math.log(1 - h[i]);
+		}
+
+		return cost;
+	}
+
+	@Override
+	public double getFittingCost(FloatMatrix outputLayer, FloatMatrix y) {
+		float[] h = outputLayer.data;
+		float[] ys = y.data;
+		double cost = 0;
+
+		for (int i = 0; i < ys.length; i++) {
+			double hi = Activations.clampProbability(h[i]);
+			cost -= ys[i] * Math.log(hi) + (1 - ys[i]) * Math.log(1 - hi);
+		}
+
+		return cost;
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.dvcs.neuralnetwork.activation;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+
+import com.dvcs.tools.MatrixTools;
+
+/**
+ * Normalized exponentials: $g(z)_i = e^{z_i} / \sum_j e^{z_j}$ over the units
+ * of each example, so that every column of the output layer is a probability
+ * distribution over mutually exclusive classes.
+ *
+ * Trained against the cross-entropy cost $-\sum_i y_i \log h_i$. Since the
+ * derivative of a unit depends on every other unit of the layer, softmax can
+ * only be used for the output layer.
+ */
+public class Softmax implements OutputActivation {
+
+	/**
+	 * The softmax of a single unit on its own, which is always 1.
+	 */
+	@Override
+	public double apply(double z) {
+		return 1;
+	}
+
+	@Override
+	public void apply(DoubleMatrix z, DoubleMatrix target, int rowOffset,
+			boolean approximate) {
+		Activations.checkTarget(z, target, rowOffset);
+
+		int rows = z.getRows();
+		int targetRows = target.getRows();
+
+		for (int j = 0; j < z.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * targetRows + rowOffset;
+
+			// Shift by the largest input so that no exponential overflows.
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < rows; i++) {
+				max = Math.max(max, z.data[from + i]);
+			}
+
+			double sum = 0;
+			for (int i = 0; i < rows; i++) {
+				double x = z.data[from + i] - max;
+				double e = approximate ? MatrixTools.fastExp(x) : Math.exp(x);
+
+				target.data[to + i] = e;
+				sum += e;
+			}
+
+			for (int i = 0; i < rows; i++) {
+				target.data[to + i] /= sum;
+			}
+		}
+	}
+
+	@Override
+	public void apply(FloatMatrix z, FloatMatrix target, int rowOffset,
+			boolean approximate) {
+		Activations.checkTarget(z, target, rowOffset);
+
+		int rows = z.getRows();
+		int targetRows = target.getRows();
+
+		for (int j = 0; j < z.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * targetRows + rowOffset;
+
+			float max = Float.NEGATIVE_INFINITY;
+			for (int i = 0; i < rows; i++) {
+				max = Math.max(max, z.data[from + i]);
+			}
+
+			float sum = 0;
+			for (int i = 0; i < rows; i++) {
+				float x = z.data[from + i] - max;
+				float e = approximate ? MatrixTools.fastExp(x) : (float) Math
+						.exp(x);
+
+				target.data[to + i] = e;
+				sum += e;
+			}
+
+			for (int i = 0; i < rows; i++) {
+				target.data[to + i] /= sum;
+			}
+		}
+	}
+
+	@Override
+	public void multiplyGradient(DoubleMatrix delta, DoubleMatrix activation,
+			int rowOffset) {
+		throw new UnsupportedOperationException(
+				"Softmax can only be used for the output layer");
+	}
+
+	@Override
+	public void multiplyGradient(FloatMatrix delta, FloatMatrix activation,
+			int rowOffset) {
+		throw new UnsupportedOperationException(
+				"Softmax can only be used for the output layer");
+	}
+
+	@Override
+	public double getFittingCost(DoubleMatrix outputLayer, DoubleMatrix y) {
+		double[] h = outputLayer.data;
+		double[] ys = y.data;
+		double cost = 0;
+
+		for (int i = 0; i < ys.length; i++) {
+			if (ys[i] != 0) {
+				cost -= ys[i] * Math.log(h[i]);
+			}
+		}
+
+		return cost;
+	}
+
+	@Override
+	public double getFittingCost(FloatMatrix outputLayer, FloatMatrix y) {
+		float[] h = outputLayer.data;
+		float[] ys = y.data;
+		double cost = 0;
+
+		for (int i = 0; i < ys.length; i++) {
+			if (ys[i] != 0) {
+				cost -= ys[i] * Math.log(Activations.clampProbability(h[i]));
+			}
+		}
+
+		return cost;
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.dvcs.neuralnetwork.activation;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+
+import com.dvcs.tools.MatrixTools;
+
+/**
+ * The hyperbolic tangent, with $g'(z) = 1 - a^2$. Hidden layers only.
+ */
+public class Tanh implements Activation {
+
+	@Override
+	public double apply(double z) {
+		return Math.tanh(z);
+	}
+
+	@Override
+	public void apply(DoubleMatrix z, DoubleMatrix target, int rowOffset,
+			boolean approximate) {
+		Activations.checkTarget(z, target, rowOffset);
+
+		int rows = z.getRows();
+		int targetRows = target.getRows();
+
+		for (int j = 0; j < z.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * targetRows + rowOffset;
+
+			if (approximate) {
+				// tanh(x) = 1 - 2 / (1 + e^(2x))
+				for (int i = 0; i < rows; i++) {
+					target.data[to + i] = 1 - 2 / (1 + MatrixTools
+							.fastExp(2 * z.data[from + i]));
+				}
+			} else {
+				for (int i = 0; i < rows; i++) {
+					target.data[to + i] = Math.tanh(z.data[from + i]);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void multiplyGradient(DoubleMatrix delta, DoubleMatrix activation,
+			int rowOffset) {
+		Activations.checkActivation(delta, activation, rowOffset);
+
+		int rows = delta.getRows();
+		int activationRows = activation.getRows();
+
+		for (int j = 0; j < delta.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * activationRows + rowOffset;
+
+			for (int i = 0; i < rows; i++) {
+				double a = activation.data[to + i];
+				delta.data[from + i] *= 1 - a * a;
+			}
+		}
+	}
+
+	@Override
+	public void apply(FloatMatrix z, FloatMatrix target, int rowOffset,
+			boolean approximate) {
+		Activations.checkTarget(z, target, rowOffset);
+
+		int rows = z.getRows();
+		int targetRows = target.getRows();
+
+		for (int j = 0; j < z.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * targetRows + rowOffset;
+
+			if (approximate) {
+				for (int i = 0; i < rows; i++) {
+					target.data[to + i] = 1 - 2 / (1 + MatrixTools
+							.fastExp(2 * z.data[from + i]));
+				}
+			} else {
+				for (int i = 0; i < rows; i++) {
+					target.data[to + i] = (float) Math.tanh(z.data[from + i]);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void multiplyGradient(FloatMatrix delta, FloatMatrix activation,
+			int rowOffset) {
+		Activations.checkActivation(delta, activation, rowOffset);
+
+		int rows = delta.getRows();
+		int activationRows = activation.getRows();
+
+		for (int j = 0; j < delta.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * activationRows + rowOffset;
+
+			for (int i = 0; i < rows; i++) {
+				float a = activation.data[to + i];
+				delta.data[from + i] *= 1 - a * a;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.dvcs.neuralnetwork.dataset;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+
+import com.dvcs.neuralnetwork.dataset.ImageDataset.PixelFormat;
+
+/**
+ * Imports images and labels in the IDX format of the MNIST database into an
+ * {@link ImageDataset}.
+ *
+ * An IDX file starts with a big-endian magic number, whose third byte gives
+ * the type of the values (0x08 for unsigned bytes) and whose fourth byte gives
+ * the number of dimensions, followed by the size of each dimension as a
+ * big-endian int and then the values. Image files have three dimensions
+ * (images, rows and columns), label files have one. Files whose names end in
+ * `.gz`, as the MNIST files are distributed, are decompressed while reading.
+ */
+public class IdxImporter {
+
+	private static final int UNSIGNED_BYTE = 0x08;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Import an image file and the matching label file, replacing any existing
+	 * dataset. The dataset gets a class for every label from 0 to the largest
+	 * one.
+	 *
+	 * @param format
+	 *            Whether to keep the pixels as bytes (which is four times as
+	 *            compact) or as floats scaled to lie between 0 and 1
+	 * @return The dataset, opened
+	 */
+	public static ImageDataset importImages(File images, File labels,
+			File dataset, PixelFormat format) throws IOException {
+		int[] classes = readLabels(labels);
+		if (classes.length == 0) {
+			throw new IOException(labels + " has no labels");
+		}
+
+		int classCount = 0;
+		for (int i = 0; i < classes.length; i++) {
+			if (classes[i] < 0) {
+				throw new IOException(labels + " has a negative label");
+			}
+			classCount = Math.max(classCount, classes[i] + 1);
+		}
+
+		File temporary = new File(dataset.getPath() + ".tmp");
+		DataInputStream in = open(images);
+		RandomAccessFile file = new RandomAccessFile(temporary, "rw");
+		try {
+			int[] dimensions = readHeader(in, images, 3);
+			if (dimensions[0] != classes.length) {
+				throw new IOException(images + " has " + dimensions[0]
+						+ " images but " + labels + " has " + classes.length
+						+ " labels");
+			}
+
+			int height = dimensions[1];
+			int width = dimensions[2];
+			if (height < 1 || width < 1) {
+				throw new IOException(images + " has empty images");
+			}
+
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(
+					Math.max(BUFFER_SIZE, height * width * format.bytes))
+					.order(ByteOrder.LITTLE_ENDIAN);
+
+			buffer.putInt(ImageDataset.MAGIC);
+			buffer.putInt(ImageDataset.VERSION);
+			buffer.putInt(format.bytes);
+			buffer.putInt(height);
+			buffer.putInt(width);
+			buffer.putInt(classCount);
+			buffer.putLong(classes.length);
+
+			// IDX images are stored row after row; the dataset keeps them
+			// column after column
+			byte[] image = new byte[height * width];
+			for (int n = 0; n < classes.length; n++) {
+				in.readFully(image);
+
+				if (buffer.remaining() < image.length * format.bytes) {
+					write(channel, buffer);
+				}
+				for (int x = 0; x < width; x++) {
+					for (int y = 0, i = x; y < height; y++, i += width) {
+						if (format == PixelFormat.UNSIGNED_BYTE) {
+							buffer.put(image[i]);
+						} else {
+							buffer.putFloat((image[i] & 0xFF) / 255f);
+						}
+					}
+				}
+			}
+
+			for (int n = 0; n < classes.length; n++) {
+				if (buffer.remaining() < 4) {
+					write(channel, buffer);
+				}
+				buffer.putInt(classes[n]);
+			}
+			write(channel, buffer);
+
+			channel.force(true);
+		} finally {
+			in.close();
+			file.close();
+		}
+
+		Files.move(temporary.toPath(), dataset.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		return ImageDataset.open(dataset);
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Read all labels of an IDX label file.
+	 */
+	static int[] readLabels(File path) throws IOException {
+		DataInputStream in = open(path);
+		try {
+			int[] dimensions = readHeader(in, path, 1);
+
+			byte[] bytes = new byte[dimensions[0]];
+			in.readFully(bytes);
+
+			int[] ret = new int[bytes.length];
+			for (int i = 0; i < bytes.length; i++) {
+				ret[i] = bytes[i] & 0xFF;
+			}
+
+			return ret;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the header of an IDX file of unsigned bytes.
+	 *
+	 * @return The size of each dimension
+	 */
+	private static int[] readHeader(DataInputStream in, File path,
+			int dimensionCount) throws IOException {
+		int magic = in.readInt();
+		if ((magic >>> 16) != 0 || (magic >>> 8 & 0xFF) != UNSIGNED_BYTE) {
+			throw new IOException(path + " is not an IDX file of bytes");
+		}
+		if ((magic & 0xFF) != dimensionCount) {
+			throw new IOException(path + " has " + (magic & 0xFF)
+					+ " dimensions instead of " + dimensionCount);
+		}
+
+		int[] dimensions = new int[dimensionCount];
+		for (int i = 0; i < dimensionCount; i++) {
+			dimensions[i] = in.readInt();
+			if (dimensions[i] < 0) {
+				throw new IOException(path + " has a negative dimension");
+			}
+		}
+
+		return dimensions;
+	}
+
+	private static DataInputStream open(File path) throws IOException {
+		InputStream in = new FileInputStream(path);
+		if (path.getName().endsWith(".gz")) {
+			in = new GZIPInputStream(in, BUFFER_SIZE);
+		}
+
+		return new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+	}
+
+	/**
+	 * Import a dataset from the command line:
+	 *
+	 * <pre>
+	 * IdxImporter images labels dataset [byte|float]
+	 * </pre>
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3 || args.length > 4) {
+			System.err.println("Usage: IdxImporter images labels dataset "
+					+ "[byte|float]");
+			System.exit(1);
+		}
+
+		PixelFormat format = PixelFormat.UNSIGNED_BYTE;
+		if (args.length == 4 && args[3].equals("float")) {
+			format = PixelFormat.FLOAT;
+		}
+
+		long start = System.nanoTime();
+		ImageDataset dataset = importImages(new File(args[0]), new File(
+				args[1]), new File(args[2]), format);
+		System.out.println("Imported " + dataset.size() + " images of "
+				+ dataset.getImageHeight() + "x" + dataset.getImageWidth()
+				+ " pixels in " + dataset.getOutputSize() + " classes ("
+				+ (System.nanoTime() - start) / 1000000 + " ms)");
+		dataset.close();
+	}
+
+}
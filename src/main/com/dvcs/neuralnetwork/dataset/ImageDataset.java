@@ -0,0 +1,295 @@
+package com.dvcs.neuralnetwork.dataset;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import com.dvcs.neuralnetwork.Example;
+import com.dvcs.neuralnetwork.ExampleStore;
+
+/**
+ * A read-only dataset of labeled gray images, memory-mapped from a compact
+ * binary file (see {@link IdxImporter} for creating one). Opening a dataset
+ * only maps the file and checks its labels, so even large datasets are ready
+ * in milliseconds, and training reads the pixels straight from the mapping
+ * into its own buffers.
+ *
+ * As an {@link ExampleStore}, each image is an example whose inputs are its
+ * pixels, scaled to lie between 0 and 1, and whose outputs are 1 for the
+ * unit of its label and 0 for the others.
+ *
+ * The file starts with a 32-byte little-endian header:
+ *
+ * <pre>
+ * int  magic ("DVDS")
+ * int  format version
+ * int  bytes per pixel (1 for unsigned bytes, 4 for floats)
+ * int  image height
+ * int  image width
+ * int  number of classes
+ * long number of images
+ * </pre>
+ *
+ * followed by the pixels of all images and then their labels, as ints.
+ * Pixels are stored column after column, which is the layout
+ * {@link com.dvcs.neuralnetwork.driver.ImageConverter} gives camera frames.
+ * Byte pixels range from 0 to 255, float pixels from 0 to 1.
+ */
+public class ImageDataset implements ExampleStore, Closeable {
+
+	static final int MAGIC = 0x53445644; // "DVDS", little-endian
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+
+	/**
+	 * Largest size of a mapped segment of pixels. Mappings are limited to 2
+	 * GB.
+	 */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	/**
+	 * The values of byte pixels, scaled to lie between 0 and 1
+	 */
+	private static final double[] BYTE_VALUES = new double[256];
+	private static final float[] BYTE_FLOAT_VALUES = new float[256];
+
+	static {
+		for (int b = 0; b < 256; b++) {
+			BYTE_VALUES[b] = b / 255.0;
+			BYTE_FLOAT_VALUES[b] = b / 255f;
+		}
+	}
+
+	public enum PixelFormat {
+		UNSIGNED_BYTE(1), FLOAT(4);
+
+		final int bytes;
+
+		private PixelFormat(int bytes) {
+			this.bytes = bytes;
+		}
+
+		static PixelFormat forBytes(int bytes) {
+			for (PixelFormat format : values()) {
+				if (format.bytes == bytes) {
+					return format;
+				}
+			}
+
+			return null;
+		}
+	}
+
+	private final RandomAccessFile file;
+
+	private final PixelFormat format;
+	private final int imageHeight;
+	private final int imageWidth;
+	private final int classCount;
+	private final int count;
+
+	private final int pixelCount;
+	private final int imagesPerSegment;
+	private final ByteBuffer[] segments;
+	private final IntBuffer labels;
+
+	private ImageDataset(File path, RandomAccessFile file) throws IOException {
+		this.file = file;
+		FileChannel channel = file.getChannel();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(
+				ByteOrder.LITTLE_ENDIAN);
+		channel.read(header, 0);
+
+		if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+			throw new IOException(path + " is not an image dataset");
+		}
+		if (header.getInt(4) != VERSION) {
+			throw new IOException(path + " has dataset format version "
+					+ header.getInt(4) + ", but only version " + VERSION
+					+ " is supported");
+		}
+
+		format = PixelFormat.forBytes(header.getInt(8));
+		imageHeight = header.getInt(12);
+		imageWidth = header.getInt(16);
+		classCount = header.getInt(20);
+		long images = header.getLong(24);
+
+		if (format == null || imageHeight < 1 || imageWidth < 1
+				|| classCount < 1 || images < 0 || images > Integer.MAX_VALUE) {
+			throw new IOException(path + " has an invalid dataset header");
+		}
+
+		count = (int) images;
+		pixelCount = imageHeight * imageWidth;
+		long imageSize = (long) pixelCount * format.bytes;
+		long pixelsSize = count * imageSize;
+
+		if (channel.size() != HEADER_SIZE + pixelsSize + count * 4L) {
+			throw new IOException(path + " is not a complete dataset");
+		}
+
+		imagesPerSegment = (int) Math.max(1, SEGMENT_SIZE / imageSize);
+		segments = new ByteBuffer[(count + imagesPerSegment - 1)
+				/ imagesPerSegment];
+		for (int s = 0; s < segments.length; s++) {
+			long first = (long) s * imagesPerSegment;
+			long length = Math.min(imagesPerSegment, count - first)
+					* imageSize;
+			segments[s] = channel.map(MapMode.READ_ONLY,
+					HEADER_SIZE + first * imageSize, length)
+					.order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		labels = channel
+				.map(MapMode.READ_ONLY, HEADER_SIZE + pixelsSize, count * 4L)
+				.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+		// A label outside the classes would set an output of a neighboring
+		// example when reading into a batch
+		for (int i = 0; i < count; i++) {
+			int label = labels.get(i);
+			if (label < 0 || label >= classCount) {
+				throw new IOException(path + " has label " + label
+						+ " for image " + i + ", but only " + classCount
+						+ " classes");
+			}
+		}
+	}
+
+	/**
+	 * Open a dataset written by {@link IdxImporter}.
+	 */
+	public static ImageDataset open(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			return new ImageDataset(path, file);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void add(Example example) {
+		throw new UnsupportedOperationException(
+				"Examples cannot be added to an image dataset");
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public int getInputSize() {
+		return pixelCount;
+	}
+
+	@Override
+	public int getOutputSize() {
+		return classCount;
+	}
+
+	public PixelFormat getPixelFormat() {
+		return format;
+	}
+
+	public int getImageHeight() {
+		return imageHeight;
+	}
+
+	public int getImageWidth() {
+		return imageWidth;
+	}
+
+	/**
+	 * @return The class of the image at the given index, from 0 to
+	 *         `getOutputSize() - 1`
+	 */
+	public int getLabel(int index) {
+		checkIndex(index);
+		return labels.get(index);
+	}
+
+	@Override
+	public Example get(int index) {
+		double[] x = new double[pixelCount];
+		double[] y = new double[classCount];
+		readExample(index, x, 0, y, 0);
+
+		return new Example(x, y);
+	}
+
+	@Override
+	public void readExample(int index, double[] x, int xOffset, double[] y,
+			int yOffset) {
+		ByteBuffer segment = getSegment(index);
+		int position = (index % imagesPerSegment) * pixelCount
+				* format.bytes;
+
+		if (format == PixelFormat.UNSIGNED_BYTE) {
+			for (int i = 0; i < pixelCount; i++) {
+				x[xOffset + i] = BYTE_VALUES[segment.get(position + i) & 0xFF];
+			}
+		} else {
+			for (int i = 0; i < pixelCount; i++, position += 4) {
+				x[xOffset + i] = segment.getFloat(position);
+			}
+		}
+
+		Arrays.fill(y, yOffset, yOffset + classCount, 0);
+		y[yOffset + getLabel(index)] = 1;
+	}
+
+	@Override
+	public void readExample(int index, float[] x, int xOffset, float[] y,
+			int yOffset) {
+		ByteBuffer segment = getSegment(index);
+		int position = (index % imagesPerSegment) * pixelCount
+				* format.bytes;
+
+		if (format == PixelFormat.UNSIGNED_BYTE) {
+			for (int i = 0; i < pixelCount; i++) {
+				x[xOffset + i] = BYTE_FLOAT_VALUES[segment
+						.get(position + i) & 0xFF];
+			}
+		} else {
+			for (int i = 0; i < pixelCount; i++, position += 4) {
+				x[xOffset + i] = segment.getFloat(position);
+			}
+		}
+
+		Arrays.fill(y, yOffset, yOffset + classCount, 0);
+		y[yOffset + getLabel(index)] = 1;
+	}
+
+	/**
+	 * @return The segment holding the given image
+	 */
+	private ByteBuffer getSegment(int index) {
+		checkIndex(index);
+		return segments[index / imagesPerSegment];
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Image " + index
+					+ " is not in a dataset of " + count + " images");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+}
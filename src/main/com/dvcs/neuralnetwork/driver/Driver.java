@@ -2,21 +2,25 @@ package com.dvcs.neuralnetwork.driver;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.imageio.ImageIO;
 
-import org.encog.ml.data.MLData;
-import org.encog.ml.data.basic.BasicMLData;
-import org.encog.neural.networks.BasicNetwork;
 import org.jblas.DoubleMatrix;
 
 import com.dvcs.neuralnetwork.EncogNetworkBuilder;
 import com.dvcs.neuralnetwork.Example;
+import com.dvcs.neuralnetwork.InferenceEngine;
+import com.dvcs.neuralnetwork.ModelDirectoryWatcher;
+import com.dvcs.neuralnetwork.ModelFile;
 import com.dvcs.neuralnetwork.NeuralNetwork;
 import com.dvcs.neuralnetwork.NeuralNetworkBuilder.DimensionMismatchException;
 import com.dvcs.neuralnetwork.NeuralNetworkBuilder.InsufficientDataException;
+import com.dvcs.neuralnetwork.PredictionServer;
 import com.dvcs.neuralnetwork.driver.DataQueueListener.NewDataCallback;
 
 public class Driver {
@@ -25,20 +29,78 @@ public class Driver {
 	static final double MOMENTUM = 0.6;
 	static final int HIDDEN_LAYER_UNITS = 100;
 	static final int OUTPUT_LAYER_UNITS = 10;
+	static final int PREDICTION_BATCH_SIZE = 16;
+	static final int PREDICTION_QUEUE_CAPACITY = 64;
+	static final long PREDICTION_LATENCY_LIMIT_MILLIS = 50;
+
+	static final int DECODE_THREADS = Math.max(1, Runtime.getRuntime()
+			.availableProcessors() / 2);
+	static final int STAGE_QUEUE_CAPACITY = 32;
+	static final int DISPLAY_QUEUE_CAPACITY = 2;
+
+	/**
+	 * Trained networks are saved to and loaded from this directory. Putting a
+	 * new model file there switches predictions over to it.
+	 */
+	static final String MODEL_DIRECTORY = "models";
+	static final String MODEL_NAME = "network";
 
 	private static final Logger LOGGER = Logger
 			.getLogger("NeuralNetworkDriver");
 
 	private DriverGUI gui;
-	private BasicNetwork network;
+	private volatile PredictionServer<DoubleMatrix> predictionServer;
+	private ModelDirectoryWatcher modelWatcher;
 	private DataCollector collector;
 	private DataCollector predictor;
 	private EncogNetworkBuilder builder;
 
-	private NewDataCallback dataCollectorCallback = new NewDataCallback() {
-		public void receivedData(byte[] data) {
-			DoubleMatrix m = parseImageData(data);
+	/*
+	 * Frames flow through a pipeline of stages, each with threads and a
+	 * bounded queue of its own: receive (the queue listener's thread) ->
+	 * decode -> normalize -> collect or predict -> display. Full queues block
+	 * the stage before them, except for the display's, which drops the
+	 * oldest frame, so a slow repaint never holds back ingestion.
+	 */
+	private PipelineStage<byte[], BufferedImage> collectPipeline;
+	private PipelineStage<byte[], BufferedImage> predictPipeline;
+	private PipelineStage<DisplayFrame, Void> displayStage;
 
+	/**
+	 * A frame to display, with its prediction if it has one.
+	 */
+	private static class DisplayFrame {
+		final DoubleMatrix image;
+		final double[] output;
+		final int predictedClass;
+		final long latency;
+
+		DisplayFrame(DoubleMatrix image, double[] output, int predictedClass,
+				long latency) {
+			this.image = image;
+			this.output = output;
+			this.predictedClass = predictedClass;
+			this.latency = latency;
+		}
+	}
+
+	private static final PipelineStage.Handler<byte[], BufferedImage> DECODER = new PipelineStage.Handler<byte[], BufferedImage>() {
+		public BufferedImage process(byte[] data) {
+			return decodeImageData(data);
+		}
+	};
+
+	/**
+	 * Grayscales and normalizes a frame in a single pass over its raster.
+	 */
+	private static final PipelineStage.Handler<BufferedImage, DoubleMatrix> NORMALIZER = new PipelineStage.Handler<BufferedImage, DoubleMatrix>() {
+		public DoubleMatrix process(BufferedImage im) {
+			return ImageConverter.convertImageToNormalizedMatrix(im);
+		}
+	};
+
+	private PipelineStage.Handler<DoubleMatrix, DisplayFrame> exampleCollector = new PipelineStage.Handler<DoubleMatrix, DisplayFrame>() {
+		public DisplayFrame process(DoubleMatrix m) {
 			double[] x = m.toArray();
 
 			// TODO: y
@@ -51,31 +113,75 @@ public class Driver {
 				e.printStackTrace();
 			}
 
-			// Display image
-			gui.loadImageMatrix(m);
+			return new DisplayFrame(m, null, -1, 0);
 		}
 	};
 
-	private NewDataCallback dataPredictorCallback = new NewDataCallback() {
-		public void receivedData(byte[] data) {
-			if ( network == null ) {
+	/**
+	 * Hands frames to the prediction server, which batches them and calls
+	 * back on its own thread. Frames arriving while the server is stopped are
+	 * dropped, so they aren't predicted late once it restarts.
+	 */
+	private PipelineStage.Handler<DoubleMatrix, Void> framePredictor = new PipelineStage.Handler<DoubleMatrix, Void>() {
+		public Void process(DoubleMatrix m) {
+			PredictionServer<DoubleMatrix> server = predictionServer;
+			if ( server == null ) {
 				LOGGER.severe("Driver asked to make predictions before network"
 						+ "was built");
+			} else if ( !server.isRunning() ) {
+				LOGGER.fine("Prediction server is stopped; dropping frame");
+			} else if ( !server.submit(m, predictionCallback) ) {
+				LOGGER.warning("Prediction queue is full; dropping frame");
 			}
 
-			DoubleMatrix m = parseImageData(data);
+			return null;
+		}
+	};
+
+	private PipelineStage.Handler<DisplayFrame, Void> frameDisplay = new PipelineStage.Handler<DisplayFrame, Void>() {
+		public Void process(DisplayFrame frame) {
+			gui.loadImageMatrix(frame.image);
+			if ( frame.output != null )
+				gui.displayPropagationResult(frame.output,
+						frame.predictedClass, frame.latency);
 
-			long start = System.nanoTime();
+			return null;
+		}
+	};
 
-			double[] output = network.compute(new BasicMLData(m.toArray()))
-					.getData();
-			int predictedClass = NeuralNetwork.maxIndex(output);
+	private static final PredictionServer.Encoder<DoubleMatrix> IMAGE_ENCODER = new PredictionServer.Encoder<DoubleMatrix>() {
+		public void encode(DoubleMatrix m, double[] target, int offset) {
+			System.arraycopy(m.data, 0, target, offset, m.length);
+		}
+	};
 
-			long end = System.nanoTime();
-			long diff = end - start;
+	/**
+	 * Passes each frame on to be displayed along with its prediction and the
+	 * time from its submission to the prediction.
+	 */
+	private PredictionServer.Callback<DoubleMatrix> predictionCallback = new PredictionServer.Callback<DoubleMatrix>() {
+		public void predicted(DoubleMatrix m, double[] output,
+				int predictedClass, long latency) {
+			submit(displayStage, new DisplayFrame(m, output, predictedClass,
+					latency));
+		}
+	};
 
-			gui.loadImageMatrix(m);
-			gui.displayPropagationResult(output, predictedClass, diff);
+	private ModelDirectoryWatcher.Listener modelListener = new ModelDirectoryWatcher.Listener() {
+		public void modelLoaded(NeuralNetwork network, File file) {
+			usePredictionModel(network);
+		}
+	};
+
+	private NewDataCallback dataCollectorCallback = new NewDataCallback() {
+		public void receivedData(byte[] data) {
+			submit(collectPipeline, data);
+		}
+	};
+
+	private NewDataCallback dataPredictorCallback = new NewDataCallback() {
+		public void receivedData(byte[] data) {
+			submit(predictPipeline, data);
 		}
 	};
 
@@ -84,6 +190,114 @@ public class Driver {
 		builder = new EncogNetworkBuilder();
 		collector = new DataCollector(QUEUE_NAME, dataCollectorCallback);
 		predictor = new DataCollector(QUEUE_NAME, dataPredictorCallback);
+
+		displayStage = new PipelineStage<DisplayFrame, Void>("display", 1,
+				DISPLAY_QUEUE_CAPACITY, PipelineStage.Overflow.DROP_OLDEST,
+				frameDisplay, null);
+		collectPipeline = createPipeline("collect",
+				new PipelineStage<DoubleMatrix, DisplayFrame>("collect", 1,
+						STAGE_QUEUE_CAPACITY, PipelineStage.Overflow.BLOCK,
+						exampleCollector, displayStage));
+		predictPipeline = createPipeline("predict",
+				new PipelineStage<DoubleMatrix, Void>("predict", 1,
+						STAGE_QUEUE_CAPACITY, PipelineStage.Overflow.BLOCK,
+						framePredictor, null));
+
+		startPipeline(displayStage);
+		startPipeline(collectPipeline);
+		startPipeline(predictPipeline);
+
+		modelWatcher = new ModelDirectoryWatcher(new File(MODEL_DIRECTORY),
+				modelListener);
+		loadNewestModel();
+		try {
+			modelWatcher.start();
+		} catch ( IOException e ) {
+			LOGGER.log(Level.WARNING, "Not watching for new models", e);
+		}
+	}
+
+	/**
+	 * Predict with the most recent saved model, if there is one, so that no
+	 * training is needed before feeding forward.
+	 */
+	private void loadNewestModel() {
+		File file = modelWatcher.findNewest();
+		if ( file == null )
+			return;
+
+		try {
+			long start = System.nanoTime();
+			usePredictionModel(ModelFile.load(file));
+			LOGGER.info("Loaded model " + file + " in "
+					+ (System.nanoTime() - start) / 1000 + " micros");
+		} catch ( IOException e ) {
+			LOGGER.log(Level.WARNING, "Failed to load model " + file, e);
+		}
+	}
+
+	/**
+	 * Make predictions with the given network from now on, swapping it in if
+	 * we are already predicting.
+	 */
+	private synchronized void usePredictionModel(NeuralNetwork network) {
+		PredictionServer<DoubleMatrix> previous = predictionServer;
+		predictionServer = new PredictionServer<DoubleMatrix>(
+				InferenceEngine.compile(network, PREDICTION_BATCH_SIZE),
+				IMAGE_ENCODER, PREDICTION_QUEUE_CAPACITY,
+				PREDICTION_LATENCY_LIMIT_MILLIS, TimeUnit.MILLISECONDS);
+
+		if ( previous != null && previous.isRunning() ) {
+			try {
+				previous.shutdown();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+			predictionServer.start();
+		}
+	}
+
+	/**
+	 * Create the decode and normalize stages in front of a final stage.
+	 *
+	 * @return The first stage
+	 */
+	private static PipelineStage<byte[], BufferedImage> createPipeline(
+			String name, PipelineStage<DoubleMatrix, ?> last) {
+		PipelineStage<BufferedImage, DoubleMatrix> normalize = new PipelineStage<BufferedImage, DoubleMatrix>(
+				name + "-normalize", 1, STAGE_QUEUE_CAPACITY,
+				PipelineStage.Overflow.BLOCK, NORMALIZER, last);
+
+		return new PipelineStage<byte[], BufferedImage>(name + "-decode",
+				DECODE_THREADS, STAGE_QUEUE_CAPACITY,
+				PipelineStage.Overflow.BLOCK, DECODER, normalize);
+	}
+
+	private static void startPipeline(PipelineStage<?, ?> first) {
+		for ( PipelineStage<?, ?> stage = first; stage != null; stage = stage
+				.getNext() ) {
+			if ( !stage.isRunning() )
+				stage.start();
+		}
+	}
+
+	private static void logPipelineStatistics(PipelineStage<?, ?> first) {
+		for ( PipelineStage<?, ?> stage = first; stage != null; stage = stage
+				.getNext() ) {
+			LOGGER.info(stage.toString());
+		}
+	}
+
+	/**
+	 * Submit an item to a stage from a thread which cannot be interrupted by
+	 * a checked exception, such as the queue listener's.
+	 */
+	private static <T> void submit(PipelineStage<T, ?> stage, T item) {
+		try {
+			stage.submit(item);
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
 	}
 
 	public boolean isCollecting() {
@@ -100,6 +314,7 @@ public class Driver {
 		LOGGER.info("Ending data collection");
 
 		collector.stopQueueListener();
+		logPipelineStatistics(collectPipeline);
 	}
 
 	/**
@@ -110,30 +325,73 @@ public class Driver {
 	}
 
 	/**
-	 * Train the neural network using the given sample data.
+	 * @return Whether there is a network to make predictions with, either
+	 *         trained or loaded
+	 */
+	public boolean hasNetwork() {
+		return predictionServer != null;
+	}
+
+	/**
+	 * Train the neural network using the given sample data, and save it for
+	 * later runs.
 	 */
 	public void trainNeuralNetwork() {
+		NeuralNetwork network;
 		try {
-			network = builder.buildEncogNetwork(
-					new int[] { HIDDEN_LAYER_UNITS }, LEARNING_RATE, MOMENTUM);
+			network = EncogNetworkBuilder.toNeuralNetwork(builder
+					.buildEncogNetwork(new int[] { HIDDEN_LAYER_UNITS },
+							LEARNING_RATE, MOMENTUM));
 		} catch ( InsufficientDataException e ) {
 			e.printStackTrace();
+			return;
+		}
+
+		usePredictionModel(network);
+
+		try {
+			File file = modelWatcher.save(network, MODEL_NAME);
+			LOGGER.info("Saved model " + file);
+		} catch ( IOException e ) {
+			LOGGER.log(Level.WARNING, "Failed to save the trained model", e);
 		}
 	}
 
-	public void startFeedForward() {
+	public synchronized void startFeedForward() {
 		LOGGER.info("Beginning feedforward processing");
 
+		if ( predictionServer != null && !predictionServer.isRunning() )
+			predictionServer.start();
 		predictor.startQueueListener();
 	}
 
-	public void stopFeedForward() {
+	public synchronized void stopFeedForward() {
 		LOGGER.info("Ending feedforward processing");
 
 		predictor.stopQueueListener();
+		logPipelineStatistics(predictPipeline);
+		logPipelineStatistics(displayStage);
+		if ( predictionServer != null ) {
+			LOGGER.info("Prediction latency p50: "
+					+ predictionServer.getLatencyPercentile(50) / 1000
+					+ " micros, p99: "
+					+ predictionServer.getLatencyPercentile(99) / 1000
+					+ " micros");
+
+			try {
+				predictionServer.shutdown();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
-	private DoubleMatrix parseImageData(byte[] data) {
+	/**
+	 * Decode an image received from the queue.
+	 *
+	 * @return The image, or null if the data is not a valid image
+	 */
+	private static BufferedImage decodeImageData(byte[] data) {
 		BufferedImage im = null;
 		try {
 			im = ImageIO.read(new ByteArrayInputStream(data));
@@ -149,10 +407,7 @@ public class Driver {
 			return null;
 		}
 
-		DoubleMatrix m = ImageConverter.convertImageToMatrix(im, true);
-		m = ImageConverter.normalize(m);
-
-		return m;
+		return im;
 	}
 
 	public class OutputProvider {
@@ -83,7 +83,7 @@ public class DriverGUI {
 		buildNetworkButton.setEnabled(false);
 		
 		final JButton feedForwardButton = new JButton("Start feedforward");
-		feedForwardButton.setEnabled(false);
+		feedForwardButton.setEnabled(driver.hasNetwork());
 		
 		listeningToggleButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
@@ -1,6 +1,12 @@
 package com.dvcs.neuralnetwork.driver;
 
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
 
 import org.jblas.DoubleMatrix;
 
@@ -20,16 +26,93 @@ public class ImageConverter {
 			image = newImage;
 		}
 
-		DoubleMatrix ret = new DoubleMatrix(m, n);
+		// One row per pixel row, i.e. per y coordinate
+		DoubleMatrix ret = new DoubleMatrix(n, m);
 		for (int i = 0; i < m; i++) {
 			for (int j = 0; j < n; j++) {
 				ret.put(j, i, image.getRGB(i, j));
 			}
 		}
-		
+
+		return ret;
+	}
+
+	/**
+	 * Convert an image into a matrix of normalized gray values, one row per
+	 * pixel row.
+	 *
+	 * @see #convertImage(BufferedImage, double[], int)
+	 */
+	public static DoubleMatrix convertImageToNormalizedMatrix(
+			BufferedImage image) {
+		DoubleMatrix ret = new DoubleMatrix(image.getHeight(),
+				image.getWidth());
+		convertImage(image, ret.data, 0);
+
 		return ret;
 	}
-	
+
+	/**
+	 * Write the gray values of an image, normalized to lie in the range from 0
+	 * to 1 (inclusive on both ends), into `target` starting at `offset`. The
+	 * values are laid out like the column-major data of a matrix with one row
+	 * per pixel row, i.e. column after column of the image.
+	 *
+	 * Byte rasters (such as those of decoded gray, RGB and RGBA images) are
+	 * read directly, and colors are grayscaled as
+	 * $0.299 R + 0.587 G + 0.114 B$ in the same pass. Other images, e.g. ones
+	 * with a palette, are read through their color model in bulk first. An
+	 * image of a single gray value gives all zeros.
+	 */
+	public static void convertImage(BufferedImage image, double[] target,
+			int offset) {
+		Pixels pixels = new Pixels(image);
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int min = 255;
+		int max = 0;
+
+		for (int x = 0, i = offset; x < width; x++) {
+			for (int y = 0; y < height; y++, i++) {
+				int gray = pixels.gray(x, y);
+				min = Math.min(min, gray);
+				max = Math.max(max, gray);
+				target[i] = gray;
+			}
+		}
+
+		double scale = max > min ? 1.0 / (max - min) : 0;
+		for (int i = offset, end = offset + width * height; i < end; i++) {
+			target[i] = (target[i] - min) * scale;
+		}
+	}
+
+	/**
+	 * @see #convertImage(BufferedImage, double[], int)
+	 */
+	public static void convertImage(BufferedImage image, float[] target,
+			int offset) {
+		Pixels pixels = new Pixels(image);
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int min = 255;
+		int max = 0;
+
+		for (int x = 0, i = offset; x < width; x++) {
+			for (int y = 0; y < height; y++, i++) {
+				int gray = pixels.gray(x, y);
+				min = Math.min(min, gray);
+				max = Math.max(max, gray);
+				target[i] = gray;
+			}
+		}
+
+		float scale = max > min ? 1.0f / (max - min) : 0;
+		for (int i = offset, end = offset + width * height; i < end; i++) {
+			target[i] = (target[i] - min) * scale;
+		}
+	}
+
 	/**
 	 * Normalize all elements of a matrix such that they lie in the range from 0
 	 * to 1 (inclusive on both ends).
@@ -67,4 +150,92 @@ public class ImageConverter {
 		return m;
 	}
 
+	/**
+	 * Reads the 8-bit gray values of an image's pixels.
+	 */
+	private static final class Pixels {
+
+		/**
+		 * The bytes of an interleaved byte raster, or null to go through the
+		 * color model
+		 */
+		private final byte[] data;
+		private final int pixelStride;
+		private final int scanlineStride;
+		private final int base;
+		private final int red;
+		private final int green;
+		private final int blue;
+		private final boolean color;
+
+		/**
+		 * The image's pixels in the default RGB color model, if there is no
+		 * byte raster to read
+		 */
+		private final int[] rgb;
+		private final int width;
+
+		Pixels(BufferedImage image) {
+			width = image.getWidth();
+
+			Raster raster = image.getRaster();
+			ColorModel colorModel = image.getColorModel();
+			int bands = raster.getNumBands();
+			int colorSpace = bands < 3 ? ColorSpace.TYPE_GRAY
+					: ColorSpace.TYPE_RGB;
+
+			if (raster.getDataBuffer() instanceof DataBufferByte
+					&& raster.getSampleModel() instanceof PixelInterleavedSampleModel
+					&& colorModel instanceof ComponentColorModel
+					&& colorModel.getComponentSize(0) == 8
+					&& colorModel.getColorSpace().getType() == colorSpace) {
+				PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster
+						.getSampleModel();
+				int[] bandOffsets = sm.getBandOffsets();
+
+				data = ((DataBufferByte) raster.getDataBuffer()).getData();
+				pixelStride = sm.getPixelStride();
+				scanlineStride = sm.getScanlineStride();
+				base = raster.getDataBuffer().getOffset()
+						- raster.getSampleModelTranslateY() * scanlineStride
+						- raster.getSampleModelTranslateX() * pixelStride;
+
+				// Any alpha band comes last and is ignored
+				color = bands >= 3;
+				red = bandOffsets[0];
+				green = color ? bandOffsets[1] : red;
+				blue = color ? bandOffsets[2] : red;
+				rgb = null;
+			} else {
+				data = null;
+				pixelStride = scanlineStride = base = red = green = blue = 0;
+				color = true;
+				rgb = image.getRGB(0, 0, width, image.getHeight(), null, 0,
+						width);
+			}
+		}
+
+		int gray(int x, int y) {
+			if (data == null) {
+				int p = rgb[y * width + x];
+				return luma((p >> 16) & 0xff, (p >> 8) & 0xff, p & 0xff);
+			}
+
+			int i = base + y * scanlineStride + x * pixelStride;
+			if (!color) {
+				return data[i + red] & 0xff;
+			}
+			return luma(data[i + red] & 0xff, data[i + green] & 0xff,
+					data[i + blue] & 0xff);
+		}
+
+		/**
+		 * Rec. 601 luma in fixed point
+		 */
+		private static int luma(int r, int g, int b) {
+			return (77 * r + 150 * g + 29 * b + 128) >> 8;
+		}
+
+	}
+
 }
@@ -0,0 +1,245 @@
+package com.dvcs.neuralnetwork.driver;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.dvcs.neuralnetwork.LatencyStatistics;
+
+/**
+ * One stage of a pipeline which processes items on a pool of threads of its
+ * own and passes the results on to the next stage.
+ *
+ * Items wait for the stage's threads in a bounded queue. What happens when
+ * that queue is full depends on the stage's {@link Overflow} policy: either
+ * the submitting thread blocks until there is room, so that a slow stage
+ * holds back the stages before it, or the oldest waiting item is dropped, so
+ * that a lagging stage (e.g. a display) never holds back anything.
+ *
+ * @param <I>
+ *            The type of items the stage takes
+ * @param <O>
+ *            The type of items it passes on
+ */
+public class PipelineStage<I, O> {
+
+	private static final Logger LOGGER = Logger.getLogger("PipelineStage");
+
+	/**
+	 * The number of recent latencies from which percentiles are computed.
+	 */
+	static final int LATENCY_WINDOW = 1024;
+
+	public enum Overflow {
+		/**
+		 * Block submitters until there is room in the queue.
+		 */
+		BLOCK,
+
+		/**
+		 * Drop the item which has waited longest to make room.
+		 */
+		DROP_OLDEST
+	}
+
+	public interface Handler<I, O> {
+		/**
+		 * @return The item to pass on to the next stage, or null to pass on
+		 *         nothing
+		 */
+		public O process(I item);
+	}
+
+	private static class Entry<I> {
+		final I item;
+		final long submitted;
+
+		Entry(I item) {
+			this.item = item;
+			this.submitted = System.nanoTime();
+		}
+	}
+
+	private final String name;
+	private final int threadCount;
+	private final Overflow overflow;
+	private final Handler<I, O> handler;
+	private final PipelineStage<O, ?> next;
+	private final BlockingQueue<Entry<I>> queue;
+
+	private final LatencyStatistics latencies = new LatencyStatistics(
+			LATENCY_WINDOW);
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+
+	private Thread[] threads;
+
+	/**
+	 * @param threadCount
+	 *            The number of threads which process items. A handler which is
+	 *            not safe for concurrent use needs a single one.
+	 * @param capacity
+	 *            The number of items which may wait for the stage's threads
+	 * @param next
+	 *            The stage to pass results on to, or null
+	 */
+	public PipelineStage(String name, int threadCount, int capacity,
+			Overflow overflow, Handler<I, O> handler, PipelineStage<O, ?> next) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("A stage needs a thread");
+		}
+
+		this.name = name;
+		this.threadCount = threadCount;
+		this.overflow = overflow;
+		this.handler = handler;
+		this.next = next;
+		this.queue = new ArrayBlockingQueue<Entry<I>>(capacity);
+	}
+
+	public synchronized void start() {
+		if (threads != null) {
+			throw new IllegalStateException("The stage is already running");
+		}
+
+		threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					work();
+				}
+			}, name + "-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * Stop the stage's threads after their current items and wait for them to
+	 * finish. Items which are still queued are dropped.
+	 */
+	public void shutdown() throws InterruptedException {
+		Thread[] running;
+		synchronized (this) {
+			running = threads;
+			threads = null;
+		}
+		if (running == null) {
+			return;
+		}
+
+		for (Thread thread : running) {
+			thread.interrupt();
+		}
+		for (Thread thread : running) {
+			if (thread != Thread.currentThread()) {
+				thread.join();
+			}
+		}
+		queue.clear();
+	}
+
+	public synchronized boolean isRunning() {
+		return threads != null;
+	}
+
+	/**
+	 * Queue an item for the stage, blocking or dropping the oldest queued item
+	 * if the queue is full, depending on the stage's overflow policy.
+	 */
+	public void submit(I item) throws InterruptedException {
+		Entry<I> entry = new Entry<I>(item);
+
+		if (overflow == Overflow.BLOCK) {
+			queue.put(entry);
+			return;
+		}
+
+		while (!queue.offer(entry)) {
+			if (queue.poll() != null) {
+				droppedCount.incrementAndGet();
+			}
+		}
+	}
+
+	private void work() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Entry<I> entry = queue.take();
+
+				O result;
+				try {
+					result = handler.process(entry.item);
+				} catch (RuntimeException e) {
+					failedCount.incrementAndGet();
+					LOGGER.log(Level.WARNING, "Stage " + name
+							+ " failed to process an item", e);
+					continue;
+				}
+				latencies.record(System.nanoTime() - entry.submitted);
+
+				if (result != null && next != null) {
+					next.submit(result);
+				}
+			}
+		} catch (InterruptedException e) {
+			// shut down
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The stage results are passed on to, or null.
+	 */
+	public PipelineStage<O, ?> getNext() {
+		return next;
+	}
+
+	/**
+	 * @return The number of items waiting for the stage's threads.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * @return The given percentile (between 0 and 100) of the time recent
+	 *         items took from their submission until the stage had processed
+	 *         them, in nanoseconds.
+	 */
+	public long getLatencyPercentile(double percentile) {
+		return latencies.getPercentile(percentile);
+	}
+
+	public long getProcessedCount() {
+		return latencies.getCount();
+	}
+
+	/**
+	 * @return The number of items dropped because the queue was full.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * @return The number of items whose handler threw.
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	public String toString() {
+		return name + ": " + getQueueDepth() + " queued, "
+				+ getProcessedCount() + " processed, " + getDroppedCount()
+				+ " dropped, " + getFailedCount() + " failed, latency p50 "
+				+ getLatencyPercentile(50) / 1000 + " micros, p99 "
+				+ getLatencyPercentile(99) / 1000 + " micros";
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.dvcs.tools;
+
+import java.math.BigInteger;
+
+/**
+ * Converts a decimal number, given as a significand and a power of ten, to
+ * the nearest double, without going through a String.
+ *
+ * Numbers whose significand and power of ten are both exact doubles are
+ * converted with a single multiplication or division (Clinger's fast path).
+ * The others go through the Eisel-Lemire algorithm, which multiplies the
+ * significand by a 128-bit approximation of the power of ten. In the rare
+ * cases where that approximation can't decide the rounding, or where the
+ * result is subnormal or out of range, the conversion gives up and the
+ * caller has to fall back to {@link Double#parseDouble}.
+ */
+final class DecimalConversion {
+
+	/**
+	 * The range of powers of ten covered by the 128-bit table. Anything
+	 * outside of it is zero or infinite, which is left to the fallback.
+	 */
+	static final int MIN_EXPONENT = -348;
+	static final int MAX_EXPONENT = 347;
+
+	private static final double[] EXACT_POWERS = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+
+	/*
+	 * The upper and lower 64 bits of 10^e, normalized to 128 bits with the
+	 * top bit set and rounded down, for e from MIN_EXPONENT.
+	 */
+	private static final long[] POWERS_HIGH;
+	private static final long[] POWERS_LOW;
+
+	static {
+		int count = MAX_EXPONENT - MIN_EXPONENT + 1;
+		POWERS_HIGH = new long[count];
+		POWERS_LOW = new long[count];
+
+		for (int e = MIN_EXPONENT; e <= MAX_EXPONENT; e++) {
+			BigInteger power = BigInteger.TEN.pow(Math.abs(e));
+			BigInteger mantissa;
+			if (e >= 0) {
+				int shift = power.bitLength() - 128;
+				mantissa = shift > 0 ? power.shiftRight(shift) : power
+						.shiftLeft(-shift);
+			} else {
+				// 2^(bits + 127) / 10^-e lies strictly between 2^127 and
+				// 2^128
+				mantissa = BigInteger.ONE.shiftLeft(power.bitLength() + 127)
+						.divide(power);
+			}
+
+			POWERS_HIGH[e - MIN_EXPONENT] = mantissa.shiftRight(64)
+					.longValue();
+			POWERS_LOW[e - MIN_EXPONENT] = mantissa.longValue();
+		}
+	}
+
+	private DecimalConversion() {
+	}
+
+	/**
+	 * Compute the double nearest to $significand \cdot 10^{exponent}$.
+	 *
+	 * @param significand
+	 *            The decimal digits, as an unsigned number of at most 19
+	 *            digits
+	 * @return The correctly rounded double, or NaN if it can't be determined
+	 *         here
+	 */
+	static double toDouble(long significand, int exponent, boolean negative) {
+		if (significand == 0) {
+			return negative ? -0.0 : 0.0;
+		}
+
+		if (significand >= 0 && significand <= MAX_EXACT_SIGNIFICAND
+				&& exponent >= -22 && exponent <= 22) {
+			double value = significand;
+			if (exponent >= 0) {
+				value *= EXACT_POWERS[exponent];
+			} else {
+				value /= EXACT_POWERS[-exponent];
+			}
+
+			return negative ? -value : value;
+		}
+
+		if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+			return Double.NaN;
+		}
+
+		return eiselLemire(significand, exponent, negative);
+	}
+
+	private static double eiselLemire(long significand, int exponent,
+			boolean negative) {
+		int leadingZeros = Long.numberOfLeadingZeros(significand);
+		long man = significand << leadingZeros;
+		long exponent2 = ((217706 * exponent) >> 16) + 64 + 1023
+				- leadingZeros;
+
+		long powerHigh = POWERS_HIGH[exponent - MIN_EXPONENT];
+		long powerLow = POWERS_LOW[exponent - MIN_EXPONENT];
+
+		long high = multiplyHigh(man, powerHigh);
+		long low = man * powerHigh;
+
+		// If the bits below the 54 we keep are all ones, the truncated
+		// lower half of the power of ten might carry into them.
+		if ((high & 0x1FF) == 0x1FF && lessUnsigned(low + man, man)) {
+			long lowerHigh = multiplyHigh(man, powerLow);
+			long lowerLow = man * powerLow;
+
+			long mergedHigh = high;
+			long mergedLow = low + lowerHigh;
+			if (lessUnsigned(mergedLow, low)) {
+				mergedHigh++;
+			}
+
+			if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow == -1
+					&& lessUnsigned(lowerLow + man, man)) {
+				return Double.NaN;
+			}
+
+			high = mergedHigh;
+			low = mergedLow;
+		}
+
+		long msb = high >>> 63;
+		long mantissa = high >>> (msb + 9);
+		exponent2 -= 1 ^ msb;
+
+		// Exactly halfway between two doubles, which the truncated product
+		// can't distinguish from slightly above
+		if (low == 0 && (high & 0x1FF) == 0 && (mantissa & 3) == 1) {
+			return Double.NaN;
+		}
+
+		mantissa += mantissa & 1;
+		mantissa >>>= 1;
+		if ((mantissa >>> 53) > 0) {
+			mantissa >>>= 1;
+			exponent2++;
+		}
+
+		// Subnormal, infinite or out of range
+		if (exponent2 <= 0 || exponent2 >= 0x7FF) {
+			return Double.NaN;
+		}
+
+		long bits = exponent2 << 52 | mantissa & 0x000FFFFFFFFFFFFFL;
+		if (negative) {
+			bits |= 0x8000000000000000L;
+		}
+
+		return Double.longBitsToDouble(bits);
+	}
+
+	/**
+	 * The upper 64 bits of the unsigned 128-bit product of x and y.
+	 */
+	static long multiplyHigh(long x, long y) {
+		long x0 = x & 0xFFFFFFFFL, x1 = x >>> 32;
+		long y0 = y & 0xFFFFFFFFL, y1 = y >>> 32;
+
+		long t = x1 * y0 + ((x0 * y0) >>> 32);
+		long w1 = (t & 0xFFFFFFFFL) + x0 * y1;
+
+		return x1 * y1 + (t >>> 32) + (w1 >>> 32);
+	}
+
+	private static boolean lessUnsigned(long a, long b) {
+		return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE);
+	}
+
+}
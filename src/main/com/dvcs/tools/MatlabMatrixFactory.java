@@ -1,12 +1,43 @@
 package com.dvcs.tools;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jblas.DoubleMatrix;
 
 public class MatlabMatrixFactory {
+
+	/**
+	 * Files are only split into row ranges parsed in parallel if each range
+	 * gets at least this many bytes.
+	 */
+	static final long MIN_RANGE_SIZE = 1 << 20;
+
+	/**
+	 * Receives the rows of a file read by
+	 * {@link MatlabMatrixFactory#streamFromFile(File, RowHandler)}.
+	 */
+	public interface RowHandler {
+		/**
+		 * @param values
+		 *            The row's cells. The array is reused for the next row,
+		 *            so it must be copied to be kept.
+		 */
+		public void handleRow(int row, double[] values);
+	}
+
 	public static DoubleMatrix loadFromReader(Reader r) throws IOException,
 			RuntimeException {
 		DoubleMatrix ret = null;
@@ -60,4 +91,291 @@ public class MatlabMatrixFactory {
 
 		return ret;
 	}
+
+	/**
+	 * Load a Matlab text file, splitting it into row ranges which are parsed
+	 * in parallel on all processors.
+	 */
+	public static DoubleMatrix loadFromFile(File file) throws IOException,
+			RuntimeException {
+		return loadFromFile(file, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Load a Matlab text file, splitting it into row ranges which are parsed
+	 * in parallel.
+	 *
+	 * The file is memory-mapped and parsed straight from its bytes, without
+	 * creating Strings for its lines or cells.
+	 *
+	 * @param parallelism
+	 *            The largest number of ranges to parse at the same time
+	 */
+	public static DoubleMatrix loadFromFile(File file, int parallelism)
+			throws IOException, RuntimeException {
+		return loadFromFile(file, parallelism, MIN_RANGE_SIZE);
+	}
+
+	static DoubleMatrix loadFromFile(File file, int parallelism,
+			long minRangeSize) throws IOException, RuntimeException {
+		RandomAccessFile f = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = f.getChannel();
+			final Header header = readHeader(channel);
+			final DoubleMatrix ret = new DoubleMatrix(header.rows,
+					header.columns);
+
+			long dataSize = channel.size() - header.dataOffset;
+			int rangeCount = (int) Math.max(1,
+					Math.min(parallelism, dataSize / minRangeSize));
+
+			if (rangeCount == 1) {
+				int rows = parseRange(channel, header.dataOffset,
+						channel.size(), header, ret.data, 0);
+				checkRowCount(header, rows);
+
+				return ret;
+			}
+
+			final long[] bounds = splitRanges(channel, header.dataOffset,
+					rangeCount);
+
+			ExecutorService pool = Executors.newFixedThreadPool(rangeCount);
+			try {
+				// Count the rows in each range to know where its rows go
+				List<Callable<Integer>> counts = new ArrayList<Callable<Integer>>();
+				for (int r = 0; r < rangeCount; r++) {
+					final int range = r;
+					counts.add(new Callable<Integer>() {
+						public Integer call() throws IOException {
+							return countRows(channel, bounds[range],
+									bounds[range + 1]);
+						}
+					});
+				}
+
+				final int[] firstRows = new int[rangeCount + 1];
+				List<Future<Integer>> counted = pool.invokeAll(counts);
+				for (int r = 0; r < rangeCount; r++) {
+					firstRows[r + 1] = firstRows[r] + get(counted.get(r));
+				}
+				checkRowCount(header, firstRows[rangeCount]);
+
+				List<Callable<Integer>> parses = new ArrayList<Callable<Integer>>();
+				for (int r = 0; r < rangeCount; r++) {
+					final int range = r;
+					parses.add(new Callable<Integer>() {
+						public Integer call() throws IOException {
+							return parseRange(channel, bounds[range],
+									bounds[range + 1], header, ret.data,
+									firstRows[range]);
+						}
+					});
+				}
+
+				for (Future<Integer> parsed : pool.invokeAll(parses)) {
+					get(parsed);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while loading " + file, e);
+			} finally {
+				pool.shutdownNow();
+			}
+
+			return ret;
+		} finally {
+			f.close();
+		}
+	}
+
+	/**
+	 * Read a Matlab text file row by row, without keeping the whole matrix in
+	 * memory.
+	 *
+	 * @return The size of the matrix read
+	 */
+	public static MatrixSize streamFromFile(File file, RowHandler handler)
+			throws IOException, RuntimeException {
+		RandomAccessFile f = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = f.getChannel();
+			Header header = readHeader(channel);
+			MatlabTextScanner scanner = new MatlabTextScanner(channel,
+					header.dataOffset, channel.size());
+			double[] values = new double[header.columns];
+
+			int row = 0;
+			while (scanner.nextLine()) {
+				if (row == header.rows) {
+					checkRowCount(header, row + 1);
+				}
+
+				scanner.parseLine(values, 0, 1, header.columns, row);
+				handler.handleRow(row, values);
+				row++;
+			}
+			checkRowCount(header, row);
+
+			return new MatrixSize(header.rows, header.columns);
+		} finally {
+			f.close();
+		}
+	}
+
+	/**
+	 * Read the size of the matrix in a Matlab text file from its header.
+	 */
+	public static MatrixSize readSize(File file) throws IOException,
+			RuntimeException {
+		RandomAccessFile f = new RandomAccessFile(file, "r");
+		try {
+			Header header = readHeader(f.getChannel());
+			return new MatrixSize(header.rows, header.columns);
+		} finally {
+			f.close();
+		}
+	}
+
+	private static class Header {
+		int rows = -1;
+		int columns = -1;
+
+		/**
+		 * Where the first row starts
+		 */
+		long dataOffset;
+	}
+
+	private static Header readHeader(FileChannel channel) throws IOException {
+		Header header = new Header();
+		MatlabTextScanner scanner = new MatlabTextScanner(channel, 0,
+				channel.size());
+
+		while (scanner.nextLine()) {
+			if (scanner.getFirstByte() != '#') {
+				header.dataOffset = scanner.getLineOffset();
+				break;
+			}
+
+			String line = scanner.getLine();
+			if (line.startsWith("# rows: ")) {
+				header.rows = Integer.parseInt(line.substring("# rows: "
+						.length()));
+			} else if (line.startsWith("# columns: ")) {
+				header.columns = Integer.parseInt(line
+						.substring("# columns: ".length()));
+			}
+			header.dataOffset = channel.size();
+		}
+
+		if (header.rows < 0 || header.columns < 0) {
+			throw new RuntimeException(
+					"Given file is missing Matlab text header");
+		}
+
+		return header;
+	}
+
+	/**
+	 * Split the data from the given offset into ranges of about the same
+	 * size, each starting at the beginning of a line.
+	 *
+	 * @return The range boundaries, starting with the offset and ending with
+	 *         the file size
+	 */
+	private static long[] splitRanges(FileChannel channel, long offset,
+			int count) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[count + 1];
+		bounds[0] = offset;
+		bounds[count] = size;
+
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		for (int r = 1; r < count; r++) {
+			long position = Math.max(bounds[r - 1],
+					offset + (size - offset) * r / count);
+
+			// Move past the end of the line the position falls into
+			search: while (position < size) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				for (int i = 0; i < read; i++) {
+					if (buffer.get(i) == '\n') {
+						position += i + 1;
+						break search;
+					}
+				}
+				position += read;
+			}
+
+			bounds[r] = Math.min(position, size);
+		}
+
+		return bounds;
+	}
+
+	private static int countRows(FileChannel channel, long start, long end)
+			throws IOException {
+		MatlabTextScanner scanner = new MatlabTextScanner(channel, start, end);
+
+		int rows = 0;
+		while (scanner.nextLine()) {
+			rows++;
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Parse the rows in the given range into a column-major matrix.
+	 *
+	 * @return The number of rows parsed
+	 */
+	private static int parseRange(FileChannel channel, long start, long end,
+			Header header, double[] data, int firstRow) throws IOException {
+		MatlabTextScanner scanner = new MatlabTextScanner(channel, start, end);
+
+		int row = firstRow;
+		while (scanner.nextLine()) {
+			if (row == header.rows) {
+				checkRowCount(header, row + 1);
+			}
+
+			scanner.parseLine(data, row, header.rows, header.columns, row);
+			row++;
+		}
+
+		return row - firstRow;
+	}
+
+	private static void checkRowCount(Header header, int rows) {
+		if (rows > header.rows) {
+			throw new RuntimeException("File has more rows than the "
+					+ header.rows + " given in its header");
+		} else if (rows < header.rows) {
+			throw new RuntimeException("File has " + rows
+					+ " rows but its header gives " + header.rows);
+		}
+	}
+
+	private static int get(Future<Integer> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
 }
@@ -0,0 +1,304 @@
+package com.dvcs.tools;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the lines of a range of a Matlab text file through a memory-mapped
+ * window, and parses their cells straight from the mapped bytes.
+ *
+ * The scanner covers the lines whose first non-blank byte lies in
+ * [start, end); the last of them may run past end. Blank lines are skipped.
+ * The window slides along the file as lines are read, so ranges of any size
+ * can be scanned, as long as each single line fits into a window.
+ */
+final class MatlabTextScanner {
+
+	static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+	private static final int MAX_WINDOW_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final long fileSize;
+	private final long end;
+	private final int windowSize;
+
+	private MappedByteBuffer buffer;
+	private long windowStart;
+	private int limit;
+	private int pos;
+
+	private int lineStart;
+	private int lineEnd;
+
+	MatlabTextScanner(FileChannel channel, long start, long end)
+			throws IOException {
+		this(channel, start, end, DEFAULT_WINDOW_SIZE);
+	}
+
+	MatlabTextScanner(FileChannel channel, long start, long end,
+			int windowSize) throws IOException {
+		this.channel = channel;
+		this.fileSize = channel.size();
+		this.end = Math.min(end, fileSize);
+		this.windowSize = windowSize;
+
+		windowStart = start;
+	}
+
+	/**
+	 * Move to the next non-blank line.
+	 *
+	 * @return False if there are no more lines in the range
+	 */
+	boolean nextLine() throws IOException {
+		while (true) {
+			if (windowStart + pos >= end) {
+				return false;
+			}
+			if (pos >= limit) {
+				map(windowStart + pos, windowSize);
+				continue;
+			}
+
+			byte c = buffer.get(pos);
+			if (c != '\n' && !isBlank(c)) {
+				break;
+			}
+			pos++;
+		}
+
+		int i = pos;
+		while (true) {
+			while (i < limit && buffer.get(i) != '\n') {
+				i++;
+			}
+			if (i < limit || windowStart + limit == fileSize) {
+				break;
+			}
+
+			// The line runs past the window. Move the window to the line,
+			// growing it if the line doesn't even fit a whole window.
+			int scanned = i - pos;
+			int size = pos == 0 ? limit * 2 : windowSize;
+			if (size > MAX_WINDOW_SIZE || size < 0) {
+				throw new IOException("Line at byte " + (windowStart + pos)
+						+ " is too long");
+			}
+			map(windowStart + pos, Math.max(size, windowSize));
+			i = scanned;
+		}
+
+		lineStart = pos;
+		lineEnd = i;
+		pos = Math.min(i + 1, limit);
+
+		return true;
+	}
+
+	private void map(long position, int size) throws IOException {
+		long length = Math.min(size, fileSize - position);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		windowStart = position;
+		limit = (int) length;
+		pos = 0;
+	}
+
+	/**
+	 * @return The file offset of the current line's first non-blank byte
+	 */
+	long getLineOffset() {
+		return windowStart + lineStart;
+	}
+
+	/**
+	 * @return The current line's first non-blank byte
+	 */
+	byte getFirstByte() {
+		return buffer.get(lineStart);
+	}
+
+	/**
+	 * @return The current line, without surrounding blanks
+	 */
+	String getLine() {
+		int e = lineEnd;
+		while (e > lineStart && isBlank(buffer.get(e - 1))) {
+			e--;
+		}
+
+		return text(lineStart, e);
+	}
+
+	/**
+	 * Parse the cells of the current line into
+	 * target[offset + column * stride].
+	 *
+	 * @param row
+	 *            The row the line holds, for error messages
+	 * @throws RuntimeException
+	 *             If the line doesn't have the given number of cells, or
+	 *             one of them isn't a number
+	 */
+	void parseLine(double[] target, int offset, int stride, int columns,
+			int row) {
+		int i = lineStart;
+		int count = 0;
+
+		while (true) {
+			while (i < lineEnd && isBlank(buffer.get(i))) {
+				i++;
+			}
+			if (i == lineEnd) {
+				break;
+			}
+
+			if (count < columns) {
+				i = parseCell(i, target, offset + count * stride, row);
+			} else {
+				i = skipCell(i);
+			}
+			count++;
+		}
+
+		if (count != columns) {
+			throw new RuntimeException("Row " + row
+					+ " has the wrong number of cells (expected " + columns
+					+ " but saw " + count + ")");
+		}
+	}
+
+	/**
+	 * Parse the cell starting at i into target[index].
+	 *
+	 * @return The position after the cell
+	 */
+	private int parseCell(int i, double[] target, int index, int row) {
+		int start = i;
+		byte c = buffer.get(i);
+
+		boolean negative = c == '-';
+		if (negative || c == '+') {
+			i++;
+		}
+
+		long significand = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean sawDigit = false;
+		boolean truncated = false;
+
+		while (i < lineEnd && (c = buffer.get(i)) >= '0' && c <= '9') {
+			if (digits < 19) {
+				significand = significand * 10 + (c - '0');
+				if (significand != 0) {
+					digits++;
+				}
+			} else {
+				exponent++;
+				truncated |= c != '0';
+			}
+			sawDigit = true;
+			i++;
+		}
+
+		if (i < lineEnd && buffer.get(i) == '.') {
+			i++;
+			while (i < lineEnd && (c = buffer.get(i)) >= '0' && c <= '9') {
+				if (digits < 19) {
+					significand = significand * 10 + (c - '0');
+					if (significand != 0) {
+						digits++;
+					}
+					exponent--;
+				} else {
+					truncated |= c != '0';
+				}
+				sawDigit = true;
+				i++;
+			}
+		}
+
+		boolean valid = sawDigit;
+		if (valid && i < lineEnd && ((c = buffer.get(i)) == 'e' || c == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < lineEnd && ((c = buffer.get(i)) == '-' || c == '+')) {
+				negativeExponent = c == '-';
+				i++;
+			}
+
+			int e = 0;
+			valid = false;
+			while (i < lineEnd && (c = buffer.get(i)) >= '0' && c <= '9') {
+				if (e < 100000) {
+					e = e * 10 + (c - '0');
+				}
+				valid = true;
+				i++;
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+
+		if (valid && (i == lineEnd || isBlank(buffer.get(i))) && !truncated) {
+			double value = DecimalConversion.toDouble(significand, exponent,
+					negative);
+			if (!Double.isNaN(value)) {
+				target[index] = value;
+				return i;
+			}
+		}
+
+		// Special values, numbers with too many digits and ones the fast
+		// conversion can't round
+		int e = skipCell(start);
+		target[index] = parseText(text(start, e), row);
+
+		return e;
+	}
+
+	private int skipCell(int i) {
+		while (i < lineEnd && !isBlank(buffer.get(i))) {
+			i++;
+		}
+
+		return i;
+	}
+
+	private static double parseText(String cell, int row) {
+		switch (cell) {
+		case "Inf":
+		case "+Inf":
+			return Double.POSITIVE_INFINITY;
+		case "-Inf":
+			return Double.NEGATIVE_INFINITY;
+		case "NaN":
+		case "-NaN":
+		case "NA":
+			return Double.NaN;
+		}
+
+		try {
+			return Double.parseDouble(cell);
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Row " + row + " has an invalid cell \""
+					+ cell + "\"");
+		}
+	}
+
+	private String text(int from, int to) {
+		byte[] bytes = new byte[to - from];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(from + i);
+		}
+
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	private static boolean isBlank(byte c) {
+		return c == ' ' || c == '\t' || c == '\r';
+	}
+
+}
@@ -1,11 +1,15 @@
 package com.dvcs.tools;
 
 import org.jblas.DoubleMatrix;
+import org.jblas.FloatMatrix;
+import org.jblas.NativeBlas;
+
+import de.jungblut.math.kernel.VectorKernels;
 
 public class MatrixTools {
 
 	public static DoubleMatrix copy(DoubleMatrix a) {
-		return new DoubleMatrix(a.toArray2());
+		return a.dup();
 	}
 
 	/**
@@ -53,45 +57,405 @@ public class MatrixTools {
 	 * Replace each element x of a matrix with 1/(1+e^(-x)).
 	 */
 	public static DoubleMatrix matrixSigmoid(DoubleMatrix z) {
-		z = copy(z);
+		return matrixSigmoidi(z.dup());
+	}
+
+	/**
+	 * Replace each element x of a matrix with 1/(1+e^(-x)), in place.
+	 * 
+	 * @return `z`
+	 */
+	public static DoubleMatrix matrixSigmoidi(DoubleMatrix z) {
+		sigmoid(z.data, 0, z.data, 0, z.length, false);
+		return z;
+	}
+
+	public static DoubleMatrix matrixSigmoidGradient(DoubleMatrix z) {
+		return matrixSigmoidGradienti(z.dup());
+	}
+
+	/**
+	 * Replace each element x of a matrix with the derivative of the sigmoid
+	 * function at x, in place.
+	 * 
+	 * @return `z`
+	 */
+	public static DoubleMatrix matrixSigmoidGradienti(DoubleMatrix z) {
+		sigmoidAndGradient(z.data, 0, null, 0, z.data, 0, z.length, false);
+		return z;
+	}
+
+	/**
+	 * Write 1/(1+e^(-x)) for each element x of `z` into `target`, starting at
+	 * row `rowOffset` of `target`. `target` must have the same number of
+	 * columns as `z` and at least `rowOffset` more rows.
+	 */
+	public static void matrixSigmoid(DoubleMatrix z, DoubleMatrix target,
+			int rowOffset) {
+		matrixSigmoid(z, target, rowOffset, null, false);
+	}
+
+	/**
+	 * Write 1/(1+e^(-x)) for each element x of `z` into `target`, starting at
+	 * row `rowOffset` of `target`, and optionally the derivative of the
+	 * sigmoid at x into `gradient`. Both are computed from a single
+	 * exponential.
+	 * 
+	 * @param gradient
+	 *            Matrix with the dimensions of `z`, or null
+	 * @param approximate
+	 *            Whether to use {@link #fastExp} rather than `Math.exp`
+	 */
+	public static void matrixSigmoid(DoubleMatrix z, DoubleMatrix target,
+			int rowOffset, DoubleMatrix gradient, boolean approximate) {
+		int rows = z.getRows();
+		int targetRows = target.getRows();
 
-		for (int i = 0; i < z.getRows(); i++) {
-			for (int j = 0; j < z.getColumns(); j++) {
-				z.put(i, j, sigmoid(z.get(i, j)));
+		if (z.getColumns() != target.getColumns()
+				|| rows + rowOffset > targetRows) {
+			throw new RuntimeException(
+					"Target matrix is too small to hold the sigmoid of the given matrix");
+		}
+
+		if (gradient != null && !gradient.sameSize(z)) {
+			throw new RuntimeException(
+					"Gradient matrix dimensions do not correspond with those of the given matrix");
+		}
+
+		for (int j = 0; j < z.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * targetRows + rowOffset;
+
+			if (gradient == null) {
+				sigmoid(z.data, from, target.data, to, rows, approximate);
+			} else {
+				sigmoidAndGradient(z.data, from, target.data, to,
+						gradient.data, from, rows, approximate);
 			}
 		}
+	}
 
-		return z;
+	/**
+	 * Multiply each element of `delta` in place by the derivative of the
+	 * sigmoid function, given the sigmoid's *output* $a$ at the same position
+	 * of `activation` (starting at row `rowOffset`). Since
+	 * $g'(z) = g(z) (1 - g(z))$ no exponential needs to be evaluated.
+	 */
+	public static void multiplySigmoidGradient(DoubleMatrix delta,
+			DoubleMatrix activation, int rowOffset) {
+		int rows = delta.getRows();
+		int activationRows = activation.getRows();
+
+		if (delta.getColumns() != activation.getColumns()
+				|| rows + rowOffset > activationRows) {
+			throw new RuntimeException(
+					"Activation matrix dimensions do not correspond with those of the delta matrix");
+		}
+
+		double[] d = delta.data;
+		double[] a = activation.data;
+
+		for (int j = 0; j < delta.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * activationRows + rowOffset;
+
+			for (int i = 0; i < rows; i++) {
+				double ai = a[to + i];
+				d[from + i] *= ai * (1 - ai);
+			}
+		}
 	}
 
-	public static DoubleMatrix matrixSigmoidGradient(DoubleMatrix z) {
-		z = copy(z);
+	/**
+	 * Single-precision version of
+	 * {@link #matrixSigmoid(DoubleMatrix, DoubleMatrix, int, DoubleMatrix, boolean)}
+	 * without the gradient.
+	 * 
+	 * @param approximate
+	 *            Whether to use {@link #fastExp(float)} rather than
+	 *            `Math.exp`
+	 */
+	public static void matrixSigmoid(FloatMatrix z, FloatMatrix target,
+			int rowOffset, boolean approximate) {
+		int rows = z.getRows();
+		int targetRows = target.getRows();
+
+		if (z.getColumns() != target.getColumns()
+				|| rows + rowOffset > targetRows) {
+			throw new RuntimeException(
+					"Target matrix is too small to hold the sigmoid of the given matrix");
+		}
+
+		for (int j = 0; j < z.getColumns(); j++) {
+			sigmoid(z.data, j * rows, target.data, j * targetRows + rowOffset,
+					rows, approximate);
+		}
+	}
+
+	/**
+	 * Single-precision version of
+	 * {@link #multiplySigmoidGradient(DoubleMatrix, DoubleMatrix, int)}.
+	 */
+	public static void multiplySigmoidGradient(FloatMatrix delta,
+			FloatMatrix activation, int rowOffset) {
+		int rows = delta.getRows();
+		int activationRows = activation.getRows();
 
-		for (int i = 0; i < z.getRows(); i++) {
-			for (int j = 0; j < z.getColumns(); j++) {
-				double val = z.get(i, j);
-				double sig = sigmoid(val);
+		if (delta.getColumns() != activation.getColumns()
+				|| rows + rowOffset > activationRows) {
+			throw new RuntimeException(
+					"Activation matrix dimensions do not correspond with those of the delta matrix");
+		}
+
+		float[] d = delta.data;
+		float[] a = activation.data;
 
-				z.put(i, j, sig * (1 - sig));
+		for (int j = 0; j < delta.getColumns(); j++) {
+			int from = j * rows;
+			int to = j * activationRows + rowOffset;
+
+			for (int i = 0; i < rows; i++) {
+				float ai = a[to + i];
+				d[from + i] *= ai * (1 - ai);
 			}
 		}
+	}
 
-		return z;
+	/**
+	 * Write the sigmoid of `length` consecutive elements of `z` into
+	 * `target`. The ranges may be the same.
+	 */
+	public static void sigmoid(double[] z, int zOffset, double[] target,
+			int targetOffset, int length, boolean approximate) {
+		VectorKernels.get().sigmoid(z, zOffset, target, targetOffset, length,
+				approximate);
+	}
+
+	/**
+	 * Write the sigmoid of `length` consecutive single-precision elements of
+	 * `z` into `target`. The ranges may be the same.
+	 */
+	public static void sigmoid(float[] z, int zOffset, float[] target,
+			int targetOffset, int length, boolean approximate) {
+		VectorKernels.get().sigmoid(z, zOffset, target, targetOffset, length,
+				approximate);
+	}
+
+	/**
+	 * Write the sigmoid of `length` consecutive elements of `z` into `target`
+	 * and its derivative into `gradient`, evaluating one exponential per
+	 * element. Either output may be null, and either may be the same range as
+	 * `z`.
+	 */
+	public static void sigmoidAndGradient(double[] z, int zOffset,
+			double[] target, int targetOffset, double[] gradient,
+			int gradientOffset, int length, boolean approximate) {
+		for (int i = 0; i < length; i++) {
+			double x = -z[zOffset + i];
+			double sig = 1.0 / (1 + (approximate ? fastExp(x) : Math.exp(x)));
+
+			if (target != null) {
+				target[targetOffset + i] = sig;
+			}
+			if (gradient != null) {
+				gradient[gradientOffset + i] = sig * (1 - sig);
+			}
+		}
 	}
 
-	private static double sigmoid(double x) {
+	public static double sigmoid(double x) {
 		return 1.0 / (1 + Math.exp(-x));
 	}
 
-	public static double matrixSum(DoubleMatrix m) {
-		double sum = 0;
+	/**
+	 * Approximate $e^x$ with a relative error below $10^{-8}$ for $|x| \le
+	 * 700$; see {@link VectorKernels#fastExp(double)}.
+	 */
+	public static double fastExp(double x) {
+		return VectorKernels.fastExp(x);
+	}
+
+	/**
+	 * Approximate $e^x$ in single precision, with a relative error below
+	 * $3 \cdot 10^{-7}$ for $|x| \le 80$; see
+	 * {@link VectorKernels#fastExp(float)}.
+	 */
+	public static float fastExp(float x) {
+		return VectorKernels.fastExp(x);
+	}
+
+	/**
+	 * Compute $C = \alpha \, op(A) \, op(B) + \beta C$ in place, where $op(X)$
+	 * is either $X$ or $X^T$.
+	 * 
+	 * This is a thin wrapper around BLAS `dgemm` which lets callers fold
+	 * transpositions and accumulation into a single call instead of
+	 * allocating intermediate matrices. All arrays are column-major.
+	 * 
+	 * @param m
+	 *            Number of rows of $op(A)$ and of $C$
+	 * @param n
+	 *            Number of columns of $op(B)$ and of $C$
+	 * @param k
+	 *            Number of columns of $op(A)$ and rows of $op(B)$
+	 */
+	public static void gemm(boolean transA, boolean transB, int m, int n,
+			int k, double alpha, double[] a, int aOffset, int lda, double[] b,
+			int bOffset, int ldb, double beta, double[] c, int cOffset, int ldc) {
+		if (m == 0 || n == 0) {
+			return;
+		}
+
+		NativeBlas.dgemm(transA ? 'T' : 'N', transB ? 'T' : 'N', m, n, k,
+				alpha, a, aOffset, Math.max(1, lda), b, bOffset,
+				Math.max(1, ldb), beta, c, cOffset, Math.max(1, ldc));
+	}
+
+	/**
+	 * Single-precision version of
+	 * {@link #gemm(boolean, boolean, int, int, int, double, double[], int, int, double[], int, int, double, double[], int, int)},
+	 * wrapping BLAS `sgemm`.
+	 */
+	public static void gemm(boolean transA, boolean transB, int m, int n,
+			int k, float alpha, float[] a, int aOffset, int lda, float[] b,
+			int bOffset, int ldb, float beta, float[] c, int cOffset, int ldc) {
+		if (m == 0 || n == 0) {
+			return;
+		}
+
+		NativeBlas.sgemm(transA ? 'T' : 'N', transB ? 'T' : 'N', m, n, k,
+				alpha, a, aOffset, Math.max(1, lda), b, bOffset,
+				Math.max(1, ldb), beta, c, cOffset, Math.max(1, ldc));
+	}
+
+	/**
+	 * Compute $C = \alpha \, op(A) \, op(B) + \beta C$ in place for whole
+	 * matrices.
+	 */
+	public static void gemm(boolean transA, boolean transB, double alpha,
+			DoubleMatrix a, DoubleMatrix b, double beta, DoubleMatrix c) {
+		int m = transA ? a.getColumns() : a.getRows();
+		int k = transA ? a.getRows() : a.getColumns();
+		int n = transB ? b.getRows() : b.getColumns();
+
+		if (c.getRows() != m || c.getColumns() != n
+				|| (transB ? b.getColumns() : b.getRows()) != k) {
+			throw new RuntimeException(
+					"Matrix dimensions do not agree for multiplication");
+		}
+
+		gemm(transA, transB, m, n, k, alpha, a.data, 0, a.getRows(), b.data,
+				0, b.getRows(), beta, c.data, 0, c.getRows());
+	}
+
+	/**
+	 * Compute $C = A B$ in place like {@link #gemm}, skipping the zero
+	 * elements of $B$. This takes time proportional to the rows of $A$ times
+	 * the non-zero elements of $B$, so it beats BLAS when $B$ is mostly
+	 * zeros, as the input layer of a network fed binary images often is. All
+	 * arrays are column-major.
+	 * 
+	 * @param m
+	 *            Number of rows of $A$ and of $C$
+	 * @param n
+	 *            Number of columns of $B$ and of $C$
+	 * @param k
+	 *            Number of columns of $A$ and rows of $B$
+	 */
+	public static void gemmSparseB(int m, int n, int k, double[] a,
+			int aOffset, int lda, double[] b, int bOffset, int ldb, double[] c,
+			int cOffset, int ldc) {
+		for (int j = 0; j < n; j++) {
+			int cj = cOffset + j * ldc;
+			int bj = bOffset + j * ldb;
+
+			for (int i = 0; i < m; i++) {
+				c[cj + i] = 0;
+			}
+
+			for (int p = 0; p < k; p++) {
+				double x = b[bj + p];
+				if (x == 0) {
+					continue;
+				}
+
+				// Column p of A, scaled, adds to column j of C.
+				int ap = aOffset + p * lda;
+				for (int i = 0; i < m; i++) {
+					c[cj + i] += x * a[ap + i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Single-precision version of
+	 * {@link #gemmSparseB(int, int, int, double[], int, int, double[], int, int, double[], int, int)}.
+	 */
+	public static void gemmSparseB(int m, int n, int k, float[] a,
+			int aOffset, int lda, float[] b, int bOffset, int ldb, float[] c,
+			int cOffset, int ldc) {
+		for (int j = 0; j < n; j++) {
+			int cj = cOffset + j * ldc;
+			int bj = bOffset + j * ldb;
+
+			for (int i = 0; i < m; i++) {
+				c[cj + i] = 0;
+			}
+
+			for (int p = 0; p < k; p++) {
+				float x = b[bj + p];
+				if (x == 0) {
+					continue;
+				}
+
+				int ap = aOffset + p * lda;
+				for (int i = 0; i < m; i++) {
+					c[cj + i] += x * a[ap + i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The fraction of the `length` elements of `x` starting at
+	 *         `offset` which are not zero
+	 */
+	public static double density(double[] x, int offset, int length) {
+		if (length == 0) {
+			return 0;
+		}
 
-		for (int i = 0; i < m.getRows(); i++) {
-			for (int j = 0; j < m.getColumns(); j++) {
-				sum += m.get(i, j);
+		int nonZeros = 0;
+		for (int i = offset; i < offset + length; i++) {
+			if (x[i] != 0) {
+				nonZeros++;
 			}
 		}
 
-		return sum;
+		return (double) nonZeros / length;
+	}
+
+	/**
+	 * @return The fraction of the `length` elements of `x` starting at
+	 *         `offset` which are not zero
+	 */
+	public static double density(float[] x, int offset, int length) {
+		if (length == 0) {
+			return 0;
+		}
+
+		int nonZeros = 0;
+		for (int i = offset; i < offset + length; i++) {
+			if (x[i] != 0) {
+				nonZeros++;
+			}
+		}
+
+		return (double) nonZeros / length;
+	}
+
+	public static double matrixSum(DoubleMatrix m) {
+		return VectorKernels.get().sum(m.data, 0, m.length);
 	}
 }
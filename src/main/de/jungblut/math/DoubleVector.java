@@ -152,6 +152,50 @@ public interface DoubleVector {
    */
   public DoubleVector divide(DoubleVector vector);
 
+  /**
+   * Overwrites the elements of this vector with those of the given vector.
+   * 
+   * @param other a vector of the same length.
+   * @return this vector.
+   */
+  public DoubleVector assign(DoubleVector other);
+
+  /**
+   * Adds the given {@link DoubleVector} to this vector, in place.
+   * 
+   * @param v the other vector.
+   * @return this vector.
+   */
+  public DoubleVector addInPlace(DoubleVector v);
+
+  /**
+   * Subtracts the given {@link DoubleVector} from this vector, in place.
+   * 
+   * @param v the other vector.
+   * @return this vector.
+   */
+  public DoubleVector subtractInPlace(DoubleVector v);
+
+  /**
+   * Multiplies this vector by the given scalar, in place.
+   * 
+   * @param scalar the scalar.
+   * @return this vector.
+   */
+  public DoubleVector scaleInPlace(double scalar);
+
+  /**
+   * Adds a multiple of the given vector to this vector, in place (this = this
+   * + alpha * x). Each element is computed exactly as
+   * this.add(x.multiply(alpha)) would, without allocating either intermediate
+   * vector.
+   * 
+   * @param alpha the factor of x.
+   * @param x the other vector.
+   * @return this vector.
+   */
+  public DoubleVector axpy(double alpha, DoubleVector x);
+
   /**
    * Powers this vector by the given amount. (=vector^x).
    * 
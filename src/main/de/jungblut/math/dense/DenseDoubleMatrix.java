@@ -4,10 +4,14 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.jungblut.math.BooleanMatrix;
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.kernel.VectorKernels;
+import de.jungblut.math.sparse.SparseDoubleMatrix;
 import de.jungblut.math.tuple.Tuple;
 
 /**
@@ -16,6 +20,36 @@ import de.jungblut.math.tuple.Tuple;
  */
 public final class DenseDoubleMatrix implements DoubleMatrix {
 
+  /**
+   * Products with fewer multiply-adds than this are computed without tiling.
+   */
+  static final long BLOCKING_THRESHOLD = 1L << 15;
+
+  /**
+   * Products with fewer multiply-adds than this are computed on the calling
+   * thread.
+   */
+  static final long PARALLEL_THRESHOLD = 1L << 21;
+
+  /**
+   * Tile sizes of the multiplication kernel: a tile of BLOCK_K rows and
+   * BLOCK_J columns of the right-hand matrix (256 KB) stays in cache while it
+   * is applied to every row of the left-hand matrix.
+   */
+  static final int BLOCK_K = 128;
+  static final int BLOCK_J = 256;
+
+  /**
+   * The smallest number of result rows computed by a single task.
+   */
+  static final int ROWS_PER_TASK = 16;
+
+  /**
+   * Pool for parallel multiplication, shared by all dense matrices. Its worker
+   * threads are daemons and are only started once needed.
+   */
+  static final ForkJoinPool MULTIPLY_POOL = new ForkJoinPool();
+
   protected final double[][] matrix;
   protected final int numRows;
   protected final int numColumns;
@@ -384,28 +418,166 @@ public final class DenseDoubleMatrix implements DoubleMatrix {
     return m;
   }
 
-  /*
-   * (non-Javadoc)
-   * @see de.jungblut.math.DoubleMatrix#multiply(de.jungblut.math.DoubleMatrix)
+  /**
+   * Multiplies this matrix with another. Products with
+   * {@link SparseDoubleMatrix} take time proportional to its non-zero
+   * elements times the rows of this matrix.
    */
   @Override
   public final DoubleMatrix multiply(DoubleMatrix other) {
-    DenseDoubleMatrix matrix = new DenseDoubleMatrix(this.getRowCount(),
-        other.getColumnCount());
-
     final int m = this.numRows;
     final int n = this.numColumns;
     final int p = other.getColumnCount();
 
-    for (int k = 0; k < n; k++) {
+    if (other instanceof SparseDoubleMatrix) {
+      final SparseDoubleMatrix sparse = (SparseDoubleMatrix) other;
+      final DenseDoubleMatrix result = new DenseDoubleMatrix(m, p);
       for (int i = 0; i < m; i++) {
+        sparse.multiplyRow(matrix[i], 0, result.matrix[i], 0);
+      }
+      return result;
+    }
+
+    final double[][] b = toRows(other);
+    final DenseDoubleMatrix result = new DenseDoubleMatrix(m, p);
+    final long work = (long) m * n * p;
+
+    if (work < BLOCKING_THRESHOLD) {
+      multiplySimple(matrix, b, result.matrix, 0, m, n, p);
+    } else if (work < PARALLEL_THRESHOLD || m < 2 * ROWS_PER_TASK) {
+      multiplyBlocked(matrix, b, result.matrix, 0, m, n, p);
+    } else {
+      MULTIPLY_POOL.invoke(new MultiplyTask(matrix, b, result.matrix, 0, m,
+          n, p));
+    }
+
+    return result;
+  }
+
+  /**
+   * @return the rows of the given matrix, without copying if it is dense.
+   */
+  private static double[][] toRows(DoubleMatrix other) {
+    if (other instanceof DenseDoubleMatrix) {
+      return ((DenseDoubleMatrix) other).matrix;
+    }
+
+    double[][] rows = new double[other.getRowCount()][other.getColumnCount()];
+    for (int i = 0; i < rows.length; i++) {
+      for (int j = 0; j < rows[i].length; j++) {
+        rows[i][j] = other.get(i, j);
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Adds rows [from, to) of a * b to c, streaming along the rows of b.
+   */
+  static void multiplySimple(double[][] a, double[][] b, double[][] c,
+      int from, int to, int n, int p) {
+    for (int i = from; i < to; i++) {
+      final double[] ai = a[i];
+      final double[] ci = c[i];
+      for (int k = 0; k < n; k++) {
+        final double x = ai[k];
+        final double[] bk = b[k];
         for (int j = 0; j < p; j++) {
-          matrix.set(i, j, matrix.get(i, j) + get(i, k) * other.get(k, j));
+          ci[j] += x * bk[j];
         }
       }
     }
+  }
 
-    return matrix;
+  /**
+   * Adds rows [from, to) of a * b to c, one cache-sized tile of b at a time
+   * and four rows of c per pass over the tile, so that each element of b
+   * loaded is used four times.
+   * 
+   * Every element of c is still summed in order of k, so the result is the
+   * same as that of the simple kernel.
+   */
+  static void multiplyBlocked(double[][] a, double[][] b, double[][] c,
+      int from, int to, int n, int p) {
+    for (int k0 = 0; k0 < n; k0 += BLOCK_K) {
+      final int k1 = Math.min(k0 + BLOCK_K, n);
+
+      for (int j0 = 0; j0 < p; j0 += BLOCK_J) {
+        final int j1 = Math.min(j0 + BLOCK_J, p);
+
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+          final double[] a0 = a[i], a1 = a[i + 1], a2 = a[i + 2], a3 = a[i + 3];
+          final double[] c0 = c[i], c1 = c[i + 1], c2 = c[i + 2], c3 = c[i + 3];
+
+          for (int k = k0; k < k1; k++) {
+            final double x0 = a0[k], x1 = a1[k], x2 = a2[k], x3 = a3[k];
+            final double[] bk = b[k];
+
+            for (int j = j0; j < j1; j++) {
+              final double y = bk[j];
+              c0[j] += x0 * y;
+              c1[j] += x1 * y;
+              c2[j] += x2 * y;
+              c3[j] += x3 * y;
+            }
+          }
+        }
+
+        for (; i < to; i++) {
+          final double[] ai = a[i];
+          final double[] ci = c[i];
+
+          for (int k = k0; k < k1; k++) {
+            final double x = ai[k];
+            final double[] bk = b[k];
+
+            for (int j = j0; j < j1; j++) {
+              ci[j] += x * bk[j];
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes a range of result rows, splitting it in half until the ranges
+   * are small enough. Tasks write disjoint rows, so no reduction is needed.
+   */
+  private static final class MultiplyTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final double[][] a;
+    private final double[][] b;
+    private final double[][] c;
+    private final int from;
+    private final int to;
+    private final int n;
+    private final int p;
+
+    MultiplyTask(double[][] a, double[][] b, double[][] c, int from, int to,
+        int n, int p) {
+      this.a = a;
+      this.b = b;
+      this.c = c;
+      this.from = from;
+      this.to = to;
+      this.n = n;
+      this.p = p;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from < 2 * ROWS_PER_TASK) {
+        multiplyBlocked(a, b, c, from, to, n, p);
+      } else {
+        // keep split points on multiples of four rows
+        int middle = from + ((to - from) / 2 & ~3);
+        invokeAll(new MultiplyTask(a, b, c, from, middle, n, p),
+            new MultiplyTask(a, b, c, middle, to, n, p));
+      }
+    }
   }
 
   /*
@@ -455,6 +627,15 @@ public final class DenseDoubleMatrix implements DoubleMatrix {
   @Override
   public final DoubleVector multiplyVector(DoubleVector v) {
     DoubleVector vector = new DenseDoubleVector(this.getRowCount());
+    if (v instanceof DenseDoubleVector) {
+      double[] x = v.toArray();
+      VectorKernels kernels = VectorKernels.get();
+      for (int row = 0; row < numRows; row++) {
+        vector.set(row, kernels.dot(matrix[row], 0, x, 0, numColumns));
+      }
+      return vector;
+    }
+
     for (int row = 0; row < numRows; row++) {
       double sum = 0.0d;
       for (int col = 0; col < numColumns; col++) {
@@ -10,6 +10,7 @@ import java.util.List;
 import com.google.common.collect.AbstractIterator;
 
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.kernel.VectorKernels;
 import de.jungblut.math.function.DoubleDoubleVectorFunction;
 import de.jungblut.math.function.DoubleVectorFunction;
 import de.jungblut.math.tuple.Tuple;
@@ -123,6 +124,11 @@ public final class DenseDoubleVector implements DoubleVector {
   @Override
   public final DoubleVector add(DoubleVector v) {
     DenseDoubleVector newv = new DenseDoubleVector(v.getLength());
+    if (v instanceof DenseDoubleVector) {
+      VectorKernels.get().add(vector, 0, ((DenseDoubleVector) v).vector, 0,
+          newv.vector, 0, newv.vector.length);
+      return newv;
+    }
     for (int i = 0; i < v.getLength(); i++) {
       newv.set(i, this.get(i) + v.get(i));
     }
@@ -148,7 +154,12 @@ public final class DenseDoubleVector implements DoubleVector {
    */
   @Override
   public final DoubleVector subtract(DoubleVector v) {
-    DoubleVector newv = new DenseDoubleVector(v.getLength());
+    DenseDoubleVector newv = new DenseDoubleVector(v.getLength());
+    if (v instanceof DenseDoubleVector) {
+      VectorKernels.get().subtract(vector, 0, ((DenseDoubleVector) v).vector,
+          0, newv.vector, 0, newv.vector.length);
+      return newv;
+    }
     for (int i = 0; i < v.getLength(); i++) {
       newv.set(i, this.get(i) - v.get(i));
     }
@@ -187,10 +198,8 @@ public final class DenseDoubleVector implements DoubleVector {
    */
   @Override
   public DoubleVector multiply(double scalar) {
-    DoubleVector v = new DenseDoubleVector(this.getLength());
-    for (int i = 0; i < v.getLength(); i++) {
-      v.set(i, this.get(i) * scalar);
-    }
+    DenseDoubleVector v = new DenseDoubleVector(this.getLength());
+    VectorKernels.get().scale(scalar, vector, 0, v.vector, 0, vector.length);
     return v;
   }
 
@@ -200,7 +209,13 @@ public final class DenseDoubleVector implements DoubleVector {
    */
   @Override
   public DoubleVector multiply(DoubleVector vector) {
-    DoubleVector v = new DenseDoubleVector(this.getLength());
+    DenseDoubleVector v = new DenseDoubleVector(this.getLength());
+    if (vector instanceof DenseDoubleVector) {
+      VectorKernels.get().multiply(this.vector, 0,
+          ((DenseDoubleVector) vector).vector, 0, v.vector, 0,
+          v.vector.length);
+      return v;
+    }
     for (int i = 0; i < v.getLength(); i++) {
       v.set(i, this.get(i) * vector.get(i));
     }
@@ -259,11 +274,7 @@ public final class DenseDoubleVector implements DoubleVector {
    */
   @Override
   public double sum() {
-    double sum = 0.0d;
-    for (double aVector : vector) {
-      sum += aVector;
-    }
-    return sum;
+    return VectorKernels.get().sum(vector, 0, vector.length);
   }
 
   /*
@@ -325,12 +336,96 @@ public final class DenseDoubleVector implements DoubleVector {
     return v;
   }
 
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#assign(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector assign(DoubleVector other) {
+    if (other instanceof DenseDoubleVector) {
+      System.arraycopy(((DenseDoubleVector) other).vector, 0, vector, 0,
+          vector.length);
+    } else {
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] = other.get(i);
+      }
+    }
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#addInPlace(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector addInPlace(DoubleVector v) {
+    if (v instanceof DenseDoubleVector) {
+      VectorKernels.get().add(vector, 0, ((DenseDoubleVector) v).vector, 0,
+          vector, 0, vector.length);
+    } else {
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] += v.get(i);
+      }
+    }
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see
+   * de.jungblut.math.DoubleVector#subtractInPlace(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector subtractInPlace(DoubleVector v) {
+    if (v instanceof DenseDoubleVector) {
+      VectorKernels.get().subtract(vector, 0, ((DenseDoubleVector) v).vector,
+          0, vector, 0, vector.length);
+    } else {
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] -= v.get(i);
+      }
+    }
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#scaleInPlace(double)
+   */
+  @Override
+  public DoubleVector scaleInPlace(double scalar) {
+    VectorKernels.get().scale(scalar, vector, 0, vector, 0, vector.length);
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#axpy(double,
+   * de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector axpy(double alpha, DoubleVector x) {
+    if (x instanceof DenseDoubleVector) {
+      VectorKernels.get().axpy(alpha, ((DenseDoubleVector) x).vector, 0,
+          vector, 0, vector.length);
+    } else {
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] += x.get(i) * alpha;
+      }
+    }
+    return this;
+  }
+
   /*
    * (non-Javadoc)
    * @see de.jungblut.math.DoubleVector#dot(de.jungblut.math.DoubleVector)
    */
   @Override
   public double dot(DoubleVector s) {
+    if (s instanceof DenseDoubleVector) {
+      return VectorKernels.get().dot(vector, 0, ((DenseDoubleVector) s).vector,
+          0, vector.length);
+    }
     double dotProduct = 0.0d;
     for (int i = 0; i < getLength(); i++) {
       dotProduct += this.get(i) * s.get(i);
@@ -0,0 +1,802 @@
+package de.jungblut.math.dense;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.RecursiveAction;
+
+import de.jungblut.math.BooleanMatrix;
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.kernel.VectorKernels;
+import de.jungblut.math.sparse.SparseDoubleMatrix;
+
+/**
+ * Dense double matrix implementation which stores its elements row-major in a
+ * single contiguous double array. Element (i, j) lives at offset + i *
+ * rowStride + j.
+ *
+ * Unlike {@link DenseDoubleMatrix}, rows, columns and slices are views of the
+ * same array rather than copies: writing to a vector returned by
+ * {@link #getRowVector(int)} or {@link #getColumnVector(int)}, or to a matrix
+ * returned by {@link #slice(int, int, int, int)}, writes to this matrix. All
+ * other operations return fresh, contiguous matrices.
+ */
+public final class FlatDoubleMatrix implements DoubleMatrix {
+
+  /**
+   * Side length of the tiles a matrix is transposed in, so that neither the
+   * reads nor the writes of a tile leave the cache.
+   */
+  private static final int TRANSPOSE_BLOCK = 32;
+
+  private final double[] data;
+  private final int offset;
+  private final int rowStride;
+  private final int numRows;
+  private final int numColumns;
+
+  /**
+   * Creates a new empty matrix from the rows and columns.
+   *
+   * @param rows the num of rows.
+   * @param columns the num of columns.
+   */
+  public FlatDoubleMatrix(int rows, int columns) {
+    this(new double[rows * columns], 0, columns, rows, columns);
+  }
+
+  /**
+   * Creates a new matrix from the rows and columns filled with the given
+   * default value.
+   */
+  public FlatDoubleMatrix(int rows, int columns, double defaultValue) {
+    this(rows, columns);
+    Arrays.fill(data, defaultValue);
+  }
+
+  /**
+   * Creates a new matrix from the rows and columns filled with the given
+   * random values.
+   */
+  public FlatDoubleMatrix(int rows, int columns, Random rand) {
+    this(rows, columns);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = rand.nextDouble();
+    }
+  }
+
+  /**
+   * Wraps an array which holds the matrix row by row. The array is used
+   * directly, not copied.
+   */
+  public FlatDoubleMatrix(double[] data, int rows, int columns) {
+    this(data, 0, columns, rows, columns);
+    if (data.length != rows * columns) {
+      throw new IllegalArgumentException("Array of " + data.length
+          + " elements cannot hold a " + rows + "x" + columns + " matrix");
+    }
+  }
+
+  /**
+   * Creates a matrix with the values of the given two dimensional array (first
+   * dimension is the row, second the column), which is copied.
+   */
+  public FlatDoubleMatrix(double[][] values) {
+    this(values.length, values.length > 0 ? values[0].length : 0);
+    for (int i = 0; i < numRows; i++) {
+      System.arraycopy(values[i], 0, data, i * numColumns, numColumns);
+    }
+  }
+
+  private FlatDoubleMatrix(double[] data, int offset, int rowStride, int rows,
+      int columns) {
+    this.data = data;
+    this.offset = offset;
+    this.rowStride = rowStride;
+    this.numRows = rows;
+    this.numColumns = columns;
+  }
+
+  /**
+   * @return a contiguous copy of the given matrix.
+   */
+  public static FlatDoubleMatrix copyOf(DoubleMatrix other) {
+    if (other instanceof FlatDoubleMatrix) {
+      return ((FlatDoubleMatrix) other).copy();
+    }
+    if (other instanceof DenseDoubleMatrix) {
+      return new FlatDoubleMatrix(((DenseDoubleMatrix) other).getValues());
+    }
+
+    FlatDoubleMatrix m = new FlatDoubleMatrix(other.getRowCount(),
+        other.getColumnCount());
+    for (int i = 0; i < m.numRows; i++) {
+      for (int j = 0; j < m.numColumns; j++) {
+        m.data[i * m.numColumns + j] = other.get(i, j);
+      }
+    }
+    return m;
+  }
+
+  /**
+   * @return a contiguous copy of this matrix.
+   */
+  public FlatDoubleMatrix copy() {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    if (isContiguous()) {
+      System.arraycopy(data, offset, m.data, 0, m.data.length);
+    } else {
+      for (int i = 0; i < numRows; i++) {
+        System.arraycopy(data, offset + i * rowStride, m.data, i * numColumns,
+            numColumns);
+      }
+    }
+    return m;
+  }
+
+  /**
+   * @return a copy of this matrix which stores its rows as separate arrays.
+   */
+  public DenseDoubleMatrix toDenseMatrix() {
+    double[][] rows = new double[numRows][numColumns];
+    for (int i = 0; i < numRows; i++) {
+      System.arraycopy(data, offset + i * rowStride, rows[i], 0, numColumns);
+    }
+    return new DenseDoubleMatrix(rows);
+  }
+
+  /**
+   * @return the array backing this matrix (and possibly other views of it).
+   */
+  public double[] getData() {
+    return data;
+  }
+
+  /**
+   * @return the index of element (0, 0) in the backing array.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return the distance between the first elements of two consecutive rows in
+   *         the backing array.
+   */
+  public int getRowStride() {
+    return rowStride;
+  }
+
+  /**
+   * @return true if this matrix is the whole backing array, so that it can be
+   *         streamed as a single run of elements.
+   */
+  public boolean isContiguous() {
+    return offset == 0 && (rowStride == numColumns || numRows < 2)
+        && data.length == numRows * numColumns;
+  }
+
+  private int index(int row, int col) {
+    return offset + row * rowStride + col;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#get(int, int)
+   */
+  @Override
+  public double get(int row, int col) {
+    return data[index(row, col)];
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#set(int, int, double)
+   */
+  @Override
+  public void set(int row, int col, double value) {
+    data[index(row, col)] = value;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#getColumnCount()
+   */
+  @Override
+  public int getColumnCount() {
+    return numColumns;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#getRowCount()
+   */
+  @Override
+  public int getRowCount() {
+    return numRows;
+  }
+
+  /**
+   * @return a view of the given column, which strides over the rows.
+   */
+  @Override
+  public StridedDoubleVector getColumnVector(int col) {
+    return new StridedDoubleVector(data, offset + col, numRows, rowStride);
+  }
+
+  /**
+   * @return a view of the given row.
+   */
+  @Override
+  public StridedDoubleVector getRowVector(int row) {
+    return new StridedDoubleVector(data, index(row, 0), numColumns, 1);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#setColumnVector(int,
+   * de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public void setColumnVector(int col, DoubleVector column) {
+    for (int i = 0, a = offset + col; i < numRows; i++, a += rowStride) {
+      data[a] = column.get(i);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#setRowVector(int,
+   * de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public void setRowVector(int rowIndex, DoubleVector row) {
+    int start = index(rowIndex, 0);
+    if (row instanceof DenseDoubleVector) {
+      System.arraycopy(row.toArray(), 0, data, start, numColumns);
+    } else {
+      for (int j = 0; j < numColumns; j++) {
+        data[start + j] = row.get(j);
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#multiply(double)
+   */
+  @Override
+  public FlatDoubleMatrix multiply(double scalar) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = data[a++] * scalar;
+      }
+    }
+    return m;
+  }
+
+  /**
+   * Multiplies this matrix with another. Both are streamed row by row, using
+   * the same tiling and threading as {@link DenseDoubleMatrix}. Matrices of
+   * other types are copied into flat storage first, except for
+   * {@link SparseDoubleMatrix}, whose products take time proportional to its
+   * non-zero elements times the rows of this matrix.
+   */
+  @Override
+  public FlatDoubleMatrix multiply(DoubleMatrix other) {
+    final int m = this.numRows;
+    final int n = this.numColumns;
+    final int p = other.getColumnCount();
+
+    if (other instanceof SparseDoubleMatrix) {
+      final SparseDoubleMatrix sparse = (SparseDoubleMatrix) other;
+      final FlatDoubleMatrix result = new FlatDoubleMatrix(m, p);
+      for (int i = 0; i < m; i++) {
+        sparse.multiplyRow(data, index(i, 0), result.data, i * p);
+      }
+      return result;
+    }
+
+    final FlatDoubleMatrix b = other instanceof FlatDoubleMatrix
+        ? (FlatDoubleMatrix) other : copyOf(other);
+    final FlatDoubleMatrix result = new FlatDoubleMatrix(m, p);
+    final long work = (long) m * n * p;
+
+    if (work < DenseDoubleMatrix.BLOCKING_THRESHOLD) {
+      multiplySimple(this, b, result.data, 0, m, n, p);
+    } else if (work < DenseDoubleMatrix.PARALLEL_THRESHOLD
+        || m < 2 * DenseDoubleMatrix.ROWS_PER_TASK) {
+      multiplyBlocked(this, b, result.data, 0, m, n, p);
+    } else {
+      DenseDoubleMatrix.MULTIPLY_POOL.invoke(new MultiplyTask(this, b,
+          result.data, 0, m, n, p));
+    }
+
+    return result;
+  }
+
+  /**
+   * Adds rows [from, to) of a * b to the contiguous p-column matrix c.
+   */
+  static void multiplySimple(FlatDoubleMatrix a, FlatDoubleMatrix b,
+      double[] c, int from, int to, int n, int p) {
+    final double[] ad = a.data, bd = b.data;
+    for (int i = from; i < to; i++) {
+      final int ai = a.index(i, 0);
+      final int ci = i * p;
+      for (int k = 0; k < n; k++) {
+        final double x = ad[ai + k];
+        final int bk = b.index(k, 0);
+        for (int j = 0; j < p; j++) {
+          c[ci + j] += x * bd[bk + j];
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds rows [from, to) of a * b to the contiguous p-column matrix c, tile by
+   * tile and four rows at a time. See
+   * {@link DenseDoubleMatrix#multiplyBlocked}, whose results it reproduces.
+   * 
+   * Each tile of b is first packed into separate row arrays, and the four rows
+   * of c are accumulated in scratch arrays, so that the inner loop indexes all
+   * of its arrays by the same counter. The JIT only vectorizes loops which do,
+   * as it can't otherwise rule out that a store aliases a later load.
+   */
+  static void multiplyBlocked(FlatDoubleMatrix a, FlatDoubleMatrix b,
+      double[] c, int from, int to, int n, int p) {
+    final double[] ad = a.data, bd = b.data;
+    final int as = a.rowStride;
+
+    final int depth = Math.min(DenseDoubleMatrix.BLOCK_K, n);
+    final int width = Math.min(DenseDoubleMatrix.BLOCK_J, p);
+    final double[][] tile = new double[depth][width];
+    final double[] r0 = new double[width], r1 = new double[width];
+    final double[] r2 = new double[width], r3 = new double[width];
+
+    for (int k0 = 0; k0 < n; k0 += DenseDoubleMatrix.BLOCK_K) {
+      final int k1 = Math.min(k0 + DenseDoubleMatrix.BLOCK_K, n);
+
+      for (int j0 = 0; j0 < p; j0 += DenseDoubleMatrix.BLOCK_J) {
+        final int w = Math.min(j0 + DenseDoubleMatrix.BLOCK_J, p) - j0;
+
+        for (int k = k0; k < k1; k++) {
+          System.arraycopy(bd, b.index(k, j0), tile[k - k0], 0, w);
+        }
+
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+          final int a0 = a.index(i, 0), a1 = a0 + as;
+          final int a2 = a1 + as, a3 = a2 + as;
+          final int c0 = i * p + j0, c1 = c0 + p, c2 = c1 + p, c3 = c2 + p;
+
+          System.arraycopy(c, c0, r0, 0, w);
+          System.arraycopy(c, c1, r1, 0, w);
+          System.arraycopy(c, c2, r2, 0, w);
+          System.arraycopy(c, c3, r3, 0, w);
+
+          for (int k = k0; k < k1; k++) {
+            final double x0 = ad[a0 + k], x1 = ad[a1 + k];
+            final double x2 = ad[a2 + k], x3 = ad[a3 + k];
+            final double[] bk = tile[k - k0];
+
+            for (int j = 0; j < w; j++) {
+              final double y = bk[j];
+              r0[j] += x0 * y;
+              r1[j] += x1 * y;
+              r2[j] += x2 * y;
+              r3[j] += x3 * y;
+            }
+          }
+
+          System.arraycopy(r0, 0, c, c0, w);
+          System.arraycopy(r1, 0, c, c1, w);
+          System.arraycopy(r2, 0, c, c2, w);
+          System.arraycopy(r3, 0, c, c3, w);
+        }
+
+        for (; i < to; i++) {
+          final int ai = a.index(i, 0);
+          final int ci = i * p + j0;
+
+          System.arraycopy(c, ci, r0, 0, w);
+          for (int k = k0; k < k1; k++) {
+            final double x = ad[ai + k];
+            final double[] bk = tile[k - k0];
+
+            for (int j = 0; j < w; j++) {
+              r0[j] += x * bk[j];
+            }
+          }
+          System.arraycopy(r0, 0, c, ci, w);
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes a range of result rows, splitting it in half until the ranges
+   * are small enough.
+   */
+  private static final class MultiplyTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final FlatDoubleMatrix a;
+    private final FlatDoubleMatrix b;
+    private final double[] c;
+    private final int from;
+    private final int to;
+    private final int n;
+    private final int p;
+
+    MultiplyTask(FlatDoubleMatrix a, FlatDoubleMatrix b, double[] c, int from,
+        int to, int n, int p) {
+      this.a = a;
+      this.b = b;
+      this.c = c;
+      this.from = from;
+      this.to = to;
+      this.n = n;
+      this.p = p;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from < 2 * DenseDoubleMatrix.ROWS_PER_TASK) {
+        multiplyBlocked(a, b, c, from, to, n, p);
+      } else {
+        // keep split points on multiples of four rows
+        int middle = from + ((to - from) / 2 & ~3);
+        invokeAll(new MultiplyTask(a, b, c, from, middle, n, p),
+            new MultiplyTask(a, b, c, middle, to, n, p));
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#multiplyElementWise(de.jungblut.math.
+   * BooleanMatrix)
+   */
+  @Override
+  public FlatDoubleMatrix multiplyElementWise(BooleanMatrix other) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++, a++) {
+        m.data[c++] = other.get(i, j) ? data[a] : 0.0d;
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see
+   * de.jungblut.math.DoubleMatrix#multiplyElementWise(de.jungblut.math.DoubleMatrix
+   * )
+   */
+  @Override
+  public FlatDoubleMatrix multiplyElementWise(DoubleMatrix other) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = data[a++] * other.get(i, j);
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see
+   * de.jungblut.math.DoubleMatrix#multiplyVector(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DenseDoubleVector multiplyVector(DoubleVector v) {
+    double[] x = v.toArray();
+    double[] result = new double[numRows];
+    VectorKernels kernels = VectorKernels.get();
+    for (int i = 0; i < numRows; i++) {
+      result[i] = kernels.dot(data, index(i, 0), x, 0, numColumns);
+    }
+    return new DenseDoubleVector(result);
+  }
+
+  /**
+   * @return a contiguous transposed copy of this matrix, copied in tiles.
+   */
+  @Override
+  public FlatDoubleMatrix transpose() {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numColumns, numRows);
+    for (int i0 = 0; i0 < numRows; i0 += TRANSPOSE_BLOCK) {
+      final int i1 = Math.min(i0 + TRANSPOSE_BLOCK, numRows);
+      for (int j0 = 0; j0 < numColumns; j0 += TRANSPOSE_BLOCK) {
+        final int j1 = Math.min(j0 + TRANSPOSE_BLOCK, numColumns);
+        for (int i = i0; i < i1; i++) {
+          for (int j = j0, a = index(i, j0); j < j1; j++) {
+            m.data[j * numRows + i] = data[a++];
+          }
+        }
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#subtractBy(double)
+   */
+  @Override
+  public FlatDoubleMatrix subtractBy(double amount) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = amount - data[a++];
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#subtract(double)
+   */
+  @Override
+  public FlatDoubleMatrix subtract(double amount) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = data[a++] - amount;
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#subtract(de.jungblut.math.DoubleMatrix)
+   */
+  @Override
+  public FlatDoubleMatrix subtract(DoubleMatrix other) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = data[a++] - other.get(i, j);
+      }
+    }
+    return m;
+  }
+
+  /**
+   * Subtracts element j of the vector from column j.
+   */
+  @Override
+  public FlatDoubleMatrix subtract(DoubleVector vec) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = data[a++] - vec.get(j);
+      }
+    }
+    return m;
+  }
+
+  /**
+   * Divides column j by element j of the vector.
+   */
+  @Override
+  public FlatDoubleMatrix divide(DoubleVector vec) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = data[a++] / vec.get(j);
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#divide(de.jungblut.math.DoubleMatrix)
+   */
+  @Override
+  public FlatDoubleMatrix divide(DoubleMatrix other) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = data[a++] / other.get(i, j);
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#divide(double)
+   */
+  @Override
+  public FlatDoubleMatrix divide(double scalar) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = data[a++] / scalar;
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#add(de.jungblut.math.DoubleMatrix)
+   */
+  @Override
+  public FlatDoubleMatrix add(DoubleMatrix other) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = data[a++] + other.get(i, j);
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#pow(int)
+   */
+  @Override
+  public FlatDoubleMatrix pow(int x) {
+    FlatDoubleMatrix m = new FlatDoubleMatrix(numRows, numColumns);
+    for (int i = 0, c = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        m.data[c++] = Math.pow(data[a++], x);
+      }
+    }
+    return m;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#max(int)
+   */
+  @Override
+  public double max(int column) {
+    double max = Double.MIN_VALUE;
+    for (int i = 0, a = offset + column; i < numRows; i++, a += rowStride) {
+      if (data[a] > max) {
+        max = data[a];
+      }
+    }
+    return max;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#min(int)
+   */
+  @Override
+  public double min(int column) {
+    double min = Double.MAX_VALUE;
+    for (int i = 0, a = offset + column; i < numRows; i++, a += rowStride) {
+      if (data[a] < min) {
+        min = data[a];
+      }
+    }
+    return min;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#slice(int, int)
+   */
+  @Override
+  public FlatDoubleMatrix slice(int rows, int cols) {
+    return slice(0, rows, 0, cols);
+  }
+
+  /**
+   * @return a view of rows [rowOffset, rowMax) and columns [colOffset, colMax)
+   *         of this matrix.
+   */
+  @Override
+  public FlatDoubleMatrix slice(int rowOffset, int rowMax, int colOffset,
+      int colMax) {
+    if (rowOffset < 0 || rowOffset > rowMax || rowMax > numRows
+        || colOffset < 0 || colOffset > colMax || colMax > numColumns) {
+      throw new IndexOutOfBoundsException("Cannot slice rows [" + rowOffset
+          + ", " + rowMax + ") and columns [" + colOffset + ", " + colMax
+          + ") out of a " + numRows + "x" + numColumns + " matrix");
+    }
+    return new FlatDoubleMatrix(data, index(rowOffset, colOffset), rowStride,
+        rowMax - rowOffset, colMax - colOffset);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#isSparse()
+   */
+  @Override
+  public boolean isSparse() {
+    return false;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#sum()
+   */
+  @Override
+  public double sum() {
+    double x = 0.0d;
+    for (int i = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        x += Math.abs(data[a++]);
+      }
+    }
+    return x;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#columnIndices()
+   */
+  @Override
+  public int[] columnIndices() {
+    int[] x = new int[numColumns];
+    for (int i = 0; i < numColumns; i++)
+      x[i] = i;
+    return x;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    for (int i = 0; i < numRows; i++) {
+      for (int j = 0, a = index(i, 0); j < numColumns; j++) {
+        long bits = Double.doubleToLongBits(data[a++]);
+        result = prime * result + (int) (bits ^ (bits >>> 32));
+      }
+    }
+    result = prime * result + numColumns;
+    result = prime * result + numRows;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    FlatDoubleMatrix other = (FlatDoubleMatrix) obj;
+    if (numRows != other.numRows || numColumns != other.numColumns)
+      return false;
+    for (int i = 0; i < numRows; i++) {
+      for (int j = 0; j < numColumns; j++) {
+        if (Double.doubleToLongBits(get(i, j)) != Double
+            .doubleToLongBits(other.get(i, j)))
+          return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    if (numRows < 10) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < numRows; i++) {
+        sb.append(getRowVector(i).toString());
+        sb.append('\n');
+      }
+      return sb.toString();
+    } else {
+      return numRows + "x" + numColumns;
+    }
+  }
+
+}
@@ -0,0 +1,576 @@
+package de.jungblut.math.dense;
+
+import java.util.Iterator;
+
+import com.google.common.collect.AbstractIterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.function.DoubleDoubleVectorFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+
+/**
+ * Vector view of evenly spaced elements of a double array, like a row or a
+ * column of a {@link FlatDoubleMatrix}. Element i is stored at
+ * offset + i * stride, and setting it writes through to the array.
+ *
+ * Arithmetic returns fresh {@link DenseDoubleVector}s, slices return views of
+ * the same array.
+ */
+public final class StridedDoubleVector implements DoubleVector {
+
+  private final double[] data;
+  private final int offset;
+  private final int length;
+  private final int stride;
+
+  /**
+   * Creates a view of length elements of the given array, starting at offset
+   * and stride elements apart.
+   */
+  public StridedDoubleVector(double[] data, int offset, int length,
+      int stride) {
+    long last = offset + (long) (length - 1) * stride;
+    if (length < 0 || stride < 1 || offset < 0
+        || (length > 0 && last >= data.length)) {
+      throw new IllegalArgumentException("View of " + length
+          + " elements at offset " + offset + " with stride " + stride
+          + " does not fit into an array of " + data.length);
+    }
+    this.data = data;
+    this.offset = offset;
+    this.length = length;
+    this.stride = stride;
+  }
+
+  /**
+   * @return the array this vector is a view of.
+   */
+  public double[] getData() {
+    return data;
+  }
+
+  /**
+   * @return the index of the first element in the array.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return the distance between two consecutive elements in the array.
+   */
+  public int getStride() {
+    return stride;
+  }
+
+  /**
+   * @return true if the elements are adjacent in the array.
+   */
+  public boolean isContiguous() {
+    return stride == 1 || length < 2;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#get(int)
+   */
+  @Override
+  public double get(int index) {
+    return data[offset + index * stride];
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#getLength()
+   */
+  @Override
+  public int getLength() {
+    return length;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#getDimension()
+   */
+  @Override
+  public int getDimension() {
+    return length;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#set(int, double)
+   */
+  @Override
+  public void set(int index, double value) {
+    data[offset + index * stride] = value;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#apply(de.jungblut.math.function.
+   * DoubleVectorFunction)
+   */
+  @Override
+  public DoubleVector apply(DoubleVectorFunction func) {
+    return deepCopy().apply(func);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#apply(de.jungblut.math.DoubleVector,
+   * de.jungblut.math.function.DoubleDoubleVectorFunction)
+   */
+  @Override
+  public DoubleVector apply(DoubleVector other, DoubleDoubleVectorFunction func) {
+    return deepCopy().apply(other, func);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#add(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector add(DoubleVector v) {
+    double[] result = new double[length];
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      result[i] = data[index] + v.get(i);
+    }
+    return new DenseDoubleVector(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#add(double)
+   */
+  @Override
+  public DoubleVector add(double scalar) {
+    double[] result = new double[length];
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      result[i] = data[index] + scalar;
+    }
+    return new DenseDoubleVector(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#subtract(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector subtract(DoubleVector v) {
+    double[] result = new double[length];
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      result[i] = data[index] - v.get(i);
+    }
+    return new DenseDoubleVector(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#subtract(double)
+   */
+  @Override
+  public DoubleVector subtract(double scalar) {
+    return add(-scalar);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#subtractFrom(double)
+   */
+  @Override
+  public DoubleVector subtractFrom(double scalar) {
+    double[] result = new double[length];
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      result[i] = scalar - data[index];
+    }
+    return new DenseDoubleVector(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#multiply(double)
+   */
+  @Override
+  public DoubleVector multiply(double scalar) {
+    double[] result = new double[length];
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      result[i] = data[index] * scalar;
+    }
+    return new DenseDoubleVector(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#multiply(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector multiply(DoubleVector vector) {
+    double[] result = new double[length];
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      result[i] = data[index] * vector.get(i);
+    }
+    return new DenseDoubleVector(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#divide(double)
+   */
+  @Override
+  public DoubleVector divide(double scalar) {
+    double[] result = new double[length];
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      result[i] = data[index] / scalar;
+    }
+    return new DenseDoubleVector(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#divideFrom(double)
+   */
+  @Override
+  public DoubleVector divideFrom(double scalar) {
+    return deepCopy().divideFrom(scalar);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#divideFrom(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector divideFrom(DoubleVector vector) {
+    return deepCopy().divideFrom(vector);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#divide(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector divide(DoubleVector vector) {
+    return deepCopy().divide(vector);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#assign(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector assign(DoubleVector other) {
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      data[index] = other.get(i);
+    }
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#addInPlace(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector addInPlace(DoubleVector v) {
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      data[index] += v.get(i);
+    }
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see
+   * de.jungblut.math.DoubleVector#subtractInPlace(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector subtractInPlace(DoubleVector v) {
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      data[index] -= v.get(i);
+    }
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#scaleInPlace(double)
+   */
+  @Override
+  public DoubleVector scaleInPlace(double scalar) {
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      data[index] *= scalar;
+    }
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#axpy(double,
+   * de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector axpy(double alpha, DoubleVector x) {
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      data[index] += x.get(i) * alpha;
+    }
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#pow(int)
+   */
+  @Override
+  public DoubleVector pow(int x) {
+    return deepCopy().pow(x);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#abs()
+   */
+  @Override
+  public DoubleVector abs() {
+    return deepCopy().abs();
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#sqrt()
+   */
+  @Override
+  public DoubleVector sqrt() {
+    return deepCopy().sqrt();
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#sum()
+   */
+  @Override
+  public double sum() {
+    double sum = 0.0d;
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      sum += data[index];
+    }
+    return sum;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#dot(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public double dot(DoubleVector s) {
+    double dotProduct = 0.0d;
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      dotProduct += data[index] * s.get(i);
+    }
+    return dotProduct;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#slice(int)
+   */
+  @Override
+  public DoubleVector slice(int end) {
+    return slice(0, end);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#slice(int, int)
+   */
+  @Override
+  public DoubleVector slice(int start, int end) {
+    return sliceByLength(start, end - start);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#sliceByLength(int, int)
+   */
+  @Override
+  public DoubleVector sliceByLength(int start, int length) {
+    if (start < 0 || length < 0 || start + length > this.length) {
+      throw new IndexOutOfBoundsException("Cannot slice " + length
+          + " elements at " + start + " out of a vector of " + this.length);
+    }
+    return new StridedDoubleVector(data, offset + start * stride, length,
+        stride);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#max()
+   */
+  @Override
+  public double max() {
+    double max = -Double.MAX_VALUE;
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      if (data[index] > max) {
+        max = data[index];
+      }
+    }
+    return max;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#min()
+   */
+  @Override
+  public double min() {
+    double min = Double.MAX_VALUE;
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      if (data[index] < min) {
+        min = data[index];
+      }
+    }
+    return min;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#maxIndex()
+   */
+  @Override
+  public int maxIndex() {
+    double max = -Double.MAX_VALUE;
+    int maxIndex = 0;
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      if (data[index] > max) {
+        max = data[index];
+        maxIndex = i;
+      }
+    }
+    return maxIndex;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#minIndex()
+   */
+  @Override
+  public int minIndex() {
+    double min = Double.MAX_VALUE;
+    int minIndex = 0;
+    for (int i = 0, index = offset; i < length; i++, index += stride) {
+      if (data[index] < min) {
+        min = data[index];
+        minIndex = i;
+      }
+    }
+    return minIndex;
+  }
+
+  /**
+   * Returns the backing array itself if this view covers all of it, else a
+   * copy of the viewed elements.
+   */
+  @Override
+  public double[] toArray() {
+    if (offset == 0 && length == data.length && isContiguous()) {
+      return data;
+    }
+    return copyElements();
+  }
+
+  private double[] copyElements() {
+    double[] result = new double[length];
+    if (stride == 1) {
+      System.arraycopy(data, offset, result, 0, length);
+    } else {
+      for (int i = 0, index = offset; i < length; i++, index += stride) {
+        result[i] = data[index];
+      }
+    }
+    return result;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#deepCopy()
+   */
+  @Override
+  public DenseDoubleVector deepCopy() {
+    return new DenseDoubleVector(copyElements());
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#iterateNonZero()
+   */
+  @Override
+  public Iterator<DoubleVectorElement> iterateNonZero() {
+    return new ElementIterator(true);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#iterate()
+   */
+  @Override
+  public Iterator<DoubleVectorElement> iterate() {
+    return new ElementIterator(false);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#isSparse()
+   */
+  @Override
+  public boolean isSparse() {
+    return false;
+  }
+
+  @Override
+  public boolean isNamed() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    if (length < 20) {
+      return deepCopy().toString();
+    } else {
+      return length + "x1";
+    }
+  }
+
+  /**
+   * Iterator over all, or only the non-zero, elements of the view.
+   */
+  private final class ElementIterator extends
+      AbstractIterator<DoubleVectorElement> {
+
+    private final DoubleVectorElement element = new DoubleVectorElement();
+    private final boolean skipZeros;
+    private int currentIndex = 0;
+
+    private ElementIterator(boolean skipZeros) {
+      this.skipZeros = skipZeros;
+    }
+
+    @Override
+    protected final DoubleVectorElement computeNext() {
+      while (currentIndex < length) {
+        double value = data[offset + currentIndex * stride];
+        if (!skipZeros || value != 0.0d) {
+          element.setIndex(currentIndex);
+          element.setValue(value);
+          currentIndex++;
+          return element;
+        }
+        currentIndex++;
+      }
+      return endOfData();
+    }
+  }
+
+}
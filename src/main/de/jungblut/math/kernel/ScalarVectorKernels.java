@@ -0,0 +1,152 @@
+package de.jungblut.math.kernel;
+
+/**
+ * Plain loop implementation of the kernels. The SIMD kernels extend it to
+ * handle the elements which do not fill a whole vector register.
+ */
+class ScalarVectorKernels extends VectorKernels {
+
+  static final ScalarVectorKernels INSTANCE = new ScalarVectorKernels();
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#getName()
+   */
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#dot(double[], int, double[],
+   * int, int)
+   */
+  @Override
+  public double dot(double[] x, int xOffset, double[] y, int yOffset,
+      int length) {
+    double dot = 0.0d;
+    for (int i = 0; i < length; i++) {
+      dot += x[xOffset + i] * y[yOffset + i];
+    }
+    return dot;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#sum(double[], int, int)
+   */
+  @Override
+  public double sum(double[] x, int offset, int length) {
+    double sum = 0.0d;
+    for (int i = 0; i < length; i++) {
+      sum += x[offset + i];
+    }
+    return sum;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#axpy(double, double[], int,
+   * double[], int, int)
+   */
+  @Override
+  public void axpy(double alpha, double[] x, int xOffset, double[] y,
+      int yOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      y[yOffset + i] += x[xOffset + i] * alpha;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#scale(double, double[], int,
+   * double[], int, int)
+   */
+  @Override
+  public void scale(double alpha, double[] x, int xOffset, double[] target,
+      int targetOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] = x[xOffset + i] * alpha;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#add(double[], int, double[],
+   * int, double[], int, int)
+   */
+  @Override
+  public void add(double[] x, int xOffset, double[] y, int yOffset,
+      double[] target, int targetOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] = x[xOffset + i] + y[yOffset + i];
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#subtract(double[], int,
+   * double[], int, double[], int, int)
+   */
+  @Override
+  public void subtract(double[] x, int xOffset, double[] y, int yOffset,
+      double[] target, int targetOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] = x[xOffset + i] - y[yOffset + i];
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#multiply(double[], int,
+   * double[], int, double[], int, int)
+   */
+  @Override
+  public void multiply(double[] x, int xOffset, double[] y, int yOffset,
+      double[] target, int targetOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] = x[xOffset + i] * y[yOffset + i];
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#sigmoid(double[], int,
+   * double[], int, int, boolean)
+   */
+  @Override
+  public void sigmoid(double[] z, int zOffset, double[] target,
+      int targetOffset, int length, boolean approximate) {
+    if (approximate) {
+      for (int i = 0; i < length; i++) {
+        target[targetOffset + i] = 1.0 / (1 + fastExp(-z[zOffset + i]));
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        target[targetOffset + i] = 1.0 / (1 + Math.exp(-z[zOffset + i]));
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.VectorKernels#sigmoid(float[], int, float[],
+   * int, int, boolean)
+   */
+  @Override
+  public void sigmoid(float[] z, int zOffset, float[] target,
+      int targetOffset, int length, boolean approximate) {
+    if (approximate) {
+      for (int i = 0; i < length; i++) {
+        target[targetOffset + i] = 1f / (1 + fastExp(-z[zOffset + i]));
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        target[targetOffset + i] = (float) (1.0 / (1 + Math
+            .exp(-z[zOffset + i])));
+      }
+    }
+  }
+
+}
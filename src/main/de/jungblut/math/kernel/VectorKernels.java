@@ -0,0 +1,241 @@
+package de.jungblut.math.kernel;
+
+import java.util.logging.Logger;
+
+/**
+ * Primitive kernels on ranges of double and float arrays: dot products, axpy,
+ * element-wise arithmetic, sums and the logistic sigmoid. The vector and
+ * matrix classes and the network's activation functions run their inner
+ * loops through {@link #get()}.
+ *
+ * Two implementations exist. The scalar one is plain loops, and is always
+ * available. The SIMD one is written against the incubating Vector API
+ * (`jdk.incubator.vector`, JDK 16 or later), so it lives in `src/simd`,
+ * outside the Java 7 build path, and is loaded reflectively:
+ *
+ * <pre>
+ * javac --release 17 --add-modules jdk.incubator.vector -cp bin -d bin \
+ *     src/simd/de/jungblut/math/kernel/SimdVectorKernels.java
+ * java --add-modules jdk.incubator.vector ...
+ * </pre>
+ *
+ * The first call to {@link #get()} picks the SIMD kernels if that class can be
+ * loaded and the platform has vector registers of at least two lanes, and the
+ * scalar ones otherwise; the choice is logged and returned by
+ * {@link #getName()}. Setting the system property `de.jungblut.math.kernels`
+ * to `scalar` forces the scalar kernels.
+ *
+ * Reductions on the SIMD kernels add up their elements in a different order,
+ * so dot products and sums can differ from the scalar ones in the last few
+ * bits; element-wise operations are exact in both.
+ */
+public abstract class VectorKernels {
+
+  private static final Logger LOGGER = Logger.getLogger("VectorKernels");
+
+  /**
+   * System property which, set to `scalar`, disables the SIMD kernels.
+   */
+  public static final String KERNELS_PROPERTY = "de.jungblut.math.kernels";
+
+  /**
+   * log2(e), used to reduce $e^x$ to a power of two.
+   */
+  static final double LOG2E = 1.4426950408889634;
+
+  /**
+   * ln(2)
+   */
+  static final double LN2 = 0.6931471805599453;
+
+  /**
+   * Inputs beyond this magnitude would over- or underflow the exponent of
+   * {@link #fastExp(double)}; the sigmoid is saturated long before.
+   */
+  static final double FAST_EXP_LIMIT = 700;
+
+  /**
+   * The limit of {@link #fastExp(float)}, within which both $e^x$ and $e^{-x}$
+   * are normal floats.
+   */
+  static final float FAST_EXP_FLOAT_LIMIT = 80;
+
+  /**
+   * ln(2) split into a part with few enough significant bits that its
+   * products with small integers are exact floats, and the remainder.
+   */
+  static final float LN2_HI = 0.693359375f;
+  static final float LN2_LO = -2.12194440e-4f;
+
+  private static final String SIMD_KERNELS = "de.jungblut.math.kernel.SimdVectorKernels";
+
+  private static final VectorKernels INSTANCE = load();
+
+  /**
+   * @return the kernels which are active in this JVM.
+   */
+  public static VectorKernels get() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return the always available scalar kernels.
+   */
+  public static VectorKernels scalar() {
+    return ScalarVectorKernels.INSTANCE;
+  }
+
+  private static VectorKernels load() {
+    VectorKernels kernels = ScalarVectorKernels.INSTANCE;
+
+    if (!"scalar".equals(System.getProperty(KERNELS_PROPERTY))) {
+      try {
+        kernels = (VectorKernels) Class.forName(SIMD_KERNELS).newInstance();
+      } catch (ClassNotFoundException e) {
+        LOGGER.fine("SIMD kernels are not on the classpath");
+      } catch (Exception | LinkageError e) {
+        // the class exists, but the module is missing, the JVM is too old or
+        // the hardware has no vector registers
+        LOGGER.fine("SIMD kernels are not available: " + e);
+      }
+    }
+
+    LOGGER.info("Using " + kernels.getName() + " vector kernels");
+    return kernels;
+  }
+
+  /**
+   * @return a short description of the implementation, e.g. `scalar`.
+   */
+  public abstract String getName();
+
+  /**
+   * @return the dot product of `length` elements of `x` and `y`.
+   */
+  public abstract double dot(double[] x, int xOffset, double[] y, int yOffset,
+      int length);
+
+  /**
+   * @return the sum of `length` elements of `x`.
+   */
+  public abstract double sum(double[] x, int offset, int length);
+
+  /**
+   * Computes $y = \alpha x + y$ on `length` elements.
+   */
+  public abstract void axpy(double alpha, double[] x, int xOffset, double[] y,
+      int yOffset, int length);
+
+  /**
+   * Writes $\alpha x$ into `target`, which may be the same range as `x`.
+   */
+  public abstract void scale(double alpha, double[] x, int xOffset,
+      double[] target, int targetOffset, int length);
+
+  /**
+   * Writes $x + y$ element-wise into `target`, which may be the same range as
+   * either operand.
+   */
+  public abstract void add(double[] x, int xOffset, double[] y, int yOffset,
+      double[] target, int targetOffset, int length);
+
+  /**
+   * Writes $x - y$ element-wise into `target`, which may be the same range as
+   * either operand.
+   */
+  public abstract void subtract(double[] x, int xOffset, double[] y,
+      int yOffset, double[] target, int targetOffset, int length);
+
+  /**
+   * Writes the element-wise product of `x` and `y` into `target`, which may be
+   * the same range as either operand.
+   */
+  public abstract void multiply(double[] x, int xOffset, double[] y,
+      int yOffset, double[] target, int targetOffset, int length);
+
+  /**
+   * Writes $1 / (1 + e^{-z})$ for `length` elements of `z` into `target`,
+   * which may be the same range as `z`.
+   *
+   * @param approximate whether to use {@link #fastExp(double)} rather than
+   *          `Math.exp`.
+   */
+  public abstract void sigmoid(double[] z, int zOffset, double[] target,
+      int targetOffset, int length, boolean approximate);
+
+  /**
+   * Single-precision version of
+   * {@link #sigmoid(double[], int, double[], int, int, boolean)}. The exact
+   * variant evaluates the exponential in double precision on the scalar
+   * kernels and in single precision on the SIMD ones.
+   *
+   * @param approximate whether to use {@link #fastExp(float)}.
+   */
+  public abstract void sigmoid(float[] z, int zOffset, float[] target,
+      int targetOffset, int length, boolean approximate);
+
+  /**
+   * Approximate $e^x$ with a relative error below $10^{-8}$ for $|x| \le 700$.
+   * Larger magnitudes are clamped to 700.
+   *
+   * The argument is split as $e^x = 2^k e^r$ with integral $k$ and $|r| \le
+   * \ln(2) / 2$; $2^k$ is built directly from its bits and $e^r$ is a degree 7
+   * Taylor polynomial, whose truncation error is at most $(\ln(2) / 2)^8 / 8!
+   * < 10^{-8}$.
+   */
+  public static double fastExp(double x) {
+    if (x > FAST_EXP_LIMIT) {
+      x = FAST_EXP_LIMIT;
+    } else if (x < -FAST_EXP_LIMIT) {
+      x = -FAST_EXP_LIMIT;
+    }
+
+    long k = (long) Math.floor(x * LOG2E + 0.5);
+    double r = x - k * LN2;
+
+    // Horner's scheme for sum(r^i / i!, i = 0..7)
+    double p = 1.0 / 5040;
+    p = p * r + 1.0 / 720;
+    p = p * r + 1.0 / 120;
+    p = p * r + 1.0 / 24;
+    p = p * r + 1.0 / 6;
+    p = p * r + 1.0 / 2;
+    p = p * r + 1;
+    p = p * r + 1;
+
+    return Double.longBitsToDouble((k + 1023) << 52) * p;
+  }
+
+  /**
+   * Approximate $e^x$ in single precision, with a relative error below $3
+   * \cdot 10^{-7}$ (a few units in the last place) for $|x| \le 80$. Larger
+   * magnitudes are clamped to 80.
+   *
+   * Works like {@link #fastExp(double)}, with a degree 6 polynomial, whose
+   * truncation error is at most $(\ln(2) / 2)^7 / 7! < 1.2 \cdot 10^{-7}$. The
+   * reduced argument is computed with a two-part ln(2), since a single float
+   * would be off by up to $k$ units in its last place.
+   */
+  public static float fastExp(float x) {
+    if (x > FAST_EXP_FLOAT_LIMIT) {
+      x = FAST_EXP_FLOAT_LIMIT;
+    } else if (x < -FAST_EXP_FLOAT_LIMIT) {
+      x = -FAST_EXP_FLOAT_LIMIT;
+    }
+
+    int k = (int) Math.floor(x * (float) LOG2E + 0.5f);
+    float r = (x - k * LN2_HI) - k * LN2_LO;
+
+    // Horner's scheme for sum(r^i / i!, i = 0..6)
+    float p = 1f / 720;
+    p = p * r + 1f / 120;
+    p = p * r + 1f / 24;
+    p = p * r + 1f / 6;
+    p = p * r + 1f / 2;
+    p = p * r + 1;
+    p = p * r + 1;
+
+    return Float.intBitsToFloat((k + 127) << 23) * p;
+  }
+
+}
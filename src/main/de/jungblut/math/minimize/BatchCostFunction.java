@@ -0,0 +1,38 @@
+package de.jungblut.math.minimize;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Cost function which is a mean over a set of examples, and which can also be
+ * evaluated on any subset of those examples. Stochastic minimizers use this
+ * to compute cost and gradient on mini-batches.
+ */
+public interface BatchCostFunction extends CostFunction {
+
+	/**
+	 * @return the number of examples this cost function is defined over.
+	 */
+	public int getNumExamples();
+
+	/**
+	 * Evaluation for the cost function on a subset of the examples.
+	 *
+	 * @param input
+	 *            a given input vector
+	 * @param examples
+	 *            an array of example indices
+	 * @param offset
+	 *            the position in `examples` of the first example to use
+	 * @param length
+	 *            the number of examples to use
+	 * @return a tuple consisting of the cost and gradient averaged over the
+	 *         selected examples. Terms which don't depend on the examples,
+	 *         such as regularization, are scaled as in the full cost, so that
+	 *         the average over a partition into batches (weighted by their
+	 *         sizes) is the full cost and gradient.
+	 */
+	public Tuple<Double, DoubleVector> evaluateBatchCost(DoubleVector input,
+			int[] examples, int offset, int length);
+
+}
@@ -0,0 +1,173 @@
+package de.jungblut.math.minimize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import de.jungblut.math.DoubleVector;
+
+/**
+ * The state of a minimization run after an iteration, from which
+ * {@link Fmincg#minimizeFunction(CostFunction, Checkpoint, int, MinimizerListener)}
+ * continues the run.
+ *
+ * Checkpoint files start with a 32-byte little-endian header:
+ *
+ * <pre>
+ * int    magic ("DVCP")
+ * int    format version
+ * int    number of iterations made
+ * int    number of parameters
+ * double cost
+ * double step size
+ * </pre>
+ *
+ * followed by the parameters and then the search direction, as
+ * little-endian doubles.
+ */
+public class Checkpoint {
+
+	static final int MAGIC = 0x50435644; // "DVCP", little-endian
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+
+	private int iteration;
+	private double cost;
+	private double stepSize;
+	private final double[] parameters;
+	private final double[] searchDirection;
+
+	/**
+	 * Create an empty checkpoint for the given number of parameters.
+	 */
+	Checkpoint(int size) {
+		parameters = new double[size];
+		searchDirection = new double[size];
+	}
+
+	/**
+	 * Copy a minimizer's state into this checkpoint.
+	 */
+	void set(int iteration, double cost, DoubleVector parameters,
+			DoubleVector searchDirection, double stepSize) {
+		if (parameters.getLength() != this.parameters.length
+				|| searchDirection.getLength() != this.searchDirection.length) {
+			throw new IllegalArgumentException("Expected "
+					+ this.parameters.length + " parameters but got "
+					+ parameters.getLength());
+		}
+
+		this.iteration = iteration;
+		this.cost = cost;
+		this.stepSize = stepSize;
+		System.arraycopy(parameters.toArray(), 0, this.parameters, 0,
+				this.parameters.length);
+		System.arraycopy(searchDirection.toArray(), 0, this.searchDirection,
+				0, this.searchDirection.length);
+	}
+
+	public int getIteration() {
+		return iteration;
+	}
+
+	public double getCost() {
+		return cost;
+	}
+
+	public double getStepSize() {
+		return stepSize;
+	}
+
+	/**
+	 * @return The parameters after the iteration. Changes to the array are
+	 *         changes to the checkpoint.
+	 */
+	public double[] getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return The direction of the next line search
+	 */
+	public double[] getSearchDirection() {
+		return searchDirection;
+	}
+
+	/**
+	 * Write the checkpoint, replacing any existing file. The file is written
+	 * under a temporary name and then renamed, so a crash while writing leaves
+	 * the previous checkpoint intact.
+	 */
+	public void write(File path) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(
+				HEADER_SIZE + parameters.length * 16).order(
+				ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(iteration);
+		buffer.putInt(parameters.length);
+		buffer.putDouble(cost);
+		buffer.putDouble(stepSize);
+		buffer.asDoubleBuffer().put(parameters).put(searchDirection);
+		buffer.clear();
+
+		File temporary = new File(path.getPath() + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(temporary, "rw");
+		try {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		} finally {
+			file.close();
+		}
+
+		Files.move(temporary.toPath(), path.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read a checkpoint written with {@link #write}.
+	 *
+	 * @throws IOException
+	 *             If the file can't be read or is not a complete checkpoint
+	 */
+	public static Checkpoint read(File path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path.toPath());
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(
+				ByteOrder.LITTLE_ENDIAN);
+
+		if (bytes.length < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException(path + " is not a checkpoint");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(path + " has checkpoint format version "
+					+ buffer.getInt(4) + ", but only version " + VERSION
+					+ " is supported");
+		}
+
+		int size = buffer.getInt(12);
+		if (size < 0 || bytes.length != HEADER_SIZE + (long) size * 16) {
+			throw new IOException(path + " is not a complete checkpoint");
+		}
+
+		Checkpoint ret = new Checkpoint(size);
+		ret.iteration = buffer.getInt(8);
+		ret.cost = buffer.getDouble(16);
+		ret.stepSize = buffer.getDouble(24);
+
+		buffer.position(HEADER_SIZE);
+		buffer.asDoubleBuffer().get(ret.parameters).get(ret.searchDirection);
+
+		return ret;
+	}
+
+}
@@ -0,0 +1,191 @@
+package de.jungblut.math.minimize;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.jungblut.math.DoubleVector;
+
+/**
+ * Writes a {@link Checkpoint} of a minimization run every few iterations or
+ * seconds, so that a run can be continued after the process dies.
+ *
+ * The minimizer's state is copied into one of two buffers and written to
+ * disk by a background thread, so the minimizer only waits for the copy,
+ * never for the disk. If the disk falls behind, the pending snapshot is
+ * replaced by newer ones and only the newest is written.
+ *
+ * The listener must be closed after the run, which writes the last pending
+ * snapshot.
+ */
+public class CheckpointingListener implements SearchStateListener, Closeable {
+
+	private static final Logger LOGGER = Logger
+			.getLogger("CheckpointingListener");
+
+	private final File file;
+	private final int iterationInterval;
+	private final long timeInterval;
+	private final MinimizerListener delegate;
+
+	private int lastIteration;
+	private long lastTime;
+
+	/*
+	 * The two snapshot buffers, the one the writer is writing (if any) and
+	 * the one waiting to be written (if any). Guarded by this.
+	 */
+	private Checkpoint[] buffers;
+	private Checkpoint writing;
+	private Checkpoint pending;
+	private int writtenIteration = -1;
+	private boolean closed;
+
+	private final Thread writer;
+
+	/**
+	 * @param file
+	 *            The checkpoint file, which is replaced by each checkpoint
+	 * @param iterationInterval
+	 *            Take a snapshot after this many iterations, or 0 for no limit
+	 * @param timeInterval
+	 *            Take a snapshot after this much time, or 0 for no limit
+	 * @param delegate
+	 *            A listener to pass every finished iteration on to, or null
+	 */
+	public CheckpointingListener(File file, int iterationInterval,
+			long timeInterval, TimeUnit unit, MinimizerListener delegate) {
+		if (iterationInterval <= 0 && timeInterval <= 0) {
+			throw new IllegalArgumentException(
+					"Checkpoints need an iteration or time interval");
+		}
+
+		this.file = file;
+		this.iterationInterval = iterationInterval;
+		this.timeInterval = unit.toNanos(timeInterval);
+		this.delegate = delegate;
+		lastTime = System.nanoTime();
+
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeCheckpoints();
+			}
+		}, "CheckpointWriter");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void minimizationIterationFinished(int iterationNumber,
+			double cost, DoubleVector parameters) {
+		if (delegate != null) {
+			delegate.minimizationIterationFinished(iterationNumber, cost,
+					parameters);
+		}
+	}
+
+	@Override
+	public void searchStateUpdated(int iterationNumber, double cost,
+			DoubleVector parameters, DoubleVector searchDirection,
+			double stepSize) {
+		long now = System.nanoTime();
+		boolean due = (iterationInterval > 0 && iterationNumber
+				- lastIteration >= iterationInterval)
+				|| (timeInterval > 0 && now - lastTime >= timeInterval);
+		if (!due) {
+			return;
+		}
+
+		lastIteration = iterationNumber;
+		lastTime = now;
+		snapshot(iterationNumber, cost, parameters, searchDirection, stepSize);
+	}
+
+	private synchronized void snapshot(int iterationNumber, double cost,
+			DoubleVector parameters, DoubleVector searchDirection,
+			double stepSize) {
+		if (closed) {
+			throw new IllegalStateException("The listener is closed");
+		}
+
+		if (buffers == null) {
+			buffers = new Checkpoint[] {
+					new Checkpoint(parameters.getLength()),
+					new Checkpoint(parameters.getLength()) };
+		}
+
+		// Fill whichever buffer the writer isn't writing. If that one is
+		// still pending, the newer snapshot replaces it.
+		Checkpoint target = buffers[0] == writing ? buffers[1] : buffers[0];
+		target.set(iterationNumber, cost, parameters, searchDirection,
+				stepSize);
+		pending = target;
+		notifyAll();
+	}
+
+	private void writeCheckpoints() {
+		while (true) {
+			Checkpoint checkpoint;
+			synchronized (this) {
+				while (pending == null && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (pending == null) {
+					return;
+				}
+
+				checkpoint = pending;
+				writing = pending;
+				pending = null;
+			}
+
+			try {
+				checkpoint.write(file);
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, "Failed to write checkpoint to "
+						+ file, e);
+			}
+
+			synchronized (this) {
+				writing = null;
+				writtenIteration = checkpoint.getIteration();
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return The iteration of the checkpoint most recently written, or -1 if
+	 *         none was written yet.
+	 */
+	public synchronized int getWrittenIteration() {
+		return writtenIteration;
+	}
+
+	/**
+	 * Write the pending snapshot, if any, and stop the background thread.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the checkpoint",
+					e);
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package de.jungblut.math.minimize;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.FlatDoubleMatrix;
 
 public class DenseMatrixFolder {
 
@@ -94,4 +95,48 @@ public class DenseMatrixFolder {
     return vec;
   }
 
+  /**
+   * Folds the given flat matrices column-wise into a single vector. Each
+   * column is gathered with a single strided pass over the backing array.
+   */
+  public static DenseDoubleVector foldMatrices(FlatDoubleMatrix... matrices) {
+    int length = 0;
+    for (FlatDoubleMatrix matrix : matrices) {
+      length += matrix.getRowCount() * matrix.getColumnCount();
+    }
+
+    double[] v = new double[length];
+    int index = 0;
+    for (FlatDoubleMatrix matrix : matrices) {
+      final double[] data = matrix.getData();
+      final int stride = matrix.getRowStride();
+      final int rows = matrix.getRowCount();
+      for (int j = 0; j < matrix.getColumnCount(); j++) {
+        int a = matrix.getOffset() + j;
+        for (int i = 0; i < rows; i++, a += stride) {
+          v[index++] = data[a];
+        }
+      }
+    }
+
+    return new DenseDoubleVector(v);
+  }
+
+  /**
+   * Folds a single flat matrix into a single vector by rows, copying it a row
+   * at a time (or all at once, if it is contiguous).
+   */
+  public static DenseDoubleVector foldMatrix(FlatDoubleMatrix mat) {
+    return new DenseDoubleVector(mat.copy().getData());
+  }
+
+  /**
+   * Unfolds a single vector into a single flat matrix by rows. Dense vectors
+   * are wrapped rather than copied, so the matrix shares their elements.
+   */
+  public static FlatDoubleMatrix unfoldFlatMatrix(DoubleVector vector,
+      int rows, int cols) {
+    return new FlatDoubleMatrix(vector.toArray(), rows, cols);
+  }
+
 }
@@ -76,7 +76,16 @@ public final class Fmincg implements Minimizer {
 	 * method. <br/>
 	 * It uses the Polack-Ribiere (PR) to calculate the conjugate direction. See <br/>
 	 * {@link http://en.wikipedia.org/wiki/Nonlinear_conjugate_gradient_method} <br/>
-	 * for more information.
+	 * for more information. <br/>
+	 * <br/>
+	 * The point, search direction and gradients are kept in buffers which are
+	 * allocated once and then updated in place, so a line search step
+	 * allocates no parameter-sized vectors. The given input and the gradients
+	 * returned by the cost function are copied, never modified or kept. The
+	 * parameters passed to the listener are the minimizer's own point, which
+	 * keeps changing after the listener returns. A {@link SearchStateListener}
+	 * additionally receives the search direction after each successful line
+	 * search, from which a run can be continued.
 	 * 
 	 * @param f
 	 *            the cost function to minimize.
@@ -90,36 +99,88 @@ public final class Fmincg implements Minimizer {
 	 */
 	public static DoubleVector minimizeFunction(CostFunction f,
 			DoubleVector pInput, int length, MinimizerListener listener) {
+		return minimizeFunction(f, pInput, null, 0, 0, length, listener);
+	}
+
+	/**
+	 * Continues a run from a checkpoint, e.g. one written by a
+	 * {@link CheckpointingListener}. Given the same cost function, the
+	 * resumed run takes the same steps as the original run would have.
+	 * 
+	 * @param length
+	 *            the number of iterations to make, counted from the start of
+	 *            the original run
+	 * @return a vector containing the optimized input
+	 */
+	public static DoubleVector minimizeFunction(CostFunction f,
+			Checkpoint checkpoint, int length, MinimizerListener listener) {
+		return minimizeFunction(f,
+				new DenseDoubleVector(checkpoint.getParameters()),
+				new DenseDoubleVector(checkpoint.getSearchDirection()),
+				checkpoint.getStepSize(), checkpoint.getIteration(), length,
+				listener);
+	}
+
+	/**
+	 * @param direction
+	 *            the search direction to start with, or null for the steepest
+	 *            descent
+	 * @param step
+	 *            the initial step along a given direction
+	 * @param iteration
+	 *            the number of iterations already made
+	 */
+	private static DoubleVector minimizeFunction(CostFunction f,
+			DoubleVector pInput, DoubleVector direction, double step,
+			int iteration, int length, MinimizerListener listener) {
 
-		DoubleVector input = pInput;
+		DoubleVector input = pInput.deepCopy();
 		int M = 0;
-		int i = 0; // zero the run length counter
+		int i = iteration; // zero the run length counter
 		int red = 1; // starting point
 		int ls_failed = 0; // no previous line search has failed
 		DenseDoubleVector fX = new DenseDoubleVector(0); // what we return as fX
 		// get function value and gradient
 		final Tuple<Double, DoubleVector> evaluateCost = f.evaluateCost(input);
 		double f1 = evaluateCost.getFirst();
-		DoubleVector df1 = evaluateCost.getSecond();
+		DoubleVector df1 = evaluateCost.getSecond().deepCopy();
 		i = i + (length < 0 ? 1 : 0);
-		DoubleVector s = df1.multiply(-1.0d); // search direction is
-		// steepest
 
-		double d1 = s.multiply(-1.0d).dot(s); // this is the slope
-		double z1 = red / (1.0 - d1); // initial step is red/(|s|+1)
+		DoubleVector s;
+		double d1;
+		double z1;
+		if (direction == null) {
+			// search direction is steepest
+			s = df1.deepCopy().scaleInPlace(-1.0d);
+			d1 = -s.dot(s); // this is the slope
+			z1 = red / (1.0 - d1); // initial step is red/(|s|+1)
+		} else {
+			s = direction.deepCopy();
+			d1 = df1.dot(s);
+			z1 = step;
+		}
+
+		SearchStateListener stateListener = null;
+		if (listener instanceof SearchStateListener)
+			stateListener = (SearchStateListener) listener;
+
+		// buffers for the saved point and the other gradients
+		DoubleVector X0 = input.deepCopy();
+		DoubleVector df0 = df1.deepCopy();
+		DoubleVector df2 = df1.deepCopy();
 
 		while (i < Math.abs(length)) {// while not finished
 			i = i + (length > 0 ? 1 : 0);// count iterations?!
 			// make a copy of current values
-			DoubleVector X0 = input.deepCopy();
+			X0.assign(input);
 			double f0 = f1;
-			DoubleVector df0 = df1.deepCopy();
+			df0.assign(df1);
 			// begin line search
-			input = input.add(s.multiply(z1));
+			input.axpy(z1, s);
 			final Tuple<Double, DoubleVector> evaluateCost2 = f
 					.evaluateCost(input);
 			double f2 = evaluateCost2.getFirst();
-			DoubleVector df2 = evaluateCost2.getSecond();
+			df2.assign(evaluateCost2.getSecond());
 
 			i = i + (length < 0 ? 1 : 0); // count epochs?!
 			double d2 = df2.dot(s);
@@ -159,11 +220,11 @@ public final class Fmincg implements Minimizer {
 					// don't accept too close to limits
 					z2 = Math.max(Math.min(z2, INT * z3), (1 - INT) * z3);
 					z1 = z1 + z2; // update the step
-					input = input.add(s.multiply(z2));
+					input.axpy(z2, s);
 					final Tuple<Double, DoubleVector> evaluateCost3 = f
 							.evaluateCost(input);
 					f2 = evaluateCost3.getFirst();
-					df2 = evaluateCost3.getSecond();
+					df2.assign(evaluateCost3.getSecond());
 					M = M - 1;
 					i = i + (length < 0 ? 1 : 0); // count epochs?!
 					d2 = df2.dot(s);
@@ -208,11 +269,11 @@ public final class Fmincg implements Minimizer {
 				z3 = -z2;
 				z1 = z1 + z2;
 				// update current estimates
-				input = input.add(s.multiply(z2));
+				input.axpy(z2, s);
 				final Tuple<Double, DoubleVector> evaluateCost3 = f
 						.evaluateCost(input);
 				f2 = evaluateCost3.getFirst();
-				df2 = evaluateCost3.getSecond();
+				df2.assign(evaluateCost3.getSecond());
 				M = M - 1;
 				i = i + (length < 0 ? 1 : 0); // count epochs?!
 				d2 = df2.dot(s);
@@ -231,24 +292,28 @@ public final class Fmincg implements Minimizer {
 				// (df2'*df2-df1'*df2)/(df1'*df1)*s - df2;
 				final double numerator = (df2.dot(df2) - df1.dot(df2))
 						/ df1.dot(df1);
-				s = s.multiply(numerator).subtract(df2);
+				s.scaleInPlace(numerator).subtractInPlace(df2);
 				tmp = df1;
 				df1 = df2;
 				df2 = tmp; // swap derivatives
 				d2 = df1.dot(s);
 				if (d2 > 0) { // new slope must be negative
-					s = df1.multiply(-1.0d); // otherwise use steepest direction
-					d2 = s.multiply(-1.0d).dot(s);
+					// otherwise use steepest direction
+					s.assign(df1).scaleInPlace(-1.0d);
+					d2 = -s.dot(s);
 				}
 				// realmin in octave = 2.2251e-308
 				// slope ratio but max RATIO
 				z1 = z1 * Math.min(RATIO, d1 / (d2 - 2.2251e-308));
 				d1 = d2;
 				ls_failed = 0; // this line search did not fail
+
+				if (stateListener != null)
+					stateListener.searchStateUpdated(i, f1, input, s, z1);
 			} else {
-				input = X0;
+				input.assign(X0);
 				f1 = f0;
-				df1 = df0; // restore point from before failed line search
+				df1.assign(df0); // restore point from before failed line search
 				// line search failed twice in a row?
 				if (ls_failed == 1 || i > Math.abs(length)) {
 					System.out.println("Line search FAILED after " + i
@@ -258,8 +323,8 @@ public final class Fmincg implements Minimizer {
 				tmp = df1;
 				df1 = df2;
 				df2 = tmp; // swap derivatives
-				s = df1.multiply(-1.0d); // try steepest
-				d1 = s.multiply(-1.0d).dot(s);
+				s.assign(df1).scaleInPlace(-1.0d); // try steepest
+				d1 = -s.dot(s);
 				z1 = 1.0d / (1.0d - d1);
 				ls_failed = 1; // this line search failed
 			}
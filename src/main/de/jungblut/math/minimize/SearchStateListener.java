@@ -0,0 +1,32 @@
+package de.jungblut.math.minimize;
+
+import de.jungblut.math.DoubleVector;
+
+/**
+ * A listener which also receives the state {@link Fmincg} needs to continue
+ * a run from where it is.
+ */
+public interface SearchStateListener extends MinimizerListener {
+
+	/**
+	 * Called after each successful line search, once the minimizer has chosen
+	 * its next search direction. The vectors are the minimizer's own and keep
+	 * changing after the listener returns.
+	 * 
+	 * @param iterationNumber
+	 *            The number of iterations made so far
+	 * @param cost
+	 *            The cost at the current parameters
+	 * @param parameters
+	 *            The current parameters
+	 * @param searchDirection
+	 *            The direction of the next line search
+	 * @param stepSize
+	 *            The initial step of the next line search along the search
+	 *            direction
+	 */
+	public void searchStateUpdated(int iterationNumber, double cost,
+			DoubleVector parameters, DoubleVector searchDirection,
+			double stepSize);
+
+}
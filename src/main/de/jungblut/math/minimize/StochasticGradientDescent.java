@@ -0,0 +1,222 @@
+package de.jungblut.math.minimize;
+
+import java.util.Random;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Mini-batch gradient descent. Each iteration is one epoch: the examples of a
+ * {@link BatchCostFunction} are shuffled and then visited in batches of a
+ * fixed size, taking one step per batch. Unlike {@link Fmincg}, a single step
+ * never touches more than one batch of examples.
+ *
+ * The step taken for a batch depends on the {@link UpdateRule}:
+ * <ul>
+ * <li>SGD: $\theta = \theta - \alpha g$</li>
+ * <li>MOMENTUM: $v = \mu v - \alpha g$, $\theta = \theta + v$</li>
+ * <li>ADAM: bias-corrected running averages of the gradient and its square
+ * scale the step of each parameter separately (Kingma and Ba, 2014).</li>
+ * </ul>
+ *
+ * Cost functions which cannot be evaluated on batches are minimized with
+ * full-batch steps, one per iteration.
+ */
+public final class StochasticGradientDescent implements Minimizer {
+
+	public enum UpdateRule {
+		SGD, MOMENTUM, ADAM
+	}
+
+	private final UpdateRule rule;
+	private final double learningRate;
+	private final int batchSize;
+
+	private double momentum = 0.9;
+
+	private double beta1 = 0.9;
+	private double beta2 = 0.999;
+	private double epsilon = 1e-8;
+
+	private boolean reportEveryBatch = false;
+
+	private Random random = new Random();
+
+	/**
+	 * @param rule
+	 *            how a gradient is turned into a step
+	 * @param learningRate
+	 *            the step size $\alpha$
+	 * @param batchSize
+	 *            the number of examples per step
+	 */
+	public StochasticGradientDescent(UpdateRule rule, double learningRate,
+			int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+
+		this.rule = rule;
+		this.learningRate = learningRate;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the momentum $\mu$ used by {@link UpdateRule#MOMENTUM}. Defaults to
+	 * 0.9.
+	 */
+	public void setMomentum(double momentum) {
+		this.momentum = momentum;
+	}
+
+	/**
+	 * Set the decay rates of the gradient averages and the denominator offset
+	 * used by {@link UpdateRule#ADAM}. Default to 0.9, 0.999 and 1e-8.
+	 */
+	public void setAdamParameters(double beta1, double beta2, double epsilon) {
+		this.beta1 = beta1;
+		this.beta2 = beta2;
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * If true, the listener is called after every batch with the cost of that
+	 * batch. Otherwise (the default) it is called once per epoch with the
+	 * mean cost of the epoch's batches.
+	 */
+	public void setReportEveryBatch(boolean reportEveryBatch) {
+		this.reportEveryBatch = reportEveryBatch;
+	}
+
+	/**
+	 * Seed the shuffling of examples, making runs reproducible.
+	 */
+	public void setSeed(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Minimizes the given cost function.
+	 *
+	 * @param f
+	 *            the cost function to minimize. Only instances of
+	 *            {@link BatchCostFunction} are trained in mini-batches.
+	 * @param theta
+	 *            the starting parameters. They are not modified.
+	 * @param maxIterations
+	 *            the number of epochs
+	 * @param listener
+	 *            Listener which will receive information about minimization
+	 *            progress, once per epoch or once per batch
+	 * @return the optimized parameters.
+	 */
+	@Override
+	public DoubleVector minimize(CostFunction f, DoubleVector theta,
+			int maxIterations, MinimizerListener listener) {
+		double[] params = theta.toArray().clone();
+		DenseDoubleVector point = new DenseDoubleVector(params);
+
+		// Per-parameter optimizer state
+		double[] first = rule == UpdateRule.SGD ? null
+				: new double[params.length];
+		double[] second = rule == UpdateRule.ADAM ? new double[params.length]
+				: null;
+
+		BatchCostFunction batchFunction = f instanceof BatchCostFunction ? (BatchCostFunction) f
+				: null;
+
+		int m = batchFunction == null ? 1 : batchFunction.getNumExamples();
+		int[] order = new int[m];
+		for (int i = 0; i < m; i++) {
+			order[i] = i;
+		}
+
+		int step = 0;
+
+		for (int epoch = 1; epoch <= maxIterations; epoch++) {
+			shuffle(order);
+
+			double epochCost = 0;
+			int batches = 0;
+
+			for (int offset = 0; offset < m; offset += batchSize) {
+				int length = Math.min(batchSize, m - offset);
+
+				Tuple<Double, DoubleVector> result = batchFunction == null ? f
+						.evaluateCost(point) : batchFunction.evaluateBatchCost(
+						point, order, offset, length);
+
+				step++;
+				update(params, result.getSecond().toArray(), first, second,
+						step);
+
+				epochCost += result.getFirst();
+				batches++;
+
+				if (reportEveryBatch && listener != null) {
+					listener.minimizationIterationFinished(step,
+							result.getFirst(), point);
+				}
+			}
+
+			if (!reportEveryBatch && listener != null) {
+				listener.minimizationIterationFinished(epoch, epochCost
+						/ batches, point);
+			}
+		}
+
+		return point;
+	}
+
+	/**
+	 * Take one step against the given gradient, in place.
+	 *
+	 * @param step
+	 *            the one-based number of this step, used for Adam's bias
+	 *            correction
+	 */
+	private void update(double[] params, double[] gradient, double[] first,
+			double[] second, int step) {
+		switch (rule) {
+		case SGD:
+			for (int i = 0; i < params.length; i++) {
+				params[i] -= learningRate * gradient[i];
+			}
+			break;
+		case MOMENTUM:
+			for (int i = 0; i < params.length; i++) {
+				first[i] = momentum * first[i] - learningRate * gradient[i];
+				params[i] += first[i];
+			}
+			break;
+		case ADAM:
+			double correction1 = 1 - Math.pow(beta1, step);
+			double correction2 = 1 - Math.pow(beta2, step);
+			double stepSize = learningRate * Math.sqrt(correction2)
+					/ correction1;
+
+			for (int i = 0; i < params.length; i++) {
+				double g = gradient[i];
+				first[i] = beta1 * first[i] + (1 - beta1) * g;
+				second[i] = beta2 * second[i] + (1 - beta2) * g * g;
+				params[i] -= stepSize * first[i]
+						/ (Math.sqrt(second[i]) + epsilon);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Fisher-Yates shuffle.
+	 */
+	private void shuffle(int[] order) {
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+	}
+
+}
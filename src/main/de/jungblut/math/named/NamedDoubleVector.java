@@ -120,6 +120,36 @@ public final class NamedDoubleVector implements DoubleVector {
     return vector.divide(vector);
   }
 
+  @Override
+  public DoubleVector assign(DoubleVector other) {
+    vector.assign(other);
+    return this;
+  }
+
+  @Override
+  public DoubleVector addInPlace(DoubleVector v) {
+    vector.addInPlace(v);
+    return this;
+  }
+
+  @Override
+  public DoubleVector subtractInPlace(DoubleVector v) {
+    vector.subtractInPlace(v);
+    return this;
+  }
+
+  @Override
+  public DoubleVector scaleInPlace(double scalar) {
+    vector.scaleInPlace(scalar);
+    return this;
+  }
+
+  @Override
+  public DoubleVector axpy(double alpha, DoubleVector x) {
+    vector.axpy(alpha, x);
+    return this;
+  }
+
   @Override
   public DoubleVector pow(int x) {
     return vector.pow(x);
@@ -0,0 +1,826 @@
+package de.jungblut.math.sparse;
+
+import java.util.Arrays;
+
+import de.jungblut.math.BooleanMatrix;
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Sparse double matrix implementation in compressed sparse row (CSR) or
+ * compressed sparse column (CSC) form. Only non-zero elements are stored: for
+ * each row (CSR) or column (CSC), the indices of its non-zero columns (or
+ * rows) in ascending order and their values.
+ *
+ * Multiplication with dense matrices and vectors, scaling and transposition
+ * take time proportional to the number of non-zero elements. Operations which
+ * turn zeros into non-zeros (like adding a scalar) return dense matrices.
+ * Setting elements one by one is slow, since it shifts the elements stored
+ * behind them; matrices are best built with {@link #copyOf} or row by row.
+ */
+public final class SparseDoubleMatrix implements DoubleMatrix {
+
+  /**
+   * The dimension along which elements are compressed.
+   */
+  public enum Storage {
+    /** compressed sparse rows: elements are stored row by row */
+    CSR,
+    /** compressed sparse columns: elements are stored column by column */
+    CSC
+  }
+
+  private final Storage storage;
+  private final int numRows;
+  private final int numColumns;
+
+  /**
+   * Element k of the major dimension (a row for CSR, a column for CSC) is
+   * stored at positions [pointers[k], pointers[k + 1]) of indices and values.
+   */
+  private final int[] pointers;
+  private int[] indices;
+  private double[] values;
+
+  /**
+   * Creates a new matrix of zeros.
+   */
+  public SparseDoubleMatrix(int rows, int columns, Storage storage) {
+    this(rows, columns, storage, new int[(storage == Storage.CSR ? rows
+        : columns) + 1], new int[0], new double[0]);
+  }
+
+  /**
+   * Creates a matrix from compressed arrays, which are used directly, not
+   * copied.
+   *
+   * @param pointers for each row (CSR) or column (CSC) k, where its elements
+   *          start in indices and values. Has one more element, the number of
+   *          stored elements.
+   * @param indices the column (CSR) or row (CSC) of each element, ascending
+   *          within each row (or column).
+   * @param values the value of each element.
+   */
+  public SparseDoubleMatrix(int rows, int columns, Storage storage,
+      int[] pointers, int[] indices, double[] values) {
+    int major = storage == Storage.CSR ? rows : columns;
+    int minor = storage == Storage.CSR ? columns : rows;
+    if (pointers.length != major + 1 || pointers[0] != 0
+        || indices.length < pointers[major]
+        || values.length < pointers[major]) {
+      throw new IllegalArgumentException(
+          "Compressed arrays do not describe a " + rows + "x" + columns
+              + " matrix");
+    }
+    for (int k = 0; k < major; k++) {
+      for (int p = pointers[k]; p < pointers[k + 1]; p++) {
+        if (indices[p] < 0 || indices[p] >= minor
+            || (p > pointers[k] && indices[p] <= indices[p - 1])) {
+          throw new IllegalArgumentException(
+              "Indices must be ascending and within the matrix");
+        }
+      }
+    }
+
+    this.storage = storage;
+    this.numRows = rows;
+    this.numColumns = columns;
+    this.pointers = pointers;
+    this.indices = indices;
+    this.values = values;
+  }
+
+  /**
+   * @return a sparse copy of the non-zero elements of the given matrix.
+   */
+  public static SparseDoubleMatrix copyOf(DoubleMatrix other, Storage storage) {
+    if (other instanceof SparseDoubleMatrix) {
+      return ((SparseDoubleMatrix) other).toStorage(storage);
+    }
+
+    int rows = other.getRowCount();
+    int columns = other.getColumnCount();
+    int major = storage == Storage.CSR ? rows : columns;
+    int minor = storage == Storage.CSR ? columns : rows;
+
+    int[] pointers = new int[major + 1];
+    int[] indices = new int[16];
+    double[] values = new double[16];
+    int size = 0;
+    for (int k = 0; k < major; k++) {
+      for (int i = 0; i < minor; i++) {
+        double value = storage == Storage.CSR ? other.get(k, i) : other.get(i,
+            k);
+        if (value != 0.0d) {
+          if (size == indices.length) {
+            indices = Arrays.copyOf(indices, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+          }
+          indices[size] = i;
+          values[size] = value;
+          size++;
+        }
+      }
+      pointers[k + 1] = size;
+    }
+
+    return new SparseDoubleMatrix(rows, columns, storage, pointers,
+        Arrays.copyOf(indices, size), Arrays.copyOf(values, size));
+  }
+
+  /**
+   * @return this matrix in the given storage form; a copy if it already is in
+   *         that form.
+   */
+  public SparseDoubleMatrix toStorage(Storage target) {
+    if (target == storage) {
+      return new SparseDoubleMatrix(numRows, numColumns, storage,
+          pointers.clone(), Arrays.copyOf(indices, getNonZeroCount()),
+          Arrays.copyOf(values, getNonZeroCount()));
+    }
+    // converting between the forms is transposing the compressed arrays
+    SparseDoubleMatrix transposed = transposeArrays();
+    return new SparseDoubleMatrix(numRows, numColumns, target,
+        transposed.pointers, transposed.indices, transposed.values);
+  }
+
+  /**
+   * @return the compressed arrays of the transpose of this matrix, in the same
+   *         storage form, computed by counting sort in O(nnz + rows +
+   *         columns).
+   */
+  private SparseDoubleMatrix transposeArrays() {
+    int major = getMajorCount();
+    int minor = getMinorCount();
+    int nnz = getNonZeroCount();
+
+    int[] newPointers = new int[minor + 1];
+    for (int p = 0; p < nnz; p++) {
+      newPointers[indices[p] + 1]++;
+    }
+    for (int i = 0; i < minor; i++) {
+      newPointers[i + 1] += newPointers[i];
+    }
+
+    int[] next = Arrays.copyOf(newPointers, minor);
+    int[] newIndices = new int[nnz];
+    double[] newValues = new double[nnz];
+    for (int k = 0; k < major; k++) {
+      for (int p = pointers[k]; p < pointers[k + 1]; p++) {
+        int q = next[indices[p]]++;
+        newIndices[q] = k;
+        newValues[q] = values[p];
+      }
+    }
+
+    return new SparseDoubleMatrix(numColumns, numRows, storage, newPointers,
+        newIndices, newValues);
+  }
+
+  /**
+   * @return a dense copy of this matrix.
+   */
+  public DenseDoubleMatrix toDenseMatrix() {
+    double[][] rows = new double[numRows][numColumns];
+    for (int k = 0; k < getMajorCount(); k++) {
+      for (int p = pointers[k]; p < pointers[k + 1]; p++) {
+        if (storage == Storage.CSR) {
+          rows[k][indices[p]] = values[p];
+        } else {
+          rows[indices[p]][k] = values[p];
+        }
+      }
+    }
+    return new DenseDoubleMatrix(rows);
+  }
+
+  public Storage getStorage() {
+    return storage;
+  }
+
+  /**
+   * @return the number of stored, non-zero elements.
+   */
+  public int getNonZeroCount() {
+    return pointers[getMajorCount()];
+  }
+
+  private int getMajorCount() {
+    return storage == Storage.CSR ? numRows : numColumns;
+  }
+
+  private int getMinorCount() {
+    return storage == Storage.CSR ? numColumns : numRows;
+  }
+
+  /**
+   * @return the position of the element among the stored ones, or
+   *         (-(insertion point) - 1) if it is zero.
+   */
+  private int find(int row, int col) {
+    int major = storage == Storage.CSR ? row : col;
+    int minor = storage == Storage.CSR ? col : row;
+    if (row < 0 || row >= numRows || col < 0 || col >= numColumns) {
+      throw new IndexOutOfBoundsException("(" + row + ", " + col
+          + ") is not in a " + numRows + "x" + numColumns + " matrix");
+    }
+    return Arrays.binarySearch(indices, pointers[major], pointers[major + 1],
+        minor);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#get(int, int)
+   */
+  @Override
+  public double get(int row, int col) {
+    int p = find(row, col);
+    return p < 0 ? 0.0d : values[p];
+  }
+
+  /**
+   * Sets an element. Adding or removing a non-zero element shifts all
+   * elements stored behind it.
+   */
+  @Override
+  public void set(int row, int col, double value) {
+    int p = find(row, col);
+    int major = storage == Storage.CSR ? row : col;
+    int minor = storage == Storage.CSR ? col : row;
+    int nnz = getNonZeroCount();
+
+    if (p >= 0) {
+      if (value != 0.0d) {
+        values[p] = value;
+        return;
+      }
+      System.arraycopy(indices, p + 1, indices, p, nnz - p - 1);
+      System.arraycopy(values, p + 1, values, p, nnz - p - 1);
+      for (int k = major + 1; k < pointers.length; k++) {
+        pointers[k]--;
+      }
+    } else if (value != 0.0d) {
+      p = -p - 1;
+      if (nnz == indices.length) {
+        indices = Arrays.copyOf(indices, Math.max(16, nnz * 2));
+        values = Arrays.copyOf(values, Math.max(16, nnz * 2));
+      }
+      System.arraycopy(indices, p, indices, p + 1, nnz - p);
+      System.arraycopy(values, p, values, p + 1, nnz - p);
+      indices[p] = minor;
+      values[p] = value;
+      for (int k = major + 1; k < pointers.length; k++) {
+        pointers[k]++;
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#getColumnCount()
+   */
+  @Override
+  public int getColumnCount() {
+    return numColumns;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#getRowCount()
+   */
+  @Override
+  public int getRowCount() {
+    return numRows;
+  }
+
+  /**
+   * @return a sparse copy of the given row. Takes time proportional to the
+   *         elements of the row for CSR matrices.
+   */
+  @Override
+  public SparseDoubleVector getRowVector(int row) {
+    return storage == Storage.CSR ? getMajorVector(row) : getMinorVector(row);
+  }
+
+  /**
+   * @return a sparse copy of the given column. Takes time proportional to the
+   *         elements of the column for CSC matrices.
+   */
+  @Override
+  public SparseDoubleVector getColumnVector(int col) {
+    return storage == Storage.CSC ? getMajorVector(col) : getMinorVector(col);
+  }
+
+  private SparseDoubleVector getMajorVector(int k) {
+    int from = pointers[k];
+    int to = pointers[k + 1];
+    return new SparseDoubleVector(getMinorCount(), Arrays.copyOfRange(indices,
+        from, to), Arrays.copyOfRange(values, from, to));
+  }
+
+  private SparseDoubleVector getMinorVector(int i) {
+    SparseDoubleVector v = new SparseDoubleVector(getMajorCount());
+    for (int k = 0; k < getMajorCount(); k++) {
+      int p = Arrays.binarySearch(indices, pointers[k], pointers[k + 1], i);
+      if (p >= 0) {
+        v.append(k, values[p]);
+      }
+    }
+    return v;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#setColumnVector(int,
+   * de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public void setColumnVector(int col, DoubleVector column) {
+    for (int i = 0; i < numRows; i++) {
+      set(i, col, column.get(i));
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#setRowVector(int,
+   * de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public void setRowVector(int rowIndex, DoubleVector row) {
+    for (int j = 0; j < numColumns; j++) {
+      set(rowIndex, j, row.get(j));
+    }
+  }
+
+  /**
+   * @return a sparse matrix with the same structure and the given values.
+   *         Elements which have become zero stay stored.
+   */
+  private SparseDoubleMatrix withValues(double[] newValues) {
+    return new SparseDoubleMatrix(numRows, numColumns, storage,
+        pointers.clone(), Arrays.copyOf(indices, getNonZeroCount()), newValues);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#multiply(double)
+   */
+  @Override
+  public SparseDoubleMatrix multiply(double scalar) {
+    double[] result = new double[getNonZeroCount()];
+    for (int p = 0; p < result.length; p++) {
+      result[p] = values[p] * scalar;
+    }
+    return withValues(result);
+  }
+
+  /**
+   * Multiplies this matrix with another. Products with dense matrices are
+   * dense and take time proportional to the non-zero elements of this matrix
+   * times the columns of the other; products with sparse matrices are sparse
+   * CSR matrices.
+   */
+  @Override
+  public DoubleMatrix multiply(DoubleMatrix other) {
+    if (numColumns != other.getRowCount()) {
+      throw new IllegalArgumentException("Cannot multiply a " + numRows + "x"
+          + numColumns + " matrix with a " + other.getRowCount() + "x"
+          + other.getColumnCount() + " matrix");
+    }
+    if (other.isSparse()) {
+      return multiplySparse(copyOf(other, Storage.CSR));
+    }
+
+    final int p = other.getColumnCount();
+    final double[][] b = other instanceof DenseDoubleMatrix
+        ? ((DenseDoubleMatrix) other).getValues() : copyRows(other);
+    final double[][] c = new double[numRows][p];
+
+    for (int k = 0; k < getMajorCount(); k++) {
+      for (int q = pointers[k]; q < pointers[k + 1]; q++) {
+        // CSR: row k of a times row j of b adds to row k of c; CSC: column k
+        // of a times row k of b adds to row j of c
+        final double x = values[q];
+        final double[] bk = b[storage == Storage.CSR ? indices[q] : k];
+        final double[] ci = c[storage == Storage.CSR ? k : indices[q]];
+        for (int j = 0; j < p; j++) {
+          ci[j] += x * bk[j];
+        }
+      }
+    }
+
+    return new DenseDoubleMatrix(c);
+  }
+
+  private static double[][] copyRows(DoubleMatrix other) {
+    double[][] rows = new double[other.getRowCount()][other.getColumnCount()];
+    for (int i = 0; i < rows.length; i++) {
+      for (int j = 0; j < rows[i].length; j++) {
+        rows[i][j] = other.get(i, j);
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Gustavson's row by row product of this matrix (in CSR form) with a CSR
+   * matrix.
+   */
+  private SparseDoubleMatrix multiplySparse(SparseDoubleMatrix b) {
+    SparseDoubleMatrix a = storage == Storage.CSR ? this
+        : toStorage(Storage.CSR);
+    int p = b.numColumns;
+
+    int[] pointers = new int[numRows + 1];
+    int[] indices = new int[Math.max(16, a.getNonZeroCount())];
+    double[] values = new double[indices.length];
+    int size = 0;
+
+    double[] accumulator = new double[p];
+    boolean[] occupied = new boolean[p];
+    int[] touched = new int[p];
+
+    for (int i = 0; i < numRows; i++) {
+      int count = 0;
+      for (int q = a.pointers[i]; q < a.pointers[i + 1]; q++) {
+        int k = a.indices[q];
+        double x = a.values[q];
+        for (int r = b.pointers[k]; r < b.pointers[k + 1]; r++) {
+          int j = b.indices[r];
+          if (!occupied[j]) {
+            occupied[j] = true;
+            touched[count++] = j;
+          }
+          accumulator[j] += x * b.values[r];
+        }
+      }
+
+      Arrays.sort(touched, 0, count);
+      for (int t = 0; t < count; t++) {
+        int j = touched[t];
+        if (accumulator[j] != 0.0d) {
+          if (size == indices.length) {
+            indices = Arrays.copyOf(indices, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+          }
+          indices[size] = j;
+          values[size] = accumulator[j];
+          size++;
+        }
+        accumulator[j] = 0.0d;
+        occupied[j] = false;
+      }
+      pointers[i + 1] = size;
+    }
+
+    return new SparseDoubleMatrix(numRows, p, Storage.CSR, pointers,
+        Arrays.copyOf(indices, size), Arrays.copyOf(values, size));
+  }
+
+  /**
+   * Adds row * this to the given target, where row has {@link #getRowCount()}
+   * elements starting at rowOffset and target has {@link #getColumnCount()}
+   * elements starting at targetOffset. Takes time proportional to the
+   * non-zero elements of the row (CSR) or of this matrix (CSC).
+   *
+   * This is the kernel of dense times sparse products, which dense matrices
+   * call for each of their rows.
+   */
+  public void multiplyRow(double[] row, int rowOffset, double[] target,
+      int targetOffset) {
+    if (storage == Storage.CSR) {
+      for (int k = 0; k < numRows; k++) {
+        final double x = row[rowOffset + k];
+        if (x != 0.0d) {
+          for (int q = pointers[k]; q < pointers[k + 1]; q++) {
+            target[targetOffset + indices[q]] += x * values[q];
+          }
+        }
+      }
+    } else {
+      for (int j = 0; j < numColumns; j++) {
+        double sum = 0.0d;
+        for (int q = pointers[j]; q < pointers[j + 1]; q++) {
+          sum += row[rowOffset + indices[q]] * values[q];
+        }
+        target[targetOffset + j] += sum;
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#multiplyElementWise(de.jungblut.math.
+   * BooleanMatrix)
+   */
+  @Override
+  public SparseDoubleMatrix multiplyElementWise(BooleanMatrix other) {
+    double[] result = new double[getNonZeroCount()];
+    for (int k = 0; k < getMajorCount(); k++) {
+      for (int q = pointers[k]; q < pointers[k + 1]; q++) {
+        boolean keep = storage == Storage.CSR ? other.get(k, indices[q])
+            : other.get(indices[q], k);
+        result[q] = keep ? values[q] : 0.0d;
+      }
+    }
+    return withValues(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see
+   * de.jungblut.math.DoubleMatrix#multiplyElementWise(de.jungblut.math.DoubleMatrix
+   * )
+   */
+  @Override
+  public SparseDoubleMatrix multiplyElementWise(DoubleMatrix other) {
+    double[] result = new double[getNonZeroCount()];
+    for (int k = 0; k < getMajorCount(); k++) {
+      for (int q = pointers[k]; q < pointers[k + 1]; q++) {
+        double y = storage == Storage.CSR ? other.get(k, indices[q]) : other
+            .get(indices[q], k);
+        result[q] = values[q] * y;
+      }
+    }
+    return withValues(result);
+  }
+
+  /**
+   * Takes time proportional to the non-zero elements of this matrix.
+   */
+  @Override
+  public DenseDoubleVector multiplyVector(DoubleVector v) {
+    double[] x = v.toArray();
+    double[] result = new double[numRows];
+    for (int k = 0; k < getMajorCount(); k++) {
+      if (storage == Storage.CSR) {
+        double sum = 0.0d;
+        for (int q = pointers[k]; q < pointers[k + 1]; q++) {
+          sum += values[q] * x[indices[q]];
+        }
+        result[k] = sum;
+      } else {
+        final double xk = x[k];
+        for (int q = pointers[k]; q < pointers[k + 1]; q++) {
+          result[indices[q]] += values[q] * xk;
+        }
+      }
+    }
+    return new DenseDoubleVector(result);
+  }
+
+  /**
+   * @return the transpose in the same storage form, computed in time
+   *         proportional to the non-zero elements.
+   */
+  @Override
+  public SparseDoubleMatrix transpose() {
+    // the CSR arrays of a matrix are the CSC arrays of its transpose
+    return new SparseDoubleMatrix(numColumns, numRows,
+        storage == Storage.CSR ? Storage.CSC : Storage.CSR, pointers.clone(),
+        Arrays.copyOf(indices, getNonZeroCount()), Arrays.copyOf(values,
+            getNonZeroCount())).toStorage(storage);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#subtractBy(double)
+   */
+  @Override
+  public DoubleMatrix subtractBy(double amount) {
+    return toDenseMatrix().subtractBy(amount);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#subtract(double)
+   */
+  @Override
+  public DoubleMatrix subtract(double amount) {
+    return toDenseMatrix().subtract(amount);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#subtract(de.jungblut.math.DoubleMatrix)
+   */
+  @Override
+  public DoubleMatrix subtract(DoubleMatrix other) {
+    return toDenseMatrix().subtract(other);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#subtract(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleMatrix subtract(DoubleVector vec) {
+    return toDenseMatrix().subtract(vec);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#divide(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleMatrix divide(DoubleVector vec) {
+    return toDenseMatrix().divide(vec);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#divide(de.jungblut.math.DoubleMatrix)
+   */
+  @Override
+  public DoubleMatrix divide(DoubleMatrix other) {
+    return toDenseMatrix().divide(other);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#divide(double)
+   */
+  @Override
+  public DoubleMatrix divide(double scalar) {
+    if (scalar == 0.0d) {
+      return toDenseMatrix().divide(scalar);
+    }
+    double[] result = new double[getNonZeroCount()];
+    for (int p = 0; p < result.length; p++) {
+      result[p] = values[p] / scalar;
+    }
+    return withValues(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#add(de.jungblut.math.DoubleMatrix)
+   */
+  @Override
+  public DoubleMatrix add(DoubleMatrix other) {
+    return toDenseMatrix().add(other);
+  }
+
+  /**
+   * @return a sparse matrix, unless x is zero or negative.
+   */
+  @Override
+  public DoubleMatrix pow(int x) {
+    if (x <= 0) {
+      return toDenseMatrix().pow(x);
+    }
+    double[] result = new double[getNonZeroCount()];
+    for (int p = 0; p < result.length; p++) {
+      result[p] = Math.pow(values[p], x);
+    }
+    return withValues(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#max(int)
+   */
+  @Override
+  public double max(int column) {
+    SparseDoubleVector v = getColumnVector(column);
+    // like DenseDoubleMatrix, starting from Double.MIN_VALUE, which is larger
+    // than the implicit zeros
+    double max = Double.MIN_VALUE;
+    for (int k = 0; k < v.getNonZeroCount(); k++) {
+      max = Math.max(max, v.getNonZeroValue(k));
+    }
+    return max;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#min(int)
+   */
+  @Override
+  public double min(int column) {
+    return getColumnVector(column).min();
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#slice(int, int)
+   */
+  @Override
+  public SparseDoubleMatrix slice(int rows, int cols) {
+    return slice(0, rows, 0, cols);
+  }
+
+  /**
+   * @return a sparse copy of rows [rowOffset, rowMax) and columns [colOffset,
+   *         colMax), in the same storage form.
+   */
+  @Override
+  public SparseDoubleMatrix slice(int rowOffset, int rowMax, int colOffset,
+      int colMax) {
+    int majorFrom = storage == Storage.CSR ? rowOffset : colOffset;
+    int majorTo = storage == Storage.CSR ? rowMax : colMax;
+    int minorFrom = storage == Storage.CSR ? colOffset : rowOffset;
+    int minorTo = storage == Storage.CSR ? colMax : rowMax;
+
+    int[] newPointers = new int[majorTo - majorFrom + 1];
+    int[] newIndices = new int[getNonZeroCount()];
+    double[] newValues = new double[getNonZeroCount()];
+    int size = 0;
+    for (int k = majorFrom; k < majorTo; k++) {
+      int from = Arrays.binarySearch(indices, pointers[k], pointers[k + 1],
+          minorFrom);
+      from = from < 0 ? -from - 1 : from;
+      for (int q = from; q < pointers[k + 1] && indices[q] < minorTo; q++) {
+        newIndices[size] = indices[q] - minorFrom;
+        newValues[size] = values[q];
+        size++;
+      }
+      newPointers[k - majorFrom + 1] = size;
+    }
+
+    return new SparseDoubleMatrix(rowMax - rowOffset, colMax - colOffset,
+        storage, newPointers, Arrays.copyOf(newIndices, size), Arrays.copyOf(
+            newValues, size));
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#isSparse()
+   */
+  @Override
+  public boolean isSparse() {
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleMatrix#sum()
+   */
+  @Override
+  public double sum() {
+    double x = 0.0d;
+    for (int p = 0; p < getNonZeroCount(); p++) {
+      x += Math.abs(values[p]);
+    }
+    return x;
+  }
+
+  /**
+   * @return the indices of the columns which contain non-zero elements.
+   */
+  @Override
+  public int[] columnIndices() {
+    boolean[] used = new boolean[numColumns];
+    int count = 0;
+    for (int k = 0; k < getMajorCount(); k++) {
+      for (int q = pointers[k]; q < pointers[k + 1]; q++) {
+        int col = storage == Storage.CSR ? indices[q] : k;
+        if (!used[col]) {
+          used[col] = true;
+          count++;
+        }
+      }
+    }
+
+    int[] x = new int[count];
+    for (int j = 0, i = 0; j < numColumns; j++) {
+      if (used[j]) {
+        x[i++] = j;
+      }
+    }
+    return x;
+  }
+
+  @Override
+  public int hashCode() {
+    return toDenseMatrix().hashCode();
+  }
+
+  /**
+   * Sparse matrices are equal if their elements are, whatever their storage
+   * form and whether they store explicit zeros.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    SparseDoubleMatrix other = (SparseDoubleMatrix) obj;
+    if (numRows != other.numRows || numColumns != other.numColumns)
+      return false;
+    return toDenseMatrix().equals(other.toDenseMatrix());
+  }
+
+  @Override
+  public String toString() {
+    return numRows + "x" + numColumns + " " + storage + " matrix with "
+        + getNonZeroCount() + " non-zero elements";
+  }
+
+}
@@ -0,0 +1,809 @@
+package de.jungblut.math.sparse;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.collect.AbstractIterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.function.DoubleDoubleVectorFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+
+/**
+ * Sparse double vector implementation, which only stores its non-zero elements
+ * as two parallel arrays of ascending indices and their values.
+ *
+ * Following the {@link DoubleVector} contract, {@link #getLength()} is the
+ * length of the vector and {@link #getDimension()} is the number of non-zero
+ * elements. Setting an element to zero removes it. Operations which keep zeros
+ * at zero (scaling, element-wise products, dot products) run in time
+ * proportional to the non-zero elements and return sparse vectors; the others
+ * return dense vectors.
+ */
+public final class SparseDoubleVector implements DoubleVector {
+
+  private final int length;
+
+  private int[] indices;
+  private double[] values;
+  private int size;
+
+  /**
+   * Creates a new vector of zeros with the given length.
+   */
+  public SparseDoubleVector(int length) {
+    this(length, 8);
+  }
+
+  /**
+   * Creates a new vector of zeros with the given length and room for the given
+   * number of non-zero elements.
+   */
+  public SparseDoubleVector(int length, int capacity) {
+    this.length = length;
+    this.indices = new int[Math.max(1, capacity)];
+    this.values = new double[Math.max(1, capacity)];
+  }
+
+  /**
+   * Creates a vector from the given elements, which are used directly, not
+   * copied. The indices must be strictly ascending. Zero values are dropped.
+   */
+  public SparseDoubleVector(int length, int[] indices, double[] values) {
+    if (indices.length != values.length) {
+      throw new IllegalArgumentException(
+          "Indices and values must be of the same length");
+    }
+    for (int i = 0; i < indices.length; i++) {
+      if (indices[i] < 0 || indices[i] >= length
+          || (i > 0 && indices[i] <= indices[i - 1])) {
+        throw new IllegalArgumentException(
+            "Indices must be strictly ascending and within the vector");
+      }
+    }
+    this.length = length;
+    this.indices = indices;
+    this.values = values;
+    this.size = indices.length;
+    compact();
+  }
+
+  /**
+   * @return a sparse copy of the non-zero elements of the given vector.
+   */
+  public static SparseDoubleVector copyOf(DoubleVector other) {
+    SparseDoubleVector v = new SparseDoubleVector(other.getLength(),
+        other.isSparse() ? other.getDimension() : 8);
+    Iterator<DoubleVectorElement> iterator = other.iterateNonZero();
+    while (iterator.hasNext()) {
+      DoubleVectorElement e = iterator.next();
+      v.append(e.getIndex(), e.getValue());
+    }
+    return v;
+  }
+
+  /**
+   * Appends an element behind all stored ones, without searching.
+   */
+  void append(int index, double value) {
+    if (size == indices.length) {
+      grow(size + 1);
+    }
+    indices[size] = index;
+    values[size] = value;
+    size++;
+  }
+
+  private void grow(int minCapacity) {
+    int capacity = Math.max(minCapacity, indices.length * 2);
+    indices = Arrays.copyOf(indices, capacity);
+    values = Arrays.copyOf(values, capacity);
+  }
+
+  /**
+   * @return the position of the index among the stored elements, or
+   *         (-(insertion point) - 1) if it is zero.
+   */
+  private int find(int index) {
+    return Arrays.binarySearch(indices, 0, size, index);
+  }
+
+  /**
+   * @return the number of stored, non-zero elements. Same as
+   *         {@link #getDimension()}.
+   */
+  public int getNonZeroCount() {
+    return size;
+  }
+
+  /**
+   * @return the index of the k-th non-zero element.
+   */
+  public int getNonZeroIndex(int k) {
+    return indices[k];
+  }
+
+  /**
+   * @return the value of the k-th non-zero element.
+   */
+  public double getNonZeroValue(int k) {
+    return values[k];
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#get(int)
+   */
+  @Override
+  public double get(int index) {
+    int k = find(index);
+    return k < 0 ? 0.0d : values[k];
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#getLength()
+   */
+  @Override
+  public int getLength() {
+    return length;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#getDimension()
+   */
+  @Override
+  public int getDimension() {
+    return size;
+  }
+
+  /**
+   * Sets an element. Setting an element which isn't stored yet shifts all
+   * stored elements behind it, so vectors are best filled in ascending order.
+   */
+  @Override
+  public void set(int index, double value) {
+    int k = find(index);
+    if (k >= 0) {
+      if (value != 0.0d) {
+        values[k] = value;
+      } else {
+        System.arraycopy(indices, k + 1, indices, k, size - k - 1);
+        System.arraycopy(values, k + 1, values, k, size - k - 1);
+        size--;
+      }
+    } else if (value != 0.0d) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("Index " + index
+            + " is not in a vector of length " + length);
+      }
+      k = -k - 1;
+      if (size == indices.length) {
+        grow(size + 1);
+      }
+      System.arraycopy(indices, k, indices, k + 1, size - k);
+      System.arraycopy(values, k, values, k + 1, size - k);
+      indices[k] = index;
+      values[k] = value;
+      size++;
+    }
+  }
+
+  /**
+   * @return a sparse vector with the same non-zero indices and the given
+   *         values, of which only the first {@link #size} are used.
+   */
+  private SparseDoubleVector withValues(double[] newValues) {
+    SparseDoubleVector v = new SparseDoubleVector(length, size);
+    System.arraycopy(indices, 0, v.indices, 0, size);
+    System.arraycopy(newValues, 0, v.values, 0, size);
+    v.size = size;
+    v.compact();
+    return v;
+  }
+
+  /**
+   * Drops stored elements which have become zero.
+   */
+  private void compact() {
+    int j = 0;
+    for (int k = 0; k < size; k++) {
+      if (values[k] != 0.0d) {
+        indices[j] = indices[k];
+        values[j] = values[k];
+        j++;
+      }
+    }
+    size = j;
+  }
+
+  /**
+   * @return a dense copy of this vector.
+   */
+  public DenseDoubleVector toDenseVector() {
+    return new DenseDoubleVector(toArray());
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#apply(de.jungblut.math.function.
+   * DoubleVectorFunction)
+   */
+  @Override
+  public DoubleVector apply(DoubleVectorFunction func) {
+    SparseDoubleVector v = new SparseDoubleVector(length, size);
+    for (int i = 0; i < length; i++) {
+      double value = func.calculate(i, get(i));
+      if (value != 0.0d) {
+        v.append(i, value);
+      }
+    }
+    return v;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#apply(de.jungblut.math.DoubleVector,
+   * de.jungblut.math.function.DoubleDoubleVectorFunction)
+   */
+  @Override
+  public DoubleVector apply(DoubleVector other,
+      DoubleDoubleVectorFunction func) {
+    SparseDoubleVector v = new SparseDoubleVector(length, size);
+    for (int i = 0; i < length; i++) {
+      double value = func.calculate(i, get(i), other.get(i));
+      if (value != 0.0d) {
+        v.append(i, value);
+      }
+    }
+    return v;
+  }
+
+  /**
+   * @return a sparse sum if the other vector is sparse, else a dense one.
+   */
+  @Override
+  public DoubleVector add(DoubleVector v) {
+    if (v.isSparse()) {
+      return merge(SparseDoubleVector.copyOf(v), 1.0d);
+    }
+    return v.deepCopy().addInPlace(this);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#add(double)
+   */
+  @Override
+  public DoubleVector add(double scalar) {
+    return toDenseVector().add(scalar);
+  }
+
+  /**
+   * @return a sparse difference if the other vector is sparse, else a dense
+   *         one.
+   */
+  @Override
+  public DoubleVector subtract(DoubleVector v) {
+    if (v.isSparse()) {
+      return merge(SparseDoubleVector.copyOf(v), -1.0d);
+    }
+    return toDenseVector().subtractInPlace(v);
+  }
+
+  /**
+   * @return this + alpha * other, merging the two index lists.
+   */
+  private SparseDoubleVector merge(SparseDoubleVector other, double alpha) {
+    SparseDoubleVector v = new SparseDoubleVector(length, size + other.size);
+    int a = 0, b = 0;
+    while (a < size || b < other.size) {
+      int i = a < size ? indices[a] : Integer.MAX_VALUE;
+      int j = b < other.size ? other.indices[b] : Integer.MAX_VALUE;
+      double value;
+      if (i < j) {
+        v.append(i, values[a++]);
+        continue;
+      } else if (j < i) {
+        value = other.values[b++] * alpha;
+        i = j;
+      } else {
+        value = values[a++] + other.values[b++] * alpha;
+      }
+      if (value != 0.0d) {
+        v.append(i, value);
+      }
+    }
+    return v;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#subtract(double)
+   */
+  @Override
+  public DoubleVector subtract(double scalar) {
+    return toDenseVector().subtract(scalar);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#subtractFrom(double)
+   */
+  @Override
+  public DoubleVector subtractFrom(double scalar) {
+    return toDenseVector().subtractFrom(scalar);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#multiply(double)
+   */
+  @Override
+  public DoubleVector multiply(double scalar) {
+    double[] result = new double[size];
+    for (int k = 0; k < size; k++) {
+      result[k] = values[k] * scalar;
+    }
+    return withValues(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#multiply(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector multiply(DoubleVector vector) {
+    double[] result = new double[size];
+    for (int k = 0; k < size; k++) {
+      result[k] = values[k] * vector.get(indices[k]);
+    }
+    return withValues(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#divide(double)
+   */
+  @Override
+  public DoubleVector divide(double scalar) {
+    if (scalar == 0.0d) {
+      return toDenseVector().divide(scalar);
+    }
+    double[] result = new double[size];
+    for (int k = 0; k < size; k++) {
+      result[k] = values[k] / scalar;
+    }
+    return withValues(result);
+  }
+
+  /**
+   * Like {@link DenseDoubleVector#divideFrom(double)}, zero elements stay zero.
+   */
+  @Override
+  public DoubleVector divideFrom(double scalar) {
+    double[] result = new double[size];
+    for (int k = 0; k < size; k++) {
+      result[k] = scalar / values[k];
+    }
+    return withValues(result);
+  }
+
+  /**
+   * Like {@link DenseDoubleVector#divideFrom(DoubleVector)}, zero elements stay
+   * zero.
+   */
+  @Override
+  public DoubleVector divideFrom(DoubleVector vector) {
+    double[] result = new double[size];
+    for (int k = 0; k < size; k++) {
+      result[k] = vector.get(indices[k]) / values[k];
+    }
+    return withValues(result);
+  }
+
+  /**
+   * Like {@link DenseDoubleVector#divide(DoubleVector)}, division by zero
+   * gives zero.
+   */
+  @Override
+  public DoubleVector divide(DoubleVector vector) {
+    double[] result = new double[size];
+    for (int k = 0; k < size; k++) {
+      double d = vector.get(indices[k]);
+      result[k] = d != 0.0d ? values[k] / d : 0.0d;
+    }
+    return withValues(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#assign(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector assign(DoubleVector other) {
+    size = 0;
+    Iterator<DoubleVectorElement> iterator = other.iterateNonZero();
+    while (iterator.hasNext()) {
+      DoubleVectorElement e = iterator.next();
+      append(e.getIndex(), e.getValue());
+    }
+    return this;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#addInPlace(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector addInPlace(DoubleVector v) {
+    return axpy(1.0d, v);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see
+   * de.jungblut.math.DoubleVector#subtractInPlace(de.jungblut.math.DoubleVector)
+   */
+  @Override
+  public DoubleVector subtractInPlace(DoubleVector v) {
+    return axpy(-1.0d, v);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#scaleInPlace(double)
+   */
+  @Override
+  public DoubleVector scaleInPlace(double scalar) {
+    for (int k = 0; k < size; k++) {
+      values[k] *= scalar;
+    }
+    compact();
+    return this;
+  }
+
+  /**
+   * Adds alpha * x to this vector, in place. Takes time proportional to the
+   * non-zero elements of both vectors if x is sparse.
+   */
+  @Override
+  public DoubleVector axpy(double alpha, DoubleVector x) {
+    SparseDoubleVector merged = merge(SparseDoubleVector.copyOf(x), alpha);
+    indices = merged.indices;
+    values = merged.values;
+    size = merged.size;
+    return this;
+  }
+
+  /**
+   * @return a sparse vector, unless x is zero or negative.
+   */
+  @Override
+  public DoubleVector pow(int x) {
+    if (x <= 0) {
+      return toDenseVector().pow(x);
+    }
+    double[] result = new double[size];
+    for (int k = 0; k < size; k++) {
+      result[k] = x == 2 ? values[k] * values[k] : Math.pow(values[k], x);
+    }
+    return withValues(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#abs()
+   */
+  @Override
+  public DoubleVector abs() {
+    double[] result = new double[size];
+    for (int k = 0; k < size; k++) {
+      result[k] = Math.abs(values[k]);
+    }
+    return withValues(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#sqrt()
+   */
+  @Override
+  public DoubleVector sqrt() {
+    double[] result = new double[size];
+    for (int k = 0; k < size; k++) {
+      result[k] = Math.sqrt(values[k]);
+    }
+    return withValues(result);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#sum()
+   */
+  @Override
+  public double sum() {
+    double sum = 0.0d;
+    for (int k = 0; k < size; k++) {
+      sum += values[k];
+    }
+    return sum;
+  }
+
+  /**
+   * Takes time proportional to the non-zero elements of this vector, or of
+   * both vectors if the other one is sparse as well.
+   */
+  @Override
+  public double dot(DoubleVector s) {
+    double dotProduct = 0.0d;
+    if (s instanceof SparseDoubleVector) {
+      SparseDoubleVector other = (SparseDoubleVector) s;
+      int a = 0, b = 0;
+      while (a < size && b < other.size) {
+        if (indices[a] < other.indices[b]) {
+          a++;
+        } else if (indices[a] > other.indices[b]) {
+          b++;
+        } else {
+          dotProduct += values[a++] * other.values[b++];
+        }
+      }
+    } else {
+      for (int k = 0; k < size; k++) {
+        dotProduct += values[k] * s.get(indices[k]);
+      }
+    }
+    return dotProduct;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#slice(int)
+   */
+  @Override
+  public DoubleVector slice(int end) {
+    return slice(0, end);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#slice(int, int)
+   */
+  @Override
+  public DoubleVector slice(int start, int end) {
+    int from = find(start);
+    int to = find(end);
+    from = from < 0 ? -from - 1 : from;
+    to = to < 0 ? -to - 1 : to;
+
+    SparseDoubleVector v = new SparseDoubleVector(end - start, to - from);
+    for (int k = from; k < to; k++) {
+      v.append(indices[k] - start, values[k]);
+    }
+    return v;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#sliceByLength(int, int)
+   */
+  @Override
+  public DoubleVector sliceByLength(int start, int length) {
+    return slice(start, start + length);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#max()
+   */
+  @Override
+  public double max() {
+    double max = size < length ? 0.0d : -Double.MAX_VALUE;
+    for (int k = 0; k < size; k++) {
+      if (values[k] > max) {
+        max = values[k];
+      }
+    }
+    return max;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#min()
+   */
+  @Override
+  public double min() {
+    double min = size < length ? 0.0d : Double.MAX_VALUE;
+    for (int k = 0; k < size; k++) {
+      if (values[k] < min) {
+        min = values[k];
+      }
+    }
+    return min;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#maxIndex()
+   */
+  @Override
+  public int maxIndex() {
+    return firstIndexOf(max());
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#minIndex()
+   */
+  @Override
+  public int minIndex() {
+    return firstIndexOf(min());
+  }
+
+  /**
+   * @return the lowest index of an element with the given value, or 0.
+   */
+  private int firstIndexOf(double value) {
+    if (value == 0.0d) {
+      // the first index which isn't stored
+      for (int k = 0; k < size; k++) {
+        if (indices[k] != k) {
+          return k;
+        }
+      }
+      return size < length ? size : 0;
+    }
+    for (int k = 0; k < size; k++) {
+      if (values[k] == value) {
+        return indices[k];
+      }
+    }
+    return 0;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#toArray()
+   */
+  @Override
+  public double[] toArray() {
+    double[] array = new double[length];
+    for (int k = 0; k < size; k++) {
+      array[indices[k]] = values[k];
+    }
+    return array;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#deepCopy()
+   */
+  @Override
+  public SparseDoubleVector deepCopy() {
+    return new SparseDoubleVector(length, Arrays.copyOf(indices, size),
+        Arrays.copyOf(values, size));
+  }
+
+  /**
+   * Iterates over the stored elements only, without scanning the zeros in
+   * between them.
+   */
+  @Override
+  public Iterator<DoubleVectorElement> iterateNonZero() {
+    return new AbstractIterator<DoubleVectorElement>() {
+      private final DoubleVectorElement element = new DoubleVectorElement();
+      private int k = 0;
+
+      @Override
+      protected DoubleVectorElement computeNext() {
+        if (k >= size) {
+          return endOfData();
+        }
+        element.setIndex(indices[k]);
+        element.setValue(values[k]);
+        k++;
+        return element;
+      }
+    };
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#iterate()
+   */
+  @Override
+  public Iterator<DoubleVectorElement> iterate() {
+    return new AbstractIterator<DoubleVectorElement>() {
+      private final DoubleVectorElement element = new DoubleVectorElement();
+      private int index = 0;
+      private int k = 0;
+
+      @Override
+      protected DoubleVectorElement computeNext() {
+        if (index >= length) {
+          return endOfData();
+        }
+        element.setIndex(index);
+        if (k < size && indices[k] == index) {
+          element.setValue(values[k++]);
+        } else {
+          element.setValue(0.0d);
+        }
+        index++;
+        return element;
+      }
+    };
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.DoubleVector#isSparse()
+   */
+  @Override
+  public boolean isSparse() {
+    return true;
+  }
+
+  @Override
+  public boolean isNamed() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return null;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    for (int k = 0; k < size; k++) {
+      long bits = Double.doubleToLongBits(values[k]);
+      result = prime * result + indices[k];
+      result = prime * result + (int) (bits ^ (bits >>> 32));
+    }
+    result = prime * result + length;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    SparseDoubleVector other = (SparseDoubleVector) obj;
+    if (length != other.length || size != other.size)
+      return false;
+    for (int k = 0; k < size; k++) {
+      if (indices[k] != other.indices[k]
+          || Double.doubleToLongBits(values[k]) != Double
+              .doubleToLongBits(other.values[k]))
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(length).append("x1 {");
+    for (int k = 0; k < size && k < 20; k++) {
+      if (k > 0) {
+        sb.append(", ");
+      }
+      sb.append(indices[k]).append('=').append(values[k]);
+    }
+    if (size > 20) {
+      sb.append(", ...");
+    }
+    return sb.append('}').toString();
+  }
+
+}
@@ -0,0 +1,267 @@
+package de.jungblut.math.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels on the Vector API, using the widest registers of the platform.
+ * Each loop processes whole registers and leaves the remaining elements to
+ * the scalar implementation.
+ *
+ * The approximate sigmoids evaluate {@link VectorKernels#fastExp(double)}
+ * lane-wise; the exact ones use the API's `EXP`, which is within one unit in
+ * the last place of `Math.exp`.
+ */
+final class SimdVectorKernels extends ScalarVectorKernels {
+
+  private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+  /**
+   * $1.5 \cdot 2^{52}$: adding it to a double of magnitude below $2^{51}$
+   * rounds it to an integer, which then sits in the low bits of the sum's
+   * mantissa. This avoids conversions between double and long lanes, which
+   * not every platform has instructions for.
+   */
+  private static final double ROUND = 0x1.8p52;
+  private static final float ROUND_FLOAT = 0x1.8p23f;
+
+  public SimdVectorKernels() {
+    if (DOUBLES.length() < 2) {
+      throw new IllegalStateException(
+          "The platform has no vector registers for doubles");
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#getName()
+   */
+  @Override
+  public String getName() {
+    return "SIMD (" + DOUBLES.length() + " doubles, " + FLOATS.length()
+        + " floats per register)";
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#dot(double[], int,
+   * double[], int, int)
+   */
+  @Override
+  public double dot(double[] x, int xOffset, double[] y, int yOffset,
+      int length) {
+    final int bound = DOUBLES.loopBound(length);
+    DoubleVector acc = DoubleVector.zero(DOUBLES);
+    int i = 0;
+    for (; i < bound; i += DOUBLES.length()) {
+      DoubleVector a = DoubleVector.fromArray(DOUBLES, x, xOffset + i);
+      DoubleVector b = DoubleVector.fromArray(DOUBLES, y, yOffset + i);
+      acc = acc.add(a.mul(b));
+    }
+    return acc.reduceLanes(VectorOperators.ADD)
+        + super.dot(x, xOffset + i, y, yOffset + i, length - i);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#sum(double[], int, int)
+   */
+  @Override
+  public double sum(double[] x, int offset, int length) {
+    final int bound = DOUBLES.loopBound(length);
+    DoubleVector acc = DoubleVector.zero(DOUBLES);
+    int i = 0;
+    for (; i < bound; i += DOUBLES.length()) {
+      acc = acc.add(DoubleVector.fromArray(DOUBLES, x, offset + i));
+    }
+    return acc.reduceLanes(VectorOperators.ADD)
+        + super.sum(x, offset + i, length - i);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#axpy(double, double[],
+   * int, double[], int, int)
+   */
+  @Override
+  public void axpy(double alpha, double[] x, int xOffset, double[] y,
+      int yOffset, int length) {
+    final int bound = DOUBLES.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += DOUBLES.length()) {
+      DoubleVector a = DoubleVector.fromArray(DOUBLES, x, xOffset + i);
+      DoubleVector b = DoubleVector.fromArray(DOUBLES, y, yOffset + i);
+      b.add(a.mul(alpha)).intoArray(y, yOffset + i);
+    }
+    super.axpy(alpha, x, xOffset + i, y, yOffset + i, length - i);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#scale(double, double[],
+   * int, double[], int, int)
+   */
+  @Override
+  public void scale(double alpha, double[] x, int xOffset, double[] target,
+      int targetOffset, int length) {
+    final int bound = DOUBLES.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += DOUBLES.length()) {
+      DoubleVector.fromArray(DOUBLES, x, xOffset + i).mul(alpha)
+          .intoArray(target, targetOffset + i);
+    }
+    super.scale(alpha, x, xOffset + i, target, targetOffset + i, length - i);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#add(double[], int,
+   * double[], int, double[], int, int)
+   */
+  @Override
+  public void add(double[] x, int xOffset, double[] y, int yOffset,
+      double[] target, int targetOffset, int length) {
+    final int bound = DOUBLES.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += DOUBLES.length()) {
+      DoubleVector a = DoubleVector.fromArray(DOUBLES, x, xOffset + i);
+      DoubleVector b = DoubleVector.fromArray(DOUBLES, y, yOffset + i);
+      a.add(b).intoArray(target, targetOffset + i);
+    }
+    super.add(x, xOffset + i, y, yOffset + i, target, targetOffset + i,
+        length - i);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#subtract(double[], int,
+   * double[], int, double[], int, int)
+   */
+  @Override
+  public void subtract(double[] x, int xOffset, double[] y, int yOffset,
+      double[] target, int targetOffset, int length) {
+    final int bound = DOUBLES.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += DOUBLES.length()) {
+      DoubleVector a = DoubleVector.fromArray(DOUBLES, x, xOffset + i);
+      DoubleVector b = DoubleVector.fromArray(DOUBLES, y, yOffset + i);
+      a.sub(b).intoArray(target, targetOffset + i);
+    }
+    super.subtract(x, xOffset + i, y, yOffset + i, target, targetOffset + i,
+        length - i);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#multiply(double[], int,
+   * double[], int, double[], int, int)
+   */
+  @Override
+  public void multiply(double[] x, int xOffset, double[] y, int yOffset,
+      double[] target, int targetOffset, int length) {
+    final int bound = DOUBLES.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += DOUBLES.length()) {
+      DoubleVector a = DoubleVector.fromArray(DOUBLES, x, xOffset + i);
+      DoubleVector b = DoubleVector.fromArray(DOUBLES, y, yOffset + i);
+      a.mul(b).intoArray(target, targetOffset + i);
+    }
+    super.multiply(x, xOffset + i, y, yOffset + i, target, targetOffset + i,
+        length - i);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#sigmoid(double[], int,
+   * double[], int, int, boolean)
+   */
+  @Override
+  public void sigmoid(double[] z, int zOffset, double[] target,
+      int targetOffset, int length, boolean approximate) {
+    final int bound = DOUBLES.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += DOUBLES.length()) {
+      DoubleVector x = DoubleVector.fromArray(DOUBLES, z, zOffset + i).neg();
+      DoubleVector e = approximate ? fastExp(x) : x
+          .lanewise(VectorOperators.EXP);
+      DoubleVector.broadcast(DOUBLES, 1).div(e.add(1))
+          .intoArray(target, targetOffset + i);
+    }
+    super.sigmoid(z, zOffset + i, target, targetOffset + i, length - i,
+        approximate);
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see de.jungblut.math.kernel.ScalarVectorKernels#sigmoid(float[], int,
+   * float[], int, int, boolean)
+   */
+  @Override
+  public void sigmoid(float[] z, int zOffset, float[] target,
+      int targetOffset, int length, boolean approximate) {
+    final int bound = FLOATS.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += FLOATS.length()) {
+      FloatVector x = FloatVector.fromArray(FLOATS, z, zOffset + i).neg();
+      FloatVector e = approximate ? fastExp(x) : x
+          .lanewise(VectorOperators.EXP);
+      FloatVector.broadcast(FLOATS, 1).div(e.add(1))
+          .intoArray(target, targetOffset + i);
+    }
+    super.sigmoid(z, zOffset + i, target, targetOffset + i, length - i,
+        approximate);
+  }
+
+  /**
+   * Lane-wise {@link VectorKernels#fastExp(double)}, with $k$ rounded to the
+   * nearest rather than half up.
+   */
+  private static DoubleVector fastExp(DoubleVector x) {
+    x = x.max(-FAST_EXP_LIMIT).min(FAST_EXP_LIMIT);
+
+    DoubleVector shifted = x.mul(LOG2E).add(ROUND);
+    DoubleVector r = x.sub(shifted.sub(ROUND).mul(LN2));
+
+    DoubleVector p = DoubleVector.broadcast(x.species(), 1.0 / 5040);
+    p = p.mul(r).add(1.0 / 720);
+    p = p.mul(r).add(1.0 / 120);
+    p = p.mul(r).add(1.0 / 24);
+    p = p.mul(r).add(1.0 / 6);
+    p = p.mul(r).add(1.0 / 2);
+    p = p.mul(r).add(1);
+    p = p.mul(r).add(1);
+
+    // the shift drops everything above the low bits holding k + 1023
+    DoubleVector scale = shifted.reinterpretAsLongs().add(1023)
+        .lanewise(VectorOperators.LSHL, 52).reinterpretAsDoubles();
+    return scale.mul(p);
+  }
+
+  /**
+   * Lane-wise {@link VectorKernels#fastExp(float)}, with $k$ rounded to the
+   * nearest rather than half up.
+   */
+  private static FloatVector fastExp(FloatVector x) {
+    x = x.max(-FAST_EXP_FLOAT_LIMIT).min(FAST_EXP_FLOAT_LIMIT);
+
+    FloatVector shifted = x.mul((float) LOG2E).add(ROUND_FLOAT);
+    FloatVector k = shifted.sub(ROUND_FLOAT);
+    FloatVector r = x.sub(k.mul(LN2_HI)).sub(k.mul(LN2_LO));
+
+    FloatVector p = FloatVector.broadcast(x.species(), 1f / 720);
+    p = p.mul(r).add(1f / 120);
+    p = p.mul(r).add(1f / 24);
+    p = p.mul(r).add(1f / 6);
+    p = p.mul(r).add(1f / 2);
+    p = p.mul(r).add(1);
+    p = p.mul(r).add(1);
+
+    FloatVector scale = shifted.reinterpretAsInts().add(127)
+        .lanewise(VectorOperators.LSHL, 23).reinterpretAsFloats();
+    return scale.mul(p);
+  }
+
+}
@@ -40,6 +40,27 @@ public class EncogNetworkBuilderTest {
 		Assert.assertArrayEquals(output, out, 0.1);
 	}
 
+	/**
+	 * A converted network should compute the same outputs as the Encog
+	 * network it was converted from.
+	 */
+	@Test
+	public void testToNeuralNetwork() throws DimensionMismatchException,
+			InsufficientDataException {
+		addExample(builder, new double[] { 0, 1 }, new double[] { 1 });
+		addExample(builder, new double[] { 1, 0 }, new double[] { 0 });
+		BasicNetwork net = builder.buildEncogNetwork(new int[] { 3 }, 0.75,
+				0.6);
+
+		NeuralNetwork converted = EncogNetworkBuilder.toNeuralNetwork(net);
+		double[] x = new double[] { 0.3, 0.8 };
+		DoubleMatrix output = converted.feedForward(new DoubleMatrix(1, 2, x))
+				.getOutputLayer();
+
+		Assert.assertArrayEquals(net.compute(new BasicMLData(x)).getData(),
+				output.toArray(), 1e-12);
+	}
+
 	@Test(expected = InsufficientDataException.class)
 	public void testInsufficientData() throws InsufficientDataException {
 		builder.buildNetwork(new int[] { 1 }, 0);
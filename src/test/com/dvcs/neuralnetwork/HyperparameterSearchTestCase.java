@@ -0,0 +1,105 @@
+package com.dvcs.neuralnetwork;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dvcs.neuralnetwork.HyperparameterSearch.Configuration;
+import com.dvcs.neuralnetwork.HyperparameterSearch.Trial;
+
+public class HyperparameterSearchTestCase {
+
+	/**
+	 * Points of the plane, labeled by which side of a line they lie on.
+	 */
+	static MemoryExampleStore halfPlanes(int m, Random random) {
+		MemoryExampleStore ret = new MemoryExampleStore();
+		for (int i = 0; i < m; i++) {
+			double a = random.nextDouble() * 2 - 1;
+			double b = random.nextDouble() * 2 - 1;
+			double label = a + 2 * b > 0.2 ? 1 : 0;
+
+			ret.add(new Example(new double[] { a, b }, new double[] { label,
+					1 - label }));
+		}
+
+		return ret;
+	}
+
+	@Test
+	public void testSuccessiveHalving() throws InterruptedException {
+		Random random = new Random(5);
+		HyperparameterSearch search = new HyperparameterSearch(halfPlanes(200,
+				random), halfPlanes(100, random));
+		search.setParallelism(3);
+		search.setInitialIterations(10);
+
+		List<Configuration> configurations = Configuration.grid(new int[][] {
+				{ 6 }, { 2 } }, new double[] { 0.01, 1000 });
+		Assert.assertEquals(4, configurations.size());
+
+		List<Trial> trials = search.run(configurations);
+		Assert.assertEquals(4, trials.size());
+
+		// 4 configurations, then 2, then 1
+		Trial best = trials.get(0);
+		Assert.assertEquals(3, best.getRungs());
+		Assert.assertEquals(10 + 20 + 40, best.getIterations());
+		Assert.assertEquals(2, trials.get(1).getRungs());
+		Assert.assertEquals(1, trials.get(2).getRungs());
+		Assert.assertEquals(1, trials.get(3).getRungs());
+		Assert.assertTrue(trials.get(2).getScore() <= trials.get(3)
+				.getScore());
+
+		// Heavy regularization can't fit the examples at all
+		Assert.assertEquals(0.01, best.getConfiguration().getLambda(), 0);
+		Assert.assertTrue(best.getScore() < trials.get(2).getScore());
+		Assert.assertEquals(best.getConfiguration().getHiddenLayerSizes()[0],
+				best.getNetwork().getWeights().getRows(0));
+	}
+
+	@Test
+	public void testSplit() {
+		MemoryExampleStore examples = halfPlanes(10, new Random(1));
+		ExampleSubset[] split = ExampleSubset.split(examples, 0.3f,
+				new Random(2));
+
+		Assert.assertEquals(3, split[0].size());
+		Assert.assertEquals(7, split[1].size());
+
+		double[] seen = new double[10];
+		for (ExampleSubset subset : split) {
+			for (int i = 0; i < subset.size(); i++) {
+				Example example = subset.get(i);
+				for (int j = 0; j < 10; j++) {
+					if (Arrays.equals(example.getX(), examples.get(j).getX())) {
+						seen[j]++;
+					}
+				}
+			}
+		}
+
+		double[] once = new double[10];
+		Arrays.fill(once, 1);
+		Assert.assertArrayEquals(once, seen, 0);
+	}
+
+	@Test
+	public void testBuilderSearch() throws Exception {
+		NeuralNetworkBuilder builder = new NeuralNetworkBuilder(halfPlanes(
+				50, new Random(3)));
+		HyperparameterSearch search = builder.createSearch(0.2f,
+				new Random(4));
+		search.setInitialIterations(2);
+
+		List<Trial> trials = search.run(Arrays.asList(new Configuration(
+				new int[] { 3 }, 0.1)));
+		Assert.assertEquals(1, trials.size());
+		Assert.assertEquals(1, trials.get(0).getRungs());
+		Assert.assertFalse(Double.isNaN(trials.get(0).getScore()));
+	}
+
+}
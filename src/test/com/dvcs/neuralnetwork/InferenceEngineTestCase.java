@@ -0,0 +1,98 @@
+package com.dvcs.neuralnetwork;
+
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.engine.network.activation.ActivationSoftMax;
+import org.encog.mathutil.randomize.ConsistentRandomizer;
+import org.encog.ml.data.basic.BasicMLData;
+import org.encog.neural.networks.BasicNetwork;
+import org.encog.neural.networks.layers.BasicLayer;
+import org.jblas.DoubleMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.dvcs.neuralnetwork.activation.Softmax;
+import com.dvcs.neuralnetwork.activation.Tanh;
+
+public class InferenceEngineTestCase {
+
+	/**
+	 * The engine should give the same output layer as feeding forward through
+	 * the network it was compiled from, one example at a time and in batches.
+	 */
+	@Test
+	public void testMatchesNeuralNetwork() {
+		NeuralNetwork network = new NeuralNetwork(new DoubleMatrix[] {
+				NeuralNetworkGradientTestCase.initializeWeights(5, 7),
+				NeuralNetworkGradientTestCase.initializeWeights(4, 5),
+				NeuralNetworkGradientTestCase.initializeWeights(3, 4) });
+		network.setActivations(new Tanh(), new Softmax());
+
+		DoubleMatrix x = DoubleMatrix.rand(6, 7).sub(0.5);
+		DoubleMatrix expected = network.feedForward(x).getOutputLayer();
+
+		InferenceEngine engine = InferenceEngine.compile(network, 4);
+		Assert.assertEquals(7, engine.getInputSize());
+		Assert.assertEquals(3, engine.getOutputSize());
+
+		// one example at a time
+		for (int j = 0; j < x.getRows(); j++) {
+			double[] output = engine.compute(x.getRow(j).toArray());
+			Assert.assertArrayEquals(expected.getColumn(j).toArray(), output,
+					1e-12);
+			Assert.assertEquals(NeuralNetwork.maxIndex(output),
+					engine.predict(x.getRow(j).toArray()));
+		}
+
+		// a full batch, then a smaller one
+		double[] batch = x.transpose().toArray();
+		double[] outputs = engine.compute(batch, 4);
+		for (int i = 0; i < 4 * 3; i++) {
+			Assert.assertEquals(expected.data[i], outputs[i], 1e-12);
+		}
+
+		int[] classes = new int[2];
+		engine.predict(batch, 2, classes);
+		Assert.assertArrayEquals(
+				network.predict(expected.getRange(0, 3, 0, 2)), classes);
+	}
+
+	/**
+	 * The engine keeps its own copy of the weights.
+	 */
+	@Test
+	public void testCompiledWeightsAreFrozen() {
+		NeuralNetwork network = new NeuralNetwork(new int[] { 3, 2 });
+		InferenceEngine engine = InferenceEngine.compile(network, 1);
+		double[] x = new double[] { 1, 2, 3 };
+		double before = engine.compute(x)[0];
+
+		network.getWeights().getData()[1] += 1;
+		Assert.assertEquals(before, engine.compute(x)[0], 0);
+		Assert.assertEquals(before, engine.copy().compute(x)[0], 0);
+	}
+
+	@Test
+	public void testMatchesEncogNetwork() {
+		BasicNetwork network = new BasicNetwork();
+		network.addLayer(new BasicLayer(null, true, 6));
+		network.addLayer(new BasicLayer(new ActivationSigmoid(), true, 4));
+		network.addLayer(new BasicLayer(new ActivationSoftMax(), false, 3));
+		network.getStructure().finalizeStructure();
+		network.reset();
+		new ConsistentRandomizer(-1, 1, 500).randomize(network);
+
+		InferenceEngine engine = InferenceEngine.compile(network, 2);
+		double[] x = new double[] { 0.1, -0.4, 0.9, 0.3, -1, 0.5 };
+
+		double[] expected = network.compute(new BasicMLData(x)).getData();
+		Assert.assertArrayEquals(expected, engine.compute(x), 1e-12);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBatchTooLarge() {
+		InferenceEngine engine = InferenceEngine.compile(new NeuralNetwork(
+				new int[] { 3, 2 }), 2);
+		engine.compute(new double[9], 3);
+	}
+
+}
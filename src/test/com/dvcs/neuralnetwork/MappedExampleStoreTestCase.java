@@ -0,0 +1,175 @@
+package com.dvcs.neuralnetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+
+public class MappedExampleStoreTestCase {
+
+	File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("examples", ".dvex");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	static Example example(int i) {
+		return new Example(new double[] { i, i + 0.5, -i },
+				new double[] { i % 2, (i + 1) % 2 });
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		MappedExampleStore store = MappedExampleStore.create(file, 3, 2,
+				Precision.DOUBLE);
+		for (int i = 0; i < 10; i++) {
+			store.add(example(i));
+		}
+
+		Assert.assertEquals(10, store.size());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertArrayEquals(example(i).getX(), store.get(i).getX(), 0);
+			Assert.assertArrayEquals(example(i).getY(), store.get(i).getY(), 0);
+		}
+
+		double[] x = new double[5];
+		double[] y = new double[4];
+		store.readExample(7, x, 2, y, 1);
+		Assert.assertArrayEquals(new double[] { 0, 0, 7, 7.5, -7 }, x, 0);
+		Assert.assertArrayEquals(new double[] { 0, 1, 0, 0 }, y, 0);
+
+		store.close();
+	}
+
+	@Test
+	public void testReopenAndAppend() throws IOException {
+		MappedExampleStore store = MappedExampleStore.create(file, 3, 2,
+				Precision.FLOAT);
+		for (int i = 0; i < 4; i++) {
+			store.add(example(i));
+		}
+		store.close();
+
+		store = MappedExampleStore.open(file);
+		Assert.assertEquals(Precision.FLOAT, store.getPrecision());
+		Assert.assertEquals(3, store.getInputSize());
+		Assert.assertEquals(2, store.getOutputSize());
+		Assert.assertEquals(4, store.size());
+
+		store.add(example(4));
+		Assert.assertEquals(5, store.size());
+		for (int i = 0; i < 5; i++) {
+			Assert.assertArrayEquals(example(i).getX(), store.get(i).getX(), 0);
+		}
+
+		float[] x = new float[3];
+		float[] y = new float[3];
+		store.readExample(3, x, 0, y, 1);
+		Assert.assertArrayEquals(new float[] { 3, 3.5f, -3 }, x, 0);
+		Assert.assertArrayEquals(new float[] { 0, 1, 0 }, y, 0);
+		store.close();
+	}
+
+	/**
+	 * Single-precision networks read examples as floats from stores of
+	 * either precision.
+	 */
+	@Test
+	public void testBuilderTrainsInFloatPrecision() throws Exception {
+		MappedExampleStore store = MappedExampleStore.create(file, 3, 2,
+				Precision.DOUBLE);
+		NeuralNetworkBuilder builder = new NeuralNetworkBuilder(store);
+		builder.setPrecision(Precision.FLOAT);
+		for (int i = 0; i < 20; i++) {
+			builder.addExample(example(i));
+		}
+
+		NeuralNetwork nn = builder.buildNetwork(new int[] { 4 }, 0.1);
+		Assert.assertEquals(Precision.FLOAT, nn.getPrecision());
+
+		MemoryExampleStore memory = new MemoryExampleStore(Precision.FLOAT);
+		for (int i = 0; i < 20; i++) {
+			memory.add(example(i));
+		}
+		Assert.assertArrayEquals(example(7).getX(), memory.get(7).getX(), 0);
+
+		NeuralNetworkCostFunction fromFile = new NeuralNetworkCostFunction(
+				nn, store, 0.1, 1, 8);
+		NeuralNetworkCostFunction fromMemory = new NeuralNetworkCostFunction(
+				nn, memory, 0.1, 1, 8);
+		DoubleVector point = nn.getWeights().asPoint();
+		Assert.assertEquals(fromFile.evaluateCost(point).getFirst(),
+				fromMemory.evaluateCost(point).getFirst(), 0);
+		store.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedStore() throws IOException {
+		MappedExampleStore store = MappedExampleStore.create(file, 3, 2,
+				Precision.DOUBLE);
+		for (int i = 0; i < 4; i++) {
+			store.add(example(i));
+		}
+		store.close();
+
+		// Cut the file within the last example
+		RandomAccessFile f = new RandomAccessFile(file, "rw");
+		f.setLength(MappedExampleStore.HEADER_SIZE + 3 * 5 * 8 + 8);
+		f.close();
+
+		MappedExampleStore.open(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidHeader() throws IOException {
+		MappedExampleStore.create(file, 3, 2, Precision.DOUBLE).close();
+
+		RandomAccessFile f = new RandomAccessFile(file, "rw");
+		f.seek(8);
+		f.writeInt(Integer.reverseBytes(2));
+		f.close();
+
+		MappedExampleStore.open(file);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testReadPastEnd() throws IOException {
+		MappedExampleStore store = MappedExampleStore.create(file, 3, 2,
+				Precision.DOUBLE);
+		store.add(example(0));
+
+		try {
+			store.get(1);
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testBuilderTrainsFromStore() throws Exception {
+		MappedExampleStore store = MappedExampleStore.create(file, 3, 2,
+				Precision.DOUBLE);
+		NeuralNetworkBuilder builder = new NeuralNetworkBuilder(store);
+		for (int i = 0; i < 20; i++) {
+			builder.addExample(example(i));
+		}
+
+		NeuralNetwork nn = builder.buildNetwork(new int[] { 4 }, 0.1);
+		Assert.assertEquals(20, store.size());
+		Assert.assertEquals(2, nn.getThetas().length);
+		store.close();
+	}
+
+}
@@ -0,0 +1,138 @@
+package com.dvcs.neuralnetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jblas.DoubleMatrix;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dvcs.neuralnetwork.activation.ReLU;
+import com.dvcs.neuralnetwork.activation.Softmax;
+
+public class ModelFileTestCase {
+
+	File directory;
+	File file;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("models").toFile();
+		file = new File(directory, "network" + ModelFile.EXTENSION);
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : directory.listFiles()) {
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	static NeuralNetwork createNetwork() {
+		Weights weights = Weights.copyOf(new DoubleMatrix[] {
+				NeuralNetworkGradientTestCase.initializeWeights(5, 7),
+				NeuralNetworkGradientTestCase.initializeWeights(3, 5) });
+		NeuralNetwork network = new NeuralNetwork(weights, Precision.FLOAT);
+		network.setActivations(new ReLU(0.01), new Softmax());
+		network.setFastActivation(true);
+
+		return network;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		NeuralNetwork network = createNetwork();
+		ModelFile.save(network, file);
+		Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+
+		NeuralNetwork loaded = ModelFile.load(file);
+		Assert.assertArrayEquals(network.getWeights().getData(), loaded
+				.getWeights().getData(), 0);
+		Assert.assertEquals(5, loaded.getWeights().getRows(0));
+		Assert.assertEquals(8, loaded.getWeights().getColumns(0));
+		Assert.assertEquals(Precision.FLOAT, loaded.getPrecision());
+		Assert.assertTrue(loaded.fastActivation);
+		Assert.assertEquals(0.01,
+				((ReLU) loaded.getActivation(1)).getLeak(), 0);
+		Assert.assertTrue(loaded.getOutputActivation() instanceof Softmax);
+
+		DoubleMatrix x = DoubleMatrix.rand(4, 7);
+		Assert.assertEquals(network.feedForward(x).getOutputLayer(), loaded
+				.feedForward(x).getOutputLayer());
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedFile() throws IOException {
+		ModelFile.save(createNetwork(), file);
+
+		RandomAccessFile f = new RandomAccessFile(file, "rw");
+		f.setLength(f.length() - 8);
+		f.close();
+
+		ModelFile.load(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownPrecision() throws IOException {
+		ModelFile.save(createNetwork(), file);
+
+		RandomAccessFile f = new RandomAccessFile(file, "rw");
+		f.seek(12);
+		f.writeInt(Integer.reverseBytes(2));
+		f.close();
+
+		ModelFile.load(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotAModel() throws IOException {
+		Files.write(file.toPath(), new byte[64]);
+		ModelFile.load(file);
+	}
+
+	/**
+	 * Models written into a watched directory by someone else should be
+	 * loaded, but not ones saved through the watcher.
+	 */
+	@Test
+	public void testDirectoryWatcher() throws IOException,
+			InterruptedException {
+		final List<File> loaded = new ArrayList<File>();
+		final CountDownLatch done = new CountDownLatch(1);
+
+		ModelDirectoryWatcher watcher = new ModelDirectoryWatcher(directory,
+				new ModelDirectoryWatcher.Listener() {
+					public void modelLoaded(NeuralNetwork network, File file) {
+						synchronized (loaded) {
+							loaded.add(file);
+						}
+						done.countDown();
+					}
+				});
+		Assert.assertNull(watcher.findNewest());
+		watcher.start();
+
+		watcher.save(createNetwork(), "own");
+		File other = new File(directory, "other" + ModelFile.EXTENSION);
+		ModelFile.save(createNetwork(), other);
+
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		watcher.shutdown();
+
+		synchronized (loaded) {
+			Assert.assertEquals(1, loaded.size());
+			Assert.assertEquals(other, loaded.get(0));
+		}
+		Assert.assertNotNull(watcher.findNewest());
+	}
+
+}
@@ -48,6 +48,22 @@ public class NeuralNetworkBuilderTest {
 				0.001);
 	}
 
+	@Test
+	public void testDeepBuild() throws DimensionMismatchException,
+			InsufficientDataException {
+		addExample(builder2, new double[] { 0, 1 }, new double[] { 1, 0 });
+		addExample(builder2, new double[] { 1, 0 }, new double[] { 0, 1 });
+
+		NeuralNetwork net = builder2.buildNetwork(new int[] { 3, 4, 3 }, 0);
+		Assert.assertEquals(4, net.getThetas().length);
+
+		DoubleMatrix inputM = new DoubleMatrix(new double[][] {
+				new double[] { 0, 1 }, new double[] { 1, 0 } });
+		ForwardPropagationResult fResult = net.feedForward(inputM);
+		Assert.assertArrayEquals(new double[] { 1, 0, 0, 1 }, fResult
+				.getOutputLayer().toArray(), 0.1);
+	}
+
 	@Test(expected = InsufficientDataException.class)
 	public void testInsufficientData() throws InsufficientDataException {
 		builder.buildNetwork(new int[] { 1 }, 0);
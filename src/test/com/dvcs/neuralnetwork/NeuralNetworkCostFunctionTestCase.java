@@ -0,0 +1,229 @@
+package com.dvcs.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+public class NeuralNetworkCostFunctionTestCase {
+
+	static final double LAMBDA = 0.5;
+	static final int M = 23;
+
+	NeuralNetwork nn;
+	DoubleMatrix X;
+	DoubleMatrix Y;
+	DoubleVector params;
+
+	@Before
+	public void setUp() {
+		DoubleMatrix Theta1 = NeuralNetworkGradientTestCase.initializeWeights(
+				6, 4);
+		DoubleMatrix Theta2 = NeuralNetworkGradientTestCase.initializeWeights(
+				3, 6);
+		nn = new NeuralNetwork(new DoubleMatrix[] { Theta1, Theta2 });
+
+		X = NeuralNetworkGradientTestCase.initializeWeights(M, 3);
+
+		DoubleMatrix y = new DoubleMatrix(M, 1);
+		for (int i = 0; i < M; i++) {
+			y.put(i, 0, i % 3 + 1);
+		}
+		Y = NeuralNetwork.buildYMatrix(y, 3);
+
+		params = NeuralNetwork.convertWeightMatricesToPoint(new DoubleMatrix[] {
+				Theta1, Theta2 });
+	}
+
+	/**
+	 * Sharded evaluation should agree with the single-threaded evaluation up
+	 * to floating-point reassociation.
+	 */
+	@Test
+	public void testParallelMatchesSerial() {
+		NeuralNetworkCostFunction serial = new NeuralNetworkCostFunction(nn,
+				X, Y, LAMBDA);
+		NeuralNetworkCostFunction parallel = new NeuralNetworkCostFunction(nn,
+				X, Y, LAMBDA, 4);
+
+		Tuple<Double, DoubleVector> expected = serial.evaluateCost(params);
+		Tuple<Double, DoubleVector> actual = parallel.evaluateCost(params);
+		parallel.shutdown();
+
+		Assert.assertEquals(expected.getFirst(), actual.getFirst(), 1e-12);
+		Assert.assertArrayEquals(expected.getSecond().toArray(), actual
+				.getSecond().toArray(), 1e-12);
+	}
+
+	/**
+	 * A given number of shards should always produce bit-identical results.
+	 */
+	@Test
+	public void testParallelIsDeterministic() {
+		NeuralNetworkCostFunction parallel = new NeuralNetworkCostFunction(nn,
+				X, Y, LAMBDA, 5);
+
+		Tuple<Double, DoubleVector> first = parallel.evaluateCost(params);
+		for (int i = 0; i < 20; i++) {
+			Tuple<Double, DoubleVector> next = parallel.evaluateCost(params);
+
+			Assert.assertEquals(Double.doubleToLongBits(first.getFirst()),
+					Double.doubleToLongBits(next.getFirst()));
+			Assert.assertEquals(first.getSecond(), next.getSecond());
+		}
+		parallel.shutdown();
+	}
+
+	/**
+	 * A batch holding every example, in any order, is the full data set.
+	 */
+	@Test
+	public void testBatchOfAllExamplesMatchesFullCost() {
+		NeuralNetworkCostFunction costFunction = new NeuralNetworkCostFunction(
+				nn, X, Y, LAMBDA);
+
+		int[] examples = new int[M + 3];
+		for (int i = 0; i < M; i++) {
+			examples[i + 3] = M - 1 - i;
+		}
+
+		Tuple<Double, DoubleVector> expected = costFunction
+				.evaluateCost(params);
+		Tuple<Double, DoubleVector> actual = costFunction.evaluateBatchCost(
+				params, examples, 3, M);
+
+		Assert.assertEquals(expected.getFirst(), actual.getFirst(), 1e-12);
+		Assert.assertArrayEquals(expected.getSecond().toArray(), actual
+				.getSecond().toArray(), 1e-12);
+	}
+
+	/**
+	 * Regularization is scaled by the size of the training set, not of the
+	 * batch, so batch results averaged over a partition of the examples
+	 * (weighted by batch size) are the full ones.
+	 */
+	@Test
+	public void testBatchesAverageToFullCost() {
+		NeuralNetworkCostFunction costFunction = new NeuralNetworkCostFunction(
+				nn, X, Y, LAMBDA);
+
+		int[] examples = new int[M];
+		for (int i = 0; i < M; i++) {
+			examples[i] = (i * 7) % M;
+		}
+
+		double cost = 0;
+		double[] gradient = new double[params.getLength()];
+		for (int offset = 0; offset < M; offset += 5) {
+			int length = Math.min(5, M - offset);
+			double weight = (double) length / M;
+
+			Tuple<Double, DoubleVector> batch = costFunction
+					.evaluateBatchCost(params, examples, offset, length);
+			cost += weight * batch.getFirst();
+			for (int i = 0; i < gradient.length; i++) {
+				gradient[i] += weight * batch.getSecond().get(i);
+			}
+		}
+
+		Tuple<Double, DoubleVector> expected = costFunction
+				.evaluateCost(params);
+		Assert.assertEquals(expected.getFirst(), cost, 1e-12);
+		Assert.assertArrayEquals(expected.getSecond().toArray(), gradient,
+				1e-12);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoExamples() {
+		new NeuralNetworkCostFunction(nn, new MemoryExampleStore(), LAMBDA, 1,
+				NeuralNetworkCostFunction.DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * More shards than examples should still evaluate every example once.
+	 */
+	@Test
+	public void testMoreShardsThanExamples() {
+		DoubleMatrix x = X.getRange(0, 2, 0, X.getColumns());
+		DoubleMatrix y = Y.getRange(0, Y.getRows(), 0, 2);
+
+		Tuple<Double, DoubleVector> expected = new NeuralNetworkCostFunction(
+				nn, x, y, LAMBDA).evaluateCost(params);
+
+		NeuralNetworkCostFunction parallel = new NeuralNetworkCostFunction(nn,
+				x, y, LAMBDA, 8);
+		Tuple<Double, DoubleVector> actual = parallel.evaluateCost(params);
+		parallel.shutdown();
+
+		Assert.assertEquals(expected.getFirst(), actual.getFirst(), 1e-12);
+		Assert.assertArrayEquals(expected.getSecond().toArray(), actual
+				.getSecond().toArray(), 1e-12);
+	}
+
+	/**
+	 * Streaming examples from a store in small blocks should agree with
+	 * evaluating the example matrix in one piece.
+	 */
+	@Test
+	public void testBlockedStoreMatchesMatrix() {
+		MemoryExampleStore store = new MemoryExampleStore();
+		for (int i = 0; i < M; i++) {
+			store.add(new Example(X.getRow(i).toArray(), Y.getColumn(i)
+					.toArray()));
+		}
+
+		NeuralNetworkCostFunction matrix = new NeuralNetworkCostFunction(nn,
+				X, Y, LAMBDA);
+		NeuralNetworkCostFunction blocked = new NeuralNetworkCostFunction(nn,
+				store, LAMBDA, 2, 5);
+
+		Tuple<Double, DoubleVector> expected = matrix.evaluateCost(params);
+		Tuple<Double, DoubleVector> actual = blocked.evaluateCost(params);
+		blocked.shutdown();
+
+		Assert.assertEquals(expected.getFirst(), actual.getFirst(), 1e-12);
+		Assert.assertArrayEquals(expected.getSecond().toArray(), actual
+				.getSecond().toArray(), 1e-12);
+	}
+
+	/**
+	 * A single-precision network, reading its examples from a
+	 * single-precision store in blocks, should agree with the
+	 * double-precision cost function to about float accuracy.
+	 */
+	@Test
+	public void testFloatPrecisionMatchesDouble() {
+		MemoryExampleStore store = new MemoryExampleStore(Precision.FLOAT);
+		for (int i = 0; i < M; i++) {
+			store.add(new Example(X.getRow(i).toArray(), Y.getColumn(i)
+					.toArray()));
+		}
+
+		NeuralNetwork floatNetwork = new NeuralNetwork(nn.getWeights(),
+				Precision.FLOAT);
+		NeuralNetworkCostFunction single = new NeuralNetworkCostFunction(
+				floatNetwork, store, LAMBDA, 2, 5);
+		NeuralNetworkCostFunction double_ = new NeuralNetworkCostFunction(nn,
+				X, Y, LAMBDA);
+
+		Tuple<Double, DoubleVector> expected = double_.evaluateCost(params);
+		Tuple<Double, DoubleVector> actual = single.evaluateCost(params);
+
+		Assert.assertEquals(expected.getFirst(), actual.getFirst(), 1e-6);
+		Assert.assertArrayEquals(expected.getSecond().toArray(), actual
+				.getSecond().toArray(), 1e-6);
+
+		int[] examples = new int[] { 4, 0, 17 };
+		expected = double_.evaluateBatchCost(params, examples, 0, 3);
+		actual = single.evaluateBatchCost(params, examples, 0, 3);
+		single.shutdown();
+
+		Assert.assertEquals(expected.getFirst(), actual.getFirst(), 1e-6);
+		Assert.assertArrayEquals(expected.getSecond().toArray(), actual
+				.getSecond().toArray(), 1e-6);
+	}
+
+}
@@ -6,6 +6,13 @@ import org.jblas.DoubleMatrix;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.dvcs.neuralnetwork.activation.Activation;
+import com.dvcs.neuralnetwork.activation.OutputActivation;
+import com.dvcs.neuralnetwork.activation.ReLU;
+import com.dvcs.neuralnetwork.activation.Sigmoid;
+import com.dvcs.neuralnetwork.activation.Softmax;
+import com.dvcs.neuralnetwork.activation.Tanh;
+
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.minimize.CostFunction;
@@ -60,6 +67,77 @@ public class NeuralNetworkGradientTestCase {
 				.convertWeightMatricesToPoint(new DoubleMatrix[] { Theta1,
 						Theta2 });
 
+		Assert.assertTrue(
+				"Numerical gradient and backpropagated gradient are very close",
+				rateGradient(costFunction, params) < 1e-9);
+	}
+
+	@Test
+	public void testTwoHiddenLayers() {
+		checkGradient(new int[] { 2, 5, 4, 3 }, LAMBDA);
+	}
+
+	@Test
+	public void testFourHiddenLayers() {
+		checkGradient(new int[] { 3, 4, 6, 5, 4, 2 }, LAMBDA);
+	}
+
+	@Test
+	public void testFourHiddenLayersRegularized() {
+		checkGradient(new int[] { 3, 4, 6, 5, 4, 2 }, 1.0);
+	}
+
+	@Test
+	public void testTanhHiddenLayersSoftmaxOutput() {
+		checkGradient(new int[] { 3, 4, 5, 3 }, 1.0, new Tanh(), new Softmax());
+	}
+
+	@Test
+	public void testLeakyReLUHiddenLayers() {
+		checkGradient(new int[] { 3, 6, 5, 2 }, 1.0, new ReLU(0.05),
+				new Sigmoid());
+	}
+
+	void checkGradient(int[] layerSizes, double lambda) {
+		checkGradient(layerSizes, lambda, new Sigmoid(), new Sigmoid());
+	}
+
+	/**
+	 * Check the backpropagated gradient of a network with the given layer
+	 * sizes and activations against the numerical gradient.
+	 */
+	void checkGradient(int[] layerSizes, double lambda, Activation hidden,
+			OutputActivation output) {
+		DoubleMatrix[] Thetas = new DoubleMatrix[layerSizes.length - 1];
+		for (int l = 0; l < Thetas.length; l++) {
+			Thetas[l] = initializeWeights(layerSizes[l + 1], layerSizes[l]);
+		}
+
+		int k = layerSizes[layerSizes.length - 1];
+		DoubleMatrix x = initializeWeights(M, layerSizes[0] - 1);
+		DoubleMatrix y = new DoubleMatrix(M, 1);
+		for (int i = 0; i < M; i++) {
+			y.put(i, 0, (i + 1) % k + 1);
+		}
+
+		NeuralNetwork network = new NeuralNetwork(Thetas);
+		network.setActivations(hidden, output);
+
+		NeuralNetworkCostFunction costFunction = new NeuralNetworkCostFunction(
+				network, x, NeuralNetwork.buildYMatrix(y, k), lambda);
+		DoubleVector params = NeuralNetwork
+				.convertWeightMatricesToPoint(Thetas);
+
+		Assert.assertTrue(
+				"Numerical gradient and backpropagated gradient are very close",
+				rateGradient(costFunction, params) < 1e-9);
+	}
+
+	/**
+	 * @return The relative difference between the numerical gradient and the
+	 *         backpropagated gradient at the given point
+	 */
+	double rateGradient(CostFunction costFunction, DoubleVector params) {
 		Tuple<Double, DoubleVector> result = costFunction.evaluateCost(params);
 
 		DoubleVector resultVector = result.getSecond();
@@ -73,9 +151,7 @@ public class NeuralNetworkGradientTestCase {
 				/ Math.sqrt(botDiff.dot(botDiff));
 		System.out.println(rating);
 
-		Assert.assertTrue(
-				"Numerical gradient and backpropagated gradient are very close",
-				rating < 1e-9);
+		return rating;
 	}
 
 	DoubleVector computeNumericalGradient(CostFunction costFunction,
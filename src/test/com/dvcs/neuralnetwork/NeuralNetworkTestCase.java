@@ -1,14 +1,23 @@
 package com.dvcs.neuralnetwork;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
 import org.jblas.DoubleMatrix;
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.dvcs.neuralnetwork.NeuralNetwork.ForwardPropagationResult;
+import com.dvcs.neuralnetwork.activation.Softmax;
+import com.dvcs.neuralnetwork.activation.Tanh;
 import com.dvcs.tools.MatrixTools;
 
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.Checkpoint;
+import de.jungblut.math.minimize.CheckpointingListener;
+import de.jungblut.math.minimize.Fmincg;
 
 public class NeuralNetworkTestCase {
 
@@ -51,6 +60,191 @@ public class NeuralNetworkTestCase {
 		Assert.assertEquals(expectedA3, fResult.getOutputLayer());
 	}
 
+	/**
+	 * Feeding forward through a reused workspace should give the same layer
+	 * values as a freshly allocated one, and overwrite the previous results.
+	 */
+	@Test
+	public void testFeedForwardWorkspaceReuse() {
+		NeuralNetwork network = new NeuralNetwork(new DoubleMatrix[] {
+				NeuralNetworkGradientTestCase.initializeWeights(4, 3),
+				NeuralNetworkGradientTestCase.initializeWeights(2, 4) });
+		ForwardPropagationWorkspace workspace = network.createWorkspace(5);
+
+		DoubleMatrix x1 = NeuralNetworkGradientTestCase.initializeWeights(5, 2);
+		DoubleMatrix x2 = x1.mul(-2);
+
+		ForwardPropagationResult first = network.feedForward(x1,
+				network.getThetas(), workspace);
+		DoubleMatrix firstOutput = first.getOutputLayer().dup();
+
+		ForwardPropagationResult second = network.feedForward(x2,
+				network.getThetas(), workspace);
+
+		Assert.assertSame(first, second);
+		Assert.assertFalse(firstOutput.equals(second.getOutputLayer()));
+
+		ForwardPropagationResult fresh = network.feedForward(x2);
+		for (int l = 0; l < 3; l++) {
+			Assert.assertEquals(fresh.getLayerValues()[l],
+					second.getLayerValues()[l]);
+		}
+		Assert.assertEquals(fresh.getPreLayerValues()[0],
+				second.getPreLayerValues()[0]);
+	}
+
+	/**
+	 * An input layer which is mostly zeros is multiplied without BLAS, which
+	 * should not change the layer values.
+	 */
+	@Test
+	public void testSparseInputFeedForward() {
+		DoubleMatrix Theta1 = NeuralNetworkGradientTestCase.initializeWeights(
+				5, 40);
+		DoubleMatrix Theta2 = NeuralNetworkGradientTestCase.initializeWeights(
+				3, 5);
+		NeuralNetwork network = new NeuralNetwork(new DoubleMatrix[] {
+				Theta1, Theta2 });
+
+		DoubleMatrix x = new DoubleMatrix(4, 40);
+		x.put(0, 3, 1);
+		x.put(1, 17, 0.5);
+		x.put(3, 39, -2);
+
+		ForwardPropagationResult fResult = network.feedForward(x);
+
+		DoubleMatrix a1 = NeuralNetwork.addBiasUnit(x.transpose());
+		Assert.assertTrue(MatrixTools.density(a1.data, 0, a1.length) <=
+				NeuralNetwork.SPARSE_INPUT_DENSITY);
+		DoubleMatrix z2 = Theta1.mmul(a1);
+		for (int i = 0; i < z2.length; i++) {
+			Assert.assertEquals(z2.get(i), fResult.getPreLayerValues()[0]
+					.get(i), 1e-12);
+		}
+	}
+
+	/**
+	 * A single-precision network should compute the same layers as a
+	 * double-precision one with the same weights, to about float accuracy.
+	 */
+	@Test
+	public void testFloatPrecisionFeedForward() {
+		Weights weights = Weights.copyOf(new DoubleMatrix[] {
+				NeuralNetworkGradientTestCase.initializeWeights(5, 4),
+				NeuralNetworkGradientTestCase.initializeWeights(3, 5) });
+		NeuralNetwork network = new NeuralNetwork(weights);
+		NeuralNetwork floatNetwork = new NeuralNetwork(weights,
+				Precision.FLOAT);
+		Assert.assertEquals(Precision.FLOAT, floatNetwork.getPrecision());
+
+		DoubleMatrix x = NeuralNetworkGradientTestCase.initializeWeights(6, 3);
+		ForwardPropagationResult expected = network.feedForward(x);
+		ForwardPropagationResult actual = floatNetwork.feedForward(x);
+
+		for (int l = 0; l < 3; l++) {
+			Assert.assertArrayEquals(expected.getLayerValues()[l].toArray(),
+					actual.getLayerValues()[l].toArray(), 1e-6);
+		}
+
+		// The other activations have single-precision kernels too.
+		floatNetwork.setActivations(new Tanh(), new Softmax());
+		network.setActivations(new Tanh(), new Softmax());
+		Assert.assertArrayEquals(network.feedForward(x).getOutputLayer()
+				.toArray(), floatNetwork.feedForward(x).getOutputLayer()
+				.toArray(), 1e-6);
+	}
+
+	/**
+	 * The batched backpropagation should sum exactly the same per-example
+	 * outer products as a naive loop over the examples.
+	 */
+	@Test
+	public void testBackpropagateMatchesPerExample() {
+		DoubleMatrix[] Thetas = new DoubleMatrix[] {
+				NeuralNetworkGradientTestCase.initializeWeights(5, 4),
+				NeuralNetworkGradientTestCase.initializeWeights(4, 5),
+				NeuralNetworkGradientTestCase.initializeWeights(3, 4) };
+		NeuralNetwork network = new NeuralNetwork(Thetas);
+
+		DoubleMatrix x = NeuralNetworkGradientTestCase.initializeWeights(7, 3);
+		DoubleMatrix y = new DoubleMatrix(3, 7);
+		for (int i = 0; i < 7; i++) {
+			y.put(i % 3, i, 1);
+		}
+
+		ForwardPropagationResult fResult = network.feedForward(x);
+		DoubleMatrix[] Deltas = network.backpropagate(fResult, y);
+
+		DoubleMatrix[] layerValues = fResult.getLayerValues();
+		DoubleMatrix[] preLayerValues = fResult.getPreLayerValues();
+
+		for (int i = 0; i < 7; i++) {
+			DoubleMatrix[] deltaVectors = new DoubleMatrix[Thetas.length];
+			deltaVectors[Thetas.length - 1] = fResult.getOutputLayer()
+					.getColumn(i).sub(y.getColumn(i));
+
+			for (int l = Thetas.length - 1; l > 0; l--) {
+				DoubleMatrix deltaL = Thetas[l].transpose().mmul(
+						deltaVectors[l]);
+				deltaL = deltaL.getRange(1, deltaL.getRows(), 0, 1);
+				deltaVectors[l - 1] = deltaL.mul(MatrixTools
+						.matrixSigmoidGradient(preLayerValues[l - 1]
+								.getColumn(i)));
+			}
+
+			for (int l = 0; l < Thetas.length; l++) {
+				Deltas[l].subi(deltaVectors[l].mmul(layerValues[l].getColumn(
+						i).transpose()));
+			}
+		}
+
+		for (int l = 0; l < Thetas.length; l++) {
+			Assert.assertEquals(0, Deltas[l].normmax(), 1e-12);
+		}
+	}
+
+	/**
+	 * Checkpoints should be written through the network's training API, and
+	 * a run resumed from one should end where the uninterrupted run does.
+	 */
+	@Test
+	public void testTrainWithCheckpoints() throws IOException {
+		DoubleMatrix[] Thetas = new DoubleMatrix[] {
+				NeuralNetworkGradientTestCase.initializeWeights(5, 3),
+				NeuralNetworkGradientTestCase.initializeWeights(3, 5) };
+		DoubleMatrix x = NeuralNetworkGradientTestCase.initializeWeights(11, 2);
+		DoubleMatrix yVector = new DoubleMatrix(11, 1);
+		for (int i = 0; i < 11; i++) {
+			yVector.put(i, 0, i % 3 + 1);
+		}
+		DoubleMatrix y = NeuralNetwork.buildYMatrix(yVector, 3);
+
+		NeuralNetwork uninterrupted = new NeuralNetwork(Thetas);
+		uninterrupted.train(x, y, 0.1, new Fmincg(), 20, null, false);
+
+		File file = File.createTempFile("training", ".checkpoint");
+		try {
+			NeuralNetwork network = new NeuralNetwork(Thetas);
+			CheckpointingListener listener = new CheckpointingListener(file,
+					5, 0, TimeUnit.SECONDS, null);
+			network.train(x, y, 0.1, new Fmincg(), 12, listener, true);
+			listener.close();
+
+			Checkpoint checkpoint = Checkpoint.read(file);
+			Assert.assertTrue(checkpoint.getIteration() >= 5);
+			Assert.assertTrue(checkpoint.getIteration() <= 12);
+
+			NeuralNetworkCostFunction cost = new NeuralNetworkCostFunction(
+					network, x, y, 0.1);
+			DoubleVector resumed = Fmincg.minimizeFunction(cost, checkpoint,
+					20, null);
+			Assert.assertArrayEquals(uninterrupted.getWeights().getData(),
+					resumed.toArray(), 0);
+		} finally {
+			file.delete();
+		}
+	}
+
 	@Test
 	public void testBuildYMatrix() {
 		DoubleMatrix yVector = new DoubleMatrix(new double[][] {
@@ -99,4 +293,26 @@ public class NeuralNetworkTestCase {
 				NeuralNetwork.convertWeightMatricesToPoint(new DoubleMatrix[] {
 						Theta1, Theta2 }));
 	}
+
+	@Test
+	public void testConvertWeightMatricesRoundTripThreeMatrices() {
+		DoubleMatrix[] Thetas = new DoubleMatrix[] { DoubleMatrix.rand(4, 3),
+				DoubleMatrix.rand(2, 5), DoubleMatrix.rand(3, 3) };
+
+		DoubleVector point = NeuralNetwork.convertWeightMatricesToPoint(Thetas);
+		Assert.assertEquals(12 + 10 + 9, point.getLength());
+
+		int[] rowDimensions = { 4, 2, 3 };
+		int[] columnDimensions = { 3, 5, 3 };
+		Assert.assertArrayEquals(Thetas, NeuralNetwork
+				.convertPointToWeightMatrices(point, rowDimensions,
+						columnDimensions));
+
+		// Wrapping a point shares its array rather than copying it.
+		Weights weights = new Weights(rowDimensions, columnDimensions,
+				point.toArray());
+		Assert.assertSame(point.toArray(), weights.asPoint().toArray());
+		Assert.assertEquals(Thetas[2].get(1, 2),
+				weights.getData()[weights.getOffset(2) + 2 * 3 + 1], 0);
+	}
 }
@@ -0,0 +1,116 @@
+package com.dvcs.neuralnetwork;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jblas.DoubleMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PredictionServerTestCase {
+
+	private static final PredictionServer.Encoder<double[]> ENCODER = new PredictionServer.Encoder<double[]>() {
+		public void encode(double[] frame, double[] target, int offset) {
+			System.arraycopy(frame, 0, target, offset, frame.length);
+		}
+	};
+
+	private static NeuralNetwork createNetwork() {
+		return new NeuralNetwork(new DoubleMatrix[] {
+				NeuralNetworkGradientTestCase.initializeWeights(5, 6),
+				NeuralNetworkGradientTestCase.initializeWeights(3, 5) });
+	}
+
+	/**
+	 * Frames submitted in a burst should be predicted in batches, with the
+	 * same results as predicting them one at a time.
+	 */
+	@Test
+	public void testBatchedPredictions() throws InterruptedException {
+		NeuralNetwork network = createNetwork();
+		final InferenceEngine reference = InferenceEngine.compile(network, 1);
+
+		PredictionServer<double[]> server = new PredictionServer<double[]>(
+				InferenceEngine.compile(network, 8), ENCODER, 200, 1,
+				TimeUnit.SECONDS);
+
+		int frames = 100;
+		final CountDownLatch done = new CountDownLatch(frames);
+		final int[] mismatches = new int[1];
+
+		PredictionServer.Callback<double[]> callback = new PredictionServer.Callback<double[]>() {
+			public void predicted(double[] frame, double[] output,
+					int predictedClass, long latency) {
+				double[] expected = reference.compute(frame);
+				for (int i = 0; i < expected.length; i++) {
+					if (Math.abs(expected[i] - output[i]) > 1e-12) {
+						mismatches[0]++;
+					}
+				}
+				if (predictedClass != reference.predict(frame)) {
+					mismatches[0]++;
+				}
+				done.countDown();
+			}
+		};
+
+		for (int j = 0; j < frames; j++) {
+			Assert.assertTrue(server.submit(DoubleMatrix.rand(6, 1).toArray(),
+					callback));
+		}
+		server.start();
+
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		server.shutdown();
+
+		Assert.assertEquals(0, mismatches[0]);
+		Assert.assertEquals(frames, server.getPredictionCount());
+		Assert.assertTrue(server.getBatchCount() < frames);
+		Assert.assertTrue(server.getLatencyPercentile(99) >= server
+				.getLatencyPercentile(50));
+		Assert.assertFalse(server.isRunning());
+	}
+
+	/**
+	 * Batches which take longer than the latency limit make the server collect
+	 * smaller ones.
+	 */
+	@Test
+	public void testBatchSizeAdaptsToLatencyLimit()
+			throws InterruptedException {
+		PredictionServer<double[]> server = new PredictionServer<double[]>(
+				InferenceEngine.compile(createNetwork(), 8), ENCODER, 100, 1,
+				TimeUnit.NANOSECONDS);
+		Assert.assertEquals(8, server.getBatchSize());
+
+		final CountDownLatch done = new CountDownLatch(20);
+		PredictionServer.Callback<double[]> callback = new PredictionServer.Callback<double[]>() {
+			public void predicted(double[] frame, double[] output,
+					int predictedClass, long latency) {
+				done.countDown();
+			}
+		};
+
+		for (int j = 0; j < 20; j++) {
+			server.submit(new double[6], callback);
+		}
+		server.start();
+
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		server.shutdown();
+
+		Assert.assertEquals(1, server.getBatchSize());
+	}
+
+	@Test
+	public void testRejectsWhenQueueIsFull() {
+		PredictionServer<double[]> server = new PredictionServer<double[]>(
+				InferenceEngine.compile(createNetwork(), 4), ENCODER, 2, 10,
+				TimeUnit.MILLISECONDS);
+
+		Assert.assertTrue(server.submit(new double[6], null));
+		Assert.assertTrue(server.submit(new double[6], null));
+		Assert.assertFalse(server.submit(new double[6], null));
+	}
+
+}
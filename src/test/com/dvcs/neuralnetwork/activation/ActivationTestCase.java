@@ -0,0 +1,85 @@
+package com.dvcs.neuralnetwork.activation;
+
+import org.jblas.DoubleMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActivationTestCase {
+
+	static final double SHIFT = 1e-6;
+
+	static final DoubleMatrix Z = new DoubleMatrix(new double[][] {
+			new double[] { -2, 0.3, 4 }, new double[] { 1, -0.7, -0.1 } });
+
+	/**
+	 * Compare the derivative computed from activation values against the
+	 * numerical derivative of the scalar function.
+	 */
+	void checkGradient(Activation activation) {
+		DoubleMatrix target = new DoubleMatrix(3, 3);
+		activation.apply(Z, target, 1, false);
+
+		DoubleMatrix delta = DoubleMatrix.ones(2, 3);
+		activation.multiplyGradient(delta, target, 1);
+
+		for (int i = 0; i < Z.length; i++) {
+			double z = Z.get(i);
+			double numerical = (activation.apply(z + SHIFT) - activation
+					.apply(z - SHIFT)) / (2 * SHIFT);
+
+			Assert.assertEquals(activation.apply(z),
+					target.get(i % 2 + 1, i / 2), 1e-12);
+			Assert.assertEquals(numerical, delta.get(i), 1e-8);
+		}
+	}
+
+	@Test
+	public void testSigmoid() {
+		checkGradient(new Sigmoid());
+	}
+
+	@Test
+	public void testTanh() {
+		checkGradient(new Tanh());
+	}
+
+	@Test
+	public void testReLU() {
+		checkGradient(new ReLU());
+		checkGradient(new ReLU(0.1));
+	}
+
+	@Test
+	public void testApproximateTanh() {
+		DoubleMatrix exact = new DoubleMatrix(2, 3);
+		DoubleMatrix approximate = new DoubleMatrix(2, 3);
+
+		new Tanh().apply(Z, exact, 0, false);
+		new Tanh().apply(Z, approximate, 0, true);
+
+		Assert.assertArrayEquals(exact.data, approximate.data, 1e-8);
+	}
+
+	@Test
+	public void testSoftmax() {
+		DoubleMatrix target = new DoubleMatrix(2, 3);
+		new Softmax().apply(Z, target, 0, false);
+
+		Assert.assertEquals(Math.exp(-2) / (Math.exp(-2) + Math.exp(1)),
+				target.get(0, 0), 1e-12);
+
+		// Large inputs must not overflow
+		new Softmax().apply(Z.mul(1000), target, 0, false);
+
+		for (int j = 0; j < 3; j++) {
+			Assert.assertEquals(1, target.getColumn(j).sum(), 1e-12);
+		}
+		Assert.assertEquals(1, target.get(0, 2), 1e-12);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSoftmaxHasNoUnitGradient() {
+		new Softmax().multiplyGradient(new DoubleMatrix(2, 3), Z, 0);
+	}
+
+}
@@ -0,0 +1,215 @@
+package com.dvcs.neuralnetwork.dataset;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dvcs.neuralnetwork.NeuralNetwork;
+import com.dvcs.neuralnetwork.NeuralNetworkBuilder;
+import com.dvcs.neuralnetwork.dataset.ImageDataset.PixelFormat;
+
+public class ImageDatasetTestCase {
+
+	static final int COUNT = 12;
+	static final int HEIGHT = 2;
+	static final int WIDTH = 3;
+
+	File directory;
+	File images;
+	File labels;
+	File dataset;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("dataset").toFile();
+		images = new File(directory, "images-idx3-ubyte.gz");
+		labels = new File(directory, "labels-idx1-ubyte");
+		dataset = new File(directory, "digits.dataset");
+
+		writeIdx(images, new int[] { COUNT, HEIGHT, WIDTH }, COUNT * HEIGHT
+				* WIDTH);
+		writeIdx(labels, new int[] { COUNT }, COUNT);
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : directory.listFiles()) {
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Pixel (y, x) of image n in the test images.
+	 */
+	static int pixel(int n, int y, int x) {
+		return (n * 37 + y * 11 + x * 5) % 256;
+	}
+
+	/**
+	 * Write an IDX file of bytes. Images get the values of
+	 * {@link #pixel(int, int, int)}, labels are the image numbers modulo 4.
+	 */
+	static void writeIdx(File file, int[] dimensions, int size)
+			throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		if (file.getName().endsWith(".gz")) {
+			out = new GZIPOutputStream(out);
+		}
+
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(0x0800 | dimensions.length);
+		for (int d : dimensions) {
+			data.writeInt(d);
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (dimensions.length == 1) {
+				data.write(i % 4);
+			} else {
+				int n = i / (HEIGHT * WIDTH);
+				int y = i % (HEIGHT * WIDTH) / WIDTH;
+				int x = i % WIDTH;
+				data.write(pixel(n, y, x));
+			}
+		}
+		data.close();
+	}
+
+	@Test
+	public void testImportBytes() throws IOException {
+		ImageDataset d = IdxImporter.importImages(images, labels, dataset,
+				PixelFormat.UNSIGNED_BYTE);
+		Assert.assertFalse(new File(dataset.getPath() + ".tmp").exists());
+		Assert.assertEquals(ImageDataset.HEADER_SIZE + COUNT * HEIGHT * WIDTH
+				+ COUNT * 4, dataset.length());
+		d.close();
+
+		d = ImageDataset.open(dataset);
+		Assert.assertEquals(COUNT, d.size());
+		Assert.assertEquals(HEIGHT * WIDTH, d.getInputSize());
+		Assert.assertEquals(4, d.getOutputSize());
+		Assert.assertEquals(HEIGHT, d.getImageHeight());
+		Assert.assertEquals(WIDTH, d.getImageWidth());
+		Assert.assertEquals(PixelFormat.UNSIGNED_BYTE, d.getPixelFormat());
+
+		double[] x = new double[HEIGHT * WIDTH + 1];
+		double[] y = new double[5];
+		for (int n = 0; n < COUNT; n++) {
+			Assert.assertEquals(n % 4, d.getLabel(n));
+
+			d.readExample(n, x, 1, y, 1);
+			for (int column = 0; column < WIDTH; column++) {
+				for (int row = 0; row < HEIGHT; row++) {
+					Assert.assertEquals(pixel(n, row, column) / 255.0,
+							x[1 + column * HEIGHT + row], 0);
+				}
+			}
+			for (int c = 0; c < 4; c++) {
+				Assert.assertEquals(c == n % 4 ? 1 : 0, y[1 + c], 0);
+			}
+		}
+		d.close();
+	}
+
+	@Test
+	public void testImportFloats() throws IOException {
+		ImageDataset d = IdxImporter.importImages(images, labels, dataset,
+				PixelFormat.FLOAT);
+		Assert.assertEquals(PixelFormat.FLOAT, d.getPixelFormat());
+
+		float[] x = new float[HEIGHT * WIDTH];
+		float[] y = new float[4];
+		d.readExample(5, x, 0, y, 0);
+		Assert.assertEquals(pixel(5, 1, 0) / 255f, x[1], 0);
+		Assert.assertEquals(pixel(5, 0, 2) / 255f, x[4], 0);
+		Assert.assertArrayEquals(new float[] { 0, 1, 0, 0 }, y, 0);
+
+		Assert.assertArrayEquals(d.get(5).getX(), IdxImporter
+				.importImages(images, labels, dataset,
+						PixelFormat.UNSIGNED_BYTE).get(5).getX(), 1e-7);
+		d.close();
+	}
+
+	@Test
+	public void testBuilderTrainsFromDataset() throws Exception {
+		ImageDataset d = IdxImporter.importImages(images, labels, dataset,
+				PixelFormat.UNSIGNED_BYTE);
+
+		NeuralNetworkBuilder builder = new NeuralNetworkBuilder(d);
+		NeuralNetwork nn = builder.buildNetwork(new int[] { 4 }, 0.1);
+		Assert.assertEquals(HEIGHT * WIDTH + 1, nn.getThetas()[0].columns);
+		Assert.assertEquals(4, nn.getThetas()[1].rows);
+		d.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testMismatchedLabels() throws IOException {
+		writeIdx(labels, new int[] { COUNT - 1 }, COUNT - 1);
+		IdxImporter.importImages(images, labels, dataset,
+				PixelFormat.UNSIGNED_BYTE);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedDataset() throws IOException {
+		IdxImporter.importImages(images, labels, dataset,
+				PixelFormat.UNSIGNED_BYTE).close();
+
+		RandomAccessFile f = new RandomAccessFile(dataset, "rw");
+		f.setLength(f.length() - 4);
+		f.close();
+
+		ImageDataset.open(dataset);
+	}
+
+	@Test(expected = IOException.class)
+	public void testLabelOutOfRange() throws IOException {
+		IdxImporter.importImages(images, labels, dataset,
+				PixelFormat.UNSIGNED_BYTE).close();
+
+		RandomAccessFile f = new RandomAccessFile(dataset, "rw");
+		f.seek(f.length() - 4);
+		f.writeInt(Integer.reverseBytes(4));
+		f.close();
+
+		ImageDataset.open(dataset);
+	}
+
+	@Test
+	public void testEmptyImport() throws IOException {
+		IdxImporter.importImages(images, labels, dataset,
+				PixelFormat.UNSIGNED_BYTE).close();
+		long length = dataset.length();
+
+		writeIdx(images, new int[] { 0, HEIGHT, WIDTH }, 0);
+		writeIdx(labels, new int[] { 0 }, 0);
+		try {
+			IdxImporter.importImages(images, labels, dataset,
+					PixelFormat.UNSIGNED_BYTE);
+			Assert.fail();
+		} catch (IOException e) {
+			// The existing dataset is kept
+		}
+
+		Assert.assertEquals(length, dataset.length());
+		ImageDataset.open(dataset).close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotAnIdxFile() throws IOException {
+		Files.write(labels.toPath(), new byte[16]);
+		IdxImporter.importImages(images, labels, dataset,
+				PixelFormat.UNSIGNED_BYTE);
+	}
+
+}
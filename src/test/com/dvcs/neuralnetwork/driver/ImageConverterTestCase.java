@@ -0,0 +1,142 @@
+package com.dvcs.neuralnetwork.driver;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.jblas.DoubleMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImageConverterTestCase {
+
+	/**
+	 * Gray values should be normalized and laid out with one matrix row per
+	 * pixel row, also for images which are not square.
+	 */
+	@Test
+	public void testGrayImage() {
+		BufferedImage image = new BufferedImage(3, 2,
+				BufferedImage.TYPE_BYTE_GRAY);
+		int[] grays = new int[] { 10, 20, 30, 110, 60, 210 };
+		for (int y = 0; y < 2; y++) {
+			for (int x = 0; x < 3; x++) {
+				image.getRaster().setSample(x, y, 0, grays[y * 3 + x]);
+			}
+		}
+
+		DoubleMatrix m = ImageConverter.convertImageToNormalizedMatrix(image);
+		Assert.assertEquals(2, m.getRows());
+		Assert.assertEquals(3, m.getColumns());
+
+		for (int y = 0; y < 2; y++) {
+			for (int x = 0; x < 3; x++) {
+				Assert.assertEquals((grays[y * 3 + x] - 10) / 200.0,
+						m.get(y, x), 1e-15);
+			}
+		}
+
+		DoubleMatrix legacy = ImageConverter.convertImageToMatrix(image, true);
+		Assert.assertEquals(2, legacy.getRows());
+		Assert.assertEquals(3, legacy.getColumns());
+	}
+
+	/**
+	 * Byte rasters of color images should be grayscaled like the same pixels
+	 * read through the color model, and the float path should agree.
+	 */
+	@Test
+	public void testColorImages() {
+		Random random = new Random(42);
+		BufferedImage bgr = new BufferedImage(7, 5,
+				BufferedImage.TYPE_3BYTE_BGR);
+		BufferedImage abgr = new BufferedImage(7, 5,
+				BufferedImage.TYPE_4BYTE_ABGR);
+		BufferedImage rgb = new BufferedImage(7, 5, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 5; y++) {
+			for (int x = 0; x < 7; x++) {
+				int color = random.nextInt(0x1000000);
+				bgr.setRGB(x, y, color);
+				abgr.setRGB(x, y, 0xff000000 | color);
+				rgb.setRGB(x, y, color);
+			}
+		}
+
+		double[] expected = new double[35];
+		ImageConverter.convertImage(rgb, expected, 0);
+
+		double[] actual = new double[38];
+		ImageConverter.convertImage(bgr, actual, 3);
+		for (int i = 0; i < 35; i++) {
+			Assert.assertEquals(expected[i], actual[i + 3], 0);
+		}
+
+		ImageConverter.convertImage(abgr, actual, 0);
+		for (int i = 0; i < 35; i++) {
+			Assert.assertEquals(expected[i], actual[i], 0);
+		}
+
+		float[] floats = new float[35];
+		ImageConverter.convertImage(bgr, floats, 0);
+		for (int i = 0; i < 35; i++) {
+			Assert.assertEquals(expected[i], floats[i], 1e-6);
+		}
+
+		// Rec. 601 luma in fixed point, normalized
+		int[] lumas = new int[35];
+		int min = 255;
+		int max = 0;
+		for (int x = 0, i = 0; x < 7; x++) {
+			for (int y = 0; y < 5; y++, i++) {
+				int p = rgb.getRGB(x, y);
+				lumas[i] = (77 * ((p >> 16) & 0xff) + 150 * ((p >> 8) & 0xff)
+						+ 29 * (p & 0xff) + 128) >> 8;
+				min = Math.min(min, lumas[i]);
+				max = Math.max(max, lumas[i]);
+			}
+		}
+		for (int i = 0; i < 35; i++) {
+			Assert.assertEquals((lumas[i] - min) / (double) (max - min),
+					expected[i], 1e-15);
+		}
+	}
+
+	/**
+	 * Decoded PNG frames, as the driver receives them, should keep their gray
+	 * values.
+	 */
+	@Test
+	public void testDecodedImage() throws IOException {
+		BufferedImage image = new BufferedImage(4, 6,
+				BufferedImage.TYPE_BYTE_GRAY);
+		for (int y = 0; y < 6; y++) {
+			for (int x = 0; x < 4; x++) {
+				image.getRaster().setSample(x, y, 0, 40 * x + 10 * y);
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out
+				.toByteArray()));
+
+		Assert.assertEquals(
+				ImageConverter.convertImageToNormalizedMatrix(image),
+				ImageConverter.convertImageToNormalizedMatrix(decoded));
+	}
+
+	@Test
+	public void testUniformImage() {
+		BufferedImage image = new BufferedImage(2, 2,
+				BufferedImage.TYPE_BYTE_GRAY);
+		double[] target = new double[] { 1, 1, 1, 1 };
+		ImageConverter.convertImage(image, target, 0);
+
+		Assert.assertArrayEquals(new double[4], target, 0);
+	}
+
+}
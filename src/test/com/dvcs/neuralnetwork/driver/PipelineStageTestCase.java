@@ -0,0 +1,105 @@
+package com.dvcs.neuralnetwork.driver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PipelineStageTestCase {
+
+	/**
+	 * Items should pass through every stage, skipping the rest of the
+	 * pipeline where a handler returns null or throws.
+	 */
+	@Test
+	public void testPassesResultsOn() throws InterruptedException {
+		final AtomicInteger sum = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(50);
+
+		PipelineStage<Integer, Void> last = new PipelineStage<Integer, Void>(
+				"sum", 1, 4, PipelineStage.Overflow.BLOCK,
+				new PipelineStage.Handler<Integer, Void>() {
+					public Void process(Integer x) {
+						sum.addAndGet(x);
+						done.countDown();
+						return null;
+					}
+				}, null);
+
+		PipelineStage<String, Integer> first = new PipelineStage<String, Integer>(
+				"parse", 3, 4, PipelineStage.Overflow.BLOCK,
+				new PipelineStage.Handler<String, Integer>() {
+					public Integer process(String s) {
+						return Integer.parseInt(s);
+					}
+				}, last);
+
+		last.start();
+		first.start();
+
+		int expected = 0;
+		for (int i = 0; i < 50; i++) {
+			first.submit(Integer.toString(i));
+			expected += i;
+		}
+		first.submit("not a number");
+
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		first.shutdown();
+		last.shutdown();
+
+		Assert.assertEquals(expected, sum.get());
+		Assert.assertEquals(50, last.getProcessedCount());
+		Assert.assertEquals(1, first.getFailedCount());
+		Assert.assertEquals(0, first.getDroppedCount());
+		Assert.assertFalse(first.isRunning());
+	}
+
+	/**
+	 * A stage which drops items should keep the newest ones while its
+	 * thread lags.
+	 */
+	@Test
+	public void testDropsOldestWhenFull() throws InterruptedException {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final StringBuffer processed = new StringBuffer();
+
+		PipelineStage<String, Void> stage = new PipelineStage<String, Void>(
+				"display", 1, 2, PipelineStage.Overflow.DROP_OLDEST,
+				new PipelineStage.Handler<String, Void>() {
+					public Void process(String s) {
+						blocked.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						processed.append(s);
+						return null;
+					}
+				}, null);
+		stage.start();
+
+		stage.submit("a");
+		Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+		// "a" is being processed; of the rest only the newest two fit
+		for (String s : new String[] { "b", "c", "d", "e" }) {
+			stage.submit(s);
+		}
+		Assert.assertEquals(2, stage.getQueueDepth());
+		Assert.assertEquals(2, stage.getDroppedCount());
+
+		release.countDown();
+		while (stage.getProcessedCount() < 3) {
+			Thread.sleep(1);
+		}
+		stage.shutdown();
+
+		Assert.assertEquals("ade", processed.toString());
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.dvcs.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+import org.jblas.DoubleMatrix;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatlabMatrixFactoryTestCase {
+
+	File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("matrix", ".txt");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	void write(String text) throws IOException {
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	static String header(int rows, int columns) {
+		return "# Created by Octave 3.2.4\n# name: X\n# type: matrix\n# rows: "
+				+ rows + "\n# columns: " + columns + "\n";
+	}
+
+	/**
+	 * Numbers in the formats Octave and Java write, including ones which
+	 * take the slow paths of the conversion.
+	 */
+	static String randomCell(Random random) {
+		double x;
+		switch (random.nextInt(8)) {
+		case 0:
+			return Double.toString(Double.longBitsToDouble(random.nextLong()));
+		case 1:
+			x = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+			return String.format(Locale.US, "%.17g", x);
+		case 2:
+			x = random.nextGaussian() * Math.pow(10, random.nextInt(600) - 300);
+			return String.format(Locale.US, "%.16e", x);
+		case 3:
+			return String.format(Locale.US, "%.4f", random.nextDouble());
+		case 4:
+			return Integer.toString(random.nextInt(2001) - 1000);
+		case 5:
+			return Double.toString(random.nextDouble() * Double.MIN_NORMAL);
+		case 6:
+			return "0." + Long.toString(Math.abs(random.nextLong()))
+					+ Long.toString(Math.abs(random.nextLong()));
+		default:
+			return Double.toString(random.nextDouble());
+		}
+	}
+
+	static String randomMatrix(Random random, int rows, int columns) {
+		StringBuilder text = new StringBuilder(header(rows, columns));
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				text.append(' ').append(randomCell(random));
+			}
+			text.append('\n');
+		}
+		text.append("\n\n");
+
+		return text.toString();
+	}
+
+	@Test
+	public void testConversionMatchesParseDouble() throws IOException {
+		Random random = new Random(42);
+		String text = randomMatrix(random, 500, 40);
+		write(text);
+
+		DoubleMatrix expected = MatlabMatrixFactory
+				.loadFromReader(new StringReader(text));
+		DoubleMatrix actual = MatlabMatrixFactory.loadFromFile(file, 1);
+
+		Assert.assertEquals(500, actual.rows);
+		Assert.assertEquals(40, actual.columns);
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(
+					Double.doubleToRawLongBits(expected.data[i]),
+					Double.doubleToRawLongBits(actual.data[i]));
+		}
+	}
+
+	@Test
+	public void testParallelRanges() throws IOException {
+		String text = randomMatrix(new Random(7), 301, 9);
+		write(text);
+
+		DoubleMatrix expected = MatlabMatrixFactory
+				.loadFromReader(new StringReader(text));
+		Assert.assertEquals(expected,
+				MatlabMatrixFactory.loadFromFile(file, 7, 1));
+		Assert.assertEquals(expected,
+				MatlabMatrixFactory.loadFromFile(file, 4, 1));
+	}
+
+	@Test
+	public void testStreaming() throws IOException {
+		String text = randomMatrix(new Random(3), 50, 6);
+		write(text);
+
+		final DoubleMatrix expected = MatlabMatrixFactory
+				.loadFromReader(new StringReader(text));
+		final int[] rows = new int[1];
+		MatrixSize size = MatlabMatrixFactory.streamFromFile(file,
+				new MatlabMatrixFactory.RowHandler() {
+					public void handleRow(int row, double[] values) {
+						Assert.assertEquals(rows[0]++, row);
+						Assert.assertArrayEquals(expected.getRow(row)
+								.toArray(), values, 0);
+					}
+				});
+
+		Assert.assertEquals(50, rows[0]);
+		Assert.assertEquals(50, size.getRows());
+		Assert.assertEquals(6, size.getColumns());
+	}
+
+	@Test
+	public void testSpecialValues() throws IOException {
+		write(header(2, 3) + " Inf -Inf NaN\r\n\t-0 1e3 +.5\r\n");
+
+		DoubleMatrix m = MatlabMatrixFactory.loadFromFile(file);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, m.get(0, 0), 0);
+		Assert.assertEquals(Double.NEGATIVE_INFINITY, m.get(0, 1), 0);
+		Assert.assertTrue(Double.isNaN(m.get(0, 2)));
+		Assert.assertEquals(Double.doubleToRawLongBits(-0.0),
+				Double.doubleToRawLongBits(m.get(1, 0)));
+		Assert.assertEquals(1000, m.get(1, 1), 0);
+		Assert.assertEquals(0.5, m.get(1, 2), 0);
+	}
+
+	/**
+	 * Lines longer than the mapped window should move and grow the window.
+	 */
+	@Test
+	public void testSmallWindow() throws IOException {
+		write("1 2\n\n 3 4 5 6 7 8 9\n10");
+
+		RandomAccessFile f = new RandomAccessFile(file, "r");
+		try {
+			MatlabTextScanner scanner = new MatlabTextScanner(f.getChannel(),
+					0, f.length(), 4);
+			double[] values = new double[7];
+
+			Assert.assertTrue(scanner.nextLine());
+			scanner.parseLine(values, 0, 1, 2, 0);
+			Assert.assertEquals(2, values[1], 0);
+
+			Assert.assertTrue(scanner.nextLine());
+			Assert.assertEquals(6, scanner.getLineOffset());
+			scanner.parseLine(values, 0, 1, 7, 1);
+			Assert.assertArrayEquals(new double[] { 3, 4, 5, 6, 7, 8, 9 },
+					values, 0);
+
+			Assert.assertTrue(scanner.nextLine());
+			scanner.parseLine(values, 0, 1, 1, 2);
+			Assert.assertEquals(10, values[0], 0);
+
+			Assert.assertFalse(scanner.nextLine());
+		} finally {
+			f.close();
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testMissingHeader() throws IOException {
+		write("# rows: 1\n 1 2\n");
+		MatlabMatrixFactory.loadFromFile(file);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testWrongCellCount() throws IOException {
+		write(header(2, 2) + " 1 2\n 3 4 5\n");
+		MatlabMatrixFactory.loadFromFile(file);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testTooManyRows() throws IOException {
+		write(header(1, 2) + " 1 2\n 3 4\n");
+		MatlabMatrixFactory.loadFromFile(file);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testInvalidCell() throws IOException {
+		write(header(1, 2) + " 1 x2\n");
+		MatlabMatrixFactory.loadFromFile(file);
+	}
+
+	@Test
+	public void testLargeSignificands() {
+		Random random = new Random(11);
+		for (int i = 0; i < 100000; i++) {
+			long significand = random.nextLong() >>> random.nextInt(64);
+			int exponent = random.nextInt(DecimalConversion.MAX_EXPONENT
+					- DecimalConversion.MIN_EXPONENT + 1)
+					+ DecimalConversion.MIN_EXPONENT;
+
+			double value = DecimalConversion.toDouble(significand, exponent,
+					false);
+			if (!Double.isNaN(value)) {
+				String text = BigInteger.valueOf(significand >>> 1)
+						.shiftLeft(1).add(BigInteger.valueOf(significand & 1))
+						+ "e" + exponent;
+				Assert.assertEquals(text, Double.parseDouble(text), value, 0);
+			}
+		}
+	}
+
+}
@@ -37,4 +37,88 @@ public class MatrixToolsTestCase {
 		MatrixTools.reshape(in, 3, 2);
 	}
 
+	@Test
+	public void testSigmoidInPlace() {
+		DoubleMatrix z = new DoubleMatrix(new double[][] {
+				new double[] { -2, 0 }, new double[] { 1, 3 } });
+		DoubleMatrix expected = new DoubleMatrix(new double[][] {
+				new double[] { MatrixTools.sigmoid(-2), 0.5 },
+				new double[] { MatrixTools.sigmoid(1), MatrixTools.sigmoid(3) } });
+
+		Assert.assertEquals(expected, MatrixTools.matrixSigmoid(z));
+		Assert.assertSame(z, MatrixTools.matrixSigmoidi(z));
+		Assert.assertEquals(expected, z);
+	}
+
+	@Test
+	public void testFusedSigmoidAndGradient() {
+		DoubleMatrix z = new DoubleMatrix(new double[][] {
+				new double[] { -2, 0, 4 }, new double[] { 1, 3, -0.5 } });
+		DoubleMatrix target = new DoubleMatrix(3, 3);
+		DoubleMatrix gradient = new DoubleMatrix(2, 3);
+
+		MatrixTools.matrixSigmoid(z, target, 1, gradient, false);
+
+		DoubleMatrix sig = MatrixTools.matrixSigmoid(z);
+		Assert.assertEquals(sig, target.getRange(1, 3, 0, 3));
+		Assert.assertEquals(new DoubleMatrix(1, 3), target.getRow(0));
+		Assert.assertEquals(MatrixTools.matrixSigmoidGradient(z), gradient);
+
+		DoubleMatrix delta = DoubleMatrix.ones(2, 3);
+		MatrixTools.multiplySigmoidGradient(delta, target, 1);
+		Assert.assertEquals(gradient, delta);
+	}
+
+	@Test
+	public void testSparseGemm() {
+		DoubleMatrix a = DoubleMatrix.rand(4, 6);
+		DoubleMatrix b = DoubleMatrix.rand(6, 5);
+		// Keep roughly a fifth of B, including one empty column.
+		b.muli(DoubleMatrix.rand(6, 5).lt(0.2));
+		b.putColumn(2, DoubleMatrix.zeros(6));
+		DoubleMatrix c = DoubleMatrix.rand(4, 5);
+
+		MatrixTools.gemmSparseB(4, 5, 6, a.data, 0, 4, b.data, 0, 6, c.data,
+				0, 4);
+
+		DoubleMatrix expected = a.mmul(b);
+		for (int i = 0; i < c.length; i++) {
+			Assert.assertEquals(expected.get(i), c.get(i), 1e-12);
+		}
+		Assert.assertEquals(0.0, c.getColumn(2).normmax(), 0);
+	}
+
+	@Test
+	public void testDensity() {
+		double[] x = new double[] { 1, 0, 0, 2, 0, 0, 0, 3 };
+
+		Assert.assertEquals(3.0 / 8, MatrixTools.density(x, 0, 8), 0);
+		Assert.assertEquals(1.0 / 4, MatrixTools.density(x, 1, 4), 0);
+		Assert.assertEquals(0, MatrixTools.density(x, 1, 0), 0);
+	}
+
+	@Test
+	public void testFastExp() {
+		for (double x = -50; x <= 50; x += 0.01) {
+			double exact = Math.exp(x);
+			Assert.assertEquals(exact, MatrixTools.fastExp(x), exact * 1e-8);
+		}
+
+		Assert.assertEquals(1, MatrixTools.fastExp(0), 0);
+		Assert.assertFalse(Double.isInfinite(MatrixTools.fastExp(1000)));
+		Assert.assertTrue(MatrixTools.fastExp(-1000) >= 0);
+	}
+
+	@Test
+	public void testFastExpFloat() {
+		for (float x = -50; x <= 50; x += 0.01f) {
+			double exact = Math.exp(x);
+			Assert.assertEquals(exact, MatrixTools.fastExp(x), exact * 3e-7);
+		}
+
+		Assert.assertEquals(1, MatrixTools.fastExp(0f), 0);
+		Assert.assertFalse(Float.isInfinite(MatrixTools.fastExp(1000f)));
+		Assert.assertTrue(MatrixTools.fastExp(-1000f) > 0);
+	}
+
 }
@@ -1,5 +1,7 @@
 package de.jungblut.math.dense;
 
+import java.util.Random;
+
 import junit.framework.TestCase;
 
 import org.junit.Test;
@@ -65,6 +67,34 @@ public class DenseDoubleMatrixTest extends TestCase {
 
   }
 
+  @Test
+  public void testMultiplyLarge() throws Exception {
+    Random random = new Random(7);
+    // sizes which exercise the simple, blocked and parallel kernels as well
+    // as partial tiles and leftover rows
+    int[][] sizes = new int[][] { { 3, 5, 4 }, { 37, 41, 29 },
+        { 203, 150, 301 }, { 130, 300, 70 } };
+
+    for (int[] size : sizes) {
+      DenseDoubleMatrix a = new DenseDoubleMatrix(size[0], size[1], random);
+      DenseDoubleMatrix b = new DenseDoubleMatrix(size[1], size[2], random);
+
+      DoubleMatrix product = a.multiply(b);
+      assertEquals(size[0], product.getRowCount());
+      assertEquals(size[2], product.getColumnCount());
+
+      for (int i = 0; i < size[0]; i++) {
+        for (int j = 0; j < size[2]; j++) {
+          double expected = 0;
+          for (int k = 0; k < size[1]; k++) {
+            expected += a.get(i, k) * b.get(k, j);
+          }
+          assertEquals(expected, product.get(i, j), 1e-12);
+        }
+      }
+    }
+  }
+
   @Test
   public void testMultiplyElement() throws Exception {
     double[][] arr = new double[][] { { 1, 2, 3 }, { 4, 5, 6 } };
@@ -27,6 +27,32 @@ public class DenseDoubleVectorTest extends TestCase {
     arrayEquals(res, multiply.toArray());
   }
 
+  @Test
+  public void testInPlaceOperations() throws Exception {
+    double[] arr = new double[] { 1, 2, 3, 4, 5 };
+    DenseDoubleVector other = new DenseDoubleVector(new double[] { 5, 4, 3,
+        2, 1 });
+    DenseDoubleVector vec = new DenseDoubleVector(arr);
+
+    assertSame(vec, vec.axpy(0.5, other));
+    arrayEquals(new double[] { 3.5, 4, 4.5, 5, 5.5 }, arr);
+    assertSame(vec, vec.scaleInPlace(2));
+    arrayEquals(new double[] { 7, 8, 9, 10, 11 }, arr);
+    assertSame(vec, vec.subtractInPlace(other));
+    arrayEquals(new double[] { 2, 4, 6, 8, 10 }, arr);
+    assertSame(vec, vec.addInPlace(other));
+    arrayEquals(new double[] { 7, 8, 9, 10, 11 }, arr);
+    assertSame(vec, vec.assign(other));
+    arrayEquals(other.toArray(), arr);
+    assertNotSame(other.toArray(), arr);
+
+    // views are updated in place as well
+    double[] backing = new double[] { 1, 0, 2, 0, 3 };
+    StridedDoubleVector view = new StridedDoubleVector(backing, 0, 3, 2);
+    view.axpy(2, new DenseDoubleVector(new double[] { 1, 1, 1 }));
+    arrayEquals(new double[] { 3, 0, 4, 0, 5 }, backing);
+  }
+
   @Test
   public void testPow() throws Exception {
     double[] arr = new double[] { 1, 2, 3, 4, 5 };
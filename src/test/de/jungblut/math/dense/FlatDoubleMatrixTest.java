@@ -0,0 +1,150 @@
+package de.jungblut.math.dense;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.minimize.DenseMatrixFolder;
+
+public class FlatDoubleMatrixTest extends TestCase {
+
+  @Test
+  public void testAccessors() throws Exception {
+    double[][] arr = new double[][] { { 1, 2, 3 }, { 4, 5, 6 } };
+    FlatDoubleMatrix mat = new FlatDoubleMatrix(arr);
+    assertEquals(2, mat.getRowCount());
+    assertEquals(3, mat.getColumnCount());
+    assertTrue(mat.isContiguous());
+    arrayEquals(new double[] { 1, 2, 3, 4, 5, 6 }, mat.getData());
+
+    for (int i = 0; i < mat.getRowCount(); i++) {
+      arrayEquals(arr[i], mat.getRowVector(i).toArray());
+      for (int j = 0; j < mat.getColumnCount(); j++) {
+        assertEquals(arr[i][j], mat.get(i, j));
+      }
+    }
+    arrayEquals(new double[] { 2, 5 }, mat.getColumnVector(1).toArray());
+  }
+
+  @Test
+  public void testViewsShareStorage() throws Exception {
+    FlatDoubleMatrix mat = new FlatDoubleMatrix(new double[] { 1, 2, 3, 4, 5,
+        6, 7, 8, 9, 10, 11, 12 }, 3, 4);
+
+    DoubleVector row = mat.getRowVector(1);
+    row.set(2, 70);
+    assertEquals(70.0d, mat.get(1, 2));
+    assertEquals(5.0d + 6 + 70 + 8, row.sum());
+
+    DoubleVector column = mat.getColumnVector(3);
+    arrayEquals(new double[] { 4, 8, 12 }, column.toArray());
+    column.set(0, 40);
+    assertEquals(40.0d, mat.get(0, 3));
+
+    FlatDoubleMatrix slice = mat.slice(1, 3, 1, 3);
+    assertFalse(slice.isContiguous());
+    assertSame(mat.getData(), slice.getData());
+    assertEquals(2, slice.getRowCount());
+    assertEquals(2, slice.getColumnCount());
+    arrayEquals(new double[] { 6, 70 }, slice.getRowVector(0).toArray());
+    arrayEquals(new double[] { 70, 11 }, slice.getColumnVector(1).toArray());
+    slice.set(1, 0, 100);
+    assertEquals(100.0d, mat.get(2, 1));
+
+    // slicing a slice offsets twice
+    FlatDoubleMatrix corner = slice.slice(1, 2, 1, 2);
+    assertEquals(11.0d, corner.get(0, 0));
+
+    FlatDoubleMatrix copy = slice.copy();
+    assertTrue(copy.isContiguous());
+    arrayEquals(new double[] { 6, 70, 100, 11 }, copy.getData());
+    copy.set(0, 0, -1);
+    assertEquals(6.0d, mat.get(1, 1));
+  }
+
+  @Test
+  public void testMatchesDenseMatrix() throws Exception {
+    Random random = new Random(3);
+    DenseDoubleMatrix dense = new DenseDoubleMatrix(6, 5, random);
+    DenseDoubleMatrix other = new DenseDoubleMatrix(6, 5, random);
+    DenseDoubleVector vector = new DenseDoubleVector(new double[] { 1, 2, 3,
+        4, 5 });
+    FlatDoubleMatrix flat = FlatDoubleMatrix.copyOf(dense);
+
+    assertEquals(dense.transpose(), flat.transpose().toDenseMatrix());
+    assertEquals(dense.multiply(2), flat.multiply(2).toDenseMatrix());
+    assertEquals(dense.add(other), flat.add(other).toDenseMatrix());
+    assertEquals(dense.subtract(other), flat.subtract(other).toDenseMatrix());
+    assertEquals(dense.subtract(vector), flat.subtract(vector).toDenseMatrix());
+    assertEquals(dense.divide(vector), flat.divide(vector).toDenseMatrix());
+    assertEquals(dense.pow(2), flat.pow(2).toDenseMatrix());
+    assertEquals(dense.sum(), flat.sum());
+    assertEquals(dense.max(2), flat.max(2));
+    assertEquals(dense.min(2), flat.min(2));
+    arrayEquals(dense.multiplyVector(vector).toArray(),
+        flat.multiplyVector(vector).toArray());
+    assertEquals(dense.slice(1, 4, 2, 5),
+        flat.slice(1, 4, 2, 5).toDenseMatrix());
+  }
+
+  @Test
+  public void testMultiplyLarge() throws Exception {
+    Random random = new Random(7);
+    // sizes which exercise the simple, blocked and parallel kernels as well
+    // as partial tiles and leftover rows
+    int[][] sizes = new int[][] { { 3, 5, 4 }, { 37, 41, 29 },
+        { 203, 150, 301 }, { 130, 300, 70 } };
+
+    for (int[] size : sizes) {
+      DenseDoubleMatrix a = new DenseDoubleMatrix(size[0], size[1], random);
+      DenseDoubleMatrix b = new DenseDoubleMatrix(size[1], size[2], random);
+
+      DoubleMatrix expected = a.multiply(b);
+      FlatDoubleMatrix product = FlatDoubleMatrix.copyOf(a).multiply(
+          FlatDoubleMatrix.copyOf(b));
+      // both kernels sum in the same order
+      assertEquals(expected, product.toDenseMatrix());
+    }
+
+    // operands which are views into larger matrices
+    FlatDoubleMatrix big = new FlatDoubleMatrix(120, 150, random);
+    FlatDoubleMatrix left = big.slice(3, 110, 7, 40);
+    FlatDoubleMatrix right = big.slice(10, 43, 20, 130);
+    assertEquals(left.toDenseMatrix().multiply(right.toDenseMatrix()), left
+        .multiply(right).toDenseMatrix());
+  }
+
+  @Test
+  public void testFolding() throws Exception {
+    Random random = new Random(5);
+    DenseDoubleMatrix a = new DenseDoubleMatrix(4, 3, random);
+    DenseDoubleMatrix b = new DenseDoubleMatrix(2, 5, random);
+    FlatDoubleMatrix flatA = FlatDoubleMatrix.copyOf(a);
+    FlatDoubleMatrix flatB = FlatDoubleMatrix.copyOf(b);
+
+    arrayEquals(DenseMatrixFolder.foldMatrices(a, b).toArray(),
+        DenseMatrixFolder.foldMatrices(flatA, flatB).toArray());
+    arrayEquals(DenseMatrixFolder.foldMatrix(a).toArray(), DenseMatrixFolder
+        .foldMatrix(flatA).toArray());
+
+    DoubleVector folded = DenseMatrixFolder.foldMatrix(flatA.slice(1, 3, 0, 3));
+    arrayEquals(flatA.slice(1, 3, 0, 3).copy().getData(), folded.toArray());
+
+    FlatDoubleMatrix unfolded = DenseMatrixFolder.unfoldFlatMatrix(folded, 2,
+        3);
+    assertSame(folded.toArray(), unfolded.getData());
+    assertEquals(flatA.get(2, 1), unfolded.get(1, 1));
+  }
+
+  public void arrayEquals(double[] left, double[] right) {
+    assertEquals(left.length, right.length);
+
+    for (int i = 0; i < left.length; i++) {
+      assertEquals(left[i], right[i]);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package de.jungblut.math.kernel;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+public class VectorKernelsTest extends TestCase {
+
+  // lengths around common register widths, with leftover elements
+  private static final int[] LENGTHS = new int[] { 0, 1, 3, 4, 7, 8, 9, 17,
+      64, 101 };
+
+  private final VectorKernels kernels = VectorKernels.get();
+  private final VectorKernels scalar = VectorKernels.scalar();
+  private final Random random = new Random(11);
+
+  @Test
+  public void testSelection() throws Exception {
+    assertNotNull(kernels.getName());
+    assertEquals("scalar", scalar.getName());
+  }
+
+  @Test
+  public void testReductions() throws Exception {
+    for (int length : LENGTHS) {
+      double[] x = randomArray(length + 3);
+      double[] y = randomArray(length + 5);
+
+      assertEquals(scalar.dot(x, 3, y, 5, length),
+          kernels.dot(x, 3, y, 5, length), 1e-12);
+      assertEquals(scalar.sum(x, 2, length), kernels.sum(x, 2, length), 1e-12);
+    }
+    assertEquals(0d, kernels.sum(new double[0], 0, 0));
+  }
+
+  @Test
+  public void testElementWise() throws Exception {
+    for (int length : LENGTHS) {
+      double[] x = randomArray(length + 1);
+      double[] y = randomArray(length + 2);
+
+      double[] expected = new double[length];
+      double[] actual = new double[length];
+      scalar.add(x, 1, y, 2, expected, 0, length);
+      kernels.add(x, 1, y, 2, actual, 0, length);
+      arrayEquals(expected, actual);
+
+      scalar.subtract(x, 1, y, 2, expected, 0, length);
+      kernels.subtract(x, 1, y, 2, actual, 0, length);
+      arrayEquals(expected, actual);
+
+      scalar.multiply(x, 1, y, 2, expected, 0, length);
+      kernels.multiply(x, 1, y, 2, actual, 0, length);
+      arrayEquals(expected, actual);
+
+      scalar.scale(-1.5, x, 1, expected, 0, length);
+      kernels.scale(-1.5, x, 1, actual, 0, length);
+      arrayEquals(expected, actual);
+
+      // in place on the target
+      scalar.axpy(0.25, y, 2, expected, 0, length);
+      kernels.axpy(0.25, y, 2, actual, 0, length);
+      arrayEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void testSigmoid() throws Exception {
+    for (int length : LENGTHS) {
+      double[] z = new double[length];
+      float[] f = new float[length];
+      for (int i = 0; i < length; i++) {
+        z[i] = (random.nextDouble() - 0.5) * 60;
+        f[i] = (float) z[i];
+      }
+
+      for (boolean approximate : new boolean[] { false, true }) {
+        double[] target = new double[length + 1];
+        float[] floatTarget = new float[length + 1];
+        kernels.sigmoid(z, 0, target, 1, length, approximate);
+        kernels.sigmoid(f, 0, floatTarget, 1, length, approximate);
+
+        for (int i = 0; i < length; i++) {
+          double exact = 1.0 / (1 + Math.exp(-z[i]));
+          assertEquals(exact, target[i + 1], exact * 1e-8);
+          double exactFloat = 1.0 / (1 + Math.exp(-f[i]));
+          assertEquals(exactFloat, floatTarget[i + 1], exactFloat * 1e-6);
+        }
+      }
+    }
+
+    // saturated inputs stay finite
+    double[] z = new double[] { -1000, 1000, -1000, 1000, -1000, 1000, -1000,
+        1000, -1000 };
+    kernels.sigmoid(z, 0, z, 0, z.length, true);
+    for (int i = 0; i < z.length; i++) {
+      assertEquals(i % 2, z[i], 1e-300);
+    }
+  }
+
+  private double[] randomArray(int length) {
+    double[] array = new double[length];
+    for (int i = 0; i < length; i++) {
+      array[i] = random.nextGaussian();
+    }
+    return array;
+  }
+
+  public void arrayEquals(double[] left, double[] right) {
+    assertEquals(left.length, right.length);
+
+    for (int i = 0; i < left.length; i++) {
+      assertEquals(left[i], right[i]);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package de.jungblut.math.minimize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+public class CheckpointingListenerTest extends TestCase {
+
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    file = File.createTempFile("minimization", ".checkpoint");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+  }
+
+  /**
+   * A run resumed from a checkpoint should end up exactly where the
+   * uninterrupted run does.
+   */
+  @Test
+  public void testResumeMatchesUninterruptedRun() throws Exception {
+    DoubleVector start = new DenseDoubleVector(6, -1.5);
+    DoubleVector expected = Fmincg.minimizeFunction(new Rosenbrock(), start,
+        40, null);
+
+    final int[] iterations = new int[1];
+    CheckpointingListener listener = new CheckpointingListener(file, 10, 0,
+        TimeUnit.SECONDS, new MinimizerListener() {
+          @Override
+          public void minimizationIterationFinished(int iterationNumber,
+              double cost, DoubleVector parameters) {
+            iterations[0]++;
+          }
+        });
+    Fmincg.minimizeFunction(new Rosenbrock(), start, 20, listener);
+    listener.close();
+
+    assertTrue(iterations[0] > 0);
+    Checkpoint checkpoint = Checkpoint.read(file);
+    assertEquals(listener.getWrittenIteration(), checkpoint.getIteration());
+    assertTrue(checkpoint.getIteration() >= 10);
+    assertTrue(checkpoint.getIteration() <= 20);
+    assertEquals(new Rosenbrock().evaluateCost(
+        new DenseDoubleVector(checkpoint.getParameters())).getFirst(),
+        checkpoint.getCost(), 0);
+
+    DoubleVector resumed = Fmincg.minimizeFunction(new Rosenbrock(),
+        checkpoint, 40, null);
+    assertTrue(new Rosenbrock().evaluateCost(resumed).getFirst() < checkpoint
+        .getCost());
+    for (int i = 0; i < expected.getLength(); i++) {
+      assertEquals(expected.get(i), resumed.get(i), 0);
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Checkpoint checkpoint = new Checkpoint(3);
+    checkpoint.set(7, 0.25, new DenseDoubleVector(new double[] { 1, 2, 3 }),
+        new DenseDoubleVector(new double[] { -1, 0, 1 }), 0.5);
+    checkpoint.write(file);
+
+    Checkpoint read = Checkpoint.read(file);
+    assertEquals(7, read.getIteration());
+    assertEquals(0.25, read.getCost());
+    assertEquals(0.5, read.getStepSize());
+    assertEquals(1, read.getParameters()[0], 0);
+    assertEquals(3, read.getParameters()[2], 0);
+    assertEquals(-1, read.getSearchDirection()[0], 0);
+    assertEquals(1, read.getSearchDirection()[2], 0);
+  }
+
+  @Test
+  public void testTruncatedCheckpoint() throws IOException {
+    Checkpoint checkpoint = new Checkpoint(3);
+    checkpoint.write(file);
+
+    RandomAccessFile f = new RandomAccessFile(file, "rw");
+    f.setLength(f.length() - 1);
+    f.close();
+
+    try {
+      Checkpoint.read(file);
+      fail("A truncated checkpoint should not be read");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  /**
+   * The extended Rosenbrock function, which takes Fmincg many iterations.
+   */
+  private static class Rosenbrock implements CostFunction {
+
+    @Override
+    public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+      int n = input.getLength();
+      double cost = 0;
+      DenseDoubleVector gradient = new DenseDoubleVector(n);
+
+      for (int i = 0; i < n - 1; i++) {
+        double x = input.get(i);
+        double y = input.get(i + 1);
+        cost += 100 * (y - x * x) * (y - x * x) + (1 - x) * (1 - x);
+        gradient.set(i, gradient.get(i) - 400 * x * (y - x * x) - 2
+            * (1 - x));
+        gradient.set(i + 1, gradient.get(i + 1) + 200 * (y - x * x));
+      }
+
+      return new Tuple<Double, DoubleVector>(cost, gradient);
+    }
+  }
+
+}
@@ -0,0 +1,75 @@
+package de.jungblut.math.minimize;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+public class FmincgTest extends TestCase {
+
+  private static final double[] TARGET = new double[] { 2, -3, 0.5, 7 };
+  private static final double[] SCALE = new double[] { 1, 10, 0.5, 3 };
+
+  @Test
+  public void testConvergence() throws Exception {
+    DoubleVector result = Fmincg.minimizeFunction(new ScaledQuadratic(),
+        new DenseDoubleVector(TARGET.length), 50, null);
+    for (int i = 0; i < TARGET.length; i++) {
+      assertEquals(TARGET[i], result.get(i), 1e-6);
+    }
+  }
+
+  @Test
+  public void testStartingPointIsNotModified() throws Exception {
+    DenseDoubleVector start = new DenseDoubleVector(TARGET.length, 1.0);
+    DoubleVector result = Fmincg.minimizeFunction(new ScaledQuadratic(),
+        start, 5, null);
+    assertNotSame(start, result);
+    for (int i = 0; i < TARGET.length; i++) {
+      assertEquals(1.0, start.get(i));
+    }
+  }
+
+  @Test
+  public void testListenerSeesCurrentPoint() throws Exception {
+    final double[] lastCost = new double[1];
+    final DoubleVector[] lastPoint = new DoubleVector[1];
+    DoubleVector result = Fmincg.minimizeFunction(new ScaledQuadratic(),
+        new DenseDoubleVector(TARGET.length), 20, new MinimizerListener() {
+          @Override
+          public void minimizationIterationFinished(int iterationNumber,
+              double cost, DoubleVector parameters) {
+            lastCost[0] = cost;
+            lastPoint[0] = parameters;
+          }
+        });
+    assertSame(result, lastPoint[0]);
+    assertEquals(new ScaledQuadratic().evaluateCost(result).getFirst(),
+        lastCost[0], 1e-12);
+  }
+
+  /**
+   * $\sum_i s_i (x_i - t_i)^2$. Returns the same gradient vector from every
+   * evaluation, which the minimizer must copy rather than keep.
+   */
+  private static class ScaledQuadratic implements CostFunction {
+
+    private final DenseDoubleVector gradient = new DenseDoubleVector(
+        TARGET.length);
+
+    @Override
+    public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+      double cost = 0;
+      for (int i = 0; i < TARGET.length; i++) {
+        double d = input.get(i) - TARGET[i];
+        cost += SCALE[i] * d * d;
+        gradient.set(i, 2 * SCALE[i] * d);
+      }
+      return new Tuple<Double, DoubleVector>(cost, gradient);
+    }
+  }
+
+}
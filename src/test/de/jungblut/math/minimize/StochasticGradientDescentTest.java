@@ -0,0 +1,136 @@
+package de.jungblut.math.minimize;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.StochasticGradientDescent.UpdateRule;
+import de.jungblut.math.tuple.Tuple;
+
+public class StochasticGradientDescentTest extends TestCase {
+
+  private static final double[] WEIGHTS = new double[] { 2, -3, 0.5 };
+
+  @Test
+  public void testSGD() throws Exception {
+    checkConvergence(new StochasticGradientDescent(UpdateRule.SGD, 0.1, 4),
+        200);
+  }
+
+  @Test
+  public void testMomentum() throws Exception {
+    checkConvergence(new StochasticGradientDescent(UpdateRule.MOMENTUM,
+        0.02, 4), 200);
+  }
+
+  @Test
+  public void testAdam() throws Exception {
+    checkConvergence(
+        new StochasticGradientDescent(UpdateRule.ADAM, 0.05, 4), 300);
+  }
+
+  @Test
+  public void testListenerPerEpochAndPerBatch() throws Exception {
+    LeastSquares f = new LeastSquares(10);
+    CountingListener listener = new CountingListener();
+
+    StochasticGradientDescent sgd = new StochasticGradientDescent(
+        UpdateRule.SGD, 0.1, 3);
+    sgd.minimize(f, new DenseDoubleVector(3), 5, listener);
+    assertEquals(5, listener.calls);
+    assertEquals(5, listener.lastIteration);
+
+    listener = new CountingListener();
+    sgd.setReportEveryBatch(true);
+    sgd.minimize(f, new DenseDoubleVector(3), 5, listener);
+    // 10 examples in batches of 3 give 4 batches per epoch
+    assertEquals(20, listener.calls);
+    assertEquals(20, listener.lastIteration);
+  }
+
+  @Test
+  public void testStartingPointIsNotModified() throws Exception {
+    DenseDoubleVector start = new DenseDoubleVector(3, 1.0);
+    new StochasticGradientDescent(UpdateRule.ADAM, 0.1, 2).minimize(
+        new LeastSquares(8), start, 3, null);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(1.0, start.get(i));
+    }
+  }
+
+  private void checkConvergence(StochasticGradientDescent minimizer,
+      int epochs) {
+    minimizer.setSeed(0);
+    DoubleVector result = minimizer.minimize(new LeastSquares(20),
+        new DenseDoubleVector(3), epochs, null);
+    for (int i = 0; i < WEIGHTS.length; i++) {
+      assertEquals(WEIGHTS[i], result.get(i), 1e-3);
+    }
+  }
+
+  /**
+   * Mean squared error of a linear model on noiseless examples generated
+   * from {@link #WEIGHTS}.
+   */
+  private static class LeastSquares implements BatchCostFunction {
+
+    private final double[][] a;
+    private final double[] b;
+
+    LeastSquares(int m) {
+      a = new double[m][WEIGHTS.length];
+      b = new double[m];
+      for (int i = 0; i < m; i++) {
+        for (int j = 0; j < WEIGHTS.length; j++) {
+          a[i][j] = Math.sin((i + 1) * (j + 1) * 0.7);
+          b[i] += a[i][j] * WEIGHTS[j];
+        }
+      }
+    }
+
+    @Override
+    public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+      int[] all = new int[b.length];
+      for (int i = 0; i < all.length; i++)
+        all[i] = i;
+      return evaluateBatchCost(input, all, 0, all.length);
+    }
+
+    @Override
+    public int getNumExamples() {
+      return b.length;
+    }
+
+    @Override
+    public Tuple<Double, DoubleVector> evaluateBatchCost(DoubleVector input,
+        int[] examples, int offset, int length) {
+      double cost = 0;
+      DenseDoubleVector gradient = new DenseDoubleVector(WEIGHTS.length);
+      for (int e = offset; e < offset + length; e++) {
+        int i = examples[e];
+        double residual = -b[i];
+        for (int j = 0; j < WEIGHTS.length; j++)
+          residual += a[i][j] * input.get(j);
+        cost += 0.5 * residual * residual / length;
+        for (int j = 0; j < WEIGHTS.length; j++)
+          gradient.set(j, gradient.get(j) + residual * a[i][j] / length);
+      }
+      return new Tuple<Double, DoubleVector>(cost, gradient);
+    }
+  }
+
+  private static class CountingListener implements MinimizerListener {
+    int calls;
+    int lastIteration;
+
+    @Override
+    public void minimizationIterationFinished(int iterationNumber,
+        double cost, DoubleVector parameters) {
+      calls++;
+      lastIteration = iterationNumber;
+    }
+  }
+
+}
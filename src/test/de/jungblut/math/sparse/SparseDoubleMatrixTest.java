@@ -0,0 +1,124 @@
+package de.jungblut.math.sparse;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.FlatDoubleMatrix;
+import de.jungblut.math.sparse.SparseDoubleMatrix.Storage;
+
+public class SparseDoubleMatrixTest extends TestCase {
+
+  @Test
+  public void testAccessors() throws Exception {
+    double[][] arr = new double[][] { { 0, 2, 0 }, { 0, 0, 0 }, { 4, 0, 0 } };
+    DenseDoubleMatrix dense = new DenseDoubleMatrix(arr);
+
+    for (Storage storage : Storage.values()) {
+      SparseDoubleMatrix mat = SparseDoubleMatrix.copyOf(dense, storage);
+      assertEquals(storage, mat.getStorage());
+      assertEquals(2, mat.getNonZeroCount());
+      assertEquals(dense, mat.toDenseMatrix());
+      arrayEquals(arr[2], mat.getRowVector(2).toArray());
+      arrayEquals(new double[] { 2, 0, 0 }, mat.getColumnVector(1).toArray());
+      assertEquals(2, mat.columnIndices().length);
+
+      mat.set(1, 1, 5);
+      mat.set(0, 1, 0);
+      assertEquals(5.0d, mat.get(1, 1));
+      assertEquals(0.0d, mat.get(0, 1));
+      assertEquals(2, mat.getNonZeroCount());
+    }
+  }
+
+  @Test
+  public void testMatchesDenseMatrix() throws Exception {
+    Random random = new Random(11);
+    DenseDoubleMatrix dense = sparseRandom(random, 7, 6, 0.3);
+    DenseDoubleMatrix other = new DenseDoubleMatrix(7, 6, random);
+    DenseDoubleVector vector = new DenseDoubleVector(new double[] { 1, 2, 3,
+        4, 5, 6 });
+
+    for (Storage storage : Storage.values()) {
+      SparseDoubleMatrix sparse = SparseDoubleMatrix.copyOf(dense, storage);
+      assertEquals(dense.transpose(), sparse.transpose().toDenseMatrix());
+      assertEquals(dense.multiply(2), sparse.multiply(2).toDenseMatrix());
+      assertEquals(dense.multiplyElementWise(other), sparse
+          .multiplyElementWise(other).toDenseMatrix());
+      assertMatrixEquals(dense.add(other), sparse.add(other));
+      assertMatrixEquals(dense.pow(2), sparse.pow(2));
+      // CSC sums column by column
+      assertEquals(dense.sum(), sparse.sum(), 1e-12);
+      assertEquals(dense.max(2), sparse.max(2));
+      assertEquals(dense.min(2), sparse.min(2));
+      arrayEquals(dense.multiplyVector(vector).toArray(), sparse
+          .multiplyVector(vector).toArray());
+      assertEquals(dense.slice(1, 5, 2, 6), sparse.slice(1, 5, 2, 6)
+          .toDenseMatrix());
+      assertEquals(SparseDoubleMatrix.copyOf(dense, Storage.CSR), sparse);
+    }
+  }
+
+  @Test
+  public void testMultiply() throws Exception {
+    Random random = new Random(13);
+    DenseDoubleMatrix a = new DenseDoubleMatrix(9, 20, random);
+    DenseDoubleMatrix b = sparseRandom(random, 20, 15, 0.1);
+    DenseDoubleMatrix c = new DenseDoubleMatrix(15, 4, random);
+    DoubleMatrix ab = a.multiply(b);
+    DoubleMatrix bc = b.multiply(c);
+
+    for (Storage storage : Storage.values()) {
+      SparseDoubleMatrix sparseB = SparseDoubleMatrix.copyOf(b, storage);
+
+      // dense times sparse, through the fast paths of both dense types
+      assertMatrixEquals(ab, a.multiply(sparseB));
+      assertMatrixEquals(ab, FlatDoubleMatrix.copyOf(a).multiply(sparseB)
+          .toDenseMatrix());
+
+      // sparse times dense and sparse times sparse
+      assertMatrixEquals(bc, sparseB.multiply(c));
+      DoubleMatrix product = sparseB.multiply(SparseDoubleMatrix.copyOf(c,
+          storage));
+      assertTrue(product.isSparse());
+      assertMatrixEquals(bc, ((SparseDoubleMatrix) product).toDenseMatrix());
+    }
+  }
+
+  private static DenseDoubleMatrix sparseRandom(Random random, int rows,
+      int columns, double density) {
+    DenseDoubleMatrix mat = new DenseDoubleMatrix(rows, columns);
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        if (random.nextDouble() < density) {
+          mat.set(i, j, random.nextDouble() - 0.5);
+        }
+      }
+    }
+    return mat;
+  }
+
+  private static void assertMatrixEquals(DoubleMatrix expected,
+      DoubleMatrix actual) {
+    assertEquals(expected.getRowCount(), actual.getRowCount());
+    assertEquals(expected.getColumnCount(), actual.getColumnCount());
+    for (int i = 0; i < expected.getRowCount(); i++) {
+      for (int j = 0; j < expected.getColumnCount(); j++) {
+        assertEquals(expected.get(i, j), actual.get(i, j), 1e-12);
+      }
+    }
+  }
+
+  public void arrayEquals(double[] left, double[] right) {
+    assertEquals(left.length, right.length);
+
+    for (int i = 0; i < left.length; i++) {
+      assertEquals(left[i], right[i]);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package de.jungblut.math.sparse;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+public class SparseDoubleVectorTest extends TestCase {
+
+  @Test
+  public void testAccessors() throws Exception {
+    double[] arr = new double[] { 0, 2, 0, 0, 5, 0 };
+    SparseDoubleVector vec = SparseDoubleVector
+        .copyOf(new DenseDoubleVector(arr));
+    assertEquals(6, vec.getLength());
+    assertEquals(2, vec.getNonZeroCount());
+    assertTrue(vec.isSparse());
+    arrayEquals(arr, vec.toArray());
+
+    vec.set(3, 7);
+    vec.set(1, 0);
+    arrayEquals(new double[] { 0, 0, 0, 7, 5, 0 }, vec.toArray());
+    assertEquals(2, vec.getNonZeroCount());
+    assertEquals(3, vec.getNonZeroIndex(0));
+    assertEquals(5.0d, vec.getNonZeroValue(1));
+  }
+
+  @Test
+  public void testIterators() throws Exception {
+    SparseDoubleVector vec = new SparseDoubleVector(1000, new int[] { 10,
+        500, 999 }, new double[] { 1, 2, 3 });
+
+    Iterator<DoubleVectorElement> nonZero = vec.iterateNonZero();
+    int[] indices = new int[] { 10, 500, 999 };
+    for (int k = 0; k < indices.length; k++) {
+      DoubleVectorElement element = nonZero.next();
+      assertEquals(indices[k], element.getIndex());
+      assertEquals(k + 1.0d, element.getValue());
+    }
+    assertFalse(nonZero.hasNext());
+
+    int count = 0;
+    double sum = 0;
+    Iterator<DoubleVectorElement> all = vec.iterate();
+    while (all.hasNext()) {
+      DoubleVectorElement element = all.next();
+      assertEquals(count++, element.getIndex());
+      sum += element.getValue();
+    }
+    assertEquals(1000, count);
+    assertEquals(6.0d, sum);
+  }
+
+  @Test
+  public void testMatchesDenseVector() throws Exception {
+    double[] a = new double[] { 0, -2, 0, 3, 0, 0, 1 };
+    double[] b = new double[] { 4, 2, 0, 0, 0, -1, 0 };
+    DenseDoubleVector denseA = new DenseDoubleVector(a);
+    DenseDoubleVector denseB = new DenseDoubleVector(b);
+    SparseDoubleVector sparseA = SparseDoubleVector.copyOf(denseA);
+    SparseDoubleVector sparseB = SparseDoubleVector.copyOf(denseB);
+
+    arrayEquals(denseA.add(denseB).toArray(), sparseA.add(sparseB).toArray());
+    arrayEquals(denseA.add(denseB).toArray(), sparseA.add(denseB).toArray());
+    arrayEquals(denseA.subtract(denseB).toArray(), sparseA.subtract(sparseB)
+        .toArray());
+    arrayEquals(denseA.multiply(denseB).toArray(), sparseA.multiply(denseB)
+        .toArray());
+    arrayEquals(denseA.multiply(3).toArray(), sparseA.multiply(3).toArray());
+    arrayEquals(denseA.add(1).toArray(), sparseA.add(1).toArray());
+    arrayEquals(denseA.pow(2).toArray(), sparseA.pow(2).toArray());
+    arrayEquals(denseA.abs().toArray(), sparseA.abs().toArray());
+    arrayEquals(denseA.slice(2, 6).toArray(), sparseA.slice(2, 6).toArray());
+    assertEquals(denseA.dot(denseB), sparseA.dot(sparseB));
+    assertEquals(denseA.dot(denseB), sparseA.dot(denseB));
+    assertEquals(denseA.sum(), sparseA.sum());
+    assertEquals(denseA.max(), sparseA.max());
+    assertEquals(denseA.min(), sparseA.min());
+    assertEquals(denseA.maxIndex(), sparseA.maxIndex());
+    assertEquals(denseA.minIndex(), sparseA.minIndex());
+    assertEquals(denseB.minIndex(), sparseB.minIndex());
+
+    // the sum of two sparse vectors stays sparse and drops cancelled elements
+    DoubleVector sum = sparseA.add(sparseA.multiply(-1));
+    assertTrue(sum.isSparse());
+    assertEquals(0, ((SparseDoubleVector) sum).getNonZeroCount());
+  }
+
+  @Test
+  public void testInPlaceOperations() throws Exception {
+    SparseDoubleVector vec = new SparseDoubleVector(5, new int[] { 1, 3 },
+        new double[] { 2, 4 });
+    SparseDoubleVector other = new SparseDoubleVector(5, new int[] { 0, 3 },
+        new double[] { 1, -2 });
+
+    assertSame(vec, vec.axpy(2, other));
+    arrayEquals(new double[] { 2, 2, 0, 0, 0 }, vec.toArray());
+    assertEquals(2, vec.getNonZeroCount());
+    assertSame(vec, vec.scaleInPlace(0.5));
+    arrayEquals(new double[] { 1, 1, 0, 0, 0 }, vec.toArray());
+    assertSame(vec, vec.assign(other));
+    assertEquals(other, vec);
+  }
+
+  public void arrayEquals(double[] left, double[] right) {
+    assertEquals(left.length, right.length);
+
+    for (int i = 0; i < left.length; i++) {
+      // sparse results hold 0 where dense ones may hold -0
+      assertEquals(left[i], right[i], 0);
+    }
+  }
+}